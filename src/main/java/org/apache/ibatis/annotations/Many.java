@@ -63,4 +63,13 @@ public @interface Many {
    */
   FetchType fetchType() default FetchType.DEFAULT;
 
+  /**
+   * Returns the number of parents whose nested statement is executed as one query. The nested statement must have a
+   * single {@code column = #{value}} condition, which is rewritten into an {@code IN} condition.
+   *
+   * @return the batch size, 0 to execute the nested statement once per parent
+   * @since 3.5.8
+   */
+  int batchSize() default 0;
+
 }
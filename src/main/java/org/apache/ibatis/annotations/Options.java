@@ -144,6 +144,31 @@ public @interface Options {
    */
   String databaseId() default "";
 
+  /**
+   * Returns whether the batch executor may rewrite the rows of this insert statement into multi-row inserts.
+   *
+   * @return {@code true} if rewritable; {@code false} if otherwise
+   * @since 3.5.8
+   */
+  boolean rewriteBatched() default false;
+
+  /**
+   * Returns whether the results of this statement are kept in the local (session) cache.
+   *
+   * @return {@code true} if the results are kept; {@code false} if otherwise
+   * @since 3.5.8
+   */
+  boolean useLocalCache() default true;
+
+  /**
+   * Returns whether concurrent executions of this select statement with the same parameters may share one database
+   * query.
+   *
+   * @return {@code true} if the statement is safe to share; {@code false} if otherwise
+   * @since 3.5.8
+   */
+  boolean singleFlight() default false;
+
   /**
    * The container annotation for {@link Options}.
    * @author Kazuki Shimizu
@@ -0,0 +1,86 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.binding;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * The executors that run mapper methods returning a {@code CompletableFuture} when no async executor is configured.
+ * They are created on first use and shared by all configurations.
+ */
+final class AsyncExecutors {
+
+  private static final Log log = LogFactory.getLog(AsyncExecutors.class);
+
+  private AsyncExecutors() {
+    // Prevent Instantiation of Static Class
+  }
+
+  static Executor executorOf(Configuration configuration) {
+    Executor executor = configuration.getAsyncExecutor();
+    if (executor != null) {
+      return executor;
+    }
+    return configuration.isAsyncVirtualThreads() ? VirtualThreads.INSTANCE : ThreadPool.INSTANCE;
+  }
+
+  /**
+   * A bounded pool, so that a burst of calls is queued instead of starting one thread per call. Idle threads end after
+   * a minute.
+   */
+  private static class ThreadPool {
+    private static final int SIZE = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    static final Executor INSTANCE = create();
+
+    private static Executor create() {
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(SIZE, SIZE, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+        Thread thread = new Thread(runnable, "mybatis-async-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      executor.allowCoreThreadTimeOut(true);
+      return executor;
+    }
+  }
+
+  private static class VirtualThreads {
+    static final Executor INSTANCE = create();
+
+    private static Executor create() {
+      try {
+        // Java 21+, looked up reflectively because MyBatis is built for Java 8
+        return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        if (log.isDebugEnabled()) {
+          log.debug("Virtual threads are not available on this JVM, a thread pool is used instead.");
+        }
+        return ThreadPool.INSTANCE;
+      }
+    }
+  }
+
+}
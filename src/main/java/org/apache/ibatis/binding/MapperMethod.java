@@ -23,10 +23,14 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
 
 import org.apache.ibatis.annotations.Flush;
 import org.apache.ibatis.annotations.MapKey;
 import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.SqlCommandType;
 import org.apache.ibatis.mapping.StatementType;
@@ -37,6 +41,8 @@ import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.defaults.DefaultSqlSessionFactory;
 
 /**
  * @author Clinton Begin
@@ -65,6 +71,28 @@ public class MapperMethod {
   //这个方法是对SqlSession的包装调用
   //此方法是本质的sql执行方法 todo PersistenceException的报错应该是在这里面进行结果值转型时报错
   public Object execute(SqlSession sqlSession, Object[] args) {
+    if (method.returnsFuture()) {
+      return executeAsync(sqlSession, args);
+    }
+    return executeCommand(sqlSession, args);
+  }
+
+  private CompletableFuture<Object> executeAsync(SqlSession sqlSession, Object[] args) {
+    // the calling session is bound to its thread and connection, so each call gets a session of its own
+    Configuration configuration = sqlSession.getConfiguration();
+    SqlSessionFactory sqlSessionFactory = new DefaultSqlSessionFactory(configuration);
+    return CompletableFuture.supplyAsync(() -> {
+      try (SqlSession asyncSession = sqlSessionFactory.openSession()) {
+        Object result = executeCommand(asyncSession, args);
+        asyncSession.commit();
+        return result;
+      } finally {
+        ErrorContext.instance().reset();
+      }
+    }, AsyncExecutors.executorOf(configuration));
+  }
+
+  private Object executeCommand(SqlSession sqlSession, Object[] args) {
     //定义返回结果
     Object result;
     //如果是INSERT操作
@@ -312,6 +340,7 @@ public class MapperMethod {
     private final boolean returnsVoid;//是否void查询
     private final boolean returnsCursor;//是否游标查询
     private final boolean returnsOptional;
+    private final boolean returnsFuture;
     private final Class<?> returnType;//返回类型
     private final String mapKey;//获取mapKey的值
     private final Integer resultHandlerIndex;
@@ -320,19 +349,29 @@ public class MapperMethod {
 
     public MethodSignature(Configuration configuration, Class<?> mapperInterface, Method method) {
       Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, mapperInterface);
+      this.returnsFuture = isFutureType(resolvedReturnType);
+      if (this.returnsFuture) {
+        // the future completes with what a synchronous method returning its type argument would return
+        resolvedReturnType = resolvedReturnType instanceof ParameterizedType
+            ? ((ParameterizedType) resolvedReturnType).getActualTypeArguments()[0] : Object.class;
+      }
       //返回值
       if (resolvedReturnType instanceof Class<?>) {
         this.returnType = (Class<?>) resolvedReturnType;
       } else if (resolvedReturnType instanceof ParameterizedType) {
         this.returnType = (Class<?>) ((ParameterizedType) resolvedReturnType).getRawType();
       } else {
-        this.returnType = method.getReturnType();
+        this.returnType = this.returnsFuture ? Object.class : method.getReturnType();
       }
-      this.returnsVoid = void.class.equals(this.returnType);
+      this.returnsVoid = void.class.equals(this.returnType) || (this.returnsFuture && Void.class.equals(this.returnType));
 
       this.returnsMany = configuration.getObjectFactory().isCollection(this.returnType) || this.returnType.isArray();
       this.returnsCursor = Cursor.class.equals(this.returnType);
       this.returnsOptional = Optional.class.equals(this.returnType);
+      if (this.returnsFuture && this.returnsCursor) {
+        throw new BindingException(
+            method.getName() + " cannot return a Cursor in a future, because the cursor is closed with its session");
+      }
 
       //返回值为map类型时，从MapKey注解中获取key值
       this.mapKey = getMapKey(method);
@@ -394,6 +433,22 @@ public class MapperMethod {
       return returnsOptional;
     }
 
+    /**
+     * return whether return type is {@code java.util.concurrent.CompletableFuture} or one of its interfaces.
+     *
+     * @return return {@code true}, if return type is a future
+     * @since 3.5.8
+     */
+    public boolean returnsFuture() {
+      return returnsFuture;
+    }
+
+    private static boolean isFutureType(Type type) {
+      Type rawType = type instanceof ParameterizedType ? ((ParameterizedType) type).getRawType() : type;
+      return CompletableFuture.class.equals(rawType) || CompletionStage.class.equals(rawType)
+          || Future.class.equals(rawType);
+    }
+
     //从Method中，获取参数类型为 paramType 的参数，这里只记录是第几个参数
     private Integer getUniqueParamIndex(Method method, Class<?> paramType) {
       Integer index = null;
@@ -416,7 +471,7 @@ public class MapperMethod {
 
     private String getMapKey(Method method) {
       String mapKey = null;
-      if (Map.class.isAssignableFrom(method.getReturnType())) {
+      if (Map.class.isAssignableFrom(returnType)) {
         final MapKey mapKeyAnnotation = method.getAnnotation(MapKey.class);
         if (mapKeyAnnotation != null) {
           mapKey = mapKeyAnnotation.value();
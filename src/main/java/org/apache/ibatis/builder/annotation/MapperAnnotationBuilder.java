@@ -33,6 +33,10 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -156,7 +160,9 @@ public class MapperAnnotationBuilder {
 
   private void parsePendingMethods() {
     Collection<MethodResolver> incompleteMethods = configuration.getIncompleteMethods();
-    synchronized (incompleteMethods) {
+    ReentrantLock lock = configuration.getIncompleteMethodsLock();
+    lock.lock();
+    try {
       Iterator<MethodResolver> iter = incompleteMethods.iterator();
       while (iter.hasNext()) {
         try {
@@ -166,6 +172,8 @@ public class MapperAnnotationBuilder {
           // This method is still missing a resource
         }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -410,7 +418,10 @@ public class MapperAnnotationBuilder {
         statementAnnotation.getDatabaseId(),
         languageDriver,
         // ResultSets
-        options != null ? nullOrEmpty(options.resultSets()) : null);
+        options != null ? nullOrEmpty(options.resultSets()) : null,
+        options != null && options.rewriteBatched(),
+        options == null || options.useLocalCache(),
+        options != null && options.singleFlight());
     });
   }
 
@@ -440,8 +451,11 @@ public class MapperAnnotationBuilder {
   }
 
   private Class<?> getReturnType(Method method) {
-    Class<?> returnType = method.getReturnType();
-    Type resolvedReturnType = TypeParameterResolver.resolveReturnType(method, type);
+    return getReturnType(method, TypeParameterResolver.resolveReturnType(method, type), method.getReturnType());
+  }
+
+  private Class<?> getReturnType(Method method, Type resolvedReturnType, Class<?> declaredReturnType) {
+    Class<?> returnType = declaredReturnType;
     if (resolvedReturnType instanceof Class) {
       returnType = (Class<?>) resolvedReturnType;
       if (returnType.isArray()) {
@@ -490,6 +504,15 @@ public class MapperAnnotationBuilder {
         if (returnTypeParameter instanceof Class<?>) {
           returnType = (Class<?>) returnTypeParameter;
         }
+      } else if (CompletableFuture.class.equals(rawType) || CompletionStage.class.equals(rawType)
+          || Future.class.equals(rawType)) {
+        Type returnTypeParameter = parameterizedType.getActualTypeArguments()[0];
+        if (returnTypeParameter instanceof Class<?>) {
+          returnType = getReturnType(method, returnTypeParameter, (Class<?>) returnTypeParameter);
+        } else if (returnTypeParameter instanceof ParameterizedType) {
+          returnType = getReturnType(method, returnTypeParameter,
+              (Class<?>) ((ParameterizedType) returnTypeParameter).getRawType());
+        }
       }
     }
 
@@ -520,7 +543,8 @@ public class MapperAnnotationBuilder {
         flags,
         null,
         null,
-        isLazy(result));
+        isLazy(result),
+        batchSize(result));
       resultMappings.add(resultMapping);
     }
   }
@@ -572,6 +596,10 @@ public class MapperAnnotationBuilder {
     return isLazy;
   }
 
+  private int batchSize(Result result) {
+    return result.one().select().length() > 0 ? result.one().batchSize() : result.many().batchSize();
+  }
+
   private boolean hasNestedSelect(Result result) {
     if (result.one().select().length() > 0 && result.many().select().length() > 0) {
       throw new BuilderException("Cannot use both @One and @Many annotations in the same @Result");
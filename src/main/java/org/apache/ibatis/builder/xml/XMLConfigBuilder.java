@@ -292,6 +292,22 @@ public class XMLConfigBuilder extends BaseBuilder {
     configuration.setConfigurationFactory(resolveClass(props.getProperty("configurationFactory")));
     configuration.setShrinkWhitespacesInSql(booleanValueOf(props.getProperty("shrinkWhitespacesInSql"), false));
     configuration.setDefaultSqlProviderType(resolveClass(props.getProperty("defaultSqlProviderType")));
+    configuration.setBatchInterleavedStatements(booleanValueOf(props.getProperty("batchInterleavedStatements"), false));
+    configuration.setBatchFlushRowsPerStatement(integerValueOf(props.getProperty("batchFlushRowsPerStatement"), null));
+    configuration.setBatchFlushRows(integerValueOf(props.getProperty("batchFlushRows"), null));
+    configuration.setBatchFlushParameterBytes(longValueOf(props.getProperty("batchFlushParameterBytes"), null));
+    configuration.setBatchDependencyAwareFlush(booleanValueOf(props.getProperty("batchDependencyAwareFlush"), false));
+    configuration.setBatchRewriteMaxParameters(integerValueOf(props.getProperty("batchRewriteMaxParameters"), 2000));
+    configuration.setAsyncVirtualThreads(booleanValueOf(props.getProperty("asyncVirtualThreads"), false));
+    configuration.setLocalCacheMaxEntries(integerValueOf(props.getProperty("localCacheMaxEntries"), null));
+    configuration.setLocalCacheMaxBytes(longValueOf(props.getProperty("localCacheMaxBytes"), null));
+    configuration.setStatementMetricsEnabled(booleanValueOf(props.getProperty("statementMetricsEnabled"), false));
+    configuration.setRowMapperGenerationEnabled(booleanValueOf(props.getProperty("rowMapperGenerationEnabled"), false));
+    configuration.setSlowQueryThreshold(integerValueOf(props.getProperty("slowQueryThreshold"), null));
+    configuration.setSlowQuerySampleRate(doubleValueOf(props.getProperty("slowQuerySampleRate"), 1.0));
+    if (props.getProperty("slowQueryRedactedParameters") != null) {
+      configuration.setSlowQueryRedactedParameters(stringSetValueOf(props.getProperty("slowQueryRedactedParameters"), null));
+    }
   }
 
   private void environmentsElement(XNode context) throws Exception {
@@ -26,6 +26,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.ibatis.builder.BaseBuilder;
 import org.apache.ibatis.builder.BuilderException;
@@ -144,7 +145,9 @@ public class XMLMapperBuilder extends BaseBuilder {
 
   private void parsePendingResultMaps() {
     Collection<ResultMapResolver> incompleteResultMaps = configuration.getIncompleteResultMaps();
-    synchronized (incompleteResultMaps) {
+    ReentrantLock lock = configuration.getIncompleteResultMapsLock();
+    lock.lock();
+    try {
       Iterator<ResultMapResolver> iter = incompleteResultMaps.iterator();
       while (iter.hasNext()) {
         try {
@@ -154,12 +157,16 @@ public class XMLMapperBuilder extends BaseBuilder {
           // ResultMap is still missing a resource...
         }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
   private void parsePendingCacheRefs() {
     Collection<CacheRefResolver> incompleteCacheRefs = configuration.getIncompleteCacheRefs();
-    synchronized (incompleteCacheRefs) {
+    ReentrantLock lock = configuration.getIncompleteCacheRefsLock();
+    lock.lock();
+    try {
       Iterator<CacheRefResolver> iter = incompleteCacheRefs.iterator();
       while (iter.hasNext()) {
         try {
@@ -169,12 +176,16 @@ public class XMLMapperBuilder extends BaseBuilder {
           // Cache ref is still missing a resource...
         }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
   private void parsePendingStatements() {
     Collection<XMLStatementBuilder> incompleteStatements = configuration.getIncompleteStatements();
-    synchronized (incompleteStatements) {
+    ReentrantLock lock = configuration.getIncompleteStatementsLock();
+    lock.lock();
+    try {
       Iterator<XMLStatementBuilder> iter = incompleteStatements.iterator();
       while (iter.hasNext()) {
         try {
@@ -184,6 +195,8 @@ public class XMLMapperBuilder extends BaseBuilder {
           // Statement is still missing a resource...
         }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
@@ -387,10 +400,11 @@ public class XMLMapperBuilder extends BaseBuilder {
     String resultSet = context.getStringAttribute("resultSet");
     String foreignColumn = context.getStringAttribute("foreignColumn");
     boolean lazy = "lazy".equals(context.getStringAttribute("fetchType", configuration.isLazyLoadingEnabled() ? "lazy" : "eager"));
+    int batchSize = context.getIntAttribute("batchSize", 0);
     Class<?> javaTypeClass = resolveClass(javaType);
     Class<? extends TypeHandler<?>> typeHandlerClass = resolveClass(typeHandler);
     JdbcType jdbcTypeEnum = resolveJdbcType(jdbcType);
-    return builderAssistant.buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect, nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn, lazy);
+    return builderAssistant.buildResultMapping(resultType, property, column, javaTypeClass, jdbcTypeEnum, nestedSelect, nestedResultMap, notNullColumn, columnPrefix, typeHandlerClass, flags, resultSet, foreignColumn, lazy, batchSize);
   }
 
   private String processNestedResultMappings(XNode context, List<ResultMapping> resultMappings, Class<?> enclosingType) {
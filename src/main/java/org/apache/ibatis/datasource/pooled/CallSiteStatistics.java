@@ -0,0 +1,90 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How long the connections checked out from one place in the application code were held, collected while leak
+ * detection is enabled.
+ *
+ * @since 3.5.8
+ * @see PooledDataSource#setPoolLeakDetectionThreshold(int)
+ */
+public class CallSiteStatistics {
+
+  private final String callSite;
+  private final LongAdder checkoutCount = new LongAdder();
+  private final LongAdder totalHoldTime = new LongAdder();
+  private final LongAccumulator maxHoldTime = new LongAccumulator(Math::max, 0);
+  private final LongAdder leakCount = new LongAdder();
+
+  CallSiteStatistics(String callSite) {
+    this.callSite = callSite;
+  }
+
+  void record(long holdTime, boolean leaked) {
+    checkoutCount.increment();
+    totalHoldTime.add(holdTime);
+    maxHoldTime.accumulate(holdTime);
+    if (leaked) {
+      leakCount.increment();
+    }
+  }
+
+  /**
+   * Gets the first stack frame outside of MyBatis and the JDK that checked the connections out.
+   *
+   * @return the call site, e.g. {@code com.example.OrderDao.findOrders(OrderDao.java:42)}
+   */
+  public String getCallSite() {
+    return callSite;
+  }
+
+  public long getCheckoutCount() {
+    return checkoutCount.sum();
+  }
+
+  public long getTotalHoldTime() {
+    return totalHoldTime.sum();
+  }
+
+  public long getMaxHoldTime() {
+    return maxHoldTime.get();
+  }
+
+  public long getAverageHoldTime() {
+    long count = checkoutCount.sum();
+    return count == 0 ? 0 : totalHoldTime.sum() / count;
+  }
+
+  /**
+   * Gets the number of connections that were held longer than the leak detection threshold.
+   *
+   * @return the number of leaks
+   */
+  public long getLeakCount() {
+    return leakCount.sum();
+  }
+
+  @Override
+  public String toString() {
+    return callSite + " [checkouts=" + getCheckoutCount() + ", averageHoldTime=" + getAverageHoldTime()
+        + ", maxHoldTime=" + getMaxHoldTime() + ", leaks=" + getLeakCount() + "]";
+  }
+
+}
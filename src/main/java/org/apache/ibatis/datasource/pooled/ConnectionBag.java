@@ -0,0 +1,263 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the connections of a {@link PooledDataSource} running in concurrent checkout mode.
+ * <p>
+ * Idle connections are kept in a lock-free deque and claimed with a CAS on their state, so an uncontended checkout or
+ * return never blocks. A thread first tries the connection it returned last, and threads that find the pool empty
+ * wait on a fair {@link SynchronousQueue}, so returned connections are handed to waiters in FIFO order instead of
+ * waking all of them.
+ */
+class ConnectionBag {
+
+  private final Deque<PooledConnection> idleConnections = new ConcurrentLinkedDeque<>();
+  private final Set<PooledConnection> activeConnections = ConcurrentHashMap.newKeySet();
+  private final ThreadLocal<WeakReference<PooledConnection>> lastReturned = new ThreadLocal<>();
+  private final SynchronousQueue<PooledConnection> handoffQueue = new SynchronousQueue<>(true);
+  private final AtomicInteger waiters = new AtomicInteger();
+  private final AtomicInteger idleCount = new AtomicInteger();
+  private final AtomicInteger totalCount = new AtomicInteger();
+
+  /**
+   * Claims an idle connection without waiting.
+   *
+   * @return an idle connection now in use, or null if there is none
+   */
+  PooledConnection borrow() {
+    WeakReference<PooledConnection> ref = lastReturned.get();
+    if (ref != null) {
+      lastReturned.remove();
+      PooledConnection conn = ref.get();
+      if (conn != null && claim(conn)) {
+        idleConnections.removeFirstOccurrence(conn);
+        return conn;
+      }
+    }
+    PooledConnection conn;
+    while ((conn = idleConnections.pollFirst()) != null) {
+      if (claim(conn)) {
+        return conn;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Waits for a connection to be handed over by a returning thread.
+   *
+   * @param timeoutMillis
+   *          the maximum time to wait
+   * @return a connection now in use, or null if the timeout elapsed
+   * @throws InterruptedException
+   *           if the current thread was interrupted while waiting
+   */
+  PooledConnection await(long timeoutMillis) throws InterruptedException {
+    waiters.incrementAndGet();
+    try {
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+      long remaining = deadline - System.nanoTime();
+      while (remaining > 0) {
+        PooledConnection conn = borrow();
+        if (conn != null) {
+          return conn;
+        }
+        conn = handoffQueue.poll(remaining, TimeUnit.NANOSECONDS);
+        if (conn != null && claim(conn)) {
+          idleConnections.removeFirstOccurrence(conn);
+          return conn;
+        }
+        remaining = deadline - System.nanoTime();
+      }
+      return null;
+    } finally {
+      waiters.decrementAndGet();
+    }
+  }
+
+  /**
+   * Adds an idle connection to the bag and offers it to a waiting thread, if any.
+   *
+   * @param conn
+   *          the connection to add, which must not be referenced by any other thread yet
+   */
+  void requite(PooledConnection conn) {
+    conn.setState(PooledConnection.STATE_IDLE);
+    idleCount.incrementAndGet();
+    idleConnections.offerFirst(conn);
+    lastReturned.set(new WeakReference<>(conn));
+    while (waiters.get() > 0 && conn.getState() == PooledConnection.STATE_IDLE && !handoffQueue.offer(conn)) {
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Claims a specific idle connection, e.g. to validate or retire it in the background.
+   *
+   * @param conn
+   *          the connection
+   * @return True if the connection was idle and now belongs to the caller
+   */
+  boolean borrow(PooledConnection conn) {
+    if (claim(conn)) {
+      idleConnections.removeFirstOccurrence(conn);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the connections that are currently idle, least recently returned first.
+   *
+   * @return a snapshot of the idle connections
+   */
+  List<PooledConnection> idleSnapshot() {
+    List<PooledConnection> snapshot = new ArrayList<>(idleConnections);
+    Collections.reverse(snapshot);
+    return snapshot;
+  }
+
+  /**
+   * Registers a connection that has just been checked out.
+   *
+   * @param conn
+   *          the connection
+   */
+  void activate(PooledConnection conn) {
+    conn.setState(PooledConnection.STATE_IN_USE);
+    activeConnections.add(conn);
+  }
+
+  /**
+   * Removes a checked out connection from the bag. Only one caller can succeed for a given connection, which protects
+   * against a connection being returned twice or returned while it is being claimed as overdue.
+   *
+   * @param conn
+   *          the connection
+   * @return True if the connection was in use and is now removed
+   */
+  boolean deactivate(PooledConnection conn) {
+    if (conn.compareAndSetState(PooledConnection.STATE_IN_USE, PooledConnection.STATE_REMOVED)) {
+      activeConnections.remove(conn);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the connections that are currently checked out.
+   *
+   * @return a snapshot of the active connections
+   */
+  List<PooledConnection> activeSnapshot() {
+    return new ArrayList<>(activeConnections);
+  }
+
+  /**
+   * Finds the connection that has been checked out for the longest time.
+   *
+   * @return the oldest active connection, or null if there is none
+   */
+  PooledConnection oldestActive() {
+    PooledConnection oldest = null;
+    for (PooledConnection conn : activeConnections) {
+      if (oldest == null || conn.getCheckoutTimestamp() < oldest.getCheckoutTimestamp()) {
+        oldest = conn;
+      }
+    }
+    return oldest;
+  }
+
+  /**
+   * Reserves a slot for a new physical connection.
+   *
+   * @param maximum
+   *          the maximum number of connections
+   * @return True if a slot was reserved, in which case the caller must either register the new connection or call
+   *         {@link #release()}
+   */
+  boolean reserve(int maximum) {
+    int total;
+    do {
+      total = totalCount.get();
+      if (total >= maximum) {
+        return false;
+      }
+    } while (!totalCount.compareAndSet(total, total + 1));
+    return true;
+  }
+
+  /**
+   * Releases the slot of a connection that was closed or could not be opened.
+   */
+  void release() {
+    totalCount.decrementAndGet();
+  }
+
+  /**
+   * Removes all connections from the bag.
+   *
+   * @return the connections that were idle or in use
+   */
+  List<PooledConnection> drain() {
+    List<PooledConnection> drained = new ArrayList<>();
+    PooledConnection conn;
+    while ((conn = idleConnections.pollFirst()) != null) {
+      if (conn.compareAndSetState(PooledConnection.STATE_IDLE, PooledConnection.STATE_REMOVED)) {
+        idleCount.decrementAndGet();
+        totalCount.decrementAndGet();
+        drained.add(conn);
+      }
+    }
+    for (PooledConnection active : activeConnections) {
+      if (deactivate(active)) {
+        totalCount.decrementAndGet();
+        drained.add(active);
+      }
+    }
+    return drained;
+  }
+
+  int getIdleCount() {
+    return idleCount.get();
+  }
+
+  int getActiveCount() {
+    return activeConnections.size();
+  }
+
+  private boolean claim(PooledConnection conn) {
+    if (conn.compareAndSetState(PooledConnection.STATE_IDLE, PooledConnection.STATE_IN_USE)) {
+      idleCount.decrementAndGet();
+      return true;
+    }
+    return false;
+  }
+
+}
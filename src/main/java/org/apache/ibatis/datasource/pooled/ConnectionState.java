@@ -0,0 +1,306 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Client side copy of the session state of one physical connection, so that the pool does not have to ask the
+ * database for values it already knows.
+ * <p>
+ * Getters of the tracked attributes are answered from the copy once a value is known. Setters are deferred until a
+ * statement is about to run, so a value that is set and then set back without any work in between never reaches the
+ * database. When the connection is returned, it is only rolled back if something ran since checkout, and only the
+ * attributes that were changed are restored.
+ * <p>
+ * Like the connection itself, the state is meant to be used by one thread at a time.
+ */
+class ConnectionState {
+
+  private static final int READ_ONLY = 0;
+  private static final int TRANSACTION_ISOLATION = 1;
+  private static final int CATALOG = 2;
+  private static final int SCHEMA = 3;
+  private static final int AUTO_COMMIT = 4;
+  private static final int ATTRIBUTE_COUNT = 5;
+
+  private static final Object UNKNOWN = new Object();
+
+  private static final Map<String, Integer> GETTERS;
+  private static final Map<String, Integer> SETTERS;
+  /**
+   * Methods that neither run anything on the database nor change the session state.
+   */
+  private static final Set<String> NEUTRAL_METHODS;
+
+  static {
+    Map<String, Integer> getters = new HashMap<>();
+    getters.put("isReadOnly", READ_ONLY);
+    getters.put("getTransactionIsolation", TRANSACTION_ISOLATION);
+    getters.put("getCatalog", CATALOG);
+    getters.put("getSchema", SCHEMA);
+    getters.put("getAutoCommit", AUTO_COMMIT);
+    GETTERS = Collections.unmodifiableMap(getters);
+    Map<String, Integer> setters = new HashMap<>();
+    setters.put("setReadOnly", READ_ONLY);
+    setters.put("setTransactionIsolation", TRANSACTION_ISOLATION);
+    setters.put("setCatalog", CATALOG);
+    setters.put("setSchema", SCHEMA);
+    setters.put("setAutoCommit", AUTO_COMMIT);
+    SETTERS = Collections.unmodifiableMap(setters);
+    Set<String> neutral = new HashSet<>();
+    neutral.add("isClosed");
+    neutral.add("isValid");
+    neutral.add("isWrapperFor");
+    neutral.add("getWarnings");
+    neutral.add("clearWarnings");
+    neutral.add("getHoldability");
+    neutral.add("getNetworkTimeout");
+    neutral.add("getClientInfo");
+    neutral.add("getTypeMap");
+    NEUTRAL_METHODS = Collections.unmodifiableSet(neutral);
+  }
+
+  /**
+   * The values the connection had when the pool first learned them, which are restored when it is returned.
+   */
+  private final Object[] initialValues = newValues();
+  /**
+   * The values currently set on the real connection.
+   */
+  private final Object[] actualValues = newValues();
+  /**
+   * The values set by the current user that have not been sent to the database yet.
+   */
+  private final Object[] pendingValues = newValues();
+  private boolean executed;
+
+  /**
+   * Determines if a method is answered by this state instead of being passed to the real connection.
+   *
+   * @param method
+   *          a method of {@link Connection}
+   * @return True if {@link #invoke(Connection, Method, Object[])} handles the method
+   */
+  boolean isTracked(Method method) {
+    String methodName = method.getName();
+    return GETTERS.containsKey(methodName) || SETTERS.containsKey(methodName)
+        || method.getParameterCount() == 0 && ("commit".equals(methodName) || "rollback".equals(methodName));
+  }
+
+  /**
+   * Handles a call to a tracked method.
+   *
+   * @param connection
+   *          the real connection
+   * @param method
+   *          the tracked method
+   * @param args
+   *          the arguments of the call
+   * @return the result of the call
+   * @throws SQLException
+   *           if the database had to be asked and failed
+   */
+  Object invoke(Connection connection, Method method, Object[] args) throws SQLException {
+    String methodName = method.getName();
+    Integer getter = GETTERS.get(methodName);
+    if (getter != null) {
+      return getValue(connection, getter);
+    }
+    Integer setter = SETTERS.get(methodName);
+    if (setter != null) {
+      setValue(connection, setter, args[0]);
+      return null;
+    }
+    // nothing can be pending if nothing ran since the connection was checked out and rolled back
+    if (executed) {
+      if ("commit".equals(methodName)) {
+        connection.commit();
+      } else {
+        connection.rollback();
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Must be called before any untracked method is passed to the real connection. Sends pending values to the database
+   * and marks the connection as used unless the method is known to be harmless.
+   *
+   * @param connection
+   *          the real connection
+   * @param method
+   *          the method about to be called
+   * @throws SQLException
+   *           if a pending value could not be set
+   */
+  void beforeInvoke(Connection connection, Method method) throws SQLException {
+    String methodName = method.getName();
+    if (NEUTRAL_METHODS.contains(methodName)) {
+      return;
+    }
+    flush(connection);
+    executed = true;
+    if ("unwrap".equals(methodName)) {
+      // the caller may change the real connection behind our back
+      Arrays.fill(actualValues, UNKNOWN);
+    }
+  }
+
+  /**
+   * Gets the auto commit mode of the real connection, asking the database only if it is not known yet.
+   *
+   * @param connection
+   *          the real connection
+   * @return the auto commit mode
+   * @throws SQLException
+   *           if the database had to be asked and failed
+   */
+  boolean isAutoCommit(Connection connection) throws SQLException {
+    return (Boolean) getActualValue(connection, AUTO_COMMIT);
+  }
+
+  /**
+   * Rolls back the transaction of the real connection if a statement may have run since checkout, and drops values
+   * that were set but not sent to the database yet.
+   *
+   * @param connection
+   *          the real connection
+   * @throws SQLException
+   *           if the connection could not be rolled back
+   */
+  void rollback(Connection connection) throws SQLException {
+    Arrays.fill(pendingValues, UNKNOWN);
+    if (executed && !isAutoCommit(connection)) {
+      connection.rollback();
+    }
+    executed = false;
+  }
+
+  /**
+   * Brings a connection that is returned to the pool back to the state it had when it was checked out. Only the
+   * attributes that differ from their initial values are set.
+   *
+   * @param connection
+   *          the real connection
+   * @throws SQLException
+   *           if the connection could not be reset
+   */
+  void reset(Connection connection) throws SQLException {
+    rollback(connection);
+    for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+      Object initialValue = initialValues[i];
+      if (initialValue != UNKNOWN && !Objects.equals(actualValues[i], initialValue)) {
+        apply(connection, i, initialValue);
+      }
+    }
+  }
+
+  private Object getValue(Connection connection, int attribute) throws SQLException {
+    Object pendingValue = pendingValues[attribute];
+    return pendingValue != UNKNOWN ? pendingValue : getActualValue(connection, attribute);
+  }
+
+  private Object getActualValue(Connection connection, int attribute) throws SQLException {
+    Object value = actualValues[attribute];
+    if (value == UNKNOWN) {
+      value = read(connection, attribute);
+      actualValues[attribute] = value;
+      if (initialValues[attribute] == UNKNOWN) {
+        initialValues[attribute] = value;
+      }
+    }
+    return value;
+  }
+
+  private void setValue(Connection connection, int attribute, Object value) throws SQLException {
+    // the initial value must be known to restore it later
+    Object actualValue = getActualValue(connection, attribute);
+    if (executed) {
+      // a transaction may be open, e.g. turning auto commit on must commit it now
+      pendingValues[attribute] = UNKNOWN;
+      if (!Objects.equals(actualValue, value)) {
+        apply(connection, attribute, value);
+      }
+    } else {
+      pendingValues[attribute] = Objects.equals(actualValue, value) ? UNKNOWN : value;
+    }
+  }
+
+  private void flush(Connection connection) throws SQLException {
+    for (int i = 0; i < ATTRIBUTE_COUNT; i++) {
+      Object pendingValue = pendingValues[i];
+      if (pendingValue != UNKNOWN) {
+        pendingValues[i] = UNKNOWN;
+        apply(connection, i, pendingValue);
+      }
+    }
+  }
+
+  private void apply(Connection connection, int attribute, Object value) throws SQLException {
+    // forget the value first, so that it is read again if the driver fails half way
+    actualValues[attribute] = UNKNOWN;
+    switch (attribute) {
+      case READ_ONLY:
+        connection.setReadOnly((Boolean) value);
+        break;
+      case TRANSACTION_ISOLATION:
+        connection.setTransactionIsolation((Integer) value);
+        break;
+      case CATALOG:
+        connection.setCatalog((String) value);
+        break;
+      case SCHEMA:
+        connection.setSchema((String) value);
+        break;
+      default:
+        connection.setAutoCommit((Boolean) value);
+        break;
+    }
+    actualValues[attribute] = value;
+  }
+
+  private static Object read(Connection connection, int attribute) throws SQLException {
+    switch (attribute) {
+      case READ_ONLY:
+        return connection.isReadOnly();
+      case TRANSACTION_ISOLATION:
+        return connection.getTransactionIsolation();
+      case CATALOG:
+        return connection.getCatalog();
+      case SCHEMA:
+        return connection.getSchema();
+      default:
+        return connection.getAutoCommit();
+    }
+  }
+
+  private static Object[] newValues() {
+    Object[] values = new Object[ATTRIBUTE_COUNT];
+    Arrays.fill(values, UNKNOWN);
+    return values;
+  }
+
+}
@@ -0,0 +1,144 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Reports connections that are held longer than the leak detection threshold of a {@link PooledDataSource} and keeps
+ * hold time statistics per call site. Leaked connections are only reported, never taken away from their owner.
+ */
+class LeakDetector {
+
+  private static final Log log = LogFactory.getLog(LeakDetector.class);
+
+  /**
+   * Frames of these classes and packages are skipped to find the application code that checked a connection out.
+   */
+  private static final String[] INTERNAL_CLASSES = { LeakDetector.class.getName(), PooledDataSource.class.getName(),
+      PooledConnection.class.getName(), UnpooledDataSource.class.getName() };
+  private static final String[] INTERNAL_PACKAGES = { "org.apache.ibatis.binding.", "org.apache.ibatis.cursor.",
+      "org.apache.ibatis.executor.", "org.apache.ibatis.logging.", "org.apache.ibatis.plugin.",
+      "org.apache.ibatis.session.", "org.apache.ibatis.transaction.", "java.", "javax.", "jdk.", "sun.", "com.sun." };
+
+  private final ConcurrentMap<String, CallSiteStatistics> callSites = new ConcurrentHashMap<>();
+
+  /**
+   * Captures the stack of a thread that is checking a connection out.
+   *
+   * @return the checkout site
+   */
+  static Throwable captureCheckoutSite() {
+    return new Throwable("Connection checked out here");
+  }
+
+  /**
+   * Reports a connection that is still checked out after the threshold.
+   *
+   * @param conn
+   *          the connection
+   * @param holdTime
+   *          the time the connection has been checked out
+   */
+  void reportLeak(PooledConnection conn, long holdTime) {
+    Throwable checkoutSite = conn.getCheckoutSite();
+    if (checkoutSite == null || conn.isLeakReported()) {
+      return;
+    }
+    conn.setLeakReported(true);
+    StringBuilder message = new StringBuilder();
+    message.append("Connection ").append(conn.getRealHashCode()).append(" has been checked out for ").append(holdTime)
+        .append(" milliseconds, possible leak. It was checked out at:");
+    for (StackTraceElement element : checkoutSite.getStackTrace()) {
+      message.append("\n\tat ").append(element);
+    }
+    log.warn(message.toString());
+  }
+
+  /**
+   * Records the hold time of a connection that was returned or claimed as overdue.
+   *
+   * @param conn
+   *          the connection
+   * @param holdTime
+   *          the time the connection was checked out
+   * @param threshold
+   *          the leak detection threshold
+   */
+  void recordReturn(PooledConnection conn, long holdTime, int threshold) {
+    Throwable checkoutSite = conn.getCheckoutSite();
+    if (checkoutSite == null) {
+      return;
+    }
+    boolean leaked = holdTime > threshold;
+    if (leaked) {
+      if (conn.isLeakReported()) {
+        log.warn("Previously reported leaked connection " + conn.getRealHashCode() + " was returned after " + holdTime
+            + " milliseconds.");
+      } else {
+        reportLeak(conn, holdTime);
+      }
+    }
+    callSites.computeIfAbsent(callSiteOf(checkoutSite), CallSiteStatistics::new).record(holdTime, leaked);
+  }
+
+  /**
+   * Gets the statistics of all call sites, the ones that held connections for the longest total time first.
+   *
+   * @return the statistics
+   */
+  List<CallSiteStatistics> getCallSiteStatistics() {
+    List<CallSiteStatistics> statistics = new ArrayList<>(callSites.values());
+    statistics.sort(Comparator.comparingLong(CallSiteStatistics::getTotalHoldTime).reversed());
+    return statistics;
+  }
+
+  static String callSiteOf(Throwable checkoutSite) {
+    StackTraceElement[] stackTrace = checkoutSite.getStackTrace();
+    for (StackTraceElement element : stackTrace) {
+      if (!isInternal(element.getClassName())) {
+        return element.toString();
+      }
+    }
+    return stackTrace.length == 0 ? "unknown" : stackTrace[stackTrace.length - 1].toString();
+  }
+
+  private static boolean isInternal(String className) {
+    if (className.contains("$Proxy")) {
+      return true;
+    }
+    for (String internalClass : INTERNAL_CLASSES) {
+      if (className.equals(internalClass) || className.startsWith(internalClass + "$")) {
+        return true;
+      }
+    }
+    for (String internalPackage : INTERNAL_PACKAGES) {
+      if (className.startsWith(internalPackage)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -17,72 +17,233 @@ package org.apache.ibatis.datasource.pooled;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.util.LatencyHistogram;
 
 /**
  * @author Clinton Begin
  */
 public class PoolState {
 
+  private static final AtomicLongFieldUpdater<PoolState> REQUEST_COUNT = newUpdater("requestCount");
+  private static final AtomicLongFieldUpdater<PoolState> ACCUMULATED_REQUEST_TIME = newUpdater(
+      "accumulatedRequestTime");
+  private static final AtomicLongFieldUpdater<PoolState> ACCUMULATED_CHECKOUT_TIME = newUpdater(
+      "accumulatedCheckoutTime");
+  private static final AtomicLongFieldUpdater<PoolState> CLAIMED_OVERDUE_CONNECTION_COUNT = newUpdater(
+      "claimedOverdueConnectionCount");
+  private static final AtomicLongFieldUpdater<PoolState> ACCUMULATED_CHECKOUT_TIME_OF_OVERDUE_CONNECTIONS = newUpdater(
+      "accumulatedCheckoutTimeOfOverdueConnections");
+  private static final AtomicLongFieldUpdater<PoolState> ACCUMULATED_WAIT_TIME = newUpdater("accumulatedWaitTime");
+  private static final AtomicLongFieldUpdater<PoolState> HAD_TO_WAIT_COUNT = newUpdater("hadToWaitCount");
+  private static final AtomicLongFieldUpdater<PoolState> BAD_CONNECTION_COUNT = newUpdater("badConnectionCount");
+
   protected PooledDataSource dataSource;
 
   protected final List<PooledConnection> idleConnections = new ArrayList<>();
   protected final List<PooledConnection> activeConnections = new ArrayList<>();
-  protected long requestCount = 0;
-  protected long accumulatedRequestTime = 0;
-  protected long accumulatedCheckoutTime = 0;
-  protected long claimedOverdueConnectionCount = 0;
-  protected long accumulatedCheckoutTimeOfOverdueConnections = 0;
-  protected long accumulatedWaitTime = 0;
-  protected long hadToWaitCount = 0;
-  protected long badConnectionCount = 0;
+  protected final ConnectionBag connectionBag = new ConnectionBag();
+  /**
+   * Guards the connection lists. A lock is used instead of the monitor of this object so that threads waiting for a
+   * connection do not pin the carrier thread of a virtual thread.
+   */
+  protected final ReentrantLock lock = new ReentrantLock();
+  protected final Condition condition = lock.newCondition();
+  protected int pendingConnectionCount = 0;
+  // updated through the field updaters above, so that checkouts do not take the pool lock to count
+  protected volatile long requestCount = 0;
+  protected volatile long accumulatedRequestTime = 0;
+  protected volatile long accumulatedCheckoutTime = 0;
+  protected volatile long claimedOverdueConnectionCount = 0;
+  protected volatile long accumulatedCheckoutTimeOfOverdueConnections = 0;
+  protected volatile long accumulatedWaitTime = 0;
+  protected volatile long hadToWaitCount = 0;
+  protected volatile long badConnectionCount = 0;
+  protected final LongAdder statementCacheHitCount = new LongAdder();
+  protected final LongAdder statementCacheMissCount = new LongAdder();
+  protected final LongAdder statementCacheEvictionCount = new LongAdder();
+  protected final LatencyHistogram waitTimeHistogram = new LatencyHistogram();
+  protected final LatencyHistogram checkoutTimeHistogram = new LatencyHistogram();
+  protected final LatencyHistogram connectionCreationTimeHistogram = new LatencyHistogram();
+  protected final LeakDetector leakDetector = new LeakDetector();
 
   public PoolState(PooledDataSource dataSource) {
     this.dataSource = dataSource;
   }
 
-  public synchronized long getRequestCount() {
+  private static AtomicLongFieldUpdater<PoolState> newUpdater(String fieldName) {
+    return AtomicLongFieldUpdater.newUpdater(PoolState.class, fieldName);
+  }
+
+  void countRequest(long requestTime) {
+    REQUEST_COUNT.incrementAndGet(this);
+    ACCUMULATED_REQUEST_TIME.addAndGet(this, requestTime);
+  }
+
+  void addCheckoutTime(long checkoutTime) {
+    ACCUMULATED_CHECKOUT_TIME.addAndGet(this, checkoutTime);
+  }
+
+  void countClaimedOverdueConnection(long checkoutTime) {
+    CLAIMED_OVERDUE_CONNECTION_COUNT.incrementAndGet(this);
+    ACCUMULATED_CHECKOUT_TIME_OF_OVERDUE_CONNECTIONS.addAndGet(this, checkoutTime);
+  }
+
+  void countHadToWait() {
+    HAD_TO_WAIT_COUNT.incrementAndGet(this);
+  }
+
+  void addWaitTime(long waitTime) {
+    ACCUMULATED_WAIT_TIME.addAndGet(this, waitTime);
+  }
+
+  void countBadConnection() {
+    BAD_CONNECTION_COUNT.incrementAndGet(this);
+  }
+
+  public long getRequestCount() {
     return requestCount;
   }
 
-  public synchronized long getAverageRequestTime() {
-    return requestCount == 0 ? 0 : accumulatedRequestTime / requestCount;
+  public long getAverageRequestTime() {
+    long requests = requestCount;
+    return requests == 0 ? 0 : accumulatedRequestTime / requests;
   }
 
-  public synchronized long getAverageWaitTime() {
-    return hadToWaitCount == 0 ? 0 : accumulatedWaitTime / hadToWaitCount;
+  public long getAverageWaitTime() {
+    long waits = hadToWaitCount;
+    return waits == 0 ? 0 : accumulatedWaitTime / waits;
 
   }
 
-  public synchronized long getHadToWaitCount() {
+  public long getHadToWaitCount() {
     return hadToWaitCount;
   }
 
-  public synchronized long getBadConnectionCount() {
+  public long getBadConnectionCount() {
     return badConnectionCount;
   }
 
-  public synchronized long getClaimedOverdueConnectionCount() {
+  public long getClaimedOverdueConnectionCount() {
     return claimedOverdueConnectionCount;
   }
 
-  public synchronized long getAverageOverdueCheckoutTime() {
-    return claimedOverdueConnectionCount == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimedOverdueConnectionCount;
+  public long getAverageOverdueCheckoutTime() {
+    long claimed = claimedOverdueConnectionCount;
+    return claimed == 0 ? 0 : accumulatedCheckoutTimeOfOverdueConnections / claimed;
+  }
+
+  public long getAverageCheckoutTime() {
+    long requests = requestCount;
+    return requests == 0 ? 0 : accumulatedCheckoutTime / requests;
+  }
+
+  public long getStatementCacheHitCount() {
+    return statementCacheHitCount.sum();
+  }
+
+  public long getStatementCacheMissCount() {
+    return statementCacheMissCount.sum();
+  }
+
+  public long getStatementCacheEvictionCount() {
+    return statementCacheEvictionCount.sum();
+  }
+
+  /**
+   * Gets the distribution of the time checkouts spent waiting for a connection to be returned. Checkouts that did not
+   * have to wait are recorded as 0.
+   *
+   * @return a snapshot of the wait times in milliseconds
+   * @since 3.5.8
+   */
+  public LatencyHistogram.Snapshot getWaitTimeHistogram() {
+    return waitTimeHistogram.snapshot();
+  }
+
+  /**
+   * Gets the distribution of the time connections were checked out before they were returned or claimed as overdue.
+   *
+   * @return a snapshot of the checkout times in milliseconds
+   * @since 3.5.8
+   */
+  public LatencyHistogram.Snapshot getCheckoutTimeHistogram() {
+    return checkoutTimeHistogram.snapshot();
+  }
+
+  /**
+   * Gets the distribution of the time it took to open physical connections.
+   *
+   * @return a snapshot of the connection creation times in milliseconds
+   * @since 3.5.8
+   */
+  public LatencyHistogram.Snapshot getConnectionCreationTimeHistogram() {
+    return connectionCreationTimeHistogram.snapshot();
+  }
+
+  /**
+   * Gets how long connections were held, per place in the application code that checked them out. Only collected
+   * while {@link PooledDataSource#setPoolLeakDetectionThreshold(int) leak detection} is enabled.
+   *
+   * @return the statistics, the call sites that held connections for the longest total time first
+   * @since 3.5.8
+   */
+  public List<CallSiteStatistics> getCallSiteStatistics() {
+    return leakDetector.getCallSiteStatistics();
+  }
+
+  /**
+   * Takes a copy of the statistics of the pool without taking the pool lock, so that it can be called as often as
+   * needed by a monitoring thread. The connection counts may be slightly out of date.
+   *
+   * @return the snapshot
+   * @since 3.5.8
+   */
+  public PoolStatistics snapshot() {
+    return new PoolStatistics(System.currentTimeMillis(), countActiveConnections(), countIdleConnections(),
+        requestCount, hadToWaitCount, badConnectionCount, claimedOverdueConnectionCount,
+        waitTimeHistogram.snapshot(), checkoutTimeHistogram.snapshot(), connectionCreationTimeHistogram.snapshot());
+  }
+
+  // an unguarded read of the list sizes is good enough for monitoring
+  int countActiveConnections() {
+    return dataSource.isPoolConcurrentCheckout() ? connectionBag.getActiveCount() : activeConnections.size();
   }
 
-  public synchronized long getAverageCheckoutTime() {
-    return requestCount == 0 ? 0 : accumulatedCheckoutTime / requestCount;
+  int countIdleConnections() {
+    return dataSource.isPoolConcurrentCheckout() ? connectionBag.getIdleCount() : idleConnections.size();
   }
 
-  public synchronized int getIdleConnectionCount() {
-    return idleConnections.size();
+  public int getIdleConnectionCount() {
+    if (dataSource.isPoolConcurrentCheckout()) {
+      return connectionBag.getIdleCount();
+    }
+    lock.lock();
+    try {
+      return idleConnections.size();
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized int getActiveConnectionCount() {
-    return activeConnections.size();
+  public int getActiveConnectionCount() {
+    if (dataSource.isPoolConcurrentCheckout()) {
+      return connectionBag.getActiveCount();
+    }
+    lock.lock();
+    try {
+      return activeConnections.size();
+    } finally {
+      lock.unlock();
+    }
   }
 
   @Override
-  public synchronized String toString() {
+  public String toString() {
     StringBuilder builder = new StringBuilder();
     builder.append("\n===CONFINGURATION==============================================");
     builder.append("\n jdbcDriver                     ").append(dataSource.getDriver());
@@ -91,11 +252,17 @@ public class PoolState {
     builder.append("\n jdbcPassword                   ").append(dataSource.getPassword() == null ? "NULL" : "************");
     builder.append("\n poolMaxActiveConnections       ").append(dataSource.poolMaximumActiveConnections);
     builder.append("\n poolMaxIdleConnections         ").append(dataSource.poolMaximumIdleConnections);
+    builder.append("\n poolMinIdleConnections         ").append(dataSource.poolMinimumIdleConnections);
     builder.append("\n poolMaxCheckoutTime            ").append(dataSource.poolMaximumCheckoutTime);
     builder.append("\n poolTimeToWait                 ").append(dataSource.poolTimeToWait);
     builder.append("\n poolPingEnabled                ").append(dataSource.poolPingEnabled);
     builder.append("\n poolPingQuery                  ").append(dataSource.poolPingQuery);
     builder.append("\n poolPingConnectionsNotUsedFor  ").append(dataSource.poolPingConnectionsNotUsedFor);
+    builder.append("\n poolConcurrentCheckout         ").append(dataSource.poolConcurrentCheckout);
+    builder.append("\n poolPreparedStatementCacheSize ").append(dataSource.poolPreparedStatementCacheSize);
+    builder.append("\n poolTrackConnectionState       ").append(dataSource.poolTrackConnectionState);
+    builder.append("\n poolMBeanName                  ").append(dataSource.poolMBeanName);
+    builder.append("\n poolLeakDetectionThreshold     ").append(dataSource.poolLeakDetectionThreshold);
     builder.append("\n ---STATUS-----------------------------------------------------");
     builder.append("\n activeConnections              ").append(getActiveConnectionCount());
     builder.append("\n idleConnections                ").append(getIdleConnectionCount());
@@ -107,6 +274,12 @@ public class PoolState {
     builder.append("\n hadToWait                      ").append(getHadToWaitCount());
     builder.append("\n averageWaitTime                ").append(getAverageWaitTime());
     builder.append("\n badConnectionCount             ").append(getBadConnectionCount());
+    builder.append("\n waitTime                       ").append(getWaitTimeHistogram());
+    builder.append("\n checkoutTime                   ").append(getCheckoutTimeHistogram());
+    builder.append("\n connectionCreationTime         ").append(getConnectionCreationTimeHistogram());
+    builder.append("\n statementCacheHits             ").append(getStatementCacheHitCount());
+    builder.append("\n statementCacheMisses           ").append(getStatementCacheMissCount());
+    builder.append("\n statementCacheEvictions        ").append(getStatementCacheEvictionCount());
     builder.append("\n===============================================================");
     return builder.toString();
   }
@@ -0,0 +1,57 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * The management interface of a {@link PooledDataSource}, registered when
+ * {@link PooledDataSource#setPoolMBeanName(String)} is set. All times are in milliseconds and no attribute takes the
+ * pool lock.
+ *
+ * @since 3.5.8
+ */
+public interface PoolStateMXBean {
+
+  int getActiveConnectionCount();
+
+  int getIdleConnectionCount();
+
+  long getRequestCount();
+
+  long getHadToWaitCount();
+
+  long getBadConnectionCount();
+
+  long getClaimedOverdueConnectionCount();
+
+  long getWaitTimeP50();
+
+  long getWaitTimeP99();
+
+  long getWaitTimeMax();
+
+  long getCheckoutTimeP50();
+
+  long getCheckoutTimeP99();
+
+  long getCheckoutTimeMax();
+
+  long getConnectionCreationTimeP50();
+
+  long getConnectionCreationTimeP99();
+
+  long getConnectionCreationTimeMax();
+
+}
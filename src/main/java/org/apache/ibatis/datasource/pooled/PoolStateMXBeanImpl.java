@@ -0,0 +1,104 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+/**
+ * Exposes the {@link PoolState} of a {@link PooledDataSource} through JMX.
+ */
+class PoolStateMXBeanImpl implements PoolStateMXBean {
+
+  private final PoolState state;
+
+  PoolStateMXBeanImpl(PoolState state) {
+    this.state = state;
+  }
+
+  @Override
+  public int getActiveConnectionCount() {
+    return state.countActiveConnections();
+  }
+
+  @Override
+  public int getIdleConnectionCount() {
+    return state.countIdleConnections();
+  }
+
+  @Override
+  public long getRequestCount() {
+    return state.getRequestCount();
+  }
+
+  @Override
+  public long getHadToWaitCount() {
+    return state.getHadToWaitCount();
+  }
+
+  @Override
+  public long getBadConnectionCount() {
+    return state.getBadConnectionCount();
+  }
+
+  @Override
+  public long getClaimedOverdueConnectionCount() {
+    return state.getClaimedOverdueConnectionCount();
+  }
+
+  @Override
+  public long getWaitTimeP50() {
+    return state.getWaitTimeHistogram().getValueAtPercentile(50);
+  }
+
+  @Override
+  public long getWaitTimeP99() {
+    return state.getWaitTimeHistogram().getValueAtPercentile(99);
+  }
+
+  @Override
+  public long getWaitTimeMax() {
+    return state.getWaitTimeHistogram().getMax();
+  }
+
+  @Override
+  public long getCheckoutTimeP50() {
+    return state.getCheckoutTimeHistogram().getValueAtPercentile(50);
+  }
+
+  @Override
+  public long getCheckoutTimeP99() {
+    return state.getCheckoutTimeHistogram().getValueAtPercentile(99);
+  }
+
+  @Override
+  public long getCheckoutTimeMax() {
+    return state.getCheckoutTimeHistogram().getMax();
+  }
+
+  @Override
+  public long getConnectionCreationTimeP50() {
+    return state.getConnectionCreationTimeHistogram().getValueAtPercentile(50);
+  }
+
+  @Override
+  public long getConnectionCreationTimeP99() {
+    return state.getConnectionCreationTimeHistogram().getValueAtPercentile(99);
+  }
+
+  @Override
+  public long getConnectionCreationTimeMax() {
+    return state.getConnectionCreationTimeHistogram().getMax();
+  }
+
+}
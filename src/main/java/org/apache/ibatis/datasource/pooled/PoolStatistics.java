@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import org.apache.ibatis.util.LatencyHistogram;
+
+/**
+ * An immutable copy of the statistics of a {@link PooledDataSource}, taken by {@link PoolState#snapshot()}.
+ *
+ * @since 3.5.8
+ */
+public class PoolStatistics {
+
+  private final long timestamp;
+  private final int activeConnectionCount;
+  private final int idleConnectionCount;
+  private final long requestCount;
+  private final long hadToWaitCount;
+  private final long badConnectionCount;
+  private final long claimedOverdueConnectionCount;
+  private final LatencyHistogram.Snapshot waitTime;
+  private final LatencyHistogram.Snapshot checkoutTime;
+  private final LatencyHistogram.Snapshot connectionCreationTime;
+
+  PoolStatistics(long timestamp, int activeConnectionCount, int idleConnectionCount, long requestCount,
+      long hadToWaitCount, long badConnectionCount, long claimedOverdueConnectionCount,
+      LatencyHistogram.Snapshot waitTime, LatencyHistogram.Snapshot checkoutTime,
+      LatencyHistogram.Snapshot connectionCreationTime) {
+    this.timestamp = timestamp;
+    this.activeConnectionCount = activeConnectionCount;
+    this.idleConnectionCount = idleConnectionCount;
+    this.requestCount = requestCount;
+    this.hadToWaitCount = hadToWaitCount;
+    this.badConnectionCount = badConnectionCount;
+    this.claimedOverdueConnectionCount = claimedOverdueConnectionCount;
+    this.waitTime = waitTime;
+    this.checkoutTime = checkoutTime;
+    this.connectionCreationTime = connectionCreationTime;
+  }
+
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  public int getActiveConnectionCount() {
+    return activeConnectionCount;
+  }
+
+  public int getIdleConnectionCount() {
+    return idleConnectionCount;
+  }
+
+  public long getRequestCount() {
+    return requestCount;
+  }
+
+  public long getHadToWaitCount() {
+    return hadToWaitCount;
+  }
+
+  public long getBadConnectionCount() {
+    return badConnectionCount;
+  }
+
+  public long getClaimedOverdueConnectionCount() {
+    return claimedOverdueConnectionCount;
+  }
+
+  public LatencyHistogram.Snapshot getWaitTime() {
+    return waitTime;
+  }
+
+  public LatencyHistogram.Snapshot getCheckoutTime() {
+    return checkoutTime;
+  }
+
+  public LatencyHistogram.Snapshot getConnectionCreationTime() {
+    return connectionCreationTime;
+  }
+
+  @Override
+  public String toString() {
+    return "PoolStatistics [active=" + activeConnectionCount + ", idle=" + idleConnectionCount + ", requests="
+        + requestCount + ", hadToWait=" + hadToWaitCount + ", bad=" + badConnectionCount + ", claimedOverdue="
+        + claimedOverdueConnectionCount + ", waitTime=(" + waitTime + "), checkoutTime=(" + checkoutTime
+        + "), connectionCreationTime=(" + connectionCreationTime + ")]";
+  }
+
+}
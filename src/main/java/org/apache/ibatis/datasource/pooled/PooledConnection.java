@@ -20,6 +20,7 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.ibatis.reflection.ExceptionUtil;
 
@@ -28,7 +29,12 @@ import org.apache.ibatis.reflection.ExceptionUtil;
  */
 class PooledConnection implements InvocationHandler {
 
+  static final int STATE_REMOVED = -1;
+  static final int STATE_IDLE = 0;
+  static final int STATE_IN_USE = 1;
+
   private static final String CLOSE = "close";
+  private static final String PREPARE_STATEMENT = "prepareStatement";
   private static final Class<?>[] IFACES = new Class<?>[] { Connection.class };
 
   private final int hashCode;
@@ -38,8 +44,15 @@ class PooledConnection implements InvocationHandler {
   private long checkoutTimestamp;
   private long createdTimestamp;
   private long lastUsedTimestamp;
+  private long lastValidatedTimestamp;
+  private long expirationTimestamp;
+  private PreparedStatementCache statementCache;
+  private ConnectionState connectionState;
+  private Throwable checkoutSite;
+  private volatile boolean leakReported;
   private int connectionTypeCode;
-  private boolean valid;
+  private volatile boolean valid;
+  private final AtomicInteger state = new AtomicInteger(STATE_IN_USE);
 
   /**
    * Constructor for SimplePooledConnection that uses the Connection and PooledDataSource passed in.
@@ -75,6 +88,39 @@ class PooledConnection implements InvocationHandler {
     return valid && realConnection != null && dataSource.pingConnection(this);
   }
 
+  /**
+   * Gets the state of this connection within a concurrent pool.
+   *
+   * @return one of {@link #STATE_IDLE}, {@link #STATE_IN_USE} or {@link #STATE_REMOVED}
+   */
+  int getState() {
+    return state.get();
+  }
+
+  /**
+   * Sets the state of this connection within a concurrent pool.
+   *
+   * @param newState
+   *          - the new state
+   */
+  void setState(int newState) {
+    state.set(newState);
+  }
+
+  /**
+   * Atomically moves this connection from one state to another. Used by the concurrent pool so that exactly one
+   * thread can claim an idle connection.
+   *
+   * @param expect
+   *          - the expected current state
+   * @param update
+   *          - the new state
+   * @return True if the state was changed
+   */
+  boolean compareAndSetState(int expect, int update) {
+    return state.compareAndSet(expect, update);
+  }
+
   /**
    * Getter for the *real* connection that this wraps.
    *
@@ -159,6 +205,118 @@ class PooledConnection implements InvocationHandler {
     this.lastUsedTimestamp = lastUsedTimestamp;
   }
 
+  /**
+   * Getter for the time that the connection was last validated by the housekeeper.
+   *
+   * @return - the timestamp
+   */
+  public long getLastValidatedTimestamp() {
+    return lastValidatedTimestamp;
+  }
+
+  /**
+   * Setter for the time that the connection was last validated by the housekeeper.
+   *
+   * @param lastValidatedTimestamp
+   *          - the timestamp
+   */
+  public void setLastValidatedTimestamp(long lastValidatedTimestamp) {
+    this.lastValidatedTimestamp = lastValidatedTimestamp;
+  }
+
+  /**
+   * Getter for the time after which the connection must be retired (0 if it never expires).
+   *
+   * @return - the timestamp
+   */
+  public long getExpirationTimestamp() {
+    return expirationTimestamp;
+  }
+
+  /**
+   * Setter for the time after which the connection must be retired.
+   *
+   * @param expirationTimestamp
+   *          - the timestamp, or 0 if the connection never expires
+   */
+  public void setExpirationTimestamp(long expirationTimestamp) {
+    this.expirationTimestamp = expirationTimestamp;
+  }
+
+  /**
+   * Method to see if the connection has reached its maximum lifetime.
+   *
+   * @return True if the connection must be retired
+   */
+  public boolean isExpired() {
+    return expirationTimestamp > 0 && System.currentTimeMillis() >= expirationTimestamp;
+  }
+
+  /**
+   * Getter for the prepared statement cache of the real connection.
+   *
+   * @return the cache, or null if statements are not cached
+   */
+  PreparedStatementCache getStatementCache() {
+    return statementCache;
+  }
+
+  /**
+   * Setter for the prepared statement cache of the real connection.
+   *
+   * @param statementCache
+   *          - the cache, or null if statements are not cached
+   */
+  void setStatementCache(PreparedStatementCache statementCache) {
+    this.statementCache = statementCache;
+  }
+
+  /**
+   * Getter for the tracked session state of the real connection.
+   *
+   * @return the state, or null if the state is not tracked
+   */
+  ConnectionState getConnectionState() {
+    return connectionState;
+  }
+
+  /**
+   * Setter for the tracked session state of the real connection.
+   *
+   * @param connectionState
+   *          - the state, or null if the state is not tracked
+   */
+  void setConnectionState(ConnectionState connectionState) {
+    this.connectionState = connectionState;
+  }
+
+  /**
+   * Getter for the stack captured when this connection was checked out.
+   *
+   * @return the checkout site, or null if leak detection is disabled
+   */
+  Throwable getCheckoutSite() {
+    return checkoutSite;
+  }
+
+  /**
+   * Setter for the stack captured when this connection was checked out.
+   *
+   * @param checkoutSite
+   *          - the checkout site
+   */
+  void setCheckoutSite(Throwable checkoutSite) {
+    this.checkoutSite = checkoutSite;
+  }
+
+  boolean isLeakReported() {
+    return leakReported;
+  }
+
+  void setLeakReported(boolean leakReported) {
+    this.leakReported = leakReported;
+  }
+
   /**
    * Getter for the time since this connection was last used.
    *
@@ -252,6 +410,15 @@ class PooledConnection implements InvocationHandler {
         // throw an SQLException instead of a Runtime
         checkConnection();
       }
+      if (connectionState != null) {
+        if (connectionState.isTracked(method)) {
+          return connectionState.invoke(realConnection, method, args);
+        }
+        connectionState.beforeInvoke(realConnection, method);
+      }
+      if (statementCache != null && PREPARE_STATEMENT.equals(methodName)) {
+        return statementCache.prepareStatement(realConnection, method, args);
+      }
       return method.invoke(realConnection, args);
     } catch (Throwable t) {
       throw ExceptionUtil.unwrapThrowable(t);
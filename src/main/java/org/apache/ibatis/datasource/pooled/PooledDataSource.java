@@ -16,15 +16,31 @@
 package org.apache.ibatis.datasource.pooled;
 
 import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 import javax.sql.DataSource;
 
 import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
@@ -53,9 +69,25 @@ public class PooledDataSource implements DataSource {
   protected String poolPingQuery = "NO PING QUERY SET";
   protected boolean poolPingEnabled;
   protected int poolPingConnectionsNotUsedFor;
+  protected boolean poolConcurrentCheckout;
+  protected int poolMinimumIdleConnections;
+  protected int poolMaximumLifetime;
+  protected int poolIdleTimeout;
+  protected int poolKeepaliveTime;
+  protected int poolHousekeepingInterval = 30000;
+  protected int poolPreparedStatementCacheSize;
+  protected boolean poolTrackConnectionState;
+  protected String poolMBeanName;
+  protected int poolLeakDetectionThreshold;
 
   private int expectedConnectionTypeCode;
 
+  private volatile boolean started;
+  private volatile ScheduledExecutorService housekeeper;
+  private volatile ScheduledFuture<?> housekeepingTask;
+  private ObjectName registeredMBeanName;
+  private final AtomicBoolean fillRequested = new AtomicBoolean();
+
   public PooledDataSource() {
     dataSource = new UnpooledDataSource();
   }
@@ -254,6 +286,155 @@ public class PooledDataSource implements DataSource {
     forceCloseAll();
   }
 
+  /**
+   * Determines if connections are checked out and returned through a lock-free structure instead of the pool monitor.
+   * This reduces contention when many threads share the pool.
+   *
+   * @param poolConcurrentCheckout
+   *          True to use the concurrent checkout path
+   * @since 3.5.8
+   */
+  public void setPoolConcurrentCheckout(boolean poolConcurrentCheckout) {
+    this.poolConcurrentCheckout = poolConcurrentCheckout;
+    forceCloseAll();
+  }
+
+  /**
+   * The number of idle connections the pool tries to keep open. Missing connections are opened by a background thread
+   * when the pool starts and whenever connections are checked out or discarded, so that callers rarely have to wait for
+   * a new physical connection. The value is capped by {@link #setPoolMaximumIdleConnections(int)}.
+   *
+   * @param poolMinimumIdleConnections
+   *          The minimum number of idle connections
+   * @since 3.5.8
+   */
+  public void setPoolMinimumIdleConnections(int poolMinimumIdleConnections) {
+    this.poolMinimumIdleConnections = poolMinimumIdleConnections;
+    forceCloseAll();
+  }
+
+  /**
+   * The maximum time a physical connection may live. Idle connections older than this are closed by the housekeeper
+   * and active ones are closed when they are returned. Each connection gets a slightly shorter, random lifetime so that
+   * connections opened together do not all expire together.
+   *
+   * @param milliseconds
+   *          the maximum lifetime, or 0 for no limit
+   * @since 3.5.8
+   */
+  public void setPoolMaximumLifetime(int milliseconds) {
+    this.poolMaximumLifetime = milliseconds;
+    forceCloseAll();
+    scheduleHousekeeping();
+  }
+
+  /**
+   * The time after which an unused idle connection is closed by the housekeeper, as long as more than
+   * {@link #setPoolMinimumIdleConnections(int) the minimum number of idle connections} remain.
+   *
+   * @param milliseconds
+   *          the idle timeout, or 0 to keep idle connections open
+   * @since 3.5.8
+   */
+  public void setPoolIdleTimeout(int milliseconds) {
+    this.poolIdleTimeout = milliseconds;
+    forceCloseAll();
+    scheduleHousekeeping();
+  }
+
+  /**
+   * The time after which the housekeeper validates an idle connection that has neither been used nor validated. When
+   * enabled, the ping query is no longer sent while checking connections out.
+   *
+   * @param milliseconds
+   *          the keepalive time, or 0 to disable background validation
+   * @since 3.5.8
+   */
+  public void setPoolKeepaliveTime(int milliseconds) {
+    this.poolKeepaliveTime = milliseconds;
+    forceCloseAll();
+    scheduleHousekeeping();
+  }
+
+  /**
+   * How often the housekeeper retires expired connections, evicts idle ones and validates them.
+   *
+   * @param milliseconds
+   *          the time between two housekeeping runs
+   * @since 3.5.8
+   */
+  public void setPoolHousekeepingInterval(int milliseconds) {
+    this.poolHousekeepingInterval = milliseconds;
+    ScheduledFuture<?> task = housekeepingTask;
+    if (task != null) {
+      housekeepingTask = null;
+      task.cancel(false);
+    }
+    scheduleHousekeeping();
+  }
+
+  /**
+   * The number of prepared statements cached per physical connection. A cached statement survives the return of its
+   * connection to the pool, so each statement is prepared only once per physical connection instead of once per
+   * session. Closing a statement puts it back into the cache, and the least recently used statements are closed when
+   * the cache is full.
+   *
+   * @param poolPreparedStatementCacheSize
+   *          the number of statements per connection, or 0 to disable the cache
+   * @since 3.5.8
+   */
+  public void setPoolPreparedStatementCacheSize(int poolPreparedStatementCacheSize) {
+    this.poolPreparedStatementCacheSize = poolPreparedStatementCacheSize;
+    forceCloseAll();
+  }
+
+  /**
+   * Determines if the pool keeps a client side copy of the auto commit mode, transaction isolation, read only flag,
+   * catalog and schema of each connection. Known values are then answered without asking the database, setting a value
+   * is delayed until a statement runs, and a returned connection is only rolled back if a statement ran and only has
+   * the changed attributes restored. Must not be enabled if the connection state is changed in ways the pool cannot
+   * see, e.g. by SQL statements such as {@code SET SCHEMA}.
+   *
+   * @param poolTrackConnectionState
+   *          True to track the connection state
+   * @since 3.5.8
+   */
+  public void setPoolTrackConnectionState(boolean poolTrackConnectionState) {
+    this.poolTrackConnectionState = poolTrackConnectionState;
+    forceCloseAll();
+  }
+
+  /**
+   * The JMX object name under which the statistics of the pool are registered as a {@link PoolStateMXBean} while the
+   * pool is started, e.g. {@code org.apache.ibatis:type=PooledDataSource,name=main}.
+   *
+   * @param poolMBeanName
+   *          the object name, or null to not register the pool
+   * @since 3.5.8
+   */
+  public void setPoolMBeanName(String poolMBeanName) {
+    unregisterMBean();
+    this.poolMBeanName = poolMBeanName;
+    if (started) {
+      registerMBean();
+    }
+  }
+
+  /**
+   * The time after which a checked out connection is reported as a possible leak. When enabled, the stack of each
+   * checkout is captured, connections held longer than this are logged with that stack by the housekeeper or when they
+   * are returned, and hold times are collected per call site, see {@link PoolState#getCallSiteStatistics()}. Unlike
+   * {@link #setPoolMaximumCheckoutTime(int)}, a reported connection is not taken away from its owner.
+   *
+   * @param milliseconds
+   *          the threshold, or 0 to disable leak detection
+   * @since 3.5.8
+   */
+  public void setPoolLeakDetectionThreshold(int milliseconds) {
+    this.poolLeakDetectionThreshold = milliseconds;
+    scheduleHousekeeping();
+  }
+
   public String getDriver() {
     return dataSource.getDriver();
   }
@@ -324,44 +505,101 @@ public class PooledDataSource implements DataSource {
     return poolPingConnectionsNotUsedFor;
   }
 
+  public boolean isPoolConcurrentCheckout() {
+    return poolConcurrentCheckout;
+  }
+
+  public int getPoolMinimumIdleConnections() {
+    return poolMinimumIdleConnections;
+  }
+
+  public int getPoolMaximumLifetime() {
+    return poolMaximumLifetime;
+  }
+
+  public int getPoolIdleTimeout() {
+    return poolIdleTimeout;
+  }
+
+  public int getPoolKeepaliveTime() {
+    return poolKeepaliveTime;
+  }
+
+  public int getPoolHousekeepingInterval() {
+    return poolHousekeepingInterval;
+  }
+
+  public int getPoolPreparedStatementCacheSize() {
+    return poolPreparedStatementCacheSize;
+  }
+
+  public boolean isPoolTrackConnectionState() {
+    return poolTrackConnectionState;
+  }
+
+  public String getPoolMBeanName() {
+    return poolMBeanName;
+  }
+
+  public int getPoolLeakDetectionThreshold() {
+    return poolLeakDetectionThreshold;
+  }
+
   /**
    * Closes all active and idle connections in the pool.
    */
   public void forceCloseAll() {
-    synchronized (state) {
+    state.lock.lock();
+    try {
       expectedConnectionTypeCode = assembleConnectionTypeCode(dataSource.getUrl(), dataSource.getUsername(), dataSource.getPassword());
       for (int i = state.activeConnections.size(); i > 0; i--) {
-        try {
-          PooledConnection conn = state.activeConnections.remove(i - 1);
-          conn.invalidate();
-
-          Connection realConn = conn.getRealConnection();
-          if (!realConn.getAutoCommit()) {
-            realConn.rollback();
-          }
-          realConn.close();
-        } catch (Exception e) {
-          // ignore
-        }
+        closeConnection(state.activeConnections.remove(i - 1));
       }
       for (int i = state.idleConnections.size(); i > 0; i--) {
-        try {
-          PooledConnection conn = state.idleConnections.remove(i - 1);
-          conn.invalidate();
-
-          Connection realConn = conn.getRealConnection();
-          if (!realConn.getAutoCommit()) {
-            realConn.rollback();
-          }
-          realConn.close();
-        } catch (Exception e) {
-          // ignore
-        }
+        closeConnection(state.idleConnections.remove(i - 1));
       }
+    } finally {
+      state.lock.unlock();
+    }
+    for (PooledConnection conn : state.connectionBag.drain()) {
+      closeConnection(conn);
     }
     if (log.isDebugEnabled()) {
       log.debug("PooledDataSource forcefully closed/removed all connections.");
     }
+    requestFill();
+  }
+
+  /**
+   * Starts the background work of the pool, which opens the minimum number of idle connections. This is called by
+   * {@link PooledDataSourceFactory} once all properties are set and otherwise happens on the first checkout.
+   *
+   * @since 3.5.8
+   */
+  public void start() {
+    if (!started) {
+      started = true;
+      scheduleHousekeeping();
+      requestFill();
+      registerMBean();
+    }
+  }
+
+  /**
+   * Stops the background work of the pool and closes all active and idle connections.
+   *
+   * @since 3.5.8
+   */
+  public void close() {
+    started = false;
+    housekeepingTask = null;
+    ScheduledExecutorService executor = housekeeper;
+    if (executor != null) {
+      housekeeper = null;
+      executor.shutdownNow();
+    }
+    unregisterMBean();
+    forceCloseAll();
   }
 
   public PoolState getPoolState() {
@@ -373,142 +611,266 @@ public class PooledDataSource implements DataSource {
   }
 
   protected void pushConnection(PooledConnection conn) throws SQLException {
+    if (poolConcurrentCheckout) {
+      pushConnectionConcurrently(conn);
+      return;
+    }
 
-    synchronized (state) {
-      state.activeConnections.remove(conn);
-      if (conn.isValid()) {
-        if (state.idleConnections.size() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
-          if (!conn.getRealConnection().getAutoCommit()) {
-            conn.getRealConnection().rollback();
+    // the connection keeps its place among the active ones while it is validated, reset or closed outside the lock
+    boolean active;
+    state.lock.lock();
+    try {
+      active = state.activeConnections.remove(conn);
+      if (active) {
+        state.pendingConnectionCount++;
+      }
+    } finally {
+      state.lock.unlock();
+    }
+    if (!active || !conn.isValid()) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.countBadConnection();
+      if (active) {
+        releasePendingConnection();
+      }
+      requestFill();
+      return;
+    }
+    recordCheckoutTime(conn, conn.getCheckoutTime());
+    PooledConnection newConn = null;
+    boolean reset = false;
+    try {
+      // an unguarded read of the idle count avoids resetting most connections that are closed anyway
+      if (state.countIdleConnections() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+          && !conn.isExpired()) {
+        resetConnection(conn);
+        reset = true;
+        state.lock.lock();
+        try {
+          if (state.idleConnections.size() < poolMaximumIdleConnections
+              && conn.getConnectionTypeCode() == expectedConnectionTypeCode) {
+            newConn = rewrap(conn);
+            state.pendingConnectionCount--;
+            state.idleConnections.add(newConn);
+            state.condition.signalAll();
           }
-          PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
-          state.idleConnections.add(newConn);
-          newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
-          newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
-          conn.invalidate();
+        } finally {
+          state.lock.unlock();
+        }
+        if (newConn != null) {
           if (log.isDebugEnabled()) {
             log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
           }
-          state.notifyAll();
-        } else {
-          state.accumulatedCheckoutTime += conn.getCheckoutTime();
-          if (!conn.getRealConnection().getAutoCommit()) {
-            conn.getRealConnection().rollback();
-          }
-          conn.getRealConnection().close();
-          if (log.isDebugEnabled()) {
-            log.debug("Closed connection " + conn.getRealHashCode() + ".");
-          }
-          conn.invalidate();
+          return;
+        }
+      }
+      if (!reset) {
+        rollbackConnection(conn);
+      }
+      conn.getRealConnection().close();
+      if (log.isDebugEnabled()) {
+        log.debug("Closed connection " + conn.getRealHashCode() + ".");
+      }
+      conn.invalidate();
+    } catch (SQLException e) {
+      closeConnection(conn);
+      throw e;
+    } finally {
+      if (newConn == null) {
+        releasePendingConnection();
+        requestFill();
+      }
+    }
+  }
+
+  private void pushConnectionConcurrently(PooledConnection conn) throws SQLException {
+    if (!state.connectionBag.deactivate(conn)) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.countBadConnection();
+      return;
+    }
+    recordCheckoutTime(conn, conn.getCheckoutTime());
+    if (!conn.isValid()) {
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+      }
+      state.countBadConnection();
+      state.connectionBag.release();
+      conn.invalidate();
+      requestFill();
+      return;
+    }
+    try {
+      resetConnection(conn);
+      if (state.connectionBag.getIdleCount() < poolMaximumIdleConnections && conn.getConnectionTypeCode() == expectedConnectionTypeCode
+          && !conn.isExpired()) {
+        PooledConnection newConn = rewrap(conn);
+        if (log.isDebugEnabled()) {
+          log.debug("Returned connection " + newConn.getRealHashCode() + " to pool.");
         }
+        state.connectionBag.requite(newConn);
       } else {
+        state.connectionBag.release();
+        conn.getRealConnection().close();
         if (log.isDebugEnabled()) {
-          log.debug("A bad connection (" + conn.getRealHashCode() + ") attempted to return to the pool, discarding connection.");
+          log.debug("Closed connection " + conn.getRealHashCode() + ".");
         }
-        state.badConnectionCount++;
+        conn.invalidate();
+        requestFill();
       }
+    } catch (SQLException e) {
+      state.connectionBag.release();
+      closeConnection(conn);
+      throw e;
     }
   }
 
   private PooledConnection popConnection(String username, String password) throws SQLException {
+    if (poolConcurrentCheckout) {
+      return popConnectionConcurrently(username, password);
+    }
     boolean countedWait = false;
     PooledConnection conn = null;
     long t = System.currentTimeMillis();
+    long waitTime = 0;
     int localBadConnectionCount = 0;
+    start();
 
     while (conn == null) {
-      synchronized (state) {
+      boolean canCreate = false;
+      PooledConnection overdueConnection = null;
+      state.lock.lock();
+      try {
         if (!state.idleConnections.isEmpty()) {
           // Pool has available connection
           conn = state.idleConnections.remove(0);
+          state.pendingConnectionCount++;
           if (log.isDebugEnabled()) {
             log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
           }
         } else {
           // Pool does not have available connection
-          if (state.activeConnections.size() < poolMaximumActiveConnections) {
-            // Can create new connection
-            conn = new PooledConnection(dataSource.getConnection(), this);
-            if (log.isDebugEnabled()) {
-              log.debug("Created connection " + conn.getRealHashCode() + ".");
-            }
+          if (state.activeConnections.size() + state.pendingConnectionCount < poolMaximumActiveConnections) {
+            // Can create new connection, the physical connection is opened outside the lock
+            state.pendingConnectionCount++;
+            canCreate = true;
+          } else if (!state.activeConnections.isEmpty()
+              && state.activeConnections.get(0).getCheckoutTime() > poolMaximumCheckoutTime) {
+            // Can claim overdue connection, it is rolled back outside the lock
+            overdueConnection = state.activeConnections.remove(0);
+            overdueConnection.invalidate();
+            long longestCheckoutTime = overdueConnection.getCheckoutTime();
+            state.countClaimedOverdueConnection(longestCheckoutTime);
+            recordCheckoutTime(overdueConnection, longestCheckoutTime);
+            state.pendingConnectionCount++;
           } else {
-            // Cannot create new connection
-            PooledConnection oldestActiveConnection = state.activeConnections.get(0);
-            long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
-            if (longestCheckoutTime > poolMaximumCheckoutTime) {
-              // Can claim overdue connection
-              state.claimedOverdueConnectionCount++;
-              state.accumulatedCheckoutTimeOfOverdueConnections += longestCheckoutTime;
-              state.accumulatedCheckoutTime += longestCheckoutTime;
-              state.activeConnections.remove(oldestActiveConnection);
-              if (!oldestActiveConnection.getRealConnection().getAutoCommit()) {
-                try {
-                  oldestActiveConnection.getRealConnection().rollback();
-                } catch (SQLException e) {
-                  /*
-                     Just log a message for debug and continue to execute the following
-                     statement like nothing happened.
-                     Wrap the bad connection with a new PooledConnection, this will help
-                     to not interrupt current executing thread and give current thread a
-                     chance to join the next competition for another valid/good database
-                     connection. At the end of this loop, bad {@link @conn} will be set as null.
-                   */
-                  log.debug("Bad connection. Could not roll back");
-                }
+            // Must wait
+            try {
+              if (!countedWait) {
+                state.countHadToWait();
+                countedWait = true;
               }
-              conn = new PooledConnection(oldestActiveConnection.getRealConnection(), this);
-              conn.setCreatedTimestamp(oldestActiveConnection.getCreatedTimestamp());
-              conn.setLastUsedTimestamp(oldestActiveConnection.getLastUsedTimestamp());
-              oldestActiveConnection.invalidate();
               if (log.isDebugEnabled()) {
-                log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
-              }
-            } else {
-              // Must wait
-              try {
-                if (!countedWait) {
-                  state.hadToWaitCount++;
-                  countedWait = true;
-                }
-                if (log.isDebugEnabled()) {
-                  log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
-                }
-                long wt = System.currentTimeMillis();
-                state.wait(poolTimeToWait);
-                state.accumulatedWaitTime += System.currentTimeMillis() - wt;
-              } catch (InterruptedException e) {
-                break;
+                log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
               }
+              long wt = System.currentTimeMillis();
+              state.condition.await(poolTimeToWait, TimeUnit.MILLISECONDS);
+              wt = System.currentTimeMillis() - wt;
+              state.addWaitTime(wt);
+              waitTime += wt;
+            } catch (InterruptedException e) {
+              break;
             }
           }
         }
-        if (conn != null) {
-          // ping to server and check the connection is valid or not
-          if (conn.isValid()) {
-            if (!conn.getRealConnection().getAutoCommit()) {
-              conn.getRealConnection().rollback();
-            }
-            conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
-            conn.setCheckoutTimestamp(System.currentTimeMillis());
-            conn.setLastUsedTimestamp(System.currentTimeMillis());
+      } finally {
+        state.lock.unlock();
+      }
+
+      // connecting and validating happen outside the lock so a slow database does not stall other threads
+      if (overdueConnection != null) {
+        try {
+          resetConnection(overdueConnection);
+        } catch (SQLException e) {
+          /*
+             Just log a message for debug and continue to execute the following
+             statement like nothing happened.
+             Wrap the bad connection with a new PooledConnection, this will help
+             to not interrupt current executing thread and give current thread a
+             chance to join the next competition for another valid/good database
+             connection. At the end of this loop, bad {@link @conn} will be set as null.
+           */
+          log.debug("Bad connection. Could not roll back");
+        }
+        conn = rewrapOverdue(overdueConnection);
+        if (log.isDebugEnabled()) {
+          log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+        }
+      }
+      if (canCreate) {
+        try {
+          conn = openConnection();
+        } catch (SQLException | RuntimeException e) {
+          releasePendingConnection();
+          throw e;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + conn.getRealHashCode() + ".");
+        }
+      }
+      if (conn != null && conn.isExpired()) {
+        if (log.isDebugEnabled()) {
+          log.debug("Retired expired connection " + conn.getRealHashCode() + ".");
+        }
+        closeConnection(conn);
+        releasePendingConnection();
+        conn = null;
+        requestFill();
+      }
+      if (conn != null) {
+        // ping to server and check the connection is valid or not
+        if (conn.isValid()) {
+          try {
+            resetConnection(conn);
+          } catch (SQLException e) {
+            closeConnection(conn);
+            releasePendingConnection();
+            throw e;
+          }
+          conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+          conn.setCheckoutTimestamp(System.currentTimeMillis());
+          if (poolLeakDetectionThreshold > 0) {
+            conn.setCheckoutSite(LeakDetector.captureCheckoutSite());
+          }
+          conn.setLastUsedTimestamp(System.currentTimeMillis());
+          state.lock.lock();
+          try {
+            state.pendingConnectionCount--;
             state.activeConnections.add(conn);
-            state.requestCount++;
-            state.accumulatedRequestTime += System.currentTimeMillis() - t;
-          } else {
+          } finally {
+            state.lock.unlock();
+          }
+          state.countRequest(System.currentTimeMillis() - t);
+          state.waitTimeHistogram.record(waitTime);
+          requestFill();
+        } else {
+          if (log.isDebugEnabled()) {
+            log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+          }
+          releasePendingConnection();
+          state.countBadConnection();
+          localBadConnectionCount++;
+          conn = null;
+          requestFill();
+          if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
             if (log.isDebugEnabled()) {
-              log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
-            }
-            state.badConnectionCount++;
-            localBadConnectionCount++;
-            conn = null;
-            if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
-              if (log.isDebugEnabled()) {
-                log.debug("PooledDataSource: Could not get a good connection to the database.");
-              }
-              throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+              log.debug("PooledDataSource: Could not get a good connection to the database.");
             }
+            throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
           }
         }
       }
@@ -525,6 +887,524 @@ public class PooledDataSource implements DataSource {
     return conn;
   }
 
+  private void recordCheckoutTime(PooledConnection conn, long checkoutTime) {
+    state.addCheckoutTime(checkoutTime);
+    state.checkoutTimeHistogram.record(checkoutTime);
+    state.leakDetector.recordReturn(conn, checkoutTime, poolLeakDetectionThreshold);
+  }
+
+  private void releasePendingConnection() {
+    state.lock.lock();
+    try {
+      state.pendingConnectionCount--;
+      state.condition.signalAll();
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
+  private PooledConnection popConnectionConcurrently(String username, String password) throws SQLException {
+    ConnectionBag bag = state.connectionBag;
+    boolean countedWait = false;
+    long t = System.currentTimeMillis();
+    long waitTime = 0;
+    int localBadConnectionCount = 0;
+    start();
+
+    while (true) {
+      PooledConnection conn = bag.borrow();
+      if (conn != null) {
+        if (log.isDebugEnabled()) {
+          log.debug("Checked out connection " + conn.getRealHashCode() + " from pool.");
+        }
+      } else if (bag.reserve(poolMaximumActiveConnections)) {
+        try {
+          conn = openConnection();
+        } catch (SQLException | RuntimeException e) {
+          bag.release();
+          throw e;
+        }
+        if (log.isDebugEnabled()) {
+          log.debug("Created connection " + conn.getRealHashCode() + ".");
+        }
+      } else {
+        conn = claimOverdueConnection(bag);
+        if (conn == null) {
+          if (!countedWait) {
+            state.countHadToWait();
+            countedWait = true;
+          }
+          if (log.isDebugEnabled()) {
+            log.debug("Waiting as long as " + poolTimeToWait + " milliseconds for connection.");
+          }
+          long wt = System.currentTimeMillis();
+          try {
+            conn = bag.await(poolTimeToWait);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("PooledDataSource: Interrupted while waiting for a connection.", e);
+          } finally {
+            wt = System.currentTimeMillis() - wt;
+            state.addWaitTime(wt);
+            waitTime += wt;
+          }
+          if (conn == null) {
+            continue;
+          }
+        }
+      }
+
+      if (conn.isExpired()) {
+        if (log.isDebugEnabled()) {
+          log.debug("Retired expired connection " + conn.getRealHashCode() + ".");
+        }
+        conn.setState(PooledConnection.STATE_REMOVED);
+        closeConnection(conn);
+        bag.release();
+        requestFill();
+        continue;
+      }
+
+      // ping to server and check the connection is valid or not
+      if (conn.isValid()) {
+        try {
+          resetConnection(conn);
+        } catch (SQLException e) {
+          closeConnection(conn);
+          bag.release();
+          throw e;
+        }
+        conn.setConnectionTypeCode(assembleConnectionTypeCode(dataSource.getUrl(), username, password));
+        conn.setCheckoutTimestamp(System.currentTimeMillis());
+        if (poolLeakDetectionThreshold > 0) {
+          conn.setCheckoutSite(LeakDetector.captureCheckoutSite());
+        }
+        conn.setLastUsedTimestamp(System.currentTimeMillis());
+        bag.activate(conn);
+        state.countRequest(System.currentTimeMillis() - t);
+        state.waitTimeHistogram.record(waitTime);
+        requestFill();
+        return conn;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("A bad connection (" + conn.getRealHashCode() + ") was returned from the pool, getting another connection.");
+      }
+      conn.setState(PooledConnection.STATE_REMOVED);
+      conn.invalidate();
+      bag.release();
+      state.countBadConnection();
+      localBadConnectionCount++;
+      requestFill();
+      if (localBadConnectionCount > (poolMaximumIdleConnections + poolMaximumLocalBadConnectionTolerance)) {
+        if (log.isDebugEnabled()) {
+          log.debug("PooledDataSource: Could not get a good connection to the database.");
+        }
+        throw new SQLException("PooledDataSource: Could not get a good connection to the database.");
+      }
+    }
+  }
+
+  private PooledConnection claimOverdueConnection(ConnectionBag bag) {
+    PooledConnection oldestActiveConnection = bag.oldestActive();
+    if (oldestActiveConnection == null) {
+      return null;
+    }
+    long longestCheckoutTime = oldestActiveConnection.getCheckoutTime();
+    if (longestCheckoutTime <= poolMaximumCheckoutTime || !bag.deactivate(oldestActiveConnection)) {
+      return null;
+    }
+    state.countClaimedOverdueConnection(longestCheckoutTime);
+    recordCheckoutTime(oldestActiveConnection, longestCheckoutTime);
+    try {
+      resetConnection(oldestActiveConnection);
+    } catch (SQLException e) {
+      // the bad connection is detected by the validity check of the caller
+      log.debug("Bad connection. Could not roll back");
+    }
+    PooledConnection conn = rewrapOverdue(oldestActiveConnection);
+    conn.setState(PooledConnection.STATE_IN_USE);
+    if (log.isDebugEnabled()) {
+      log.debug("Claimed overdue connection " + conn.getRealHashCode() + ".");
+    }
+    return conn;
+  }
+
+  /**
+   * Asks the housekeeper thread to open connections until the minimum number of idle connections is reached. Requests
+   * made while a fill is already pending are coalesced.
+   */
+  private void requestFill() {
+    if (started && poolMinimumIdleConnections > 0 && !fillRequested.get()
+        && state.getIdleConnectionCount() < getMinimumIdle() && fillRequested.compareAndSet(false, true)) {
+      try {
+        ScheduledExecutorService executor = getHousekeeper();
+        executor.execute(new HousekeeperTask(this, executor, PooledDataSource::fillPool));
+      } catch (RejectedExecutionException e) {
+        // the pool has been closed
+        fillRequested.set(false);
+      }
+    }
+  }
+
+  private void fillPool() {
+    fillRequested.set(false);
+    int minimumIdle = getMinimumIdle();
+    while (started && reserveIdleConnection(minimumIdle)) {
+      int typeCode = expectedConnectionTypeCode;
+      PooledConnection conn;
+      try {
+        conn = openConnection();
+      } catch (Exception e) {
+        releaseIdleConnection();
+        log.warn("PooledDataSource: Could not open a connection to fill the pool. Cause: " + e);
+        return;
+      }
+      if (typeCode != expectedConnectionTypeCode || !addIdleConnection(conn)) {
+        releaseIdleConnection();
+        try {
+          conn.getRealConnection().close();
+        } catch (SQLException e) {
+          // ignore
+        }
+        conn.invalidate();
+        return;
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Opened idle connection " + conn.getRealHashCode() + ".");
+      }
+    }
+  }
+
+  private int getMinimumIdle() {
+    return Math.min(poolMinimumIdleConnections, poolMaximumIdleConnections);
+  }
+
+  private boolean reserveIdleConnection(int minimumIdle) {
+    if (poolConcurrentCheckout) {
+      return state.connectionBag.getIdleCount() < minimumIdle && state.connectionBag.reserve(poolMaximumActiveConnections);
+    }
+    state.lock.lock();
+    try {
+      int idle = state.idleConnections.size();
+      if (idle < minimumIdle && idle + state.activeConnections.size() + state.pendingConnectionCount < poolMaximumActiveConnections) {
+        state.pendingConnectionCount++;
+        return true;
+      }
+      return false;
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
+  private void releaseIdleConnection() {
+    if (poolConcurrentCheckout) {
+      state.connectionBag.release();
+    } else {
+      releasePendingConnection();
+    }
+  }
+
+  private boolean addIdleConnection(PooledConnection conn) {
+    if (poolConcurrentCheckout) {
+      state.connectionBag.requite(conn);
+      return true;
+    }
+    state.lock.lock();
+    try {
+      if (state.idleConnections.size() >= poolMaximumIdleConnections) {
+        return false;
+      }
+      state.pendingConnectionCount--;
+      state.idleConnections.add(conn);
+      state.condition.signalAll();
+      return true;
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
+  private ScheduledExecutorService getHousekeeper() {
+    ScheduledExecutorService executor = housekeeper;
+    if (executor == null) {
+      synchronized (this) {
+        executor = housekeeper;
+        if (executor == null) {
+          ScheduledThreadPoolExecutor threadPool = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "PooledDataSource-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+          });
+          threadPool.setRemoveOnCancelPolicy(true);
+          // the thread ends once no work is left, as it does when the pool only fills but never housekeeps
+          threadPool.setKeepAliveTime(1, TimeUnit.MINUTES);
+          threadPool.allowCoreThreadTimeOut(true);
+          executor = threadPool;
+          housekeeper = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * Wraps the real connection of a pooled connection in a new pooled connection and invalidates the old one, so that
+   * the proxy handed out before can no longer be used.
+   */
+  private PooledConnection rewrap(PooledConnection conn) {
+    PooledConnection newConn = new PooledConnection(conn.getRealConnection(), this);
+    newConn.setCreatedTimestamp(conn.getCreatedTimestamp());
+    newConn.setLastUsedTimestamp(conn.getLastUsedTimestamp());
+    newConn.setLastValidatedTimestamp(conn.getLastValidatedTimestamp());
+    newConn.setExpirationTimestamp(conn.getExpirationTimestamp());
+    newConn.setStatementCache(conn.getStatementCache());
+    newConn.setConnectionState(conn.getConnectionState());
+    conn.invalidate();
+    return newConn;
+  }
+
+  /**
+   * Wraps the real connection of a claimed overdue connection for its new owner. The previous owner may still close
+   * the statements it prepared, so the old statement cache is invalidated and the new owner starts with an empty one.
+   */
+  private PooledConnection rewrapOverdue(PooledConnection conn) {
+    PreparedStatementCache statementCache = conn.getStatementCache();
+    PooledConnection newConn = rewrap(conn);
+    if (statementCache != null) {
+      statementCache.invalidate();
+      newConn.setStatementCache(new PreparedStatementCache(poolPreparedStatementCacheSize, state));
+    }
+    return newConn;
+  }
+
+  /**
+   * Rolls back the transaction of a connection and, if its state is tracked, restores the attributes that were
+   * changed since checkout.
+   */
+  private void resetConnection(PooledConnection conn) throws SQLException {
+    ConnectionState connectionState = conn.getConnectionState();
+    if (connectionState != null) {
+      connectionState.reset(conn.getRealConnection());
+    } else if (!conn.getRealConnection().getAutoCommit()) {
+      conn.getRealConnection().rollback();
+    }
+  }
+
+  /**
+   * Rolls back the transaction of a connection that is about to be closed.
+   */
+  private void rollbackConnection(PooledConnection conn) throws SQLException {
+    ConnectionState connectionState = conn.getConnectionState();
+    if (connectionState != null) {
+      connectionState.rollback(conn.getRealConnection());
+    } else if (!conn.getRealConnection().getAutoCommit()) {
+      conn.getRealConnection().rollback();
+    }
+  }
+
+  private PooledConnection openConnection() throws SQLException {
+    long t = System.currentTimeMillis();
+    PooledConnection conn = new PooledConnection(dataSource.getConnection(), this);
+    state.connectionCreationTimeHistogram.record(conn.getCreatedTimestamp() - t);
+    if (poolMaximumLifetime > 0) {
+      // up to 2.5% shorter, so that connections opened together are not all retired together
+      long variance = poolMaximumLifetime > 10000 ? ThreadLocalRandom.current().nextLong(poolMaximumLifetime / 40) : 0;
+      conn.setExpirationTimestamp(conn.getCreatedTimestamp() + poolMaximumLifetime - variance);
+    }
+    if (poolPreparedStatementCacheSize > 0) {
+      conn.setStatementCache(new PreparedStatementCache(poolPreparedStatementCacheSize, state));
+    }
+    if (poolTrackConnectionState) {
+      conn.setConnectionState(new ConnectionState());
+    }
+    return conn;
+  }
+
+  private void closeConnection(PooledConnection conn) {
+    conn.invalidate();
+    try {
+      rollbackConnection(conn);
+    } catch (Exception e) {
+      // ignore, the connection is closed anyway
+    }
+    try {
+      conn.getRealConnection().close();
+    } catch (Exception e) {
+      // ignore
+    }
+  }
+
+  private synchronized void registerMBean() {
+    if (poolMBeanName == null || registeredMBeanName != null) {
+      return;
+    }
+    try {
+      ObjectName name = new ObjectName(poolMBeanName);
+      ManagementFactory.getPlatformMBeanServer().registerMBean(new PoolStateMXBeanImpl(state), name);
+      registeredMBeanName = name;
+    } catch (JMException e) {
+      log.warn("Could not register pool MBean '" + poolMBeanName + "'. Cause: " + e);
+    }
+  }
+
+  private synchronized void unregisterMBean() {
+    if (registeredMBeanName == null) {
+      return;
+    }
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      if (server.isRegistered(registeredMBeanName)) {
+        server.unregisterMBean(registeredMBeanName);
+      }
+    } catch (JMException e) {
+      log.warn("Could not unregister pool MBean '" + registeredMBeanName + "'. Cause: " + e);
+    }
+    registeredMBeanName = null;
+  }
+
+  private void scheduleHousekeeping() {
+    if (started && housekeepingTask == null
+        && (poolMaximumLifetime > 0 || poolIdleTimeout > 0 || poolKeepaliveTime > 0 || poolLeakDetectionThreshold > 0)) {
+      synchronized (this) {
+        if (housekeepingTask == null) {
+          ScheduledExecutorService executor = getHousekeeper();
+          Runnable task = new HousekeeperTask(this, executor, PooledDataSource::housekeep);
+          housekeepingTask = executor.scheduleWithFixedDelay(task, poolHousekeepingInterval, poolHousekeepingInterval,
+              TimeUnit.MILLISECONDS);
+        }
+      }
+    }
+  }
+
+  /**
+   * Reports leaked connections, retires expired connections, closes connections that stayed idle for too long and
+   * validates the remaining idle connections, all without blocking threads that check connections out.
+   */
+  void housekeep() {
+    try {
+      detectLeaks();
+      List<PooledConnection> retired = new ArrayList<>();
+      List<PooledConnection> due = new ArrayList<>();
+      if (poolConcurrentCheckout) {
+        borrowIdleForHousekeeping(retired, due);
+      } else {
+        removeIdleForHousekeeping(retired, due);
+      }
+      for (PooledConnection conn : retired) {
+        if (log.isDebugEnabled()) {
+          log.debug("Retired idle connection " + conn.getRealHashCode() + ".");
+        }
+        discardIdleConnection(conn);
+      }
+      for (PooledConnection conn : due) {
+        if (!keepalive(conn)) {
+          state.countBadConnection();
+          discardIdleConnection(conn);
+        } else {
+          conn.setLastValidatedTimestamp(System.currentTimeMillis());
+          if (!addIdleConnection(conn)) {
+            discardIdleConnection(conn);
+          }
+        }
+      }
+      requestFill();
+    } catch (RuntimeException e) {
+      log.warn("PooledDataSource: Housekeeping failed. Cause: " + e);
+    }
+  }
+
+  private void detectLeaks() {
+    if (poolLeakDetectionThreshold <= 0) {
+      return;
+    }
+    List<PooledConnection> active;
+    if (poolConcurrentCheckout) {
+      active = state.connectionBag.activeSnapshot();
+    } else {
+      state.lock.lock();
+      try {
+        active = new ArrayList<>(state.activeConnections);
+      } finally {
+        state.lock.unlock();
+      }
+    }
+    for (PooledConnection conn : active) {
+      long checkoutTime = conn.getCheckoutTime();
+      if (checkoutTime > poolLeakDetectionThreshold) {
+        state.leakDetector.reportLeak(conn, checkoutTime);
+      }
+    }
+  }
+
+  private void removeIdleForHousekeeping(List<PooledConnection> retired, List<PooledConnection> due) {
+    state.lock.lock();
+    try {
+      int evictable = state.idleConnections.size() - getMinimumIdle();
+      for (Iterator<PooledConnection> it = state.idleConnections.iterator(); it.hasNext();) {
+        PooledConnection conn = it.next();
+        if (isRetirable(conn, evictable > 0)) {
+          evictable--;
+          retired.add(conn);
+        } else if (isKeepaliveDue(conn)) {
+          due.add(conn);
+        } else {
+          continue;
+        }
+        it.remove();
+        state.pendingConnectionCount++;
+      }
+    } finally {
+      state.lock.unlock();
+    }
+  }
+
+  private void borrowIdleForHousekeeping(List<PooledConnection> retired, List<PooledConnection> due) {
+    ConnectionBag bag = state.connectionBag;
+    int evictable = bag.getIdleCount() - getMinimumIdle();
+    for (PooledConnection conn : bag.idleSnapshot()) {
+      if (isRetirable(conn, evictable > 0)) {
+        if (bag.borrow(conn)) {
+          evictable--;
+          retired.add(conn);
+        }
+      } else if (isKeepaliveDue(conn) && bag.borrow(conn)) {
+        due.add(conn);
+      }
+    }
+  }
+
+  private boolean isRetirable(PooledConnection conn, boolean evictable) {
+    return conn.isExpired() || evictable && poolIdleTimeout > 0 && conn.getTimeElapsedSinceLastUse() > poolIdleTimeout;
+  }
+
+  private boolean isKeepaliveDue(PooledConnection conn) {
+    return poolKeepaliveTime > 0
+        && System.currentTimeMillis() - Math.max(conn.getLastUsedTimestamp(), conn.getLastValidatedTimestamp()) > poolKeepaliveTime;
+  }
+
+  private void discardIdleConnection(PooledConnection conn) {
+    conn.setState(PooledConnection.STATE_REMOVED);
+    closeConnection(conn);
+    releaseIdleConnection();
+  }
+
+  /**
+   * Validates an idle connection with the ping query if it is enabled, or with {@link Connection#isValid(int)}
+   * otherwise.
+   */
+  private boolean keepalive(PooledConnection conn) {
+    if (poolPingEnabled) {
+      return executePingQuery(conn);
+    }
+    try {
+      return conn.getRealConnection().isValid(Math.max(1, poolTimeToWait / 1000));
+    } catch (SQLException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+      }
+      return false;
+    }
+  }
+
   /**
    * Method to check to see if a connection is still usable
    *
@@ -544,37 +1424,42 @@ public class PooledDataSource implements DataSource {
       result = false;
     }
 
-    if (result && poolPingEnabled && poolPingConnectionsNotUsedFor >= 0
+    if (result && poolPingEnabled && poolKeepaliveTime <= 0 && poolPingConnectionsNotUsedFor >= 0
         && conn.getTimeElapsedSinceLastUse() > poolPingConnectionsNotUsedFor) {
+      result = executePingQuery(conn);
+    }
+    return result;
+  }
+
+  private boolean executePingQuery(PooledConnection conn) {
+    try {
+      if (log.isDebugEnabled()) {
+        log.debug("Testing connection " + conn.getRealHashCode() + " ...");
+      }
+      Connection realConn = conn.getRealConnection();
+      try (Statement statement = realConn.createStatement()) {
+        statement.executeQuery(poolPingQuery).close();
+      }
+      ConnectionState connectionState = conn.getConnectionState();
+      if (connectionState != null ? !connectionState.isAutoCommit(realConn) : !realConn.getAutoCommit()) {
+        realConn.rollback();
+      }
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
+      }
+      return true;
+    } catch (Exception e) {
+      log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
       try {
-        if (log.isDebugEnabled()) {
-          log.debug("Testing connection " + conn.getRealHashCode() + " ...");
-        }
-        Connection realConn = conn.getRealConnection();
-        try (Statement statement = realConn.createStatement()) {
-          statement.executeQuery(poolPingQuery).close();
-        }
-        if (!realConn.getAutoCommit()) {
-          realConn.rollback();
-        }
-        result = true;
-        if (log.isDebugEnabled()) {
-          log.debug("Connection " + conn.getRealHashCode() + " is GOOD!");
-        }
-      } catch (Exception e) {
-        log.warn("Execution of ping query '" + poolPingQuery + "' failed: " + e.getMessage());
-        try {
-          conn.getRealConnection().close();
-        } catch (Exception e2) {
-          // ignore
-        }
-        result = false;
-        if (log.isDebugEnabled()) {
-          log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
-        }
+        conn.getRealConnection().close();
+      } catch (Exception e2) {
+        // ignore
       }
+      if (log.isDebugEnabled()) {
+        log.debug("Connection " + conn.getRealHashCode() + " is BAD: " + e.getMessage());
+      }
+      return false;
     }
-    return result;
   }
 
   /**
@@ -594,12 +1479,6 @@ public class PooledDataSource implements DataSource {
     return conn;
   }
 
-  @Override
-  protected void finalize() throws Throwable {
-    forceCloseAll();
-    super.finalize();
-  }
-
   @Override
   public <T> T unwrap(Class<T> iface) throws SQLException {
     throw new SQLException(getClass().getName() + " is not a wrapper.");
@@ -615,4 +1494,33 @@ public class PooledDataSource implements DataSource {
     return Logger.getLogger(Logger.GLOBAL_LOGGER_NAME);
   }
 
+  /**
+   * A task of the housekeeper thread. It only holds the data source weakly, so that a data source that was not closed
+   * can still be garbage collected. The task then shuts the housekeeper down.
+   */
+  private static class HousekeeperTask implements Runnable {
+
+    private final WeakReference<PooledDataSource> dataSource;
+    private final ScheduledExecutorService housekeeper;
+    private final Consumer<PooledDataSource> work;
+
+    HousekeeperTask(PooledDataSource dataSource, ScheduledExecutorService housekeeper,
+        Consumer<PooledDataSource> work) {
+      this.dataSource = new WeakReference<>(dataSource);
+      this.housekeeper = housekeeper;
+      this.work = work;
+    }
+
+    @Override
+    public void run() {
+      PooledDataSource pooledDataSource = dataSource.get();
+      if (pooledDataSource == null) {
+        housekeeper.shutdownNow();
+      } else {
+        work.accept(pooledDataSource);
+      }
+    }
+
+  }
+
 }
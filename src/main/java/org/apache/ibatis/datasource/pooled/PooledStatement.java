@@ -0,0 +1,163 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.ibatis.datasource.pooled.PreparedStatementCache.StatementKey;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * A prepared statement handed out by a {@link PreparedStatementCache}. Closing it resets the real statement and returns
+ * it to the cache instead of closing it.
+ */
+class PooledStatement implements InvocationHandler {
+
+  private static final Class<?>[] IFACES = new Class<?>[] { PreparedStatement.class };
+
+  /**
+   * Setters of statement attributes that are restored with the matching getter value before a statement is reused.
+   */
+  private static final Map<String, String> RESTORABLE_ATTRIBUTES;
+  /**
+   * Methods that change a statement in a way that cannot be undone, so the statement is closed instead of reused.
+   */
+  private static final Set<String> NON_REUSABLE_METHODS;
+
+  static {
+    Map<String, String> restorable = new HashMap<>();
+    restorable.put("setQueryTimeout", "getQueryTimeout");
+    restorable.put("setFetchSize", "getFetchSize");
+    restorable.put("setFetchDirection", "getFetchDirection");
+    restorable.put("setMaxRows", "getMaxRows");
+    restorable.put("setMaxFieldSize", "getMaxFieldSize");
+    RESTORABLE_ATTRIBUTES = Collections.unmodifiableMap(restorable);
+    Set<String> nonReusable = new HashSet<>();
+    nonReusable.add("setLargeMaxRows");
+    nonReusable.add("setEscapeProcessing");
+    nonReusable.add("setCursorName");
+    nonReusable.add("setPoolable");
+    nonReusable.add("closeOnCompletion");
+    NON_REUSABLE_METHODS = Collections.unmodifiableSet(nonReusable);
+  }
+
+  private final PreparedStatement realStatement;
+  private final PreparedStatement proxyStatement;
+  private final StatementKey key;
+  private final PreparedStatementCache cache;
+  private final List<ResultSet> resultSets = new ArrayList<>();
+  private Map<Method, Object> originalAttributes;
+  private boolean batched;
+  private boolean reusable = true;
+  private boolean closed;
+
+  PooledStatement(PreparedStatement statement, StatementKey key, PreparedStatementCache cache) {
+    this.realStatement = statement;
+    this.key = key;
+    this.cache = cache;
+    this.proxyStatement = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), IFACES, this);
+  }
+
+  PreparedStatement getProxyStatement() {
+    return proxyStatement;
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    String methodName = method.getName();
+    try {
+      if (Object.class.equals(method.getDeclaringClass())) {
+        return method.invoke(realStatement, args);
+      }
+      if ("close".equals(methodName)) {
+        close();
+        return null;
+      } else if ("isClosed".equals(methodName)) {
+        return closed || realStatement.isClosed();
+      }
+      if (closed) {
+        throw new SQLException("Error accessing PreparedStatement. Statement is closed.");
+      }
+      if (RESTORABLE_ATTRIBUTES.containsKey(methodName)) {
+        rememberAttribute(method);
+      } else if (NON_REUSABLE_METHODS.contains(methodName)) {
+        reusable = false;
+      } else if ("addBatch".equals(methodName)) {
+        batched = true;
+      }
+      Object result = method.invoke(realStatement, args);
+      if (result instanceof ResultSet) {
+        resultSets.add((ResultSet) result);
+      }
+      return result;
+    } catch (Throwable t) {
+      throw ExceptionUtil.unwrapThrowable(t);
+    }
+  }
+
+  private void rememberAttribute(Method setter) throws Exception {
+    if (originalAttributes == null) {
+      originalAttributes = new HashMap<>();
+    }
+    if (!originalAttributes.containsKey(setter)) {
+      Method getter = PreparedStatement.class.getMethod(RESTORABLE_ATTRIBUTES.get(setter.getName()));
+      originalAttributes.put(setter, getter.invoke(realStatement));
+    }
+  }
+
+  private void close() throws SQLException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (!reusable || realStatement.isClosed()) {
+      realStatement.close();
+      return;
+    }
+    try {
+      for (ResultSet resultSet : resultSets) {
+        resultSet.close();
+      }
+      if (batched) {
+        realStatement.clearBatch();
+      }
+      realStatement.clearParameters();
+      realStatement.clearWarnings();
+      if (originalAttributes != null) {
+        for (Map.Entry<Method, Object> attribute : originalAttributes.entrySet()) {
+          attribute.getKey().invoke(realStatement, attribute.getValue());
+        }
+      }
+    } catch (Exception e) {
+      realStatement.close();
+      return;
+    }
+    cache.release(key, realStatement);
+  }
+
+}
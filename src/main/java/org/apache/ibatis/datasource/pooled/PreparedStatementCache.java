@@ -0,0 +1,178 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * A bounded LRU cache of the prepared statements of one physical connection. It outlives the {@link PooledConnection}
+ * wrappers of the connection, so a statement prepared by one session is reused by the next session that gets the same
+ * connection from the pool.
+ * <p>
+ * Only idle statements are kept in the cache. A statement is removed while it is in use and put back when it is
+ * logically closed, so like the connection itself the cache is meant to be used by one thread at a time. The only
+ * exception is an overdue connection that is claimed by another thread: the previous owner may still close its
+ * statements, so the cache is invalidated and the methods are synchronized.
+ */
+class PreparedStatementCache {
+
+  private static final Log log = LogFactory.getLog(PreparedStatementCache.class);
+
+  private final int size;
+  private final PoolState state;
+  private final Map<StatementKey, PreparedStatement> statements;
+  private boolean invalid;
+
+  PreparedStatementCache(int size, PoolState state) {
+    this.size = size;
+    this.state = state;
+    this.statements = new LinkedHashMap<>(16, 0.75f, true);
+  }
+
+  /**
+   * Returns a cached statement matching a call to one of the {@code Connection.prepareStatement} methods, or prepares
+   * a new one.
+   *
+   * @param connection
+   *          the real connection
+   * @param method
+   *          the {@code prepareStatement} method that was called
+   * @param args
+   *          the arguments of the call
+   * @return a statement that goes back to the cache when it is closed
+   * @throws Exception
+   *           if the statement could not be prepared
+   */
+  synchronized PreparedStatement prepareStatement(Connection connection, Method method, Object[] args)
+      throws Exception {
+    StatementKey key = new StatementKey(args);
+    PreparedStatement statement = statements.remove(key);
+    if (statement != null) {
+      state.statementCacheHitCount.increment();
+    } else {
+      state.statementCacheMissCount.increment();
+      statement = (PreparedStatement) method.invoke(connection, args);
+    }
+    return new PooledStatement(statement, key, this).getProxyStatement();
+  }
+
+  /**
+   * Puts a logically closed statement back into the cache, evicting the least recently used one if the cache is full.
+   * If the cache was invalidated, the statement is closed instead.
+   *
+   * @param key
+   *          the key of the statement
+   * @param statement
+   *          the real statement
+   */
+  synchronized void release(StatementKey key, PreparedStatement statement) {
+    if (invalid) {
+      close(statement);
+      return;
+    }
+    if (statements.containsKey(key)) {
+      // the same statement was prepared twice, keep only one of them
+      close(statement);
+      return;
+    }
+    statements.put(key, statement);
+    if (statements.size() > size) {
+      Iterator<PreparedStatement> eldest = statements.values().iterator();
+      PreparedStatement evicted = eldest.next();
+      eldest.remove();
+      state.statementCacheEvictionCount.increment();
+      close(evicted);
+    }
+  }
+
+  /**
+   * Gets the number of idle statements in the cache.
+   *
+   * @return the number of statements
+   */
+  synchronized int size() {
+    return statements.size();
+  }
+
+  /**
+   * Closes the idle statements and makes the cache close the statements that are still in use when they are released.
+   */
+  synchronized void invalidate() {
+    invalid = true;
+    for (PreparedStatement statement : statements.values()) {
+      close(statement);
+    }
+    statements.clear();
+  }
+
+  private void close(PreparedStatement statement) {
+    try {
+      statement.close();
+    } catch (SQLException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Error closing cached prepared statement. Cause: " + e);
+      }
+    }
+  }
+
+  /**
+   * Identifies a prepared statement by its SQL text and the result set type, concurrency, holdability and key
+   * generation options it was prepared with.
+   */
+  static final class StatementKey {
+
+    private final Object[] args;
+    private final int hashCode;
+
+    StatementKey(Object[] args) {
+      this.args = args.clone();
+      this.hashCode = Arrays.deepHashCode(this.args);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof StatementKey)) {
+        return false;
+      }
+      StatementKey other = (StatementKey) obj;
+      return hashCode == other.hashCode && Arrays.deepEquals(args, other.args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public String toString() {
+      return Arrays.deepToString(args);
+    }
+  }
+
+}
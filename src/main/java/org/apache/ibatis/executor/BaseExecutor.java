@@ -20,6 +20,7 @@ import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOL
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -60,12 +61,15 @@ public abstract class BaseExecutor implements Executor {
   protected Configuration configuration;
 
   protected int queryStack;
+  private List<CacheKey> uncachedKeys;
   private boolean closed;
+  // an update ran since the last commit or rollback, so this session may see rows that others do not see yet
+  private boolean dirty;
 
   protected BaseExecutor(Configuration configuration, Transaction transaction) {
     this.transaction = transaction;
     this.deferredLoads = new ConcurrentLinkedQueue<>();
-    this.localCache = new PerpetualCache("LocalCache");
+    this.localCache = newLocalCache(configuration);
     this.localOutputParameterCache = new PerpetualCache("LocalOutputParameterCache");
     this.closed = false;
     this.configuration = configuration;
@@ -114,7 +118,19 @@ public abstract class BaseExecutor implements Executor {
       throw new ExecutorException("Executor was closed.");
     }
     clearLocalCache();
-    return doUpdate(ms, parameter);
+    dirty = true;
+    long start = SlowQueryLog.start(configuration);
+    int rows = -1;
+    boolean completed = false;
+    try {
+      rows = doUpdate(ms, parameter);
+      completed = true;
+      return rows;
+    } finally {
+      if (start != 0) {
+        SlowQueryLog.record(ms, parameter, null, start, rows, !completed);
+      }
+    }
   }
 
   @Override
@@ -170,6 +186,9 @@ public abstract class BaseExecutor implements Executor {
       if (configuration.getLocalCacheScope() == LocalCacheScope.STATEMENT) {
         // issue #482
         clearLocalCache();
+      } else {
+        removeUncachedResults();
+        evictExcessResults();
       }
     }
     return list;
@@ -246,6 +265,7 @@ public abstract class BaseExecutor implements Executor {
     if (required) {
       transaction.commit();
     }
+    dirty = false;
   }
 
   @Override
@@ -259,6 +279,7 @@ public abstract class BaseExecutor implements Executor {
           transaction.rollback();
         }
       }
+      dirty = false;
     }
   }
 
@@ -267,6 +288,38 @@ public abstract class BaseExecutor implements Executor {
     if (!closed) {
       localCache.clear();
       localOutputParameterCache.clear();
+      uncachedKeys = null;
+    }
+  }
+
+  private static PerpetualCache newLocalCache(Configuration configuration) {
+    if (configuration == null
+        || (configuration.getLocalCacheMaxEntries() == null && configuration.getLocalCacheMaxBytes() == null)) {
+      return new PerpetualCache("LocalCache");
+    }
+    return new LocalCache("LocalCache", configuration, configuration.getLocalCacheMaxEntries(),
+        configuration.getLocalCacheMaxBytes());
+  }
+
+  /**
+   * Removes the results of statements that do not use the local cache. They are kept until now because deferred loads
+   * may have been waiting for them.
+   */
+  private void removeUncachedResults() {
+    if (uncachedKeys != null) {
+      for (CacheKey key : uncachedKeys) {
+        localCache.removeObject(key);
+        localOutputParameterCache.removeObject(key);
+      }
+      uncachedKeys = null;
+    }
+  }
+
+  private void evictExcessResults() {
+    if (localCache instanceof LocalCache) {
+      for (Object key : ((LocalCache) localCache).evictExcess()) {
+        localOutputParameterCache.removeObject(key);
+      }
     }
   }
 
@@ -322,21 +375,79 @@ public abstract class BaseExecutor implements Executor {
   }
 
   private <E> List<E> queryFromDatabase(MappedStatement ms, Object parameter, RowBounds rowBounds, ResultHandler resultHandler, CacheKey key, BoundSql boundSql) throws SQLException {
-    List<E> list;
+    List<E> list = null;
     //此时是由于缓存中没有，直接查询的数据库，现将key存至缓存中
     localCache.putObject(key, EXECUTION_PLACEHOLDER);
+    long start = SlowQueryLog.start(configuration);
+    boolean completed = false;
     try {
-      list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+      if (isSingleFlight(ms, resultHandler)) {
+        list = doSingleFlightQuery(ms, parameter, rowBounds, boundSql, key);
+      } else {
+        list = doQuery(ms, parameter, rowBounds, resultHandler, boundSql);
+      }
+      completed = true;
     } finally {
       localCache.removeObject(key);
+      if (start != 0) {
+        SlowQueryLog.record(ms, parameter, boundSql, start, completed && resultHandler == null ? list.size() : -1,
+            !completed);
+      }
     }
     localCache.putObject(key, list);
     if (ms.getStatementType() == StatementType.CALLABLE) {
       localOutputParameterCache.putObject(key, parameter);
     }
+    if (!ms.isUseLocalCache()) {
+      if (uncachedKeys == null) {
+        uncachedKeys = new ArrayList<>();
+      }
+      uncachedKeys.add(key);
+    }
+    return list;
+  }
+
+  /**
+   * Only top-level queries are shared, so the results are complete once they are returned by {@link #doQuery}. A
+   * session that has written since its last commit or rollback, including statements queued by a batch, neither
+   * shares its results nor uses the results of others.
+   */
+  private boolean isSingleFlight(MappedStatement ms, ResultHandler resultHandler) {
+    return ms.isSingleFlight() && queryStack == 1 && resultHandler == null
+        && ms.getStatementType() != StatementType.CALLABLE && !dirty;
+  }
+
+  private <E> List<E> doSingleFlightQuery(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql,
+      CacheKey key) throws SQLException {
+    SingleFlight singleFlight = configuration.getSingleFlight();
+    SingleFlight.Flight flight = singleFlight.board(key);
+    if (flight != null) {
+      List<E> results = flight.awaitResults(getSingleFlightTimeout(ms));
+      return results != null ? results : doQuery(ms, parameter, rowBounds, Executor.NO_RESULT_HANDLER, boundSql);
+    }
+    List<E> list = null;
+    try {
+      list = doQuery(ms, parameter, rowBounds, Executor.NO_RESULT_HANDLER, boundSql);
+    } finally {
+      // results that wait for deferred loads are not complete yet
+      singleFlight.land(key, deferredLoads.isEmpty() ? list : null);
+    }
     return list;
   }
 
+  /**
+   * Gets the timeout of the statement the same way as the statement handler and
+   * {@link StatementUtil#applyTransactionTimeout(Statement, Integer, Integer)} do.
+   */
+  private Integer getSingleFlightTimeout(MappedStatement ms) throws SQLException {
+    Integer timeout = ms.getTimeout() != null ? ms.getTimeout() : configuration.getDefaultStatementTimeout();
+    Integer transactionTimeout = transaction.getTimeout();
+    if (transactionTimeout != null && (timeout == null || timeout == 0 || transactionTimeout < timeout)) {
+      timeout = transactionTimeout;
+    }
+    return timeout;
+  }
+
   protected Connection getConnection(Log statementLog) throws SQLException {
     Connection connection = transaction.getConnection();
     if (statementLog.isDebugEnabled()) {
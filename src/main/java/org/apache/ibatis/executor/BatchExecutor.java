@@ -17,19 +17,30 @@ package org.apache.ibatis.executor;
 
 import java.sql.BatchUpdateException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
+import org.apache.ibatis.executor.metrics.StatementPhase;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.MetaObject;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
@@ -44,13 +55,25 @@ public class BatchExecutor extends BaseExecutor {
 
   private final List<Statement> statementList = new ArrayList<>();
   private final List<BatchResult> batchResultList = new ArrayList<>();
+  private final List<MultiRowInsert> multiRowInsertList = new ArrayList<>();
+  private final Map<MappedStatement, Map<String, Integer>> statementIndexes = new HashMap<>();
+  private final List<BatchResult> flushedBatchResults = new ArrayList<>();
   private String currentSql;
   private MappedStatement currentStatement;
+  private int currentIndex;
+  private int queuedRows;
+  private long queuedParameterBytes;
+  private BatchResultHandler batchResultHandler;
 
   public BatchExecutor(Configuration configuration, Transaction transaction) {
     super(configuration, transaction);
   }
 
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    this.batchResultHandler = batchResultHandler;
+  }
+
   @Override
   public int doUpdate(MappedStatement ms, Object parameterObject) throws SQLException {
     final Configuration configuration = ms.getConfiguration();
@@ -58,32 +81,138 @@ public class BatchExecutor extends BaseExecutor {
     final BoundSql boundSql = handler.getBoundSql();
     final String sql = boundSql.getSql();
     final Statement stmt;
-    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
-      int last = statementList.size() - 1;
-      stmt = statementList.get(last);
-      applyTransactionTimeout(stmt);
-      handler.parameterize(stmt);// fix Issues 322
-      BatchResult batchResult = batchResultList.get(last);
+    final BatchResult batchResult;
+    final MultiRowInsert multiRowInsert;
+    int index = indexOf(ms, sql);
+    if (index >= 0) {
+      stmt = statementList.get(index);
+      multiRowInsert = multiRowInsertList.get(index);
+      if (multiRowInsert == null) {
+        applyTransactionTimeout(stmt);
+        handler.parameterize(stmt);// fix Issues 322
+      }
+      batchResult = batchResultList.get(index);
       batchResult.addParameterObject(parameterObject);
     } else {
-      Connection connection = getConnection(ms.getStatementLog());
-      stmt = handler.prepare(connection, transaction.getTimeout());
-      handler.parameterize(stmt);    // fix Issues 322
-      currentSql = sql;
-      currentStatement = ms;
+      multiRowInsert = ms.isRewriteBatched() && ms.getStatementType() == StatementType.PREPARED
+          ? MultiRowInsert.parse(sql, boundSql.getParameterMappings().size()) : null;
+      if (multiRowInsert == null) {
+        Connection connection = getConnection(ms.getStatementLog());
+        stmt = handler.prepare(connection, transaction.getTimeout());
+        handler.parameterize(stmt);    // fix Issues 322
+      } else {
+        // the rows are parameterized when the multi-row statements are prepared on flush
+        stmt = null;
+      }
+      if (configuration.isBatchInterleavedStatements()) {
+        statementIndexes.computeIfAbsent(ms, k -> new HashMap<>()).put(sql, statementList.size());
+      }
+      batchResult = new BatchResult(ms, sql, parameterObject);
+      index = statementList.size();
       statementList.add(stmt);
-      batchResultList.add(new BatchResult(ms, sql, parameterObject));
+      batchResultList.add(batchResult);
+      multiRowInsertList.add(multiRowInsert);
+    }
+    currentSql = sql;
+    currentStatement = ms;
+    currentIndex = index;
+    if (multiRowInsert == null) {
+      handler.batch(stmt);
+    } else {
+      multiRowInsert.addRow(handler);
+    }
+    queuedRows++;
+    if (configuration.getBatchFlushParameterBytes() != null) {
+      queuedParameterBytes += estimateParameterBytes(boundSql, parameterObject);
+    }
+    if (isFlushThresholdReached(batchResult)) {
+      autoFlush();
     }
-    handler.batch(stmt);
     return BATCH_UPDATE_RETURN_VALUE;
   }
 
+  private boolean isFlushThresholdReached(BatchResult batchResult) {
+    Integer rowsPerStatement = configuration.getBatchFlushRowsPerStatement();
+    Integer rows = configuration.getBatchFlushRows();
+    Long parameterBytes = configuration.getBatchFlushParameterBytes();
+    return (rowsPerStatement != null && batchResult.getParameterObjects().size() >= rowsPerStatement)
+        || (rows != null && queuedRows >= rows)
+        || (parameterBytes != null && queuedParameterBytes >= parameterBytes);
+  }
+
+  /**
+   * Executes all pending batches because a flush threshold was reached. The results are passed to the batch result
+   * handler if there is one, or else kept to be returned by the next flush.
+   */
+  private void autoFlush() throws SQLException {
+    List<BatchResult> results = executeBatches(false, statementList.size());
+    if (batchResultHandler == null) {
+      flushedBatchResults.addAll(results);
+    } else {
+      for (BatchResult result : results) {
+        batchResultHandler.handleBatchResult(result);
+      }
+    }
+  }
+
+  /**
+   * Roughly estimates the memory that the driver needs to hold the parameters of one row of a batch.
+   */
+  private long estimateParameterBytes(BoundSql boundSql, Object parameterObject) {
+    long bytes = 0;
+    MetaObject metaObject = null;
+    for (ParameterMapping parameterMapping : boundSql.getParameterMappings()) {
+      if (parameterMapping.getMode() == ParameterMode.OUT) {
+        continue;
+      }
+      String propertyName = parameterMapping.getProperty();
+      Object value;
+      if (boundSql.hasAdditionalParameter(propertyName)) {
+        value = boundSql.getAdditionalParameter(propertyName);
+      } else if (parameterObject == null) {
+        value = null;
+      } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+        value = parameterObject;
+      } else {
+        if (metaObject == null) {
+          metaObject = configuration.newMetaObject(parameterObject);
+        }
+        value = metaObject.getValue(propertyName);
+      }
+      bytes += estimateBytes(value);
+    }
+    return bytes;
+  }
+
+  private static long estimateBytes(Object value) {
+    if (value instanceof CharSequence) {
+      return 16 + 2L * ((CharSequence) value).length();
+    } else if (value instanceof byte[]) {
+      return 16 + ((byte[]) value).length;
+    } else {
+      return 16;
+    }
+  }
+
+  /**
+   * Finds the open batch that a statement can be added to. Only the last batch is reused unless interleaved statements
+   * are enabled, in which case every batch that was opened since the last flush is.
+   */
+  private int indexOf(MappedStatement ms, String sql) {
+    if (sql.equals(currentSql) && ms.equals(currentStatement)) {
+      return currentIndex;
+    }
+    Map<String, Integer> indexes = statementIndexes.get(ms);
+    Integer index = indexes == null ? null : indexes.get(sql);
+    return index == null ? -1 : index;
+  }
+
   @Override
   public <E> List<E> doQuery(MappedStatement ms, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql)
       throws SQLException {
     Statement stmt = null;
     try {
-      flushStatements();
+      flushStatementsReadBy(ms, boundSql);
       Configuration configuration = ms.getConfiguration();
       StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameterObject, rowBounds, resultHandler, boundSql);
       Connection connection = getConnection(ms.getStatementLog());
@@ -97,7 +226,7 @@ public class BatchExecutor extends BaseExecutor {
 
   @Override
   protected <E> Cursor<E> doQueryCursor(MappedStatement ms, Object parameter, RowBounds rowBounds, BoundSql boundSql) throws SQLException {
-    flushStatements();
+    flushStatementsReadBy(ms, boundSql);
     Configuration configuration = ms.getConfiguration();
     StatementHandler handler = configuration.newStatementHandler(wrapper, ms, parameter, rowBounds, null, boundSql);
     Connection connection = getConnection(ms.getStatementLog());
@@ -108,32 +237,73 @@ public class BatchExecutor extends BaseExecutor {
     return cursor;
   }
 
+  /**
+   * Flushes the pending batches before a query is executed. With dependency aware flushing, batches are executed only up
+   * to the last one that writes a table the query reads, so the order of the batches is kept.
+   */
+  private void flushStatementsReadBy(MappedStatement ms, BoundSql boundSql) throws SQLException {
+    int count = configuration.isBatchDependencyAwareFlush() ? countBatchesReadBy(ms, boundSql) : statementList.size();
+    if (count == statementList.size()) {
+      flushStatements();
+    } else if (count > 0) {
+      executeBatches(false, count);
+    }
+  }
+
+  private int countBatchesReadBy(MappedStatement ms, BoundSql boundSql) {
+    Set<String> readTables = ms.getStatementType() == StatementType.CALLABLE ? null : SqlTables.readTables(boundSql.getSql());
+    if (readTables == null) {
+      return statementList.size();
+    }
+    for (int i = batchResultList.size() - 1; i >= 0; i--) {
+      Set<String> writtenTables = SqlTables.writtenTables(batchResultList.get(i).getSql());
+      if (writtenTables == null || !Collections.disjoint(writtenTables, readTables)) {
+        return i + 1;
+      }
+    }
+    return 0;
+  }
+
   @Override
   public List<BatchResult> doFlushStatements(boolean isRollback) throws SQLException {
+    List<BatchResult> results = executeBatches(isRollback, statementList.size());
+    if (isRollback || flushedBatchResults.isEmpty()) {
+      flushedBatchResults.clear();
+      return results;
+    }
+    results.addAll(0, flushedBatchResults);
+    flushedBatchResults.clear();
+    return results;
+  }
+
+  private List<BatchResult> executeBatches(boolean isRollback, int count) throws SQLException {
     try {
       List<BatchResult> results = new ArrayList<>();
       if (isRollback) {
         return Collections.emptyList();
       }
-      for (int i = 0, n = statementList.size(); i < n; i++) {
+      for (int i = 0; i < count; i++) {
         Statement stmt = statementList.get(i);
-        applyTransactionTimeout(stmt);
         BatchResult batchResult = batchResultList.get(i);
+        MultiRowInsert multiRowInsert = multiRowInsertList.get(i);
+        long batchStart = SlowQueryLog.start(configuration);
+        boolean completed = false;
         try {
-          batchResult.setUpdateCounts(stmt.executeBatch());
-          MappedStatement ms = batchResult.getMappedStatement();
-          List<Object> parameterObjects = batchResult.getParameterObjects();
-          KeyGenerator keyGenerator = ms.getKeyGenerator();
-          if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
-            Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
-            jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
-          } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
-            for (Object parameter : parameterObjects) {
-              keyGenerator.processAfter(this, ms, stmt, parameter);
+          if (multiRowInsert != null) {
+            executeMultiRowInsert(batchResult, multiRowInsert);
+          } else {
+            applyTransactionTimeout(stmt);
+            StatementMetrics metrics = StatementMetrics.of(batchResult.getMappedStatement());
+            long start = metrics == null ? 0 : System.nanoTime();
+            batchResult.setUpdateCounts(stmt.executeBatch());
+            if (metrics != null) {
+              metrics.record(StatementPhase.EXECUTE, start);
             }
+            processGeneratedKeys(batchResult.getMappedStatement(), stmt, batchResult.getParameterObjects());
+            // Close statement to close cursor #1109
+            closeStatement(stmt);
           }
-          // Close statement to close cursor #1109
-          closeStatement(stmt);
+          completed = true;
         } catch (BatchUpdateException e) {
           StringBuilder message = new StringBuilder();
           message.append(batchResult.getMappedStatement().getId())
@@ -147,17 +317,107 @@ public class BatchExecutor extends BaseExecutor {
                 .append(" prior sub executor(s) completed successfully, but will be rolled back.");
           }
           throw new BatchExecutorException(message.toString(), e, results, batchResult);
+        } finally {
+          if (batchStart != 0) {
+            SlowQueryLog.recordBatch(batchResult, batchStart, !completed);
+          }
         }
         results.add(batchResult);
       }
       return results;
     } finally {
-      for (Statement stmt : statementList) {
+      List<Statement> executedStatements = statementList.subList(0, count);
+      for (Statement stmt : executedStatements) {
+        closeStatement(stmt);
+      }
+      executedStatements.clear();
+      batchResultList.subList(0, count).clear();
+      multiRowInsertList.subList(0, count).clear();
+      if (statementList.isEmpty()) {
+        currentSql = null;
+        currentStatement = null;
+        statementIndexes.clear();
+        queuedRows = 0;
+        queuedParameterBytes = 0;
+      } else {
+        reindexBatches(count);
+      }
+    }
+  }
+
+  private void processGeneratedKeys(MappedStatement ms, Statement stmt, List<Object> parameterObjects) {
+    KeyGenerator keyGenerator = ms.getKeyGenerator();
+    if (Jdbc3KeyGenerator.class.equals(keyGenerator.getClass())) {
+      Jdbc3KeyGenerator jdbc3KeyGenerator = (Jdbc3KeyGenerator) keyGenerator;
+      jdbc3KeyGenerator.processBatch(ms, stmt, parameterObjects);
+    } else if (!NoKeyGenerator.class.equals(keyGenerator.getClass())) { //issue #141
+      for (Object parameter : parameterObjects) {
+        keyGenerator.processAfter(this, ms, stmt, parameter);
+      }
+    }
+  }
+
+  /**
+   * Executes the rows of a batch as multi-row inserts of at most the configured number of parameters each. The update
+   * count of each row is 1 if the driver reports that all rows of a statement were inserted, or else
+   * {@link Statement#SUCCESS_NO_INFO}.
+   */
+  private void executeMultiRowInsert(BatchResult batchResult, MultiRowInsert multiRowInsert) throws SQLException {
+    MappedStatement ms = batchResult.getMappedStatement();
+    List<Object> parameterObjects = batchResult.getParameterObjects();
+    List<StatementHandler> rows = multiRowInsert.getRows();
+    int rowsPerStatement = multiRowInsert.getRowsPerStatement(configuration.getBatchRewriteMaxParameters());
+    int[] updateCounts = new int[rows.size()];
+    Connection connection = getConnection(ms.getStatementLog());
+    for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+      int to = Math.min(from + rowsPerStatement, rows.size());
+      BoundSql boundSql = new BoundSql(configuration, multiRowInsert.getSql(to - from), Collections.emptyList(), null);
+      StatementHandler handler = configuration.newStatementHandler(this, ms, parameterObjects.get(from), RowBounds.DEFAULT, null, boundSql);
+      Statement stmt = null;
+      try {
+        stmt = handler.prepare(connection, transaction.getTimeout());
+        PreparedStatement ps = (PreparedStatement) stmt;
+        for (int i = from; i < to; i++) {
+          rows.get(i).parameterize(multiRowInsert.rowStatement(ps, i - from));
+        }
+        StatementMetrics metrics = StatementMetrics.of(ms);
+        long start = metrics == null ? 0 : System.nanoTime();
+        int updateCount = ps.executeUpdate();
+        if (metrics != null) {
+          metrics.record(StatementPhase.EXECUTE, start);
+        }
+        Arrays.fill(updateCounts, from, to, updateCount == to - from ? 1 : Statement.SUCCESS_NO_INFO);
+        processGeneratedKeys(ms, stmt, parameterObjects.subList(from, to));
+      } catch (SQLException e) {
+        Arrays.fill(updateCounts, from, updateCounts.length, Statement.EXECUTE_FAILED);
+        throw new BatchUpdateException(e.getMessage(), e.getSQLState(), e.getErrorCode(), updateCounts, e);
+      } finally {
         closeStatement(stmt);
       }
+    }
+    batchResult.setUpdateCounts(updateCounts);
+  }
+
+  /**
+   * Updates the bookkeeping of the batches that are still pending after the first ones were executed.
+   */
+  private void reindexBatches(int executedCount) {
+    statementIndexes.clear();
+    int remainingRows = 0;
+    for (int i = 0; i < batchResultList.size(); i++) {
+      BatchResult batchResult = batchResultList.get(i);
+      if (configuration.isBatchInterleavedStatements()) {
+        statementIndexes.computeIfAbsent(batchResult.getMappedStatement(), k -> new HashMap<>()).put(batchResult.getSql(), i);
+      }
+      remainingRows += batchResult.getParameterObjects().size();
+    }
+    // the parameter size is only known in total, so assume it is spread evenly across the rows
+    queuedParameterBytes = queuedRows == 0 ? 0 : queuedParameterBytes * remainingRows / queuedRows;
+    queuedRows = remainingRows;
+    currentIndex -= executedCount;
+    if (currentIndex < 0) {
       currentSql = null;
-      statementList.clear();
-      batchResultList.clear();
+      currentStatement = null;
     }
   }
 
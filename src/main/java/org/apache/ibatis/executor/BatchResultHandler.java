@@ -0,0 +1,30 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+/**
+ * Receives the results of the batches that a {@link BatchExecutor} executed on its own because a flush threshold was
+ * reached. Results passed to a handler are not kept by the executor, so they are not returned by the next flush.
+ *
+ * @since 3.5.8
+ * @see org.apache.ibatis.session.SqlSessionFactory#openSession(BatchResultHandler)
+ */
+@FunctionalInterface
+public interface BatchResultHandler {
+
+  void handleBatchResult(BatchResult batchResult);
+
+}
@@ -174,6 +174,11 @@ public class CachingExecutor implements Executor {
     }
   }
 
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    delegate.setBatchResultHandler(batchResultHandler);
+  }
+
   @Override
   public void setExecutorWrapper(Executor executor) {
     throw new UnsupportedOperationException("This method should not be called");
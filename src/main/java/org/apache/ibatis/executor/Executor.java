@@ -64,4 +64,16 @@ public interface Executor {
 
   void setExecutorWrapper(Executor executor);
 
+  /**
+   * Sets the handler that receives the results of batches flushed because a flush threshold was reached. Executors
+   * that do not batch statements ignore it.
+   *
+   * @param batchResultHandler
+   *          the batch result handler, or {@code null} to keep these results for the next flush
+   * @since 3.5.8
+   */
+  default void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    // NOP
+  }
+
 }
@@ -0,0 +1,202 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOLDER;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.apache.ibatis.executor.loader.WriteReplaceInterface;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+
+/**
+ * A local cache that evicts the least recently used results when it holds more than a number of results or more than
+ * an estimated number of bytes. Results are only evicted by {@link #evictExcess()}, which the executor calls once no
+ * query is running, so results that deferred loads are waiting for are never lost.
+ */
+class LocalCache extends PerpetualCache {
+
+  /**
+   * The number of rows of a result whose size is estimated. The size of the other rows is assumed to be the average.
+   */
+  private static final int SAMPLED_ROWS = 8;
+
+  private final Configuration configuration;
+  private final Integer maxEntries;
+  private final Long maxBytes;
+  private final Map<Object, Object> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private final Map<Object, Long> sizes = new HashMap<>();
+  private long estimatedBytes;
+
+  LocalCache(String id, Configuration configuration, Integer maxEntries, Long maxBytes) {
+    super(id);
+    this.configuration = configuration;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+  }
+
+  @Override
+  public int getSize() {
+    return cache.size();
+  }
+
+  @Override
+  public void putObject(Object key, Object value) {
+    cache.put(key, value);
+    if (maxBytes != null) {
+      long size = value == EXECUTION_PLACEHOLDER ? 0 : estimateBytes(value);
+      Long previous = sizes.put(key, size);
+      estimatedBytes += size - (previous == null ? 0 : previous);
+    }
+  }
+
+  @Override
+  public Object getObject(Object key) {
+    return cache.get(key);
+  }
+
+  @Override
+  public Object removeObject(Object key) {
+    Long size = sizes.remove(key);
+    if (size != null) {
+      estimatedBytes -= size;
+    }
+    return cache.remove(key);
+  }
+
+  @Override
+  public void clear() {
+    cache.clear();
+    sizes.clear();
+    estimatedBytes = 0;
+  }
+
+  long getEstimatedBytes() {
+    return estimatedBytes;
+  }
+
+  /**
+   * Evicts the least recently used results until the cache is within its bounds again.
+   *
+   * @return the keys of the evicted results
+   */
+  List<Object> evictExcess() {
+    if (!isExceeded()) {
+      return Collections.emptyList();
+    }
+    List<Object> evicted = new ArrayList<>();
+    Iterator<Map.Entry<Object, Object>> iterator = cache.entrySet().iterator();
+    while (iterator.hasNext() && isExceeded()) {
+      Map.Entry<Object, Object> entry = iterator.next();
+      if (entry.getValue() == EXECUTION_PLACEHOLDER) {
+        continue;
+      }
+      Long size = sizes.remove(entry.getKey());
+      if (size != null) {
+        estimatedBytes -= size;
+      }
+      evicted.add(entry.getKey());
+      iterator.remove();
+    }
+    return evicted;
+  }
+
+  private boolean isExceeded() {
+    return (maxEntries != null && cache.size() > maxEntries) || (maxBytes != null && estimatedBytes > maxBytes);
+  }
+
+  /**
+   * Roughly estimates the memory held by a result, from the size of a few of its rows. Only the simple properties of
+   * a row are read, so no lazy load is triggered.
+   */
+  private long estimateBytes(Object value) {
+    if (!(value instanceof List)) {
+      return estimateRowBytes(value);
+    }
+    List<?> rows = (List<?>) value;
+    int sampled = Math.min(rows.size(), SAMPLED_ROWS);
+    long sampledBytes = 0;
+    for (int i = 0; i < sampled; i++) {
+      sampledBytes += estimateRowBytes(rows.get(i));
+    }
+    long bytes = 16 + 8L * rows.size();
+    return sampled == 0 ? bytes : bytes + sampledBytes / sampled * rows.size();
+  }
+
+  private long estimateRowBytes(Object row) {
+    if (row == null || configuration.getTypeHandlerRegistry().hasTypeHandler(row.getClass())) {
+      return estimateValueBytes(row);
+    } else if (row instanceof Map) {
+      long bytes = 48;
+      for (Object value : ((Map<?, ?>) row).values()) {
+        bytes += 32 + estimateValueBytes(value);
+      }
+      return bytes;
+    } else if (row instanceof Collection) {
+      long bytes = 16;
+      for (Object value : (Collection<?>) row) {
+        bytes += 8 + estimateValueBytes(value);
+      }
+      return bytes;
+    }
+    MetaObject metaObject = configuration.newMetaObject(row);
+    TypeHandlerRegistry typeHandlerRegistry = configuration.getTypeHandlerRegistry();
+    // reading the properties of a lazy loading proxy would load them
+    boolean proxy = row instanceof WriteReplaceInterface;
+    long bytes = 16;
+    for (String name : metaObject.getSetterNames()) {
+      // only properties a column could have been mapped to are read, so associations and computed values are not
+      if (!metaObject.hasGetter(name) || !typeHandlerRegistry.hasTypeHandler(metaObject.getSetterType(name))) {
+        bytes += 8;
+      } else if (proxy) {
+        bytes += 16;
+      } else {
+        bytes += estimatePropertyBytes(metaObject, name);
+      }
+    }
+    return bytes;
+  }
+
+  private static long estimatePropertyBytes(MetaObject metaObject, String name) {
+    try {
+      return estimateValueBytes(metaObject.getValue(name));
+    } catch (RuntimeException e) {
+      // the estimate must not fail the query
+      return 16;
+    }
+  }
+
+  private static long estimateValueBytes(Object value) {
+    if (value instanceof CharSequence) {
+      return 16 + 2L * ((CharSequence) value).length();
+    } else if (value instanceof byte[]) {
+      return 16 + ((byte[]) value).length;
+    } else {
+      return 16;
+    }
+  }
+
+}
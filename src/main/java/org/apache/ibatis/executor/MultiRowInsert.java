@@ -0,0 +1,179 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.reflection.ExceptionUtil;
+
+/**
+ * The pending rows of an {@code INSERT ... VALUES (...)} statement that the {@link BatchExecutor} executes as
+ * multi-row inserts instead of a JDBC batch.
+ */
+class MultiRowInsert {
+
+  private final String prefix;
+  private final String row;
+  private final int parameterCount;
+  private final List<StatementHandler> rows = new ArrayList<>();
+
+  private MultiRowInsert(String prefix, String row, int parameterCount) {
+    this.prefix = prefix;
+    this.row = row;
+    this.parameterCount = parameterCount;
+  }
+
+  /**
+   * Splits an insert statement into the part before its values and the values of one row.
+   *
+   * @param sql
+   *          the sql
+   * @param parameterCount
+   *          the number of parameters of the statement
+   * @return the multi-row insert, or null if the statement is not a single row {@code INSERT ... VALUES (...)}
+   */
+  static MultiRowInsert parse(String sql, int parameterCount) {
+    String trimmed = sql.trim();
+    if (trimmed.endsWith(";")) {
+      trimmed = trimmed.substring(0, trimmed.length() - 1).trim();
+    }
+    if (!trimmed.regionMatches(true, 0, "insert", 0, 6)) {
+      return null;
+    }
+    int depth = 0;
+    int placeholders = 0;
+    int valuesEnd = -1;
+    int i = 0;
+    while (i < trimmed.length()) {
+      char c = trimmed.charAt(i);
+      if (c == '\'' || c == '"' || c == '`') {
+        int end = trimmed.indexOf(c, i + 1);
+        if (end < 0) {
+          return null;
+        }
+        i = end + 1;
+        continue;
+      }
+      if (c == '(') {
+        depth++;
+      } else if (c == ')') {
+        depth--;
+      } else if (c == '?') {
+        placeholders++;
+      } else if (depth == 0 && valuesEnd < 0 && isKeyword(trimmed, i, "values")) {
+        if (placeholders > 0) {
+          return null;
+        }
+        valuesEnd = i + 6;
+        i = valuesEnd;
+        continue;
+      }
+      i++;
+      if (valuesEnd >= 0 && depth == 0 && c == ')') {
+        // the first row of values must be the end of the statement
+        if (i != trimmed.length() || placeholders != parameterCount) {
+          return null;
+        }
+        String values = trimmed.substring(valuesEnd).trim();
+        return new MultiRowInsert(trimmed.substring(0, valuesEnd) + " ", values, parameterCount);
+      }
+    }
+    return null;
+  }
+
+  private static boolean isKeyword(String sql, int index, String keyword) {
+    int end = index + keyword.length();
+    return sql.regionMatches(true, index, keyword, 0, keyword.length())
+        && (index == 0 || !Character.isJavaIdentifierPart(sql.charAt(index - 1)))
+        && (end == sql.length() || !Character.isJavaIdentifierPart(sql.charAt(end)));
+  }
+
+  void addRow(StatementHandler handler) {
+    rows.add(handler);
+  }
+
+  List<StatementHandler> getRows() {
+    return rows;
+  }
+
+  int getParameterCount() {
+    return parameterCount;
+  }
+
+  /**
+   * Gets how many rows fit into one statement.
+   *
+   * @param maxParameters
+   *          the maximum number of parameters of a statement
+   * @return the number of rows
+   */
+  int getRowsPerStatement(int maxParameters) {
+    return parameterCount == 0 ? maxParameters : Math.max(1, maxParameters / parameterCount);
+  }
+
+  /**
+   * Gets the statement that inserts a number of rows.
+   *
+   * @param rowCount
+   *          the number of rows
+   * @return the sql
+   */
+  String getSql(int rowCount) {
+    StringBuilder sql = new StringBuilder(prefix.length() + rowCount * (row.length() + 2));
+    sql.append(prefix).append(row);
+    for (int i = 1; i < rowCount; i++) {
+      sql.append(", ").append(row);
+    }
+    return sql.toString();
+  }
+
+  /**
+   * Gets a view of a statement that sets the parameters of a single row, so the statement handler of the row can set
+   * them as usual.
+   *
+   * @param statement
+   *          the multi-row statement
+   * @param rowIndex
+   *          the index of the row within the statement
+   * @return the statement of the row
+   */
+  PreparedStatement rowStatement(PreparedStatement statement, int rowIndex) {
+    int offset = rowIndex * parameterCount;
+    InvocationHandler handler = (proxy, method, args) -> invokeShifted(statement, offset, method, args);
+    return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+        new Class<?>[] { PreparedStatement.class }, handler);
+  }
+
+  private static Object invokeShifted(PreparedStatement statement, int offset, Method method, Object[] args)
+      throws Throwable {
+    Class<?>[] parameterTypes = method.getParameterTypes();
+    if (method.getName().startsWith("set") && parameterTypes.length >= 2 && parameterTypes[0] == int.class) {
+      args[0] = (Integer) args[0] + offset;
+    }
+    try {
+      return method.invoke(statement, args);
+    } catch (Throwable t) {
+      throw ExceptionUtil.unwrapThrowable(t);
+    }
+  }
+
+}
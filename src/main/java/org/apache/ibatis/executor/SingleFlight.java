@@ -0,0 +1,153 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.cache.decorators.SerializedCache;
+import org.apache.ibatis.io.SerialFilterChecker;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+
+/**
+ * Lets concurrent executions of the same select statement with the same parameters share one database query. The
+ * first session that runs a query leads it, the sessions that run the identical query while it is running wait for it
+ * and receive a serialized copy of its results.
+ * <p>
+ * When the leading query fails or its results cannot be copied, the waiting sessions run the query themselves. The
+ * waiting sessions wait no longer than the timeout of the statement.
+ *
+ * @since 3.5.8
+ * @see org.apache.ibatis.mapping.MappedStatement#isSingleFlight()
+ */
+public class SingleFlight {
+
+  private static final Log log = LogFactory.getLog(SingleFlight.class);
+
+  private final ConcurrentMap<CacheKey, Flight> flights = new ConcurrentHashMap<>();
+
+  /**
+   * Boards the query with a key. When no identical query is running, the caller leads a new one and must call
+   * {@link #land(CacheKey, List)} once it has finished.
+   *
+   * @param key
+   *          the cache key of the query
+   * @return the running query to wait for, or {@code null} if the caller leads the query
+   */
+  Flight board(CacheKey key) {
+    Flight led = new Flight();
+    Flight flight = flights.compute(key, (k, running) -> {
+      if (running == null) {
+        return led;
+      }
+      running.passengers++;
+      return running;
+    });
+    return flight == led ? null : flight;
+  }
+
+  /**
+   * Finishes the query the caller leads, and hands a copy of its results to the sessions waiting for it.
+   *
+   * @param key
+   *          the cache key of the query
+   * @param results
+   *          the results, or {@code null} if the query failed or the results must not be shared
+   */
+  void land(CacheKey key, List<?> results) {
+    // no passenger can board once the flight is removed
+    Flight flight = flights.remove(key);
+    if (flight.passengers == 0) {
+      flight.results.complete(null);
+    } else {
+      flight.results.complete(results == null ? null : serialize(results));
+    }
+  }
+
+  private static byte[] serialize(List<?> results) {
+    try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(bos)) {
+      oos.writeObject(new ArrayList<>(results));
+      oos.flush();
+      return bos.toByteArray();
+    } catch (IOException e) {
+      if (log.isDebugEnabled()) {
+        log.debug("Results of a single flight query cannot be shared, waiting sessions run the query themselves. Cause: "
+            + e);
+      }
+      return null;
+    }
+  }
+
+  static final class Flight {
+
+    private final CompletableFuture<byte[]> results = new CompletableFuture<>();
+    // guarded by the map entry of the flight
+    private int passengers;
+
+    /**
+     * Waits for the query to finish.
+     *
+     * @param timeout
+     *          the number of seconds to wait, {@code null} or {@code 0} to wait until the query finishes
+     * @return a copy of the results, or {@code null} if they cannot be shared
+     * @throws SQLException
+     *           if the query did not finish in time or the thread was interrupted
+     */
+    @SuppressWarnings("unchecked")
+    <E> List<E> awaitResults(Integer timeout) throws SQLException {
+      byte[] value;
+      try {
+        value = timeout == null || timeout == 0 ? results.get() : results.get(timeout, TimeUnit.SECONDS);
+      } catch (TimeoutException e) {
+        throw new SQLTimeoutException("Timed out after " + timeout + " seconds waiting for a single flight query.");
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted while waiting for a single flight query.", e);
+      } catch (ExecutionException e) {
+        // never completed exceptionally
+        return null;
+      }
+      if (value == null) {
+        return null;
+      }
+      SerialFilterChecker.check();
+      try (ByteArrayInputStream bis = new ByteArrayInputStream(value);
+          ObjectInputStream ois = new SerializedCache.CustomObjectInputStream(bis)) {
+        return (List<E>) ois.readObject();
+      } catch (IOException | ClassNotFoundException e) {
+        throw new ExecutorException("Error copying the results of a single flight query.  Cause: " + e, e);
+      }
+    }
+
+  }
+
+}
@@ -0,0 +1,197 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.ibatis.builder.SqlSourceBuilder;
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.session.Configuration;
+
+/**
+ * Logs the statement executions that take longer than the slow query threshold, with their SQL and bound parameters.
+ * Unlike the JDBC loggers, which log every statement at debug level, nothing is built for executions below the
+ * threshold.
+ *
+ * @see Configuration#setSlowQueryThreshold(Integer)
+ */
+final class SlowQueryLog {
+
+  private static final Log log = LogFactory.getLog(SlowQueryLog.class);
+
+  static final String REDACTED = "***";
+
+  private SlowQueryLog() {
+    // Prevent Instantiation of Static Class
+  }
+
+  /**
+   * Gets the time at which an execution starts, when slow queries are logged.
+   *
+   * @return the {@link System#nanoTime()}, or 0 if slow queries are not logged
+   */
+  static long start(Configuration configuration) {
+    return configuration.getSlowQueryThreshold() == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Logs an execution if it took longer than the threshold and is sampled.
+   *
+   * @param parameter
+   *          the parameter object, to build the SQL from if it is not given
+   * @param boundSql
+   *          the SQL, or {@code null} to build it only when the execution is logged
+   * @param start
+   *          the time returned by {@link #start(Configuration)}
+   * @param rows
+   *          the number of rows returned or updated, or -1 if unknown
+   * @param failed
+   *          whether the execution failed or timed out
+   */
+  static void record(MappedStatement ms, Object parameter, BoundSql boundSql, long start, long rows,
+      boolean failed) {
+    long elapsed = slowElapsedTime(ms.getConfiguration(), start);
+    if (elapsed < 0) {
+      return;
+    }
+    try {
+      log.warn(describe(ms, boundSql != null ? boundSql : ms.getBoundSql(parameter), elapsed, rows, failed));
+    } catch (RuntimeException e) {
+      // the outcome of the execution must not be replaced by an error building the message
+      if (log.isDebugEnabled()) {
+        log.debug("Could not describe slow statement " + ms.getId() + ". Cause: " + e);
+      }
+    }
+  }
+
+  /**
+   * Logs the execution of a JDBC batch if it took longer than the threshold and is sampled.
+   *
+   * @param batchResult
+   *          the batch that was executed
+   * @param start
+   *          the time returned by {@link #start(Configuration)}
+   * @param failed
+   *          whether the execution failed
+   */
+  static void recordBatch(BatchResult batchResult, long start, boolean failed) {
+    MappedStatement ms = batchResult.getMappedStatement();
+    long elapsed = slowElapsedTime(ms.getConfiguration(), start);
+    if (elapsed >= 0) {
+      log.warn(describeBatch(ms, batchResult.getSql(), elapsed, batchResult.getParameterObjects().size(), failed));
+    }
+  }
+
+  /**
+   * Gets the time an execution took if it is logged, or -1.
+   */
+  private static long slowElapsedTime(Configuration configuration, long start) {
+    if (start == 0 || configuration.getSlowQueryThreshold() == null) {
+      return -1;
+    }
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    if (elapsed >= configuration.getSlowQueryThreshold() && isSampled(configuration.getSlowQuerySampleRate())) {
+      return elapsed;
+    }
+    return -1;
+  }
+
+  private static boolean isSampled(double sampleRate) {
+    return sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate;
+  }
+
+  static String describe(MappedStatement ms, BoundSql boundSql, long elapsed, long rows, boolean failed) {
+    StringBuilder message = new StringBuilder("Slow statement ").append(ms.getId())
+        .append(failed ? " failed after " : " took ").append(elapsed).append(" ms");
+    if (rows >= 0) {
+      message.append(", ").append(rows).append(" rows");
+    }
+    message.append("\n  SQL: ").append(SqlSourceBuilder.removeExtraWhitespaces(boundSql.getSql()));
+    message.append("\n  Parameters: ").append(describeParameters(ms.getConfiguration(), boundSql));
+    return message.toString();
+  }
+
+  static String describeBatch(MappedStatement ms, String sql, long elapsed, long rows, boolean failed) {
+    // the parameters of every row would make the message too long
+    return "Slow batch of statement " + ms.getId() + (failed ? " failed after " : " took ") + elapsed + " ms, " + rows
+        + " rows\n  SQL: " + SqlSourceBuilder.removeExtraWhitespaces(sql);
+  }
+
+  private static String describeParameters(Configuration configuration, BoundSql boundSql) {
+    Object parameterObject = boundSql.getParameterObject();
+    Set<String> redactedParameters = configuration.getSlowQueryRedactedParameters();
+    List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
+    StringBuilder parameters = new StringBuilder();
+    MetaObject metaObject = null;
+    // mimic DefaultParameterHandler logic
+    for (ParameterMapping parameterMapping : parameterMappings) {
+      if (parameterMapping.getMode() == ParameterMode.OUT) {
+        continue;
+      }
+      String propertyName = parameterMapping.getProperty();
+      if (parameters.length() > 0) {
+        parameters.append(", ");
+      }
+      if (isRedacted(redactedParameters, propertyName)) {
+        parameters.append(REDACTED);
+        continue;
+      }
+      Object value;
+      if (boundSql.hasAdditionalParameter(propertyName)) {
+        value = boundSql.getAdditionalParameter(propertyName);
+      } else if (parameterObject == null) {
+        value = null;
+      } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+        value = parameterObject;
+      } else {
+        if (metaObject == null) {
+          metaObject = configuration.newMetaObject(parameterObject);
+        }
+        value = metaObject.getValue(propertyName);
+      }
+      if (value == null) {
+        parameters.append("null");
+      } else {
+        parameters.append(value).append('(').append(value.getClass().getSimpleName()).append(')');
+      }
+    }
+    return parameters.toString();
+  }
+
+  private static boolean isRedacted(Set<String> redactedParameters, String propertyName) {
+    if (redactedParameters == null || redactedParameters.isEmpty()) {
+      return false;
+    }
+    String name = propertyName.substring(propertyName.lastIndexOf('.') + 1).toLowerCase(Locale.ENGLISH);
+    for (String redacted : redactedParameters) {
+      if (redacted.trim().toLowerCase(Locale.ENGLISH).equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,195 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Finds the tables that a SQL statement reads or writes. This is a best effort scan of the statement text, not a SQL
+ * parser: whenever the tables cannot be told for sure, {@code null} is returned and the caller has to assume that the
+ * statement depends on every table. Table names are returned in lower case and without their schema.
+ */
+class SqlTables {
+
+  private static final Set<String> CLAUSE_KEYWORDS = new HashSet<>(Arrays.asList("where", "join", "inner", "left",
+      "right", "full", "outer", "cross", "natural", "on", "using", "group", "order", "having", "union", "intersect",
+      "except", "minus", "limit", "offset", "fetch", "for", "window", "connect", "start", "lateral", "pivot", "unpivot",
+      "straight_join", "with", "select", "from"));
+  private static final Set<String> UPDATE_MODIFIERS = new HashSet<>(Arrays.asList("only", "low_priority", "ignore"));
+
+  private SqlTables() {
+    // Prevent Instantiation
+  }
+
+  /**
+   * Gets the table that an insert, update, delete, merge or truncate statement writes.
+   *
+   * @param sql
+   *          the sql
+   * @return the tables, or null if they are not known
+   */
+  static Set<String> writtenTables(String sql) {
+    List<String> tokens = tokenize(sql);
+    if (tokens.isEmpty()) {
+      return null;
+    }
+    int i;
+    switch (tokens.get(0)) {
+      case "insert":
+      case "replace":
+      case "merge":
+        i = tokens.indexOf("into");
+        i = i < 0 ? -1 : i + 1;
+        break;
+      case "update":
+        i = 1;
+        while (i < tokens.size() && UPDATE_MODIFIERS.contains(tokens.get(i))) {
+          i++;
+        }
+        break;
+      case "delete":
+        i = tokens.size() > 1 && "from".equals(tokens.get(1)) ? 2 : -1;
+        break;
+      case "truncate":
+        i = tokens.size() > 1 && "table".equals(tokens.get(1)) ? 2 : 1;
+        break;
+      default:
+        return null;
+    }
+    if (i < 0 || i >= tokens.size() || !isIdentifier(tokens.get(i))) {
+      return null;
+    }
+    return Collections.singleton(tableName(tokens.get(i)));
+  }
+
+  /**
+   * Gets the tables that a select statement reads.
+   *
+   * @param sql
+   *          the sql
+   * @return the tables, or null if they are not known
+   */
+  static Set<String> readTables(String sql) {
+    List<String> tokens = tokenize(sql);
+    int first = 0;
+    while (first < tokens.size() && "(".equals(tokens.get(first))) {
+      first++;
+    }
+    if (first == tokens.size() || !("select".equals(tokens.get(first)) || "with".equals(tokens.get(first)))) {
+      return null;
+    }
+    Set<String> tables = new HashSet<>();
+    for (int i = first; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if (!"from".equals(token) && !"join".equals(token) && !"straight_join".equals(token)) {
+        continue;
+      }
+      int j = i + 1;
+      while (j < tokens.size() && isTable(tokens.get(j))) {
+        tables.add(tableName(tokens.get(j++)));
+        // skip the alias, then continue with the next table of a comma separated list
+        if (j < tokens.size() && "as".equals(tokens.get(j))) {
+          j++;
+        }
+        if (j < tokens.size() && isTable(tokens.get(j))) {
+          j++;
+        }
+        if (j + 1 < tokens.size() && ",".equals(tokens.get(j))) {
+          j++;
+        } else {
+          break;
+        }
+      }
+    }
+    return tables;
+  }
+
+  private static boolean isTable(String token) {
+    return isIdentifier(token) && !CLAUSE_KEYWORDS.contains(token);
+  }
+
+  private static boolean isIdentifier(String token) {
+    char c = token.charAt(0);
+    return Character.isLetter(c) || c == '_' || c == '"';
+  }
+
+  private static String tableName(String identifier) {
+    String name = identifier.substring(identifier.lastIndexOf('.') + 1);
+    return name.replace("\"", "");
+  }
+
+  /**
+   * Splits a statement into lower case identifiers and single character symbols. Literals and comments are skipped,
+   * quoted identifiers keep a leading quote so they are never mistaken for keywords.
+   */
+  private static List<String> tokenize(String sql) {
+    List<String> tokens = new ArrayList<>();
+    int length = sql.length();
+    int i = 0;
+    while (i < length) {
+      char c = sql.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+        int end = sql.indexOf('\n', i);
+        i = end < 0 ? length : end + 1;
+      } else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+        int end = sql.indexOf("*/", i + 2);
+        i = end < 0 ? length : end + 2;
+      } else if (c == '\'') {
+        i = skipQuoted(sql, i, '\'');
+      } else if (isIdentifierPart(c) || isIdentifierQuote(c)) {
+        StringBuilder identifier = new StringBuilder();
+        while (i < length && (isIdentifierPart(sql.charAt(i)) || isIdentifierQuote(sql.charAt(i)))) {
+          char ch = sql.charAt(i);
+          if (isIdentifierQuote(ch)) {
+            int end = skipQuoted(sql, i, ch == '[' ? ']' : ch);
+            identifier.append('"').append(sql, i + 1, Math.max(i + 1, end - 1)).append('"');
+            i = end;
+          } else {
+            identifier.append(ch);
+            i++;
+          }
+        }
+        tokens.add(identifier.toString().toLowerCase(Locale.ENGLISH));
+      } else {
+        tokens.add(String.valueOf(c));
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  private static int skipQuoted(String sql, int start, char quote) {
+    int end = sql.indexOf(quote, start + 1);
+    return end < 0 ? sql.length() : end + 1;
+  }
+
+  private static boolean isIdentifierPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '#' || c == '.';
+  }
+
+  private static boolean isIdentifierQuote(char c) {
+    return c == '"' || c == '`' || c == '[';
+  }
+
+}
@@ -0,0 +1,245 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlSource;
+import org.apache.ibatis.mapping.StatementType;
+import org.apache.ibatis.reflection.MetaClass;
+import org.apache.ibatis.scripting.defaults.RawSqlSource;
+import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * A nested select that loads the values of many parents in one query. The single {@code column = ?} condition of the
+ * nested select is rewritten into {@code column IN (?, ?, ...)}, and the rows are assigned to the parents by the
+ * property that the column is mapped to. Only plain statements whose WHERE clause is the key condition, optionally
+ * combined with other conditions by AND, are batched; statements that limit, group, aggregate or combine rows are
+ * executed once per key.
+ *
+ * @since 3.5.8
+ */
+public class NestedQueryBatch {
+
+  private static final Pattern KEY_CONDITION = Pattern.compile("([\\w$.\"`\\[\\]]+)\\s*=\\s*\\?");
+  private static final Pattern TOKEN = Pattern.compile("'(?:[^']|'')*'|\"[^\"]*\"|`[^`]*`|\\[[^\\]]*\\]|\\w+|\\S");
+  private static final Set<String> UNSUPPORTED_KEYWORDS = new HashSet<>(Arrays.asList("SELECT", "DISTINCT", "TOP",
+      "LIMIT", "OFFSET", "FETCH", "ROWNUM", "OR", "NOT", "GROUP", "HAVING", "UNION", "INTERSECT", "EXCEPT", "MINUS",
+      "CONNECT", "START", "QUALIFY", "WINDOW", "FOR", "(", ";"));
+  private static final String KEY_PARAMETER_PREFIX = "__batchKey";
+
+  private final Configuration configuration;
+  private final MappedStatement nestedQuery;
+  private final String sqlBeforeKey;
+  private final String sqlAfterKey;
+  private final ParameterMapping keyMapping;
+  private final String keyProperty;
+
+  private NestedQueryBatch(MappedStatement nestedQuery, String sqlBeforeKey, String sqlAfterKey,
+      ParameterMapping keyMapping, String keyProperty) {
+    this.configuration = nestedQuery.getConfiguration();
+    this.nestedQuery = nestedQuery;
+    this.sqlBeforeKey = sqlBeforeKey;
+    this.sqlAfterKey = sqlAfterKey;
+    this.keyMapping = keyMapping;
+    this.keyProperty = keyProperty;
+  }
+
+  /**
+   * Creates a batch for a nested select, if its statement can be rewritten.
+   *
+   * @param nestedQuery
+   *          the nested select
+   * @param boundSql
+   *          the SQL of the nested select for one of the keys
+   * @return the batch, or {@code null} if the nested select has to be executed once per key
+   */
+  public static NestedQueryBatch of(MappedStatement nestedQuery, BoundSql boundSql) {
+    SqlSource sqlSource = nestedQuery.getSqlSource();
+    if (!(sqlSource instanceof RawSqlSource || sqlSource instanceof StaticSqlSource)
+        || nestedQuery.getStatementType() != StatementType.PREPARED || nestedQuery.getResultSets() != null
+        || nestedQuery.getResultMaps().size() != 1 || boundSql.getParameterMappings().size() != 1
+        || boundSql.getParameterMappings().get(0).getMode() != ParameterMode.IN) {
+      return null;
+    }
+    String sql = boundSql.getSql();
+    Matcher matcher = KEY_CONDITION.matcher(sql);
+    if (sql.indexOf('?') != sql.lastIndexOf('?') || !matcher.find() || !isPlainKeyQuery(sql, matcher.start())) {
+      return null;
+    }
+    String column = matcher.group(1);
+    String keyProperty = findKeyProperty(nestedQuery.getConfiguration(), nestedQuery.getResultMaps().get(0),
+        unquote(column));
+    if (keyProperty == null) {
+      return null;
+    }
+    return new NestedQueryBatch(nestedQuery, sql.substring(0, matcher.start()) + column + " IN (",
+        ")" + sql.substring(matcher.end()), boundSql.getParameterMappings().get(0), keyProperty);
+  }
+
+  /**
+   * Checks that the key condition is in the WHERE clause of a single SELECT, and that the WHERE clause only combines
+   * conditions by AND. Only then the rows of each key are the same whether the keys are queried one by one or in a
+   * single IN list. Parentheses are not supported, which rules out subqueries and aggregate functions.
+   */
+  private static boolean isPlainKeyQuery(String sql, int keyStart) {
+    Matcher tokens = TOKEN.matcher(sql);
+    if (!tokens.find() || !"SELECT".equalsIgnoreCase(tokens.group())) {
+      return false;
+    }
+    int whereStart = -1;
+    int orderStart = -1;
+    while (tokens.find()) {
+      String token = tokens.group().toUpperCase(Locale.ENGLISH);
+      if (UNSUPPORTED_KEYWORDS.contains(token)) {
+        return false;
+      } else if ("WHERE".equals(token)) {
+        if (whereStart >= 0) {
+          return false;
+        }
+        whereStart = tokens.start();
+      } else if ("ORDER".equals(token)) {
+        if (orderStart >= 0 || whereStart < 0) {
+          return false;
+        }
+        orderStart = tokens.start();
+      }
+    }
+    return whereStart >= 0 && keyStart > whereStart && (orderStart < 0 || keyStart < orderStart);
+  }
+
+  private static String findKeyProperty(Configuration configuration, ResultMap resultMap, String column) {
+    for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+      if (column.equalsIgnoreCase(resultMapping.getColumn()) && resultMapping.getProperty() != null
+          && resultMapping.isSimple()) {
+        return resultMapping.getProperty();
+      }
+    }
+    boolean autoMapping = resultMap.getAutoMapping() != null ? resultMap.getAutoMapping()
+        : configuration.getAutoMappingBehavior() != AutoMappingBehavior.NONE;
+    if (!autoMapping || Map.class.isAssignableFrom(resultMap.getType())) {
+      return null;
+    }
+    MetaClass metaClass = MetaClass.forClass(resultMap.getType(), configuration.getReflectorFactory());
+    String property = metaClass.findProperty(column, configuration.isMapUnderscoreToCamelCase());
+    return property != null && metaClass.hasGetter(property) && !resultMap.getMappedProperties().contains(property)
+        ? property : null;
+  }
+
+  private static String unquote(String column) {
+    String name = column.substring(column.lastIndexOf('.') + 1);
+    return name.replaceAll("[\"`\\[\\]]", "");
+  }
+
+  public MappedStatement getNestedQuery() {
+    return nestedQuery;
+  }
+
+  /**
+   * Executes the nested select for the given keys.
+   *
+   * @param executor
+   *          the executor
+   * @param keys
+   *          the distinct keys
+   * @return the rows grouped by {@link #keyOf(Object)} of the key they belong to, or {@code null} if the rows cannot
+   *         be assigned to their keys: a row has no value for the key property, or a key has no rows while the rows
+   *         have keys of another type
+   * @throws SQLException
+   *           if the query fails
+   */
+  public Map<Object, List<Object>> query(Executor executor, Collection<Object> keys) throws SQLException {
+    List<ParameterMapping> parameterMappings = new ArrayList<>(keys.size());
+    StringBuilder sql = new StringBuilder(sqlBeforeKey);
+    for (int i = 0; i < keys.size(); i++) {
+      sql.append(i == 0 ? "?" : ", ?");
+      parameterMappings.add(
+          new ParameterMapping.Builder(configuration, KEY_PARAMETER_PREFIX + i, keyMapping.getTypeHandler())
+              .javaType(keyMapping.getJavaType()).jdbcType(keyMapping.getJdbcType()).build());
+    }
+    sql.append(sqlAfterKey);
+    List<Object> parameterObject = new ArrayList<>(keys);
+    BoundSql boundSql = new BoundSql(configuration, sql.toString(), parameterMappings, parameterObject);
+    for (int i = 0; i < parameterObject.size(); i++) {
+      boundSql.setAdditionalParameter(KEY_PARAMETER_PREFIX + i, parameterObject.get(i));
+    }
+    CacheKey cacheKey = executor.createCacheKey(nestedQuery, parameterObject, RowBounds.DEFAULT, boundSql);
+    List<Object> rows = executor.query(nestedQuery, parameterObject, RowBounds.DEFAULT, Executor.NO_RESULT_HANDLER,
+        cacheKey, boundSql);
+    Map<Object, List<Object>> rowsByKey = new HashMap<>();
+    Set<Class<?>> rowKeyTypes = new HashSet<>();
+    for (Object row : rows) {
+      Object key = row == null ? null : configuration.newMetaObject(row).getValue(keyProperty);
+      if (key == null) {
+        return null;
+      }
+      Object keyValue = keyOf(key);
+      rowKeyTypes.add(keyValue.getClass());
+      rowsByKey.computeIfAbsent(keyValue, k -> new ArrayList<>()).add(row);
+    }
+    for (Object key : keys) {
+      Object keyValue = keyOf(key);
+      if (!rowsByKey.containsKey(keyValue) && !rowKeyTypes.isEmpty() && !rowKeyTypes.contains(keyValue.getClass())) {
+        // e.g. a String key of the parent and a numeric key of the rows, which the database compared as equal
+        return null;
+      }
+    }
+    return rowsByKey;
+  }
+
+  /**
+   * Gets the value that identifies a key, so that a key read from the parent row matches the value read from the
+   * nested row even if their numeric types differ, as long as the value is integral or both are decimals.
+   *
+   * @param key
+   *          the key
+   * @return the value to compare
+   */
+  public static Object keyOf(Object key) {
+    if (key instanceof Integer || key instanceof Long || key instanceof Short || key instanceof Byte) {
+      return BigInteger.valueOf(((Number) key).longValue());
+    } else if (key instanceof BigDecimal) {
+      BigDecimal decimal = ((BigDecimal) key).stripTrailingZeros();
+      return decimal.scale() <= 0 ? decimal.toBigInteger() : decimal;
+    }
+    return key;
+  }
+
+}
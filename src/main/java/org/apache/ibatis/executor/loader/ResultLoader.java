@@ -16,7 +16,9 @@
 package org.apache.ibatis.executor.loader;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 import javax.sql.DataSource;
 
@@ -86,6 +88,20 @@ public class ResultLoader {
     }
   }
 
+  Map<Object, List<Object>> selectBatch(NestedQueryBatch batch, Collection<Object> keys) throws SQLException {
+    Executor localExecutor = executor;
+    if (Thread.currentThread().getId() != this.creatorThreadId || localExecutor.isClosed()) {
+      localExecutor = newExecutor();
+    }
+    try {
+      return batch.query(localExecutor, keys);
+    } finally {
+      if (localExecutor != executor) {
+        localExecutor.close(false);
+      }
+    }
+  }
+
   private Executor newExecutor() {
     final Environment environment = configuration.getEnvironment();
     if (environment == null) {
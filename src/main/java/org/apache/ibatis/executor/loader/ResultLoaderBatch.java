@@ -0,0 +1,168 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import java.lang.ref.WeakReference;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.executor.ResultExtractor;
+import org.apache.ibatis.executor.loader.ResultLoaderMap.LoadPair;
+
+/**
+ * The lazy loaders of one property of the objects returned by the same query. When the property of one object is
+ * loaded, the property of up to {@code batchSize - 1} siblings that are not loaded yet is loaded by the same query.
+ * <p>
+ * The values of the siblings are kept until the siblings read them, so that the batch never calls into the proxy of
+ * another object, and a sibling that reads its property while the batch is loading it waits for the batch. The batch
+ * only holds weak references to the loaders, so that it does not keep the siblings alive.
+ *
+ * @since 3.5.8
+ */
+public class ResultLoaderBatch {
+
+  private static final Object TAKEN = new Object();
+
+  private final NestedQueryBatch nestedQueryBatch;
+  private final int batchSize;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition loaded = lock.newCondition();
+  private final Deque<WeakReference<LoadPair>> pending = new ArrayDeque<>();
+  private final Set<LoadPair> loading = Collections.newSetFromMap(new IdentityHashMap<>());
+  private final Map<LoadPair, Object> values = new WeakHashMap<>();
+
+  public ResultLoaderBatch(NestedQueryBatch nestedQueryBatch, int batchSize) {
+    this.nestedQueryBatch = nestedQueryBatch;
+    this.batchSize = batchSize;
+  }
+
+  void add(LoadPair pair) {
+    lock.lock();
+    try {
+      pending.add(new WeakReference<>(pair));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Forgets a loader whose property was set, so that it is not loaded with its siblings.
+   */
+  void remove(LoadPair pair) {
+    lock.lock();
+    try {
+      values.put(pair, TAKEN);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  void load(LoadPair requested) throws SQLException {
+    List<LoadPair> pairs;
+    Object value;
+    lock.lock();
+    try {
+      while (loading.contains(requested)) {
+        loaded.awaitUninterruptibly();
+      }
+      value = values.get(requested);
+      if (value == null && !values.containsKey(requested)) {
+        pairs = claimSiblings(requested);
+      } else {
+        pairs = null;
+        values.put(requested, TAKEN);
+      }
+    } finally {
+      lock.unlock();
+    }
+    if (pairs == null) {
+      requested.getMetaResultObject().setValue(requested.getProperty(), value == TAKEN ? null : value);
+      return;
+    }
+    try {
+      Map<LoadPair, Object> loadedValues = loadValues(requested, pairs);
+      lock.lock();
+      try {
+        values.putAll(loadedValues);
+        values.put(requested, TAKEN);
+      } finally {
+        lock.unlock();
+      }
+      requested.getMetaResultObject().setValue(requested.getProperty(), loadedValues.get(requested));
+    } finally {
+      lock.lock();
+      try {
+        loading.removeAll(pairs);
+        loaded.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private Map<LoadPair, Object> loadValues(LoadPair requested, List<LoadPair> pairs) throws SQLException {
+    ResultLoader resultLoader = requested.getResultLoader();
+    Map<Object, Object> keys = new LinkedHashMap<>();
+    for (LoadPair pair : pairs) {
+      Object key = pair.getResultLoader().parameterObject;
+      keys.putIfAbsent(NestedQueryBatch.keyOf(key), key);
+    }
+    Map<Object, List<Object>> rowsByKey = keys.size() > 1
+        ? resultLoader.selectBatch(nestedQueryBatch, keys.values()) : null;
+    ResultExtractor resultExtractor = resultLoader.resultExtractor;
+    Map<LoadPair, Object> loadedValues = new IdentityHashMap<>();
+    if (rowsByKey == null) {
+      loadedValues.put(requested, resultLoader.loadResult());
+      return loadedValues;
+    }
+    for (LoadPair pair : pairs) {
+      ResultLoader loader = pair.getResultLoader();
+      List<Object> rows = rowsByKey.getOrDefault(NestedQueryBatch.keyOf(loader.parameterObject), new ArrayList<>());
+      loadedValues.put(pair, resultExtractor.extractObjectFromList(rows, loader.targetType));
+    }
+    return loadedValues;
+  }
+
+  /**
+   * Marks the requested loader and the siblings that were added before the others and are neither loaded nor being
+   * loaded as being loaded.
+   */
+  private List<LoadPair> claimSiblings(LoadPair requested) {
+    List<LoadPair> pairs = new ArrayList<>();
+    pairs.add(requested);
+    loading.add(requested);
+    while (pairs.size() < batchSize && !pending.isEmpty()) {
+      LoadPair pair = pending.poll().get();
+      if (pair != null && pair != requested && !loading.contains(pair) && !values.containsKey(pair)) {
+        pairs.add(pair);
+        loading.add(pair);
+      }
+    }
+    return pairs;
+  }
+
+}
@@ -50,13 +50,36 @@ public class ResultLoaderMap {
   private final Map<String, LoadPair> loaderMap = new HashMap<>();
 
   public void addLoader(String property, MetaObject metaResultObject, ResultLoader resultLoader) {
+    addLoader(property, metaResultObject, resultLoader, null);
+  }
+
+  /**
+   * Adds a loader that loads the property together with the same property of sibling objects.
+   *
+   * @param property
+   *          the property
+   * @param metaResultObject
+   *          the meta object of the result object
+   * @param resultLoader
+   *          the result loader
+   * @param batch
+   *          the loaders of the same property of the objects returned by the same query, or {@code null} to load the
+   *          property on its own
+   * @since 3.5.8
+   */
+  public void addLoader(String property, MetaObject metaResultObject, ResultLoader resultLoader, ResultLoaderBatch batch) {
     String upperFirst = getUppercaseFirstProperty(property);
     if (!upperFirst.equalsIgnoreCase(property) && loaderMap.containsKey(upperFirst)) {
       throw new ExecutorException("Nested lazy loaded result property '" + property
               + "' for query id '" + resultLoader.mappedStatement.getId()
               + " already exists in the result map. The leftmost property of all lazy loaded properties must be unique within a result map.");
     }
-    loaderMap.put(upperFirst, new LoadPair(property, metaResultObject, resultLoader));
+    LoadPair pair = new LoadPair(property, metaResultObject, resultLoader);
+    loaderMap.put(upperFirst, pair);
+    if (batch != null) {
+      pair.batch = batch;
+      batch.add(pair);
+    }
   }
 
   public final Map<String, LoadPair> getProperties() {
@@ -85,7 +108,10 @@ public class ResultLoaderMap {
   }
 
   public void remove(String property) {
-    loaderMap.remove(property.toUpperCase(Locale.ENGLISH));
+    LoadPair pair = loaderMap.remove(property.toUpperCase(Locale.ENGLISH));
+    if (pair != null && pair.batch != null) {
+      pair.batch.remove(pair);
+    }
   }
 
   public void loadAll() throws SQLException {
@@ -123,6 +149,10 @@ public class ResultLoaderMap {
      * Result loader which loads unread properties.
      */
     private transient ResultLoader resultLoader;
+    /**
+     * Loaders of the same property of sibling objects, which are loaded together.
+     */
+    private transient ResultLoaderBatch batch;
     /**
      * Wow, logger.
      */
@@ -216,9 +246,26 @@ public class ResultLoaderMap {
                 old.parameterObject, old.targetType, old.cacheKey, old.boundSql);
       }
 
+      if (this.batch != null && this.serializationCheck != null) {
+        this.batch.load(this);
+        return;
+      }
+
       this.metaResultObject.setValue(property, this.resultLoader.loadResult());
     }
 
+    MetaObject getMetaResultObject() {
+      return metaResultObject;
+    }
+
+    ResultLoader getResultLoader() {
+      return resultLoader;
+    }
+
+    String getProperty() {
+      return property;
+    }
+
     private Configuration getConfiguration() {
       if (this.configurationFactory == null) {
         throw new ExecutorException("Cannot get Configuration as configuration factory was not set.");
@@ -0,0 +1,158 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.util.LatencyHistogram;
+
+/**
+ * The time a statement spent in each phase of its executions, in microseconds, and the number of rows mapped by its
+ * queries. Statement metrics are recorded while {@link Configuration#isStatementMetricsEnabled()} is on.
+ * <p>
+ * The rows that a cursor fetches are not recorded.
+ *
+ * @since 3.5.8
+ * @see StatementMetricsRegistry
+ */
+public class StatementMetrics {
+
+  private static final StatementPhase[] PHASES = StatementPhase.values();
+
+  private final String statementId;
+  private final LatencyHistogram[] phases = new LatencyHistogram[PHASES.length];
+  private final LatencyHistogram rowsMapped = new LatencyHistogram();
+  private final LongAdder rowCount = new LongAdder();
+  private final LongAdder totalTime = new LongAdder();
+
+  StatementMetrics(String statementId) {
+    this.statementId = statementId;
+    for (int i = 0; i < phases.length; i++) {
+      phases[i] = new LatencyHistogram();
+    }
+  }
+
+  /**
+   * Gets the metrics to record an execution of a statement to.
+   *
+   * @param ms
+   *          the mapped statement
+   * @return the metrics, or {@code null} if statement metrics are disabled
+   */
+  public static StatementMetrics of(MappedStatement ms) {
+    Configuration configuration = ms.getConfiguration();
+    if (!configuration.isStatementMetricsEnabled()) {
+      return null;
+    }
+    return configuration.getStatementMetricsRegistry().metricsOf(ms.getId());
+  }
+
+  /**
+   * Records a phase of an execution.
+   *
+   * @param phase
+   *          the phase
+   * @param startNanos
+   *          the {@link System#nanoTime()} at which the phase started
+   */
+  public void record(StatementPhase phase, long startNanos) {
+    recordNanos(phase, System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Records a phase of an execution.
+   *
+   * @param phase
+   *          the phase
+   * @param nanos
+   *          the time spent in the phase
+   */
+  public void recordNanos(StatementPhase phase, long nanos) {
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    phases[phase.ordinal()].record(micros);
+    totalTime.add(micros);
+  }
+
+  /**
+   * Records the number of rows mapped by an execution of a query.
+   *
+   * @param rows
+   *          the number of rows
+   */
+  public void recordRows(long rows) {
+    rowsMapped.record(rows);
+    rowCount.add(rows);
+  }
+
+  public String getStatementId() {
+    return statementId;
+  }
+
+  /**
+   * Gets the time spent in a phase.
+   *
+   * @param phase
+   *          the phase
+   * @return a snapshot of the times in microseconds, one value per execution of the phase
+   */
+  public LatencyHistogram.Snapshot getPhase(StatementPhase phase) {
+    return phases[phase.ordinal()].snapshot();
+  }
+
+  /**
+   * Gets the number of rows mapped by each execution of the statement.
+   *
+   * @return a snapshot of the row counts
+   */
+  public LatencyHistogram.Snapshot getRowsMapped() {
+    return rowsMapped.snapshot();
+  }
+
+  /**
+   * Gets the total number of rows mapped by the executions of the statement.
+   *
+   * @return the number of rows
+   */
+  public long getRowCount() {
+    return rowCount.sum();
+  }
+
+  /**
+   * Gets the time spent in all phases of all executions. Statements with nested selects count their time twice, once in
+   * their own mapping phase and once in the phases of the nested statements.
+   *
+   * @return the time in microseconds
+   */
+  public long getTotalTime() {
+    return totalTime.sum();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder(statementId).append(" [");
+    for (StatementPhase phase : PHASES) {
+      LatencyHistogram.Snapshot snapshot = getPhase(phase);
+      builder.append(phase).append("={count=").append(snapshot.getCount()).append(", p50=")
+          .append(snapshot.getValueAtPercentile(50)).append(", p99=").append(snapshot.getValueAtPercentile(99))
+          .append("}, ");
+    }
+    return builder.append("rows=").append(getRowCount()).append("]").toString();
+  }
+
+}
@@ -0,0 +1,69 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link StatementMetrics} of all statements of a configuration that were executed while statement metrics were
+ * enabled.
+ *
+ * @since 3.5.8
+ * @see org.apache.ibatis.session.Configuration#getStatementMetricsRegistry()
+ */
+public class StatementMetricsRegistry {
+
+  private final ConcurrentMap<String, StatementMetrics> metrics = new ConcurrentHashMap<>();
+
+  StatementMetrics metricsOf(String statementId) {
+    StatementMetrics statementMetrics = metrics.get(statementId);
+    return statementMetrics != null ? statementMetrics : metrics.computeIfAbsent(statementId, StatementMetrics::new);
+  }
+
+  /**
+   * Gets the metrics of a statement.
+   *
+   * @param statementId
+   *          the statement id
+   * @return the metrics, or {@code null} if the statement was not executed
+   */
+  public StatementMetrics getStatementMetrics(String statementId) {
+    return metrics.get(statementId);
+  }
+
+  /**
+   * Gets the metrics of all executed statements, the ones that spent the longest total time executing first.
+   *
+   * @return the metrics
+   */
+  public List<StatementMetrics> getAllStatementMetrics() {
+    List<StatementMetrics> all = new ArrayList<>(metrics.values());
+    all.sort(Comparator.comparingLong(StatementMetrics::getTotalTime).reversed());
+    return all;
+  }
+
+  /**
+   * Discards the metrics of all statements.
+   */
+  public void reset() {
+    metrics.clear();
+  }
+
+}
@@ -0,0 +1,55 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+/**
+ * The phases of a statement execution that {@link StatementMetrics} times.
+ *
+ * @since 3.5.8
+ */
+public enum StatementPhase {
+
+  /**
+   * Building the SQL and its parameter mappings for a parameter object.
+   */
+  SQL_GENERATION,
+
+  /**
+   * Creating the JDBC statement and applying its timeout and fetch size.
+   */
+  PREPARE,
+
+  /**
+   * Setting the parameters of the JDBC statement.
+   */
+  PARAMETERIZE,
+
+  /**
+   * Executing the JDBC statement, or a batch of them.
+   */
+  EXECUTE,
+
+  /**
+   * Moving through the rows of the result sets.
+   */
+  FETCH,
+
+  /**
+   * Reading the metadata of the result sets and mapping their rows to result objects, including nested selects.
+   */
+  MAPPING
+
+}
@@ -16,13 +16,18 @@
 package org.apache.ibatis.executor.resultset;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.sql.CallableStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -36,8 +41,13 @@ import org.apache.ibatis.cursor.defaults.DefaultCursor;
 import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
+import org.apache.ibatis.executor.ResultExtractor;
+import org.apache.ibatis.executor.loader.NestedQueryBatch;
 import org.apache.ibatis.executor.loader.ResultLoader;
+import org.apache.ibatis.executor.loader.ResultLoaderBatch;
 import org.apache.ibatis.executor.loader.ResultLoaderMap;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
+import org.apache.ibatis.executor.metrics.StatementPhase;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.result.DefaultResultContext;
 import org.apache.ibatis.executor.result.DefaultResultHandler;
@@ -49,16 +59,25 @@ import org.apache.ibatis.mapping.ParameterMapping;
 import org.apache.ibatis.mapping.ParameterMode;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.reflection.ExceptionUtil;
 import org.apache.ibatis.reflection.MetaClass;
 import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.ReflectionException;
 import org.apache.ibatis.reflection.ReflectorFactory;
 import org.apache.ibatis.reflection.factory.ObjectFactory;
+import org.apache.ibatis.reflection.invoker.AmbiguousMethodInvoker;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.PrimitiveSetInvoker;
+import org.apache.ibatis.reflection.wrapper.BeanWrapper;
+import org.apache.ibatis.reflection.wrapper.DefaultObjectWrapperFactory;
 import org.apache.ibatis.session.AutoMappingBehavior;
+import org.apache.ibatis.session.AutoMappingUnknownColumnBehavior;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.session.ResultContext;
 import org.apache.ibatis.session.ResultHandler;
 import org.apache.ibatis.session.RowBounds;
 import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.PrimitiveTypeHandler;
 import org.apache.ibatis.type.TypeHandler;
 import org.apache.ibatis.type.TypeHandlerRegistry;
 import org.apache.ibatis.util.MapUtil;
@@ -85,16 +104,38 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   private final ReflectorFactory reflectorFactory;
 
   // nested resultmaps
-  private final Map<CacheKey, Object> nestedResultObjects = new HashMap<>();
+  private final RowIdentityMap nestedResultObjects = new RowIdentityMap();
+  private final RowKey rowKeyProbe = new RowKey();
   private final Map<String, Object> ancestorObjects = new HashMap<>();
   private Object previousRowValue;
+  private final Map<ResultMapping, Map<String, String>> columnPrefixes = new IdentityHashMap<>();
+
+  // Key columns of the nested result maps, by result map id and column prefix
+  private final Map<String, Map<String, RowKeyColumns>> rowKeyColumnsCache = new HashMap<>();
+  private ResultSetWrapper rowKeyColumnsWrapper;
 
   // multiple resultsets
   private final Map<String, ResultMapping> nextResultMaps = new HashMap<>();
   private final Map<CacheKey, List<PendingRelation>> pendingRelations = new HashMap<>();
 
-  // Cached Automappings
-  private final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsCache = new HashMap<>();
+  // batched nested queries
+  private final Map<ResultMapping, PendingNestedQueries> pendingNestedQueries = new IdentityHashMap<>();
+  private boolean batchNestedQueries;
+  private final Map<ResultMapping, ResultLoaderBatch> resultLoaderBatches = new IdentityHashMap<>();
+
+  // statement metrics
+  private final StatementMetrics metrics;
+  private long fetchNanos;
+  private long fetchedRows;
+
+  // Cached Automappings, by result map id and column prefix, when unknown columns must be reported on each execution
+  private final Map<String, Map<String, List<UnMappedColumnAutoMapping>>> autoMappingsCache = new HashMap<>();
+  private ResultSetWrapper autoMappingsWrapper;
+
+  // generated row mappers
+  private final boolean rowMapperGenerationEnabled;
+  private final Map<String, GeneratedRowMapper> rowMappers = new HashMap<>();
+  private ResultSetWrapper rowMappersWrapper;
 
   // temporary marking flag that indicate using constructor mapping (use field to reduce memory usage)
   private boolean useConstructorMappings;
@@ -104,17 +145,52 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     public ResultMapping propertyMapping;
   }
 
+  private static class PendingNestedQueries {
+    private final NestedQueryBatch batch;
+    private final Map<Object, Object> keys = new LinkedHashMap<>();
+    private final Map<Object, List<MetaObject>> parents = new HashMap<>();
+
+    PendingNestedQueries(NestedQueryBatch batch) {
+      this.batch = batch;
+    }
+  }
+
   private static class UnMappedColumnAutoMapping {
-    private final String column;
+    private final int columnIndex;
     private final String property;
     private final TypeHandler<?> typeHandler;
     private final boolean primitive;
+    // set when the value can be read and set without boxing, on instances of beanType
+    private final PrimitiveSetInvoker primitiveSetter;
+    private final Class<?> beanType;
 
-    public UnMappedColumnAutoMapping(String column, String property, TypeHandler<?> typeHandler, boolean primitive) {
-      this.column = column;
+    public UnMappedColumnAutoMapping(int columnIndex, String property, TypeHandler<?> typeHandler, boolean primitive,
+        PrimitiveSetInvoker primitiveSetter, Class<?> beanType) {
+      this.columnIndex = columnIndex;
       this.property = property;
       this.typeHandler = typeHandler;
       this.primitive = primitive;
+      this.primitiveSetter = primitiveSetter;
+      this.beanType = beanType;
+    }
+  }
+
+  private static class RowKeyColumns {
+    private int[] columnIndexes = new int[0];
+    // null when the value is read as a string
+    private TypeHandler<?>[] typeHandlers = new TypeHandler<?>[0];
+    private final boolean keepsNulls;
+
+    RowKeyColumns(boolean keepsNulls) {
+      this.keepsNulls = keepsNulls;
+    }
+
+    void add(int columnIndex, TypeHandler<?> typeHandler) {
+      final int length = columnIndexes.length;
+      columnIndexes = Arrays.copyOf(columnIndexes, length + 1);
+      columnIndexes[length] = columnIndex;
+      typeHandlers = Arrays.copyOf(typeHandlers, length + 1);
+      typeHandlers[length] = typeHandler;
     }
   }
 
@@ -126,10 +202,12 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     this.rowBounds = rowBounds;
     this.parameterHandler = parameterHandler;
     this.boundSql = boundSql;
+    this.metrics = StatementMetrics.of(mappedStatement);
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
     this.objectFactory = configuration.getObjectFactory();
     this.reflectorFactory = configuration.getReflectorFactory();
     this.resultHandler = resultHandler;
+    this.rowMapperGenerationEnabled = configuration.isRowMapperGenerationEnabled();
   }
 
   //
@@ -181,8 +259,13 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   @Override
   public List<Object> handleResultSets(Statement stmt) throws SQLException {
     ErrorContext.instance().activity("handling results").object(mappedStatement.getId());
+    long start = metrics == null ? 0 : System.nanoTime();
+    fetchNanos = 0;
+    fetchedRows = 0;
 
     final List<Object> multipleResults = new ArrayList<>();
+    // nested selects can only be deferred when no result handler sees the results before they are complete
+    batchNestedQueries = resultHandler == null;
 
     int resultSetCount = 0;
     ResultSetWrapper rsw = getFirstResultSet(stmt);
@@ -193,7 +276,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     while (rsw != null && resultMapCount > resultSetCount) {
       ResultMap resultMap = resultMaps.get(resultSetCount);
       handleResultSet(rsw, resultMap, multipleResults, null);
-      rsw = getNextResultSet(stmt);
+      rsw = getNextResultSet(stmt, resultSetCount + 1);
       cleanUpAfterHandlingResultSet();
       resultSetCount++;
     }
@@ -207,12 +290,18 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           ResultMap resultMap = configuration.getResultMap(nestedResultMapId);
           handleResultSet(rsw, resultMap, null, parentMapping);
         }
-        rsw = getNextResultSet(stmt);
+        rsw = getNextResultSet(stmt, resultSetCount + 1);
         cleanUpAfterHandlingResultSet();
         resultSetCount++;
       }
     }
 
+    loadNestedQueryBatches();
+    if (metrics != null) {
+      metrics.recordNanos(StatementPhase.FETCH, fetchNanos);
+      metrics.recordNanos(StatementPhase.MAPPING, System.nanoTime() - start - fetchNanos);
+      metrics.recordRows(fetchedRows);
+    }
     return collapseSingleResultList(multipleResults);
   }
 
@@ -249,10 +338,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
       }
     }
-    return rs != null ? new ResultSetWrapper(rs, configuration) : null;
+    return rs != null ? new ResultSetWrapper(rs, mappedStatement, 0) : null;
   }
 
-  private ResultSetWrapper getNextResultSet(Statement stmt) {
+  private ResultSetWrapper getNextResultSet(Statement stmt, int resultSetIndex) {
     // Making this method tolerant of bad JDBC drivers
     try {
       if (stmt.getConnection().getMetaData().supportsMultipleResultSets()) {
@@ -260,9 +349,9 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         if (!(!stmt.getMoreResults() && stmt.getUpdateCount() == -1)) {
           ResultSet rs = stmt.getResultSet();
           if (rs == null) {
-            return getNextResultSet(stmt);
+            return getNextResultSet(stmt, resultSetIndex);
           } else {
-            return new ResultSetWrapper(rs, configuration);
+            return new ResultSetWrapper(rs, mappedStatement, resultSetIndex);
           }
         }
       }
@@ -351,7 +440,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     DefaultResultContext<Object> resultContext = new DefaultResultContext<>();
     ResultSet resultSet = rsw.getResultSet();
     skipRows(resultSet, rowBounds);
-    while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
+    while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && next(resultSet)) {
       ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
       Object rowValue = getRowValue(rsw, discriminatedResultMap, null);
       storeObject(resultHandler, resultContext, rowValue, parentMapping, resultSet);
@@ -372,6 +461,19 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     ((ResultHandler<Object>) resultHandler).handleResult(resultContext);
   }
 
+  private boolean next(ResultSet resultSet) throws SQLException {
+    if (metrics == null) {
+      return resultSet.next();
+    }
+    long start = System.nanoTime();
+    boolean hasNext = resultSet.next();
+    fetchNanos += System.nanoTime() - start;
+    if (hasNext) {
+      fetchedRows++;
+    }
+    return hasNext;
+  }
+
   private boolean shouldProcessMoreRows(ResultContext<?> context, RowBounds rowBounds) {
     return !context.isStopped() && context.getResultCount() < rowBounds.getLimit();
   }
@@ -398,12 +500,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     final ResultLoaderMap lazyLoader = new ResultLoaderMap();
     Object rowValue = createResultObject(rsw, resultMap, lazyLoader, columnPrefix);
     if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
-      final MetaObject metaObject = configuration.newMetaObject(rowValue);
       boolean foundValues = this.useConstructorMappings;
-      if (shouldApplyAutomaticMappings(resultMap, false)) {
-        foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
+      final GeneratedRowMapper rowMapper = getRowMapper(rsw, resultMap, rowValue, columnPrefix, false);
+      if (rowMapper != null) {
+        foundValues = applyRowMapper(rowMapper, rsw, rowValue) || foundValues;
+      } else {
+        final MetaObject metaObject = configuration.newMetaObject(rowValue);
+        if (shouldApplyAutomaticMappings(resultMap, false)) {
+          foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
+        }
+        foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
       }
-      foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
       foundValues = lazyLoader.size() > 0 || foundValues;
       rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
     }
@@ -414,13 +521,15 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // GET VALUE FROM ROW FOR NESTED RESULT MAP
   //
 
-  private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, CacheKey combinedKey, String columnPrefix, Object partialObject) throws SQLException {
+  private Object getRowValue(ResultSetWrapper rsw, ResultMap resultMap, RowKey combinedKey, String columnPrefix, Object partialObject) throws SQLException {
     final String resultMapId = resultMap.getId();
+    // store the key before mapping the nested objects, which fill the same probe with their own keys
+    final RowKey storedKey = combinedKey == null ? null : nestedResultObjects.putIfAbsent(combinedKey);
     Object rowValue = partialObject;
     if (rowValue != null) {
       final MetaObject metaObject = configuration.newMetaObject(rowValue);
       putAncestor(rowValue, resultMapId);
-      applyNestedResultMappings(rsw, resultMap, metaObject, columnPrefix, combinedKey, false);
+      applyNestedResultMappings(rsw, resultMap, metaObject, columnPrefix, storedKey, false);
       ancestorObjects.remove(resultMapId);
     } else {
       final ResultLoaderMap lazyLoader = new ResultLoaderMap();
@@ -428,18 +537,23 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (rowValue != null && !hasTypeHandlerForResultObject(rsw, resultMap.getType())) {
         final MetaObject metaObject = configuration.newMetaObject(rowValue);
         boolean foundValues = this.useConstructorMappings;
-        if (shouldApplyAutomaticMappings(resultMap, true)) {
-          foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
+        final GeneratedRowMapper rowMapper = getRowMapper(rsw, resultMap, rowValue, columnPrefix, true);
+        if (rowMapper != null) {
+          foundValues = applyRowMapper(rowMapper, rsw, rowValue) || foundValues;
+        } else {
+          if (shouldApplyAutomaticMappings(resultMap, true)) {
+            foundValues = applyAutomaticMappings(rsw, resultMap, metaObject, columnPrefix) || foundValues;
+          }
+          foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
         }
-        foundValues = applyPropertyMappings(rsw, resultMap, metaObject, lazyLoader, columnPrefix) || foundValues;
         putAncestor(rowValue, resultMapId);
-        foundValues = applyNestedResultMappings(rsw, resultMap, metaObject, columnPrefix, combinedKey, true) || foundValues;
+        foundValues = applyNestedResultMappings(rsw, resultMap, metaObject, columnPrefix, storedKey, true) || foundValues;
         ancestorObjects.remove(resultMapId);
         foundValues = lazyLoader.size() > 0 || foundValues;
         rowValue = foundValues || configuration.isReturnInstanceForEmptyRow() ? rowValue : null;
       }
-      if (combinedKey != CacheKey.NULL_CACHE_KEY) {
-        nestedResultObjects.put(combinedKey, rowValue);
+      if (storedKey != null) {
+        storedKey.setRowValue(rowValue);
       }
     }
     return rowValue;
@@ -467,19 +581,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
   private boolean applyPropertyMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, ResultLoaderMap lazyLoader, String columnPrefix)
       throws SQLException {
-    final List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
+    final int[] columnIndexes = rsw.getPropertyColumnIndexes(resultMap, columnPrefix);
     boolean foundValues = false;
     final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
-    for (ResultMapping propertyMapping : propertyMappings) {
-      String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
-      if (propertyMapping.getNestedResultMapId() != null) {
-        // the user added a column attribute to a nested result map, ignore it
-        column = null;
-      }
+    for (int i = 0; i < propertyMappings.size(); i++) {
+      final ResultMapping propertyMapping = propertyMappings.get(i);
+      // the user may have added a column attribute to a nested result map, ignore it
+      final int columnIndex = propertyMapping.getNestedResultMapId() != null ? -1 : columnIndexes[i];
       if (propertyMapping.isCompositeResult()
-          || (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH)))
+          || columnIndex > 0
           || propertyMapping.getResultSet() != null) {
-        Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix);
+        Object value = getPropertyMappingValue(rsw.getResultSet(), metaObject, propertyMapping, lazyLoader, columnPrefix, columnIndex);
         // issue #541 make property optional
         final String property = propertyMapping.getProperty();
         if (property == null) {
@@ -500,8 +612,8 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return foundValues;
   }
 
-  private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix)
-      throws SQLException {
+  private Object getPropertyMappingValue(ResultSet rs, MetaObject metaResultObject, ResultMapping propertyMapping, ResultLoaderMap lazyLoader, String columnPrefix,
+      int columnIndex) throws SQLException {
     if (propertyMapping.getNestedQueryId() != null) {
       return getNestedQueryMappingValue(rs, metaResultObject, propertyMapping, lazyLoader, columnPrefix);
     } else if (propertyMapping.getResultSet() != null) {
@@ -509,47 +621,71 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       return DEFERRED;
     } else {
       final TypeHandler<?> typeHandler = propertyMapping.getTypeHandler();
-      final String column = prependPrefix(propertyMapping.getColumn(), columnPrefix);
-      return typeHandler.getResult(rs, column);
+      if (columnIndex > 0) {
+        return typeHandler.getResult(rs, columnIndex);
+      }
+      return typeHandler.getResult(rs, prependPrefix(propertyMapping.getColumn(), columnPrefix));
     }
   }
 
+  @SuppressWarnings("unchecked")
   private List<UnMappedColumnAutoMapping> createAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
-    final String mapKey = resultMap.getId() + ":" + columnPrefix;
-    List<UnMappedColumnAutoMapping> autoMapping = autoMappingsCache.get(mapKey);
+    if (configuration.getAutoMappingUnknownColumnBehavior() == AutoMappingUnknownColumnBehavior.NONE) {
+      // nothing to report, so the auto-mappings are shared by all the executions that return the same columns
+      List<UnMappedColumnAutoMapping> autoMapping = (List<UnMappedColumnAutoMapping>) rsw.getAutoMappings(resultMap, columnPrefix);
+      if (autoMapping == null) {
+        autoMapping = resolveAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
+        rsw.putAutoMappings(resultMap, columnPrefix, autoMapping);
+      }
+      return autoMapping;
+    }
+    if (rsw != autoMappingsWrapper) {
+      // the column indexes of the auto-mappings only hold for one result set
+      autoMappingsCache.clear();
+      autoMappingsWrapper = rsw;
+    }
+    final Map<String, List<UnMappedColumnAutoMapping>> autoMappingsByPrefix = autoMappingsCache.computeIfAbsent(resultMap.getId(), k -> new HashMap<>());
+    List<UnMappedColumnAutoMapping> autoMapping = autoMappingsByPrefix.get(columnPrefix);
     if (autoMapping == null) {
-      autoMapping = new ArrayList<>();
-      final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
-      for (String columnName : unmappedColumnNames) {
-        String propertyName = columnName;
-        if (columnPrefix != null && !columnPrefix.isEmpty()) {
-          // When columnPrefix is specified,
-          // ignore columns without the prefix.
-          if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
-            propertyName = columnName.substring(columnPrefix.length());
-          } else {
-            continue;
-          }
+      autoMapping = resolveAutomaticMappings(rsw, resultMap, metaObject, columnPrefix);
+      autoMappingsByPrefix.put(columnPrefix, autoMapping);
+    }
+    return autoMapping;
+  }
+
+  private List<UnMappedColumnAutoMapping> resolveAutomaticMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String columnPrefix) throws SQLException {
+    final List<UnMappedColumnAutoMapping> autoMapping = new ArrayList<>();
+    final List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
+    for (String columnName : unmappedColumnNames) {
+      String propertyName = columnName;
+      if (columnPrefix != null && !columnPrefix.isEmpty()) {
+        // When columnPrefix is specified,
+        // ignore columns without the prefix.
+        if (columnName.toUpperCase(Locale.ENGLISH).startsWith(columnPrefix)) {
+          propertyName = columnName.substring(columnPrefix.length());
+        } else {
+          continue;
         }
-        final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
-        if (property != null && metaObject.hasSetter(property)) {
-          if (resultMap.getMappedProperties().contains(property)) {
-            continue;
-          }
-          final Class<?> propertyType = metaObject.getSetterType(property);
-          if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
-            final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
-            autoMapping.add(new UnMappedColumnAutoMapping(columnName, property, typeHandler, propertyType.isPrimitive()));
-          } else {
-            configuration.getAutoMappingUnknownColumnBehavior()
-                .doAction(mappedStatement, columnName, property, propertyType);
-          }
+      }
+      final String property = metaObject.findProperty(propertyName, configuration.isMapUnderscoreToCamelCase());
+      if (property != null && metaObject.hasSetter(property)) {
+        if (resultMap.getMappedProperties().contains(property)) {
+          continue;
+        }
+        final Class<?> propertyType = metaObject.getSetterType(property);
+        if (typeHandlerRegistry.hasTypeHandler(propertyType, rsw.getJdbcType(columnName))) {
+          final TypeHandler<?> typeHandler = rsw.getTypeHandler(propertyType, columnName);
+          final PrimitiveSetInvoker primitiveSetter = findPrimitiveSetter(metaObject, property, propertyType, typeHandler);
+          autoMapping.add(new UnMappedColumnAutoMapping(rsw.getColumnIndex(columnName), property, typeHandler, propertyType.isPrimitive(),
+              primitiveSetter, primitiveSetter == null ? null : metaObject.getOriginalObject().getClass()));
         } else {
           configuration.getAutoMappingUnknownColumnBehavior()
-              .doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
+              .doAction(mappedStatement, columnName, property, propertyType);
         }
+      } else {
+        configuration.getAutoMappingUnknownColumnBehavior()
+            .doAction(mappedStatement, columnName, (property != null) ? property : propertyName, null);
       }
-      autoMappingsCache.put(mapKey, autoMapping);
     }
     return autoMapping;
   }
@@ -559,7 +695,11 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     boolean foundValues = false;
     if (!autoMapping.isEmpty()) {
       for (UnMappedColumnAutoMapping mapping : autoMapping) {
-        final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.column);
+        if (mapping.primitiveSetter != null && mapping.beanType.isInstance(metaObject.getOriginalObject())) {
+          foundValues = applyPrimitiveAutomaticMapping(rsw.getResultSet(), mapping, metaObject.getOriginalObject()) || foundValues;
+          continue;
+        }
+        final Object value = mapping.typeHandler.getResult(rsw.getResultSet(), mapping.columnIndex);
         if (value != null) {
           foundValues = true;
         }
@@ -572,6 +712,142 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return foundValues;
   }
 
+  private PrimitiveSetInvoker findPrimitiveSetter(MetaObject metaObject, String property, Class<?> propertyType, TypeHandler<?> typeHandler) {
+    if (!propertyType.isPrimitive() || !(metaObject.getObjectWrapper() instanceof BeanWrapper) || !isSimpleProperty(property)
+        || !PrimitiveTypeHandler.supports(typeHandler, propertyType)) {
+      return null;
+    }
+    final Invoker invoker = reflectorFactory.findForClass(metaObject.getOriginalObject().getClass()).getSetInvoker(property);
+    if (invoker instanceof PrimitiveSetInvoker && !(invoker instanceof AmbiguousMethodInvoker) && invoker.getType() == propertyType) {
+      return (PrimitiveSetInvoker) invoker;
+    }
+    return null;
+  }
+
+  private boolean applyPrimitiveAutomaticMapping(ResultSet rs, UnMappedColumnAutoMapping mapping, Object rowValue) throws SQLException {
+    final PrimitiveSetInvoker setter = mapping.primitiveSetter;
+    final int columnIndex = mapping.columnIndex;
+    final Class<?> type = setter.getType();
+    try {
+      if (type == int.class) {
+        final int value = ((PrimitiveTypeHandler.OfInt) mapping.typeHandler).getIntResult(rs, columnIndex);
+        if (value == 0 && rs.wasNull()) {
+          return false;
+        }
+        setter.setInt(rowValue, value);
+      } else if (type == long.class) {
+        final long value = ((PrimitiveTypeHandler.OfLong) mapping.typeHandler).getLongResult(rs, columnIndex);
+        if (value == 0 && rs.wasNull()) {
+          return false;
+        }
+        setter.setLong(rowValue, value);
+      } else if (type == double.class) {
+        final double value = ((PrimitiveTypeHandler.OfDouble) mapping.typeHandler).getDoubleResult(rs, columnIndex);
+        if (value == 0 && rs.wasNull()) {
+          return false;
+        }
+        setter.setDouble(rowValue, value);
+      } else if (type == boolean.class) {
+        final boolean value = ((PrimitiveTypeHandler.OfBoolean) mapping.typeHandler).getBooleanResult(rs, columnIndex);
+        if (!value && rs.wasNull()) {
+          return false;
+        }
+        setter.setBoolean(rowValue, value);
+      } else if (type == float.class) {
+        final float value = ((PrimitiveTypeHandler.OfFloat) mapping.typeHandler).getFloatResult(rs, columnIndex);
+        if (value == 0 && rs.wasNull()) {
+          return false;
+        }
+        setter.setFloat(rowValue, value);
+      } else if (type == short.class) {
+        final short value = ((PrimitiveTypeHandler.OfShort) mapping.typeHandler).getShortResult(rs, columnIndex);
+        if (value == 0 && rs.wasNull()) {
+          return false;
+        }
+        setter.setShort(rowValue, value);
+      } else {
+        final byte value = ((PrimitiveTypeHandler.OfByte) mapping.typeHandler).getByteResult(rs, columnIndex);
+        if (value == 0 && rs.wasNull()) {
+          return false;
+        }
+        setter.setByte(rowValue, value);
+      }
+    } catch (IllegalAccessException | InvocationTargetException e) {
+      final Throwable cause = ExceptionUtil.unwrapThrowable(e);
+      throw new ReflectionException("Could not set property '" + mapping.property + "' of '" + rowValue.getClass()
+          + "' with the value of column #" + columnIndex + ". Cause: " + cause, cause);
+    }
+    return true;
+  }
+
+  //
+  // GENERATED ROW MAPPERS
+  //
+
+  private GeneratedRowMapper getRowMapper(ResultSetWrapper rsw, ResultMap resultMap, Object rowValue, String columnPrefix, boolean isNested)
+      throws SQLException {
+    if (!rowMapperGenerationEnabled) {
+      return null;
+    }
+    if (rsw != rowMappersWrapper) {
+      // the column indexes of the row mappers only hold for one result set
+      rowMappers.clear();
+      rowMappersWrapper = rsw;
+    }
+    final String mapKey = resultMap.getId() + ":" + columnPrefix + ":" + isNested;
+    GeneratedRowMapper rowMapper = rowMappers.get(mapKey);
+    if (rowMapper == null && !rowMappers.containsKey(mapKey)) {
+      rowMapper = createRowMapper(rsw, resultMap, rowValue, columnPrefix, shouldApplyAutomaticMappings(resultMap, isNested));
+      rowMappers.put(mapKey, rowMapper);
+    }
+    return rowMapper != null && resultMap.getType().isInstance(rowValue) ? rowMapper : null;
+  }
+
+  private GeneratedRowMapper createRowMapper(ResultSetWrapper rsw, ResultMap resultMap, Object rowValue, String columnPrefix, boolean autoMapping)
+      throws SQLException {
+    final Class<?> type = resultMap.getType();
+    if (Map.class.isAssignableFrom(type) || Collection.class.isAssignableFrom(type)
+        || !(configuration.getObjectWrapperFactory() instanceof DefaultObjectWrapperFactory)) {
+      return null;
+    }
+    final List<RowMapperFactory.ColumnMapping> mappings = new ArrayList<>();
+    if (autoMapping) {
+      for (UnMappedColumnAutoMapping mapping : createAutomaticMappings(rsw, resultMap, configuration.newMetaObject(rowValue), columnPrefix)) {
+        if (!isSimpleProperty(mapping.property)) {
+          return null;
+        }
+        mappings.add(new RowMapperFactory.ColumnMapping(mapping.columnIndex, mapping.property, mapping.typeHandler));
+      }
+    }
+    final int[] columnIndexes = rsw.getPropertyColumnIndexes(resultMap, columnPrefix);
+    final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
+    for (int i = 0; i < propertyMappings.size(); i++) {
+      final ResultMapping propertyMapping = propertyMappings.get(i);
+      if (propertyMapping.getNestedQueryId() != null || propertyMapping.getResultSet() != null || propertyMapping.isCompositeResult()) {
+        // nested selects and multiple result sets are mapped through reflection
+        return null;
+      }
+      final String property = propertyMapping.getProperty();
+      if (propertyMapping.getNestedResultMapId() != null || property == null || columnIndexes[i] < 0) {
+        continue;
+      }
+      if (!isSimpleProperty(property)) {
+        return null;
+      }
+      mappings.add(new RowMapperFactory.ColumnMapping(columnIndexes[i], property, propertyMapping.getTypeHandler()));
+    }
+    final String shapeKey = resultMap.getId() + ":" + columnPrefix + ":" + autoMapping + ":" + rsw.getColumnSignature();
+    return configuration.getRowMapperFactory().getRowMapper(shapeKey, type, mappings, reflectorFactory.findForClass(type));
+  }
+
+  private boolean isSimpleProperty(String property) {
+    return property.indexOf('.') < 0 && property.indexOf('[') < 0;
+  }
+
+  private boolean applyRowMapper(GeneratedRowMapper rowMapper, ResultSetWrapper rsw, Object rowValue) throws SQLException {
+    return rowMapper.map(rsw.getResultSet(), rowValue, configuration.isCallSettersOnNulls());
+  }
+
   // MULTIPLE RESULT SETS
 
   private void linkToParents(ResultSet rs, ResultMapping parentMapping, Object rowValue) throws SQLException {
@@ -675,8 +951,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
           final ResultMap resultMap = configuration.getResultMap(constructorMapping.getNestedResultMapId());
           value = getRowValue(rsw, resultMap, getColumnPrefix(columnPrefix, constructorMapping));
         } else {
-          final TypeHandler<?> typeHandler = constructorMapping.getTypeHandler();
-          value = typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
+          value = getColumnValue(rsw, constructorMapping.getTypeHandler(), column, columnPrefix);
         }
       } catch (ResultMapException | SQLException e) {
         throw new ExecutorException("Could not process result for mapping: " + constructorMapping, e);
@@ -709,7 +984,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       Class<?> parameterType = constructor.getParameterTypes()[i];
       String columnName = rsw.getColumnNames().get(i);
       TypeHandler<?> typeHandler = rsw.getTypeHandler(parameterType, columnName);
-      Object value = typeHandler.getResult(rsw.getResultSet(), columnName);
+      Object value = typeHandler.getResult(rsw.getResultSet(), i + 1);
       constructorArgTypes.add(parameterType);
       constructorArgs.add(value);
       foundValues = value != null || foundValues;
@@ -745,16 +1020,23 @@ public class DefaultResultSetHandler implements ResultSetHandler {
 
   private Object createPrimitiveResultObject(ResultSetWrapper rsw, ResultMap resultMap, String columnPrefix) throws SQLException {
     final Class<?> resultType = resultMap.getType();
-    final String columnName;
     if (!resultMap.getResultMappings().isEmpty()) {
       final List<ResultMapping> resultMappingList = resultMap.getResultMappings();
       final ResultMapping mapping = resultMappingList.get(0);
-      columnName = prependPrefix(mapping.getColumn(), columnPrefix);
-    } else {
-      columnName = rsw.getColumnNames().get(0);
+      final String columnName = prependPrefix(mapping.getColumn(), columnPrefix);
+      return getColumnValue(rsw, rsw.getTypeHandler(resultType, columnName), mapping.getColumn(), columnPrefix);
+    }
+    final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, rsw.getColumnNames().get(0));
+    return typeHandler.getResult(rsw.getResultSet(), 1);
+  }
+
+  private Object getColumnValue(ResultSetWrapper rsw, TypeHandler<?> typeHandler, String column, String columnPrefix) throws SQLException {
+    final int columnIndex = column == null ? -1 : rsw.getColumnIndex(column, columnPrefix);
+    if (columnIndex > 0) {
+      return typeHandler.getResult(rsw.getResultSet(), columnIndex);
     }
-    final TypeHandler<?> typeHandler = rsw.getTypeHandler(resultType, columnName);
-    return typeHandler.getResult(rsw.getResultSet(), columnName);
+    // let the driver report the missing column
+    return typeHandler.getResult(rsw.getResultSet(), prependPrefix(column, columnPrefix));
   }
 
   //
@@ -792,10 +1074,14 @@ public class DefaultResultSetHandler implements ResultSetHandler {
       if (executor.isCached(nestedQuery, key)) {
         executor.deferLoad(nestedQuery, metaResultObject, property, key, targetType);
         value = DEFERRED;
+      } else if (shouldBatchNestedQuery(propertyMapping)
+          && addToNestedQueryBatch(nestedQuery, nestedBoundSql, metaResultObject, propertyMapping, nestedQueryParameterObject)) {
+        value = DEFERRED;
       } else {
         final ResultLoader resultLoader = new ResultLoader(configuration, executor, nestedQuery, nestedQueryParameterObject, targetType, key, nestedBoundSql);
         if (propertyMapping.isLazy()) {
-          lazyLoader.addLoader(property, metaResultObject, resultLoader);
+          lazyLoader.addLoader(property, metaResultObject, resultLoader,
+              getResultLoaderBatch(propertyMapping, nestedQuery, nestedBoundSql));
           value = DEFERRED;
         } else {
           value = resultLoader.loadResult();
@@ -805,6 +1091,77 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return value;
   }
 
+  private boolean shouldBatchNestedQuery(ResultMapping propertyMapping) {
+    return batchNestedQueries && propertyMapping.getBatchSize() > 1 && !propertyMapping.isLazy()
+        && !propertyMapping.isCompositeResult();
+  }
+
+  private boolean addToNestedQueryBatch(MappedStatement nestedQuery, BoundSql nestedBoundSql, MetaObject metaResultObject,
+      ResultMapping propertyMapping, Object key) throws SQLException {
+    PendingNestedQueries pending = pendingNestedQueries.computeIfAbsent(propertyMapping,
+        mapping -> new PendingNestedQueries(NestedQueryBatch.of(nestedQuery, nestedBoundSql)));
+    if (pending.batch == null) {
+      return false;
+    }
+    Object keyValue = NestedQueryBatch.keyOf(key);
+    pending.keys.putIfAbsent(keyValue, key);
+    pending.parents.computeIfAbsent(keyValue, k -> new ArrayList<>()).add(metaResultObject);
+    if (pending.keys.size() >= propertyMapping.getBatchSize()) {
+      loadNestedQueryBatch(propertyMapping, pending);
+    }
+    return true;
+  }
+
+  private ResultLoaderBatch getResultLoaderBatch(ResultMapping propertyMapping, MappedStatement nestedQuery,
+      BoundSql nestedBoundSql) {
+    // aggressive lazy loading loads every property of one object rather than one property of many objects
+    if (propertyMapping.getBatchSize() <= 1 || propertyMapping.isCompositeResult()
+        || configuration.isAggressiveLazyLoading()) {
+      return null;
+    }
+    if (!resultLoaderBatches.containsKey(propertyMapping)) {
+      NestedQueryBatch batch = NestedQueryBatch.of(nestedQuery, nestedBoundSql);
+      resultLoaderBatches.put(propertyMapping,
+          batch == null ? null : new ResultLoaderBatch(batch, propertyMapping.getBatchSize()));
+    }
+    return resultLoaderBatches.get(propertyMapping);
+  }
+
+  private void loadNestedQueryBatches() throws SQLException {
+    for (Map.Entry<ResultMapping, PendingNestedQueries> entry : pendingNestedQueries.entrySet()) {
+      if (!entry.getValue().keys.isEmpty()) {
+        loadNestedQueryBatch(entry.getKey(), entry.getValue());
+      }
+    }
+  }
+
+  private void loadNestedQueryBatch(ResultMapping propertyMapping, PendingNestedQueries pending) throws SQLException {
+    final String property = propertyMapping.getProperty();
+    final Class<?> targetType = propertyMapping.getJavaType();
+    final ResultExtractor resultExtractor = new ResultExtractor(configuration, objectFactory);
+    Map<Object, List<Object>> rowsByKey = pending.batch.query(executor, pending.keys.values());
+    for (Map.Entry<Object, List<MetaObject>> entry : pending.parents.entrySet()) {
+      Object value;
+      if (rowsByKey != null) {
+        value = resultExtractor.extractObjectFromList(rowsByKey.getOrDefault(entry.getKey(), new ArrayList<>()), targetType);
+      } else {
+        // the rows could not be told apart, load them one key at a time
+        final MappedStatement nestedQuery = pending.batch.getNestedQuery();
+        final Object key = pending.keys.get(entry.getKey());
+        final BoundSql nestedBoundSql = nestedQuery.getBoundSql(key);
+        final CacheKey cacheKey = executor.createCacheKey(nestedQuery, key, RowBounds.DEFAULT, nestedBoundSql);
+        value = new ResultLoader(configuration, executor, nestedQuery, key, targetType, cacheKey, nestedBoundSql).loadResult();
+      }
+      for (MetaObject metaObject : entry.getValue()) {
+        if (value != null || (configuration.isCallSettersOnNulls() && !metaObject.getSetterType(property).isPrimitive())) {
+          metaObject.setValue(property, value);
+        }
+      }
+    }
+    pending.keys.clear();
+    pending.parents.clear();
+  }
+
   private Object prepareParameterForNestedQuery(ResultSet rs, ResultMapping resultMapping, Class<?> parameterType, String columnPrefix) throws SQLException {
     if (resultMapping.isCompositeResult()) {
       return prepareCompositeKeyParameter(rs, resultMapping, parameterType, columnPrefix);
@@ -896,10 +1253,11 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     ResultSet resultSet = rsw.getResultSet();
     skipRows(resultSet, rowBounds);
     Object rowValue = previousRowValue;
-    while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && resultSet.next()) {
+    while (shouldProcessMoreRows(resultContext, rowBounds) && !resultSet.isClosed() && next(resultSet)) {
       final ResultMap discriminatedResultMap = resolveDiscriminatedResultMap(resultSet, resultMap, null);
-      final CacheKey rowKey = createRowKey(discriminatedResultMap, rsw, null);
-      Object partialObject = nestedResultObjects.get(rowKey);
+      final RowKey rowKey = createRowKey(discriminatedResultMap, rsw, null, null);
+      final RowKey storedKey = rowKey == null ? null : nestedResultObjects.get(rowKey);
+      Object partialObject = storedKey == null ? null : storedKey.getRowValue();
       // issue #577 && #542
       if (mappedStatement.isResultOrdered()) {
         if (partialObject == null && rowValue != null) {
@@ -926,7 +1284,7 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // NESTED RESULT MAP (JOIN MAPPING)
   //
 
-  private boolean applyNestedResultMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String parentPrefix, CacheKey parentRowKey, boolean newObject) {
+  private boolean applyNestedResultMappings(ResultSetWrapper rsw, ResultMap resultMap, MetaObject metaObject, String parentPrefix, RowKey parentRowKey, boolean newObject) {
     boolean foundValues = false;
     for (ResultMapping resultMapping : resultMap.getPropertyResultMappings()) {
       final String nestedResultMapId = resultMapping.getNestedResultMapId();
@@ -945,9 +1303,10 @@ public class DefaultResultSetHandler implements ResultSetHandler {
               continue;
             }
           }
-          final CacheKey rowKey = createRowKey(nestedResultMap, rsw, columnPrefix);
-          final CacheKey combinedKey = combineKeys(rowKey, parentRowKey);
-          Object rowValue = nestedResultObjects.get(combinedKey);
+          // the nested objects of a parent without a key are not looked up
+          final RowKey combinedKey = parentRowKey == null ? null : createRowKey(nestedResultMap, rsw, columnPrefix, parentRowKey);
+          final RowKey storedKey = combinedKey == null ? null : nestedResultObjects.get(combinedKey);
+          Object rowValue = storedKey == null ? null : storedKey.getRowValue();
           boolean knownValue = rowValue != null;
           instantiateCollectionPropertyIfAppropriate(resultMapping, metaObject); // mandatory
           if (anyNotNullColumnHasValue(resultMapping, columnPrefix, rsw)) {
@@ -966,6 +1325,17 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   }
 
   private String getColumnPrefix(String parentPrefix, ResultMapping resultMapping) {
+    // the prefixes are kept, as they are looked up for each row and nested result map
+    final Map<String, String> prefixes = columnPrefixes.computeIfAbsent(resultMapping, k -> new HashMap<>());
+    String columnPrefix = prefixes.get(parentPrefix);
+    if (columnPrefix == null && !prefixes.containsKey(parentPrefix)) {
+      columnPrefix = buildColumnPrefix(parentPrefix, resultMapping);
+      prefixes.put(parentPrefix, columnPrefix);
+    }
+    return columnPrefix;
+  }
+
+  private String buildColumnPrefix(String parentPrefix, ResultMapping resultMapping) {
     final StringBuilder columnPrefixBuilder = new StringBuilder();
     if (parentPrefix != null) {
       columnPrefixBuilder.append(parentPrefix);
@@ -981,19 +1351,19 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     if (notNullColumns != null && !notNullColumns.isEmpty()) {
       ResultSet rs = rsw.getResultSet();
       for (String column : notNullColumns) {
-        rs.getObject(prependPrefix(column, columnPrefix));
+        final int columnIndex = rsw.getColumnIndex(column, columnPrefix);
+        if (columnIndex > 0) {
+          rs.getObject(columnIndex);
+        } else {
+          rs.getObject(prependPrefix(column, columnPrefix));
+        }
         if (!rs.wasNull()) {
           return true;
         }
       }
       return false;
     } else if (columnPrefix != null) {
-      for (String columnName : rsw.getColumnNames()) {
-        if (columnName.toUpperCase().startsWith(columnPrefix.toUpperCase())) {
-          return true;
-        }
-      }
-      return false;
+      return rsw.hasColumnWithPrefix(columnPrefix);
     }
     return true;
   }
@@ -1007,37 +1377,52 @@ public class DefaultResultSetHandler implements ResultSetHandler {
   // UNIQUE RESULT KEY
   //
 
-  private CacheKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
-    final CacheKey cacheKey = new CacheKey();
-    cacheKey.update(resultMap.getId());
-    List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
-    if (resultMappings.isEmpty()) {
-      if (Map.class.isAssignableFrom(resultMap.getType())) {
-        createRowKeyForMap(rsw, cacheKey);
-      } else {
-        createRowKeyForUnmappedProperties(resultMap, rsw, cacheKey, columnPrefix);
-      }
-    } else {
-      createRowKeyForMappedProperties(resultMap, rsw, cacheKey, resultMappings, columnPrefix);
+  private RowKey createRowKey(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix, RowKey parentRowKey) throws SQLException {
+    final RowKeyColumns keyColumns = getRowKeyColumns(resultMap, rsw, columnPrefix);
+    final ResultSet rs = rsw.getResultSet();
+    final int[] columnIndexes = keyColumns.columnIndexes;
+    final TypeHandler<?>[] typeHandlers = keyColumns.typeHandlers;
+    final RowKey rowKey = rowKeyProbe;
+    rowKey.reset(resultMap.getId(), columnPrefix, parentRowKey, columnIndexes.length);
+    boolean foundValues = false;
+    for (int i = 0; i < columnIndexes.length; i++) {
+      final TypeHandler<?> th = typeHandlers[i];
+      final Object value = th == null ? rs.getString(columnIndexes[i]) : th.getResult(rs, columnIndexes[i]);
+      foundValues = foundValues || value != null || keyColumns.keepsNulls;
+      rowKey.add(value);
     }
-    if (cacheKey.getUpdateCount() < 2) {
-      return CacheKey.NULL_CACHE_KEY;
+    return foundValues ? rowKey : null;
+  }
+
+  private RowKeyColumns getRowKeyColumns(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
+    if (rsw != rowKeyColumnsWrapper) {
+      // the column indexes only hold for one result set
+      rowKeyColumnsCache.clear();
+      rowKeyColumnsWrapper = rsw;
     }
-    return cacheKey;
+    final Map<String, RowKeyColumns> keyColumnsByPrefix = rowKeyColumnsCache.computeIfAbsent(resultMap.getId(), k -> new HashMap<>());
+    RowKeyColumns keyColumns = keyColumnsByPrefix.get(columnPrefix);
+    if (keyColumns == null) {
+      keyColumns = resolveRowKeyColumns(resultMap, rsw, columnPrefix);
+      keyColumnsByPrefix.put(columnPrefix, keyColumns);
+    }
+    return keyColumns;
   }
 
-  private CacheKey combineKeys(CacheKey rowKey, CacheKey parentRowKey) {
-    if (rowKey.getUpdateCount() > 1 && parentRowKey.getUpdateCount() > 1) {
-      CacheKey combinedKey;
-      try {
-        combinedKey = rowKey.clone();
-      } catch (CloneNotSupportedException e) {
-        throw new ExecutorException("Error cloning cache key.  Cause: " + e, e);
+  private RowKeyColumns resolveRowKeyColumns(ResultMap resultMap, ResultSetWrapper rsw, String columnPrefix) throws SQLException {
+    List<ResultMapping> resultMappings = getResultMappingsForRowKey(resultMap);
+    if (resultMappings.isEmpty()) {
+      final RowKeyColumns keyColumns = new RowKeyColumns(false);
+      if (Map.class.isAssignableFrom(resultMap.getType())) {
+        resolveRowKeyColumnsForMap(rsw, keyColumns);
+      } else {
+        resolveRowKeyColumnsForUnmappedProperties(resultMap, rsw, keyColumns, columnPrefix);
       }
-      combinedKey.update(parentRowKey);
-      return combinedKey;
+      return keyColumns;
     }
-    return CacheKey.NULL_CACHE_KEY;
+    final RowKeyColumns keyColumns = new RowKeyColumns(configuration.isReturnInstanceForEmptyRow());
+    resolveRowKeyColumnsForMappedProperties(resultMap, rsw, keyColumns, resultMappings, columnPrefix);
+    return keyColumns;
   }
 
   private List<ResultMapping> getResultMappingsForRowKey(ResultMap resultMap) {
@@ -1048,25 +1433,20 @@ public class DefaultResultSetHandler implements ResultSetHandler {
     return resultMappings;
   }
 
-  private void createRowKeyForMappedProperties(ResultMap resultMap, ResultSetWrapper rsw, CacheKey cacheKey, List<ResultMapping> resultMappings, String columnPrefix) throws SQLException {
+  private void resolveRowKeyColumnsForMappedProperties(ResultMap resultMap, ResultSetWrapper rsw, RowKeyColumns keyColumns, List<ResultMapping> resultMappings, String columnPrefix) throws SQLException {
+    List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
     for (ResultMapping resultMapping : resultMappings) {
       if (resultMapping.isSimple()) {
         final String column = prependPrefix(resultMapping.getColumn(), columnPrefix);
-        final TypeHandler<?> th = resultMapping.getTypeHandler();
-        List<String> mappedColumnNames = rsw.getMappedColumnNames(resultMap, columnPrefix);
         // Issue #114
         if (column != null && mappedColumnNames.contains(column.toUpperCase(Locale.ENGLISH))) {
-          final Object value = th.getResult(rsw.getResultSet(), column);
-          if (value != null || configuration.isReturnInstanceForEmptyRow()) {
-            cacheKey.update(column);
-            cacheKey.update(value);
-          }
+          keyColumns.add(rsw.getColumnIndex(column), resultMapping.getTypeHandler());
         }
       }
     }
   }
 
-  private void createRowKeyForUnmappedProperties(ResultMap resultMap, ResultSetWrapper rsw, CacheKey cacheKey, String columnPrefix) throws SQLException {
+  private void resolveRowKeyColumnsForUnmappedProperties(ResultMap resultMap, ResultSetWrapper rsw, RowKeyColumns keyColumns, String columnPrefix) throws SQLException {
     final MetaClass metaType = MetaClass.forClass(resultMap.getType(), reflectorFactory);
     List<String> unmappedColumnNames = rsw.getUnmappedColumnNames(resultMap, columnPrefix);
     for (String column : unmappedColumnNames) {
@@ -1080,23 +1460,15 @@ public class DefaultResultSetHandler implements ResultSetHandler {
         }
       }
       if (metaType.findProperty(property, configuration.isMapUnderscoreToCamelCase()) != null) {
-        String value = rsw.getResultSet().getString(column);
-        if (value != null) {
-          cacheKey.update(column);
-          cacheKey.update(value);
-        }
+        keyColumns.add(rsw.getColumnIndex(column), null);
       }
     }
   }
 
-  private void createRowKeyForMap(ResultSetWrapper rsw, CacheKey cacheKey) throws SQLException {
+  private void resolveRowKeyColumnsForMap(ResultSetWrapper rsw, RowKeyColumns keyColumns) {
     List<String> columnNames = rsw.getColumnNames();
     for (String columnName : columnNames) {
-      final String value = rsw.getResultSet().getString(columnName);
-      if (value != null) {
-        cacheKey.update(columnName);
-        cacheKey.update(value);
-      }
+      keyColumns.add(rsw.getColumnIndex(columnName), null);
     }
   }
 
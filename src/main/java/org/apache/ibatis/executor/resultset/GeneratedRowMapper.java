@@ -0,0 +1,44 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Maps the columns of a row to the properties of a result object without reflection. Implemented by the classes that
+ * {@link RowMapperFactory} generates, not by applications.
+ *
+ * @since 3.5.8
+ */
+public interface GeneratedRowMapper {
+
+  /**
+   * Maps the current row of a result set to a result object.
+   *
+   * @param rs
+   *          the result set
+   * @param target
+   *          the result object
+   * @param callSettersOnNulls
+   *          whether setters of non primitive properties are called for null values
+   * @return whether any of the mapped columns had a value
+   * @throws SQLException
+   *           if a column cannot be read
+   */
+  boolean map(ResultSet rs, Object target, boolean callSettersOnNulls) throws SQLException;
+
+}
@@ -0,0 +1,292 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.type.JdbcType;
+import org.apache.ibatis.type.ObjectTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.apache.ibatis.type.UnknownTypeHandler;
+import org.apache.ibatis.util.MapUtil;
+
+/**
+ * The columns of a result set, and everything that is resolved from them: column indexes, type handlers, the mapped
+ * and unmapped columns of result maps and their auto-mappings.
+ * <p>
+ * A shape is immutable once read, and resolves the rest lazily into concurrent maps, so that it can be shared by the
+ * executions of a statement that return the same columns.
+ *
+ * @since 3.5.8
+ * @see ResultSetShapeCache
+ */
+final class ResultSetShape {
+
+  private final TypeHandlerRegistry typeHandlerRegistry;
+  private final boolean useColumnLabel;
+  private final List<String> columnNames;
+  private final List<String> classNames;
+  private final List<JdbcType> jdbcTypes;
+  private final int[] columnTypes;
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
+  // the maps below are keyed by the column prefix, or "" when there is none
+  private final ConcurrentMap<String, ConcurrentMap<String, Integer>> prefixedColumnIndexes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, int[]>> propertyColumnIndexesMap = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Boolean> columnPrefixes = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<Class<?>, TypeHandler<?>>> typeHandlerMap = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, List<String>>> mappedColumnNamesMap = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, List<String>>> unMappedColumnNamesMap = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, ConcurrentMap<String, List<?>>> autoMappingsMap = new ConcurrentHashMap<>();
+  private volatile String signature;
+
+  ResultSetShape(ResultSetMetaData metaData, TypeHandlerRegistry typeHandlerRegistry, boolean useColumnLabel)
+      throws SQLException {
+    this.typeHandlerRegistry = typeHandlerRegistry;
+    this.useColumnLabel = useColumnLabel;
+    final int columnCount = metaData.getColumnCount();
+    final List<String> columnNames = new ArrayList<>(columnCount);
+    final List<String> classNames = new ArrayList<>(columnCount);
+    final List<JdbcType> jdbcTypes = new ArrayList<>(columnCount);
+    this.columnTypes = new int[columnCount];
+    for (int i = 1; i <= columnCount; i++) {
+      final String columnName = useColumnLabel ? metaData.getColumnLabel(i) : metaData.getColumnName(i);
+      columnNames.add(columnName);
+      columnTypes[i - 1] = metaData.getColumnType(i);
+      jdbcTypes.add(JdbcType.forCode(columnTypes[i - 1]));
+      classNames.add(metaData.getColumnClassName(i));
+      if (columnName != null) {
+        columnIndexes.putIfAbsent(columnName.toUpperCase(Locale.ENGLISH), i);
+      }
+    }
+    this.columnNames = Collections.unmodifiableList(columnNames);
+    this.classNames = Collections.unmodifiableList(classNames);
+    this.jdbcTypes = Collections.unmodifiableList(jdbcTypes);
+  }
+
+  /**
+   * Checks whether a result set still has this shape, comparing the column count, names and types only.
+   *
+   * @param metaData
+   *          the meta data of the result set
+   * @param useColumnLabel
+   *          whether the columns are named by their labels
+   * @return {@code true} if the result set has the same columns
+   * @throws SQLException
+   *           if the meta data cannot be read
+   */
+  boolean matches(ResultSetMetaData metaData, boolean useColumnLabel) throws SQLException {
+    if (useColumnLabel != this.useColumnLabel || metaData.getColumnCount() != columnTypes.length) {
+      return false;
+    }
+    for (int i = 1; i <= columnTypes.length; i++) {
+      final String columnName = useColumnLabel ? metaData.getColumnLabel(i) : metaData.getColumnName(i);
+      if (!Objects.equals(columnNames.get(i - 1), columnName) || columnTypes[i - 1] != metaData.getColumnType(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  List<String> getClassNames() {
+    return classNames;
+  }
+
+  List<JdbcType> getJdbcTypes() {
+    return jdbcTypes;
+  }
+
+  String getSignature() {
+    String value = signature;
+    if (value == null) {
+      value = columnNames.toString() + jdbcTypes + classNames;
+      signature = value;
+    }
+    return value;
+  }
+
+  JdbcType getJdbcType(String columnName) {
+    for (int i = 0; i < columnNames.size(); i++) {
+      if (columnNames.get(i).equalsIgnoreCase(columnName)) {
+        return jdbcTypes.get(i);
+      }
+    }
+    return null;
+  }
+
+  int getColumnIndex(String columnName) {
+    Integer index = columnIndexes.get(columnName.toUpperCase(Locale.ENGLISH));
+    return index == null ? -1 : index;
+  }
+
+  int getColumnIndex(String columnName, String columnPrefix) {
+    final String prefixKey = columnPrefix == null ? "" : columnPrefix;
+    final Map<String, Integer> indexes = MapUtil.computeIfAbsent(prefixedColumnIndexes, prefixKey, k -> new ConcurrentHashMap<>());
+    Integer index = indexes.get(columnName);
+    if (index == null) {
+      index = getColumnIndex(prefixKey + columnName);
+      indexes.put(columnName, index);
+    }
+    return index;
+  }
+
+  int[] getPropertyColumnIndexes(ResultMap resultMap, String columnPrefix) {
+    final String prefixKey = columnPrefix == null ? "" : columnPrefix;
+    final Map<String, int[]> indexesByPrefix = MapUtil.computeIfAbsent(propertyColumnIndexesMap, resultMap.getId(), k -> new ConcurrentHashMap<>());
+    int[] indexes = indexesByPrefix.get(prefixKey);
+    if (indexes == null) {
+      final List<ResultMapping> propertyMappings = resultMap.getPropertyResultMappings();
+      indexes = new int[propertyMappings.size()];
+      for (int i = 0; i < indexes.length; i++) {
+        final String column = propertyMappings.get(i).getColumn();
+        indexes[i] = column == null || column.isEmpty() ? -1 : getColumnIndex(column, columnPrefix);
+      }
+      indexesByPrefix.put(prefixKey, indexes);
+    }
+    return indexes;
+  }
+
+  boolean hasColumnWithPrefix(String columnPrefix) {
+    Boolean found = columnPrefixes.get(columnPrefix);
+    if (found == null) {
+      final String upperColumnPrefix = columnPrefix.toUpperCase(Locale.ENGLISH);
+      found = columnIndexes.keySet().stream().anyMatch(column -> column.startsWith(upperColumnPrefix));
+      columnPrefixes.put(columnPrefix, found);
+    }
+    return found;
+  }
+
+  TypeHandler<?> getTypeHandler(Class<?> propertyType, String columnName) {
+    final Map<Class<?>, TypeHandler<?>> columnHandlers = MapUtil.computeIfAbsent(typeHandlerMap, columnName, k -> new ConcurrentHashMap<>());
+    TypeHandler<?> handler = columnHandlers.get(propertyType);
+    if (handler == null) {
+      JdbcType jdbcType = getJdbcType(columnName);
+      handler = typeHandlerRegistry.getTypeHandler(propertyType, jdbcType);
+      // Replicate logic of UnknownTypeHandler#resolveTypeHandler
+      // See issue #59 comment 10
+      if (handler == null || handler instanceof UnknownTypeHandler) {
+        final int index = columnNames.indexOf(columnName);
+        final Class<?> javaType = resolveClass(classNames.get(index));
+        if (javaType != null && jdbcType != null) {
+          handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
+        } else if (javaType != null) {
+          handler = typeHandlerRegistry.getTypeHandler(javaType);
+        } else if (jdbcType != null) {
+          handler = typeHandlerRegistry.getTypeHandler(jdbcType);
+        }
+      }
+      if (handler == null || handler instanceof UnknownTypeHandler) {
+        handler = new ObjectTypeHandler();
+      }
+      columnHandlers.put(propertyType, handler);
+    }
+    return handler;
+  }
+
+  private Class<?> resolveClass(String className) {
+    try {
+      // #699 className could be null
+      if (className != null) {
+        return Resources.classForName(className);
+      }
+    } catch (ClassNotFoundException e) {
+      // ignore
+    }
+    return null;
+  }
+
+  private void loadMappedAndUnmappedColumnNames(ResultMap resultMap, String columnPrefix) {
+    List<String> mappedColumnNames = new ArrayList<>();
+    List<String> unmappedColumnNames = new ArrayList<>();
+    final String upperColumnPrefix = columnPrefix == null ? null : columnPrefix.toUpperCase(Locale.ENGLISH);
+    final Set<String> mappedColumns = prependPrefixes(resultMap.getMappedColumns(), upperColumnPrefix);
+    for (String columnName : columnNames) {
+      final String upperColumnName = columnName.toUpperCase(Locale.ENGLISH);
+      if (mappedColumns.contains(upperColumnName)) {
+        mappedColumnNames.add(upperColumnName);
+      } else {
+        unmappedColumnNames.add(columnName);
+      }
+    }
+    final String prefixKey = columnPrefix == null ? "" : columnPrefix;
+    // the unmapped names go first, so that a caller that finds the mapped names also finds the unmapped ones
+    MapUtil.computeIfAbsent(unMappedColumnNamesMap, resultMap.getId(), k -> new ConcurrentHashMap<>())
+        .putIfAbsent(prefixKey, Collections.unmodifiableList(unmappedColumnNames));
+    MapUtil.computeIfAbsent(mappedColumnNamesMap, resultMap.getId(), k -> new ConcurrentHashMap<>())
+        .putIfAbsent(prefixKey, Collections.unmodifiableList(mappedColumnNames));
+  }
+
+  List<String> getMappedColumnNames(ResultMap resultMap, String columnPrefix) {
+    return getColumnNames(mappedColumnNamesMap, resultMap, columnPrefix);
+  }
+
+  List<String> getUnmappedColumnNames(ResultMap resultMap, String columnPrefix) {
+    return getColumnNames(unMappedColumnNamesMap, resultMap, columnPrefix);
+  }
+
+  private List<String> getColumnNames(ConcurrentMap<String, ConcurrentMap<String, List<String>>> columnNamesMap,
+      ResultMap resultMap, String columnPrefix) {
+    final String prefixKey = columnPrefix == null ? "" : columnPrefix;
+    Map<String, List<String>> columnNamesByPrefix = columnNamesMap.get(resultMap.getId());
+    List<String> names = columnNamesByPrefix == null ? null : columnNamesByPrefix.get(prefixKey);
+    if (names == null) {
+      loadMappedAndUnmappedColumnNames(resultMap, columnPrefix);
+      names = columnNamesMap.get(resultMap.getId()).get(prefixKey);
+    }
+    return names;
+  }
+
+  List<?> getAutoMappings(String resultMapId, String columnPrefix) {
+    final Map<String, List<?>> autoMappingsByPrefix = autoMappingsMap.get(resultMapId);
+    return autoMappingsByPrefix == null ? null : autoMappingsByPrefix.get(columnPrefix == null ? "" : columnPrefix);
+  }
+
+  void putAutoMappings(String resultMapId, String columnPrefix, List<?> autoMappings) {
+    MapUtil.computeIfAbsent(autoMappingsMap, resultMapId, k -> new ConcurrentHashMap<>())
+        .putIfAbsent(columnPrefix == null ? "" : columnPrefix, autoMappings);
+  }
+
+  private Set<String> prependPrefixes(Set<String> columnNames, String prefix) {
+    if (columnNames == null || columnNames.isEmpty() || prefix == null || prefix.length() == 0) {
+      return columnNames;
+    }
+    final Set<String> prefixed = new HashSet<>();
+    for (String columnName : columnNames) {
+      prefixed.add(prefix + columnName);
+    }
+    return prefixed;
+  }
+
+}
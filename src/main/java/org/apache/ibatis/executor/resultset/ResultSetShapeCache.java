@@ -0,0 +1,80 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.util.MapUtil;
+
+/**
+ * Keeps the shape of the result sets of each statement, so that the column meta data, the type handlers and the
+ * auto-mappings are resolved once and reused by later executions and other threads.
+ * <p>
+ * A cached shape is checked against the column count, names and types of each new result set, and is replaced when
+ * the statement returns other columns or {@code useColumnLabel} changed.
+ *
+ * @since 3.5.8
+ * @see org.apache.ibatis.session.Configuration#getResultSetShapeCache()
+ */
+public class ResultSetShapeCache {
+
+  private final ConcurrentMap<String, ConcurrentMap<Integer, ResultSetShape>> shapes = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the shape of a result set of a statement, reading it when it is not cached or the columns changed.
+   *
+   * @param ms
+   *          the statement
+   * @param resultSetIndex
+   *          the index of the result set among the result sets of the statement, starting at 0
+   * @param metaData
+   *          the meta data of the result set
+   * @return the shape
+   * @throws SQLException
+   *           if the meta data cannot be read
+   */
+  ResultSetShape getShape(MappedStatement ms, int resultSetIndex, ResultSetMetaData metaData) throws SQLException {
+    final ConcurrentMap<Integer, ResultSetShape> statementShapes = MapUtil.computeIfAbsent(shapes, ms.getId(), k -> new ConcurrentHashMap<>());
+    final boolean useColumnLabel = ms.getConfiguration().isUseColumnLabel();
+    ResultSetShape shape = statementShapes.get(resultSetIndex);
+    if (shape == null || !shape.matches(metaData, useColumnLabel)) {
+      shape = new ResultSetShape(metaData, ms.getConfiguration().getTypeHandlerRegistry(), useColumnLabel);
+      statementShapes.put(resultSetIndex, shape);
+    }
+    return shape;
+  }
+
+  /**
+   * Gets the number of cached result set shapes.
+   *
+   * @return the number of shapes
+   */
+  public int getShapeCount() {
+    return shapes.values().stream().mapToInt(ConcurrentMap::size).sum();
+  }
+
+  /**
+   * Discards the cached shapes, for example after registering type handlers.
+   */
+  public void clear() {
+    shapes.clear();
+  }
+
+}
@@ -16,25 +16,14 @@
 package org.apache.ibatis.executor.resultset;
 
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
-import java.util.Set;
 
-import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ResultMap;
 import org.apache.ibatis.session.Configuration;
 import org.apache.ibatis.type.JdbcType;
-import org.apache.ibatis.type.ObjectTypeHandler;
 import org.apache.ibatis.type.TypeHandler;
-import org.apache.ibatis.type.TypeHandlerRegistry;
-import org.apache.ibatis.type.UnknownTypeHandler;
 
 /**
  * @author Iwao AVE!
@@ -42,31 +31,33 @@ import org.apache.ibatis.type.UnknownTypeHandler;
 public class ResultSetWrapper {
 
   private final ResultSet resultSet;
-  private final TypeHandlerRegistry typeHandlerRegistry;
-  private final List<String> columnNames = new ArrayList<>();
-  private final List<String> classNames = new ArrayList<>();
-  private final List<JdbcType> jdbcTypes = new ArrayList<>();
-  private final Map<String, Map<Class<?>, TypeHandler<?>>> typeHandlerMap = new HashMap<>();
-  private final Map<String, List<String>> mappedColumnNamesMap = new HashMap<>();
-  private final Map<String, List<String>> unMappedColumnNamesMap = new HashMap<>();
-
+  private final ResultSetShape shape;
 
   public ResultSetWrapper(ResultSet rs, Configuration configuration) throws SQLException {
     super();
-    this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
     this.resultSet = rs;
-    //metaDate即对应查询数据库返回的字段信息（即查询的表字段）
-    final ResultSetMetaData metaData = rs.getMetaData();
-    final int columnCount = metaData.getColumnCount();
-    //同类型映射对接
-    for (int i = 1; i <= columnCount; i++) {
-      //假设一次循环中返回表字段username为例
-      columnNames.add(configuration.isUseColumnLabel() ? metaData.getColumnLabel(i) : metaData.getColumnName(i));
-      //返回VARCHAR 在数据库中是VARCHAR
-      jdbcTypes.add(JdbcType.forCode(metaData.getColumnType(i)));
-      //返回java.lang.String 在java中是String
-      classNames.add(metaData.getColumnClassName(i));
-    }
+    this.shape = new ResultSetShape(rs.getMetaData(), configuration.getTypeHandlerRegistry(), configuration.isUseColumnLabel());
+  }
+
+  /**
+   * Wraps a result set of a statement, reusing the columns that were resolved by the previous executions that
+   * returned the same columns.
+   *
+   * @param rs
+   *          the result set
+   * @param ms
+   *          the statement
+   * @param resultSetIndex
+   *          the index of the result set among the result sets of the statement, starting at 0
+   * @throws SQLException
+   *           if the meta data cannot be read
+   * @since 3.5.8
+   * @see ResultSetShapeCache
+   */
+  public ResultSetWrapper(ResultSet rs, MappedStatement ms, int resultSetIndex) throws SQLException {
+    super();
+    this.resultSet = rs;
+    this.shape = ms.getConfiguration().getResultSetShapeCache().getShape(ms, resultSetIndex, rs.getMetaData());
   }
 
   public ResultSet getResultSet() {
@@ -74,24 +65,83 @@ public class ResultSetWrapper {
   }
 
   public List<String> getColumnNames() {
-    return this.columnNames;
+    return shape.getColumnNames();
   }
 
   public List<String> getClassNames() {
-    return Collections.unmodifiableList(classNames);
+    return shape.getClassNames();
   }
 
   public List<JdbcType> getJdbcTypes() {
-    return jdbcTypes;
+    return shape.getJdbcTypes();
   }
 
   public JdbcType getJdbcType(String columnName) {
-    for (int i = 0; i < columnNames.size(); i++) {
-      if (columnNames.get(i).equalsIgnoreCase(columnName)) {
-        return jdbcTypes.get(i);
-      }
-    }
-    return null;
+    return shape.getJdbcType(columnName);
+  }
+
+  /**
+   * Gets the column names, JDBC types and class names of the result set as one string.
+   *
+   * @return the column signature
+   * @since 3.5.8
+   */
+  public String getColumnSignature() {
+    return shape.getSignature();
+  }
+
+  /**
+   * Gets the index of a column, ignoring case like the column lookups of JDBC drivers do.
+   *
+   * @param columnName
+   *          the column name
+   * @return the index of the first column with the name, starting at 1, or -1 if there is no such column
+   * @since 3.5.8
+   */
+  public int getColumnIndex(String columnName) {
+    return shape.getColumnIndex(columnName);
+  }
+
+  /**
+   * Gets the index of a column with a prefix. The indexes are resolved once per column and prefix, so that rows can be
+   * read without building the prefixed column names.
+   *
+   * @param columnName
+   *          the column name
+   * @param columnPrefix
+   *          the column prefix, or {@code null}
+   * @return the index of the first column with the prefixed name, starting at 1, or -1 if there is no such column
+   * @since 3.5.8
+   */
+  public int getColumnIndex(String columnName, String columnPrefix) {
+    return shape.getColumnIndex(columnName, columnPrefix);
+  }
+
+  /**
+   * Gets the indexes of the columns of the property mappings of a result map.
+   *
+   * @param resultMap
+   *          the result map
+   * @param columnPrefix
+   *          the column prefix, or {@code null}
+   * @return the indexes in the order of {@link ResultMap#getPropertyResultMappings()}, -1 for the mappings whose column
+   *         is not in the result set
+   * @since 3.5.8
+   */
+  public int[] getPropertyColumnIndexes(ResultMap resultMap, String columnPrefix) {
+    return shape.getPropertyColumnIndexes(resultMap, columnPrefix);
+  }
+
+  /**
+   * Gets whether any column name starts with a prefix, ignoring case.
+   *
+   * @param columnPrefix
+   *          the column prefix
+   * @return {@code true} if a column has the prefix
+   * @since 3.5.8
+   */
+  public boolean hasColumnWithPrefix(String columnPrefix) {
+    return shape.hasColumnWithPrefix(columnPrefix);
   }
 
   /**
@@ -106,98 +156,23 @@ public class ResultSetWrapper {
    * @return the type handler
    */
   public TypeHandler<?> getTypeHandler(Class<?> propertyType, String columnName) {
-    TypeHandler<?> handler = null;
-    Map<Class<?>, TypeHandler<?>> columnHandlers = typeHandlerMap.get(columnName);
-    if (columnHandlers == null) {
-      columnHandlers = new HashMap<>();
-      typeHandlerMap.put(columnName, columnHandlers);
-    } else {
-      handler = columnHandlers.get(propertyType);
-    }
-    if (handler == null) {
-      JdbcType jdbcType = getJdbcType(columnName);
-      handler = typeHandlerRegistry.getTypeHandler(propertyType, jdbcType);
-      // Replicate logic of UnknownTypeHandler#resolveTypeHandler
-      // See issue #59 comment 10
-      if (handler == null || handler instanceof UnknownTypeHandler) {
-        final int index = columnNames.indexOf(columnName);
-        final Class<?> javaType = resolveClass(classNames.get(index));
-        if (javaType != null && jdbcType != null) {
-          handler = typeHandlerRegistry.getTypeHandler(javaType, jdbcType);
-        } else if (javaType != null) {
-          handler = typeHandlerRegistry.getTypeHandler(javaType);
-        } else if (jdbcType != null) {
-          handler = typeHandlerRegistry.getTypeHandler(jdbcType);
-        }
-      }
-      if (handler == null || handler instanceof UnknownTypeHandler) {
-        handler = new ObjectTypeHandler();
-      }
-      columnHandlers.put(propertyType, handler);
-    }
-    return handler;
-  }
-
-  private Class<?> resolveClass(String className) {
-    try {
-      // #699 className could be null
-      if (className != null) {
-        return Resources.classForName(className);
-      }
-    } catch (ClassNotFoundException e) {
-      // ignore
-    }
-    return null;
-  }
-
-  private void loadMappedAndUnmappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
-    List<String> mappedColumnNames = new ArrayList<>();
-    List<String> unmappedColumnNames = new ArrayList<>();
-    final String upperColumnPrefix = columnPrefix == null ? null : columnPrefix.toUpperCase(Locale.ENGLISH);
-    final Set<String> mappedColumns = prependPrefixes(resultMap.getMappedColumns(), upperColumnPrefix);
-    for (String columnName : columnNames) {
-      final String upperColumnName = columnName.toUpperCase(Locale.ENGLISH);
-      if (mappedColumns.contains(upperColumnName)) {
-        mappedColumnNames.add(upperColumnName);
-      } else {
-        unmappedColumnNames.add(columnName);
-      }
-    }
-    mappedColumnNamesMap.put(getMapKey(resultMap, columnPrefix), mappedColumnNames);
-    unMappedColumnNamesMap.put(getMapKey(resultMap, columnPrefix), unmappedColumnNames);
+    return shape.getTypeHandler(propertyType, columnName);
   }
 
   public List<String> getMappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
-    List<String> mappedColumnNames = mappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
-    if (mappedColumnNames == null) {
-      loadMappedAndUnmappedColumnNames(resultMap, columnPrefix);
-      mappedColumnNames = mappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
-    }
-    return mappedColumnNames;
+    return shape.getMappedColumnNames(resultMap, columnPrefix);
   }
 
   public List<String> getUnmappedColumnNames(ResultMap resultMap, String columnPrefix) throws SQLException {
-    List<String> unMappedColumnNames = unMappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
-    if (unMappedColumnNames == null) {
-      loadMappedAndUnmappedColumnNames(resultMap, columnPrefix);
-      unMappedColumnNames = unMappedColumnNamesMap.get(getMapKey(resultMap, columnPrefix));
-    }
-    return unMappedColumnNames;
-  }
-
-  private String getMapKey(ResultMap resultMap, String columnPrefix) {
-    return resultMap.getId() + ":" + columnPrefix;
-  }
-
-  private Set<String> prependPrefixes(Set<String> columnNames, String prefix) {
-    if (columnNames == null || columnNames.isEmpty() || prefix == null || prefix.length() == 0) {
-      return columnNames;
-    }
-    final Set<String> prefixed = new HashSet<>();
-    for (String columnName : columnNames) {
-      prefixed.add(prefix + columnName);
-    }
-    return prefixed;
+    return shape.getUnmappedColumnNames(resultMap, columnPrefix);
+  }
+
+  List<?> getAutoMappings(ResultMap resultMap, String columnPrefix) {
+    return shape.getAutoMappings(resultMap.getId(), columnPrefix);
+  }
+
+  void putAutoMappings(ResultMap resultMap, String columnPrefix, List<?> autoMappings) {
+    shape.putAutoMappings(resultMap.getId(), columnPrefix, autoMappings);
   }
 
 }
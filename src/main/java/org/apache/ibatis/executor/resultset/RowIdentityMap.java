@@ -0,0 +1,116 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.Arrays;
+
+/**
+ * The objects built by nested result maps, by {@link RowKey}. An open addressing table of the stored keys, which hold
+ * their objects, so that looking up a row allocates nothing.
+ * <p>
+ * The table is cleared when a result set is done, and for ordered results when the next parent object starts. It is
+ * shrunk back when it is cleared after a large parent, so that one large parent does not keep its memory for the rest
+ * of the results.
+ *
+ * @since 3.5.8
+ */
+final class RowIdentityMap {
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final int MAX_RETAINED_CAPACITY = 1024;
+
+  private RowKey[] table = new RowKey[INITIAL_CAPACITY];
+  private int size;
+
+  /**
+   * Gets the stored key that matches a probe.
+   *
+   * @param probe
+   *          the probe
+   * @return the stored key, or {@code null} if there is none
+   */
+  RowKey get(RowKey probe) {
+    final RowKey[] tab = table;
+    final int mask = tab.length - 1;
+    for (int i = spread(probe.hash()) & mask;; i = (i + 1) & mask) {
+      final RowKey key = tab[i];
+      if (key == null || key.matches(probe)) {
+        return key;
+      }
+    }
+  }
+
+  /**
+   * Gets the stored key that matches a probe, storing a copy of the probe when there is none.
+   *
+   * @param probe
+   *          the probe
+   * @return the stored key
+   */
+  RowKey putIfAbsent(RowKey probe) {
+    final int mask = table.length - 1;
+    int i = spread(probe.hash()) & mask;
+    for (RowKey key; (key = table[i]) != null; i = (i + 1) & mask) {
+      if (key.matches(probe)) {
+        return key;
+      }
+    }
+    final RowKey key = probe.copy();
+    table[i] = key;
+    if (++size * 2 > table.length) {
+      resize(table.length * 2);
+    }
+    return key;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    if (size == 0) {
+      return;
+    }
+    if (table.length > MAX_RETAINED_CAPACITY) {
+      table = new RowKey[INITIAL_CAPACITY];
+    } else {
+      Arrays.fill(table, null);
+    }
+    size = 0;
+  }
+
+  private void resize(int capacity) {
+    final RowKey[] oldTable = table;
+    final RowKey[] newTable = new RowKey[capacity];
+    final int mask = capacity - 1;
+    for (RowKey key : oldTable) {
+      if (key != null) {
+        int i = spread(key.hash()) & mask;
+        while (newTable[i] != null) {
+          i = (i + 1) & mask;
+        }
+        newTable[i] = key;
+      }
+    }
+    table = newTable;
+  }
+
+  private static int spread(int h) {
+    h *= 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+}
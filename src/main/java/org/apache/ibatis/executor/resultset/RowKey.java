@@ -0,0 +1,134 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.util.Arrays;
+
+import org.apache.ibatis.reflection.ArrayUtil;
+
+/**
+ * Identifies the object that a row maps to through a nested result map: the result map, the column prefix, the key of
+ * the parent object and the values of the key columns.
+ * <p>
+ * A result set handler fills one key per row and level and uses it to probe the {@link RowIdentityMap}; only the keys
+ * of new objects are copied into the map. A stored key also holds its object, and stands for its parent in the keys
+ * of the nested objects, so that keys of nested objects never copy the keys of their parents.
+ *
+ * @since 3.5.8
+ */
+final class RowKey {
+
+  private static final Object[] NO_VALUES = new Object[0];
+
+  private String resultMapId;
+  private String columnPrefix;
+  private RowKey parent;
+  private Object[] values;
+  private int size;
+  private int hash;
+
+  private Object rowValue;
+
+  RowKey() {
+    this.values = NO_VALUES;
+  }
+
+  private RowKey(RowKey probe) {
+    this.resultMapId = probe.resultMapId;
+    this.columnPrefix = probe.columnPrefix;
+    this.parent = probe.parent;
+    this.values = probe.size == 0 ? NO_VALUES : Arrays.copyOf(probe.values, probe.size);
+    this.size = probe.size;
+    this.hash = probe.hash;
+  }
+
+  /**
+   * Starts filling this key for a row.
+   *
+   * @param resultMapId
+   *          the id of the result map
+   * @param columnPrefix
+   *          the column prefix, or {@code null}
+   * @param parent
+   *          the stored key of the parent object, or {@code null} for the objects of the rows
+   * @param columnCount
+   *          the number of key columns
+   */
+  void reset(String resultMapId, String columnPrefix, RowKey parent, int columnCount) {
+    this.resultMapId = resultMapId;
+    this.columnPrefix = columnPrefix;
+    this.parent = parent;
+    if (values.length < columnCount) {
+      values = new Object[columnCount];
+    }
+    this.size = 0;
+    int h = resultMapId.hashCode();
+    h = 31 * h + (columnPrefix == null ? 0 : columnPrefix.hashCode());
+    this.hash = 31 * h + (parent == null ? 0 : parent.hash);
+  }
+
+  void add(Object value) {
+    values[size++] = value;
+    hash = 31 * hash + ArrayUtil.hashCode(value);
+  }
+
+  RowKey copy() {
+    return new RowKey(this);
+  }
+
+  Object getRowValue() {
+    return rowValue;
+  }
+
+  void setRowValue(Object rowValue) {
+    this.rowValue = rowValue;
+  }
+
+  int hash() {
+    return hash;
+  }
+
+  boolean matches(RowKey other) {
+    if (hash != other.hash || size != other.size || parent != other.parent) {
+      return false;
+    }
+    if (!resultMapId.equals(other.resultMapId)) {
+      return false;
+    }
+    if (columnPrefix == null ? other.columnPrefix != null : !columnPrefix.equals(other.columnPrefix)) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (!ArrayUtil.equals(values[i], other.values[i])) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    final StringBuilder sb = new StringBuilder(resultMapId);
+    if (columnPrefix != null) {
+      sb.append(':').append(columnPrefix);
+    }
+    for (int i = 0; i < size; i++) {
+      sb.append(':').append(ArrayUtil.toString(values[i]));
+    }
+    return parent == null ? sb.toString() : parent + "/" + sb;
+  }
+
+}
@@ -0,0 +1,297 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtField;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.LoaderClassPath;
+
+import org.apache.ibatis.logging.Log;
+import org.apache.ibatis.logging.LogFactory;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.reflection.Reflector;
+import org.apache.ibatis.reflection.invoker.AmbiguousMethodInvoker;
+import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.MethodInvoker;
+import org.apache.ibatis.reflection.property.PropertyNamer;
+import org.apache.ibatis.type.PrimitiveTypeHandler;
+import org.apache.ibatis.type.TypeHandler;
+
+/**
+ * Generates a {@link GeneratedRowMapper} with Javassist for each result map and column shape. The generated class reads
+ * the mapped columns by index through their type handlers and calls the setters of the result object directly.
+ * <p>
+ * Row mappers are only generated for public result types with public setters. When a row mapper cannot be generated,
+ * the rows are mapped through reflection.
+ *
+ * @since 3.5.8
+ * @see org.apache.ibatis.session.Configuration#setRowMapperGenerationEnabled(boolean)
+ */
+public class RowMapperFactory {
+
+  private static final Log log = LogFactory.getLog(RowMapperFactory.class);
+
+  private static final GeneratedRowMapper NO_ROW_MAPPER = (rs, target, callSettersOnNulls) -> false;
+  private static final AtomicInteger classCounter = new AtomicInteger();
+
+  private final ConcurrentMap<String, GeneratedRowMapper> rowMappers = new ConcurrentHashMap<>();
+
+  /**
+   * Gets the row mapper of a column shape, generating it the first time.
+   *
+   * @param key
+   *          the result map and column shape
+   * @param type
+   *          the result type
+   * @param mappings
+   *          the columns to map
+   * @param reflector
+   *          the reflector of the result type
+   * @return the row mapper, or {@code null} if the rows must be mapped through reflection
+   */
+  GeneratedRowMapper getRowMapper(String key, Class<?> type, List<ColumnMapping> mappings, Reflector reflector) {
+    GeneratedRowMapper rowMapper = rowMappers.get(key);
+    if (rowMapper == null) {
+      rowMapper = rowMappers.computeIfAbsent(key, k -> generate(k, type, mappings, reflector));
+    }
+    return rowMapper == NO_ROW_MAPPER ? null : rowMapper;
+  }
+
+  /**
+   * Gets the number of row mappers that were generated.
+   *
+   * @return the number of row mappers
+   */
+  public int getRowMapperCount() {
+    return (int) rowMappers.values().stream().filter(rowMapper -> rowMapper != NO_ROW_MAPPER).count();
+  }
+
+  /**
+   * Discards the generated row mappers, so that their classes can be unloaded.
+   */
+  public void clear() {
+    rowMappers.clear();
+  }
+
+  private GeneratedRowMapper generate(String key, Class<?> type, List<ColumnMapping> mappings, Reflector reflector) {
+    if (!isPublic(type)) {
+      log.debug("Mapping " + key + " through reflection because " + type + " is not public.");
+      return NO_ROW_MAPPER;
+    }
+    StringBuilder body = new StringBuilder();
+    String typeName = sourceName(type);
+    body.append("public boolean map(java.sql.ResultSet rs, Object target, boolean callSettersOnNulls)")
+        .append(" throws java.sql.SQLException {\n");
+    body.append(typeName).append(" result = (").append(typeName).append(") target;\n");
+    body.append("boolean found = false;\n");
+    body.append("Object value;\n");
+    for (int i = 0; i < mappings.size(); i++) {
+      ColumnMapping mapping = mappings.get(i);
+      Method setter = findSetter(type, reflector, mapping.property);
+      if (setter == null || !isPublic(setter.getParameterTypes()[0])) {
+        log.debug("Mapping " + key + " through reflection because " + type + " has no public setter for '"
+            + mapping.property + "'.");
+        return NO_ROW_MAPPER;
+      }
+      Class<?> parameterType = setter.getParameterTypes()[0];
+      if (PrimitiveTypeHandler.supports(mapping.typeHandler, parameterType)) {
+        appendPrimitiveMapping(body, i, mapping.columnIndex, setter.getName(), mapping.property, parameterType);
+        continue;
+      }
+      body.append("value = typeHandlers[").append(i).append("].getResult(rs, ").append(mapping.columnIndex)
+          .append(");\n");
+      body.append("if (value != null) {\n");
+      body.append("  found = true;\n");
+      appendSetterCall(body, setter.getName(), mapping.property, unwrap(parameterType),
+          "\"with value '\" + value + \"'\"");
+      body.append('}');
+      if (!parameterType.isPrimitive()) {
+        body.append(" else if (callSettersOnNulls) {\n");
+        appendSetterCall(body, setter.getName(), mapping.property, "(" + sourceName(parameterType) + ") null",
+            "\"with value 'null'\"");
+        body.append('}');
+      }
+      body.append('\n');
+    }
+    body.append("return found;\n}");
+    try {
+      return define(type, body.toString(), mappings);
+    } catch (Exception | LinkageError e) {
+      log.warn("Could not generate a row mapper for " + key + ", mapping it through reflection. Cause: " + e);
+      return NO_ROW_MAPPER;
+    }
+  }
+
+  /**
+   * Reads the column with the primitive getter of its type handler and passes it to the setter, so that the value is
+   * never boxed.
+   */
+  private static void appendPrimitiveMapping(StringBuilder body, int index, int columnIndex, String setterName,
+      String property, Class<?> type) {
+    final String typeName = type.getName();
+    // int -> Int, long -> Long, ...
+    final String suffix = Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
+    final String handlerType = PrimitiveTypeHandler.class.getName() + "$Of" + suffix;
+    final String getterName = "get" + suffix + "Result";
+    final String variable = "v" + index;
+    body.append(typeName).append(' ').append(variable).append(" = ((").append(handlerType).append(") typeHandlers[")
+        .append(index).append("]).").append(getterName).append("(rs, ").append(columnIndex).append(");\n");
+    body.append("if (").append(type == boolean.class ? variable : variable + " != 0").append(" || !rs.wasNull()) {\n");
+    body.append("  found = true;\n");
+    appendSetterCall(body, setterName, property, variable, "\"with the value of column #" + columnIndex + ".\"");
+    body.append("}\n");
+  }
+
+  /**
+   * Calls a setter and wraps whatever it throws, including a value of another type, in a {@link ReflectionException}
+   * with the message that the reflective mapping uses for the same failure.
+   *
+   * @param value
+   *          the expression that describes the value in the message
+   */
+  private static void appendSetterCall(StringBuilder body, String setterName, String property, String argument,
+      String value) {
+    body.append("  try {\n");
+    body.append("    result.").append(setterName).append('(').append(argument).append(");\n");
+    body.append("  } catch (Throwable t) {\n");
+    body.append("    throw new ").append(ReflectionException.class.getName()).append("(\"Could not set property '")
+        .append(property).append("' of '\" + result.getClass() + \"' \" + ").append(value)
+        .append(" + \" Cause: \" + t.toString(), t);\n");
+    body.append("  }\n");
+  }
+
+  private GeneratedRowMapper define(Class<?> type, String mapMethod, List<ColumnMapping> mappings) throws Exception {
+    String className = GeneratedRowMapper.class.getName() + "$$" + type.getSimpleName() + "$$"
+        + classCounter.incrementAndGet();
+    ClassPool pool = new ClassPool(true);
+    if (type.getClassLoader() != null) {
+      pool.appendClassPath(new LoaderClassPath(type.getClassLoader()));
+    }
+    pool.appendClassPath(new LoaderClassPath(RowMapperFactory.class.getClassLoader()));
+    CtClass ctClass = pool.makeClass(className);
+    ctClass.addInterface(pool.get(GeneratedRowMapper.class.getName()));
+    ctClass.addField(CtField.make("private final org.apache.ibatis.type.TypeHandler[] typeHandlers;", ctClass));
+    ctClass.addConstructor(CtNewConstructor.make("public " + ctClass.getSimpleName()
+        + "(org.apache.ibatis.type.TypeHandler[] typeHandlers) { this.typeHandlers = typeHandlers; }", ctClass));
+    ctClass.addMethod(CtNewMethod.make(mapMethod, ctClass));
+    byte[] bytecode = ctClass.toBytecode();
+    ctClass.detach();
+
+    Class<?> rowMapperClass = new RowMapperClassLoader(type.getClassLoader()).define(className, bytecode);
+    TypeHandler<?>[] typeHandlers = new TypeHandler<?>[mappings.size()];
+    for (int i = 0; i < typeHandlers.length; i++) {
+      typeHandlers[i] = mappings.get(i).typeHandler;
+    }
+    return (GeneratedRowMapper) rowMapperClass.getConstructor(TypeHandler[].class).newInstance((Object) typeHandlers);
+  }
+
+  private static boolean isPublic(Class<?> type) {
+    Class<?> current = type;
+    while (current.isArray()) {
+      current = current.getComponentType();
+    }
+    for (; current != null; current = current.getEnclosingClass()) {
+      if (!current.isPrimitive() && !Modifier.isPublic(current.getModifiers())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Method findSetter(Class<?> type, Reflector reflector, String property) {
+    if (!reflector.hasSetter(property)) {
+      return null;
+    }
+    Invoker invoker = reflector.getSetInvoker(property);
+    if (!(invoker instanceof MethodInvoker) || invoker instanceof AmbiguousMethodInvoker) {
+      return null;
+    }
+    Class<?> setterType = reflector.getSetterType(property);
+    Method found = null;
+    for (Method method : type.getMethods()) {
+      String name = method.getName();
+      if (method.getParameterCount() != 1 || method.isBridge() || Modifier.isStatic(method.getModifiers())
+          || !name.startsWith("set") || name.length() == 3 || !property.equals(PropertyNamer.methodToProperty(name))) {
+        continue;
+      }
+      Class<?> parameterType = method.getParameterTypes()[0];
+      if (parameterType.equals(setterType)) {
+        return method;
+      } else if (parameterType.isAssignableFrom(setterType) && found == null) {
+        found = method;
+      }
+    }
+    return found;
+  }
+
+  private static String unwrap(Class<?> parameterType) {
+    if (!parameterType.isPrimitive()) {
+      return "(" + sourceName(parameterType) + ") value";
+    }
+    // cast to the exact wrapper, so that a value of another type fails instead of being narrowed
+    String name = parameterType.getName();
+    String wrapper = parameterType == int.class ? "Integer"
+        : parameterType == char.class ? "Character" : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    return "((java.lang." + wrapper + ") value)." + name + "Value()";
+  }
+
+  private static String sourceName(Class<?> type) {
+    return type.isArray() ? sourceName(type.getComponentType()) + "[]" : type.getName();
+  }
+
+  static final class ColumnMapping {
+    private final int columnIndex;
+    private final String property;
+    private final TypeHandler<?> typeHandler;
+
+    ColumnMapping(int columnIndex, String property, TypeHandler<?> typeHandler) {
+      this.columnIndex = columnIndex;
+      this.property = property;
+      this.typeHandler = typeHandler;
+    }
+  }
+
+  /**
+   * Loads a generated row mapper next to its result type, falling back to the class loader of MyBatis for the
+   * classes the result type's class loader does not see.
+   */
+  private static final class RowMapperClassLoader extends ClassLoader {
+
+    RowMapperClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+      return Class.forName(name, false, RowMapperFactory.class.getClassLoader());
+    }
+
+    Class<?> define(String name, byte[] bytecode) {
+      return defineClass(name, bytecode, 0, bytecode.length);
+    }
+  }
+
+}
@@ -23,6 +23,8 @@ import org.apache.ibatis.executor.ErrorContext;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
+import org.apache.ibatis.executor.metrics.StatementPhase;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
 import org.apache.ibatis.mapping.BoundSql;
@@ -50,11 +52,14 @@ public abstract class BaseStatementHandler implements StatementHandler {
 
   protected BoundSql boundSql;
 
+  protected final StatementMetrics metrics;
+
   protected BaseStatementHandler(Executor executor, MappedStatement mappedStatement, Object parameterObject, RowBounds rowBounds, ResultHandler resultHandler, BoundSql boundSql) {
     this.configuration = mappedStatement.getConfiguration();
     this.executor = executor;
     this.mappedStatement = mappedStatement;
     this.rowBounds = rowBounds;
+    this.metrics = StatementMetrics.of(mappedStatement);
 
     this.typeHandlerRegistry = configuration.getTypeHandlerRegistry();
     this.objectFactory = configuration.getObjectFactory();
@@ -84,10 +89,12 @@ public abstract class BaseStatementHandler implements StatementHandler {
   public Statement prepare(Connection connection, Integer transactionTimeout) throws SQLException {
     ErrorContext.instance().sql(boundSql.getSql());
     Statement statement = null;
+    long start = startPhase();
     try {
       statement = instantiateStatement(connection);
       setStatementTimeout(statement, transactionTimeout);
       setFetchSize(statement);
+      endPhase(StatementPhase.PREPARE, start);
       return statement;
     } catch (SQLException e) {
       closeStatement(statement);
@@ -100,6 +107,31 @@ public abstract class BaseStatementHandler implements StatementHandler {
 
   protected abstract Statement instantiateStatement(Connection connection) throws SQLException;
 
+  /**
+   * Gets the time at which a phase of the execution starts, when statement metrics are enabled.
+   *
+   * @return the {@link System#nanoTime()}, or 0 if statement metrics are disabled
+   * @since 3.5.8
+   */
+  protected long startPhase() {
+    return metrics == null ? 0 : System.nanoTime();
+  }
+
+  /**
+   * Records a phase of the execution, when statement metrics are enabled.
+   *
+   * @param phase
+   *          the phase
+   * @param start
+   *          the time returned by {@link #startPhase()}
+   * @since 3.5.8
+   */
+  protected void endPhase(StatementPhase phase, long start) {
+    if (metrics != null) {
+      metrics.record(phase, start);
+    }
+  }
+
   protected void setStatementTimeout(Statement stmt, Integer transactionTimeout) throws SQLException {
     Integer queryTimeout = null;
     if (mappedStatement.getTimeout() != null) {
@@ -26,6 +26,7 @@ import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ExecutorException;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
+import org.apache.ibatis.executor.metrics.StatementPhase;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
 import org.apache.ibatis.mapping.ParameterMapping;
@@ -47,7 +48,9 @@ public class CallableStatementHandler extends BaseStatementHandler {
   @Override
   public int update(Statement statement) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
+    long start = startPhase();
     cs.execute();
+    endPhase(StatementPhase.EXECUTE, start);
     int rows = cs.getUpdateCount();
     Object parameterObject = boundSql.getParameterObject();
     KeyGenerator keyGenerator = mappedStatement.getKeyGenerator();
@@ -65,7 +68,9 @@ public class CallableStatementHandler extends BaseStatementHandler {
   @Override
   public <E> List<E> query(Statement statement, ResultHandler resultHandler) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
+    long start = startPhase();
     cs.execute();
+    endPhase(StatementPhase.EXECUTE, start);
     List<E> resultList = resultSetHandler.handleResultSets(cs);
     resultSetHandler.handleOutputParameters(cs);
     return resultList;
@@ -74,7 +79,9 @@ public class CallableStatementHandler extends BaseStatementHandler {
   @Override
   public <E> Cursor<E> queryCursor(Statement statement) throws SQLException {
     CallableStatement cs = (CallableStatement) statement;
+    long start = startPhase();
     cs.execute();
+    endPhase(StatementPhase.EXECUTE, start);
     Cursor<E> resultList = resultSetHandler.handleCursorResultSets(cs);
     resultSetHandler.handleOutputParameters(cs);
     return resultList;
@@ -23,6 +23,8 @@ import org.apache.ibatis.cache.Cache;
 import org.apache.ibatis.executor.keygen.Jdbc3KeyGenerator;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.keygen.NoKeyGenerator;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
+import org.apache.ibatis.executor.metrics.StatementPhase;
 import org.apache.ibatis.logging.Log;
 import org.apache.ibatis.logging.LogFactory;
 import org.apache.ibatis.scripting.LanguageDriver;
@@ -47,6 +49,9 @@ public final class MappedStatement {
   private boolean flushCacheRequired;
   private boolean useCache;
   private boolean resultOrdered;
+  private boolean rewriteBatched;
+  private boolean useLocalCache = true;
+  private boolean singleFlight;
   private SqlCommandType sqlCommandType;
   private KeyGenerator keyGenerator;
   private String[] keyProperties;
@@ -144,6 +149,21 @@ public final class MappedStatement {
       return this;
     }
 
+    public Builder rewriteBatched(boolean rewriteBatched) {
+      mappedStatement.rewriteBatched = rewriteBatched;
+      return this;
+    }
+
+    public Builder useLocalCache(boolean useLocalCache) {
+      mappedStatement.useLocalCache = useLocalCache;
+      return this;
+    }
+
+    public Builder singleFlight(boolean singleFlight) {
+      mappedStatement.singleFlight = singleFlight;
+      return this;
+    }
+
     public Builder keyGenerator(KeyGenerator keyGenerator) {
       mappedStatement.keyGenerator = keyGenerator;
       return this;
@@ -266,6 +286,36 @@ public final class MappedStatement {
     return resultOrdered;
   }
 
+  /**
+   * Returns whether the batch executor may rewrite the rows of this insert statement into multi-row inserts.
+   *
+   * @return {@code true} if rewritable
+   * @since 3.5.8
+   */
+  public boolean isRewriteBatched() {
+    return rewriteBatched;
+  }
+
+  /**
+   * Returns whether the results of this statement are kept in the local (session) cache.
+   *
+   * @return {@code true} if the results are kept in the local cache
+   * @since 3.5.8
+   */
+  public boolean isUseLocalCache() {
+    return useLocalCache;
+  }
+
+  /**
+   * Returns whether concurrent executions of this statement with the same parameters may share one database query.
+   *
+   * @return {@code true} if the statement is safe to share
+   * @since 3.5.8
+   */
+  public boolean isSingleFlight() {
+    return singleFlight;
+  }
+
   public String getDatabaseId() {
     return databaseId;
   }
@@ -302,6 +352,8 @@ public final class MappedStatement {
   }
 
   public BoundSql getBoundSql(Object parameterObject) {
+    StatementMetrics metrics = StatementMetrics.of(this);
+    long start = metrics == null ? 0 : System.nanoTime();
     BoundSql boundSql = sqlSource.getBoundSql(parameterObject);
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     if (parameterMappings == null || parameterMappings.isEmpty()) {
@@ -319,6 +371,9 @@ public final class MappedStatement {
       }
     }
 
+    if (metrics != null) {
+      metrics.record(StatementPhase.SQL_GENERATION, start);
+    }
     return boundSql;
   }
 
@@ -45,6 +45,7 @@ public class ResultMapping {
   private String resultSet;
   private String foreignColumn;
   private boolean lazy;
+  private int batchSize;
 
   ResultMapping() {
   }
@@ -132,6 +133,11 @@ public class ResultMapping {
       return this;
     }
 
+    public Builder batchSize(int batchSize) {
+      resultMapping.batchSize = batchSize;
+      return this;
+    }
+
     public ResultMapping build() {
       // lock down collections
       resultMapping.flags = Collections.unmodifiableList(resultMapping.flags);
@@ -251,6 +257,20 @@ public class ResultMapping {
     this.lazy = lazy;
   }
 
+  /**
+   * Gets the number of parents whose nested select is executed as one query.
+   *
+   * @return the batch size, 0 or 1 if the nested select is executed once per parent
+   * @since 3.5.8
+   */
+  public int getBatchSize() {
+    return batchSize;
+  }
+
+  public void setBatchSize(int batchSize) {
+    this.batchSize = batchSize;
+  }
+
   public boolean isSimple() {
     return this.nestedResultMapId == null && this.nestedQueryId == null && this.resultSet == null;
   }
@@ -298,6 +318,7 @@ public class ResultMapping {
     sb.append(", resultSet='").append(resultSet).append('\'');
     sb.append(", foreignColumn='").append(foreignColumn).append('\'');
     sb.append(", lazy=").append(lazy);
+    sb.append(", batchSize=").append(batchSize);
     sb.append('}');
     return sb.toString();
   }
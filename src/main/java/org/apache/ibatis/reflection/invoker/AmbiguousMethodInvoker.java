@@ -15,6 +15,7 @@
  */
 package org.apache.ibatis.reflection.invoker;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -32,4 +33,9 @@ public class AmbiguousMethodInvoker extends MethodInvoker {
   public Object invoke(Object target, Object[] args) throws IllegalAccessException, InvocationTargetException {
     throw new ReflectionException(exceptionMessage);
   }
+
+  @Override
+  MethodHandle primitiveSetter() {
+    throw new ReflectionException(exceptionMessage);
+  }
 }
@@ -15,18 +15,24 @@
  */
 package org.apache.ibatis.reflection.invoker;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
+import org.apache.ibatis.lang.UsesJava7;
 import org.apache.ibatis.reflection.Reflector;
 
 /**
  * @author Clinton Begin
  */
-public class MethodInvoker implements Invoker {
+@UsesJava7
+public class MethodInvoker implements PrimitiveSetInvoker {
 
   private final Class<?> type;
   private final Method method;
+  private volatile MethodHandle primitiveSetter;
 
   public MethodInvoker(Method method) {
     this.method = method;
@@ -52,8 +58,95 @@ public class MethodInvoker implements Invoker {
     }
   }
 
+  @Override
+  public void setBoolean(Object target, boolean value) throws IllegalAccessException, InvocationTargetException {
+    invokeSetter(setter -> {
+      setter.invokeExact(target, value);
+    });
+  }
+
+  @Override
+  public void setByte(Object target, byte value) throws IllegalAccessException, InvocationTargetException {
+    invokeSetter(setter -> {
+      setter.invokeExact(target, value);
+    });
+  }
+
+  @Override
+  public void setShort(Object target, short value) throws IllegalAccessException, InvocationTargetException {
+    invokeSetter(setter -> {
+      setter.invokeExact(target, value);
+    });
+  }
+
+  @Override
+  public void setInt(Object target, int value) throws IllegalAccessException, InvocationTargetException {
+    invokeSetter(setter -> {
+      setter.invokeExact(target, value);
+    });
+  }
+
+  @Override
+  public void setLong(Object target, long value) throws IllegalAccessException, InvocationTargetException {
+    invokeSetter(setter -> {
+      setter.invokeExact(target, value);
+    });
+  }
+
+  @Override
+  public void setFloat(Object target, float value) throws IllegalAccessException, InvocationTargetException {
+    invokeSetter(setter -> {
+      setter.invokeExact(target, value);
+    });
+  }
+
+  @Override
+  public void setDouble(Object target, double value) throws IllegalAccessException, InvocationTargetException {
+    invokeSetter(setter -> {
+      setter.invokeExact(target, value);
+    });
+  }
+
+  private void invokeSetter(SetterCall call) throws IllegalAccessException, InvocationTargetException {
+    final MethodHandle setter = primitiveSetter();
+    try {
+      call.invoke(setter);
+    } catch (Throwable t) {
+      throw new InvocationTargetException(t);
+    }
+  }
+
+  /**
+   * Gets the setter as a method handle typed {@code (Object, type)void}, so that primitive values are passed without
+   * boxing.
+   */
+  MethodHandle primitiveSetter() throws IllegalAccessException {
+    MethodHandle setter = primitiveSetter;
+    if (setter == null) {
+      MethodHandle handle;
+      try {
+        handle = MethodHandles.lookup().unreflect(method);
+      } catch (IllegalAccessException e) {
+        if (Reflector.canControlMemberAccessible()) {
+          method.setAccessible(true);
+          handle = MethodHandles.lookup().unreflect(method);
+        } else {
+          throw e;
+        }
+      }
+      setter = handle.asType(MethodType.methodType(void.class, Object.class, type));
+      primitiveSetter = setter;
+    }
+    return setter;
+  }
+
   @Override
   public Class<?> getType() {
     return type;
   }
+
+  @FunctionalInterface
+  private interface SetterCall {
+    void invoke(MethodHandle setter) throws Throwable;
+  }
 }
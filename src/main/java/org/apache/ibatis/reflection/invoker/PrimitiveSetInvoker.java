@@ -0,0 +1,42 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.reflection.invoker;
+
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * An {@link Invoker} that sets a property of a primitive type without boxing the value. Only the setter that matches
+ * {@link #getType()} may be called.
+ *
+ * @since 3.5.8
+ */
+public interface PrimitiveSetInvoker extends Invoker {
+
+  void setBoolean(Object target, boolean value) throws IllegalAccessException, InvocationTargetException;
+
+  void setByte(Object target, byte value) throws IllegalAccessException, InvocationTargetException;
+
+  void setShort(Object target, short value) throws IllegalAccessException, InvocationTargetException;
+
+  void setInt(Object target, int value) throws IllegalAccessException, InvocationTargetException;
+
+  void setLong(Object target, long value) throws IllegalAccessException, InvocationTargetException;
+
+  void setFloat(Object target, float value) throws IllegalAccessException, InvocationTargetException;
+
+  void setDouble(Object target, double value) throws IllegalAccessException, InvocationTargetException;
+
+}
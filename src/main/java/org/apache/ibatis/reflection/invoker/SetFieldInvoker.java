@@ -22,7 +22,7 @@ import org.apache.ibatis.reflection.Reflector;
 /**
  * @author Clinton Begin
  */
-public class SetFieldInvoker implements Invoker {
+public class SetFieldInvoker implements PrimitiveSetInvoker {
   private final Field field;
 
   public SetFieldInvoker(Field field) {
@@ -44,6 +44,84 @@ public class SetFieldInvoker implements Invoker {
     return null;
   }
 
+  @Override
+  public void setBoolean(Object target, boolean value) throws IllegalAccessException {
+    try {
+      field.setBoolean(target, value);
+    } catch (IllegalAccessException e) {
+      makeAccessible(e);
+      field.setBoolean(target, value);
+    }
+  }
+
+  @Override
+  public void setByte(Object target, byte value) throws IllegalAccessException {
+    try {
+      field.setByte(target, value);
+    } catch (IllegalAccessException e) {
+      makeAccessible(e);
+      field.setByte(target, value);
+    }
+  }
+
+  @Override
+  public void setShort(Object target, short value) throws IllegalAccessException {
+    try {
+      field.setShort(target, value);
+    } catch (IllegalAccessException e) {
+      makeAccessible(e);
+      field.setShort(target, value);
+    }
+  }
+
+  @Override
+  public void setInt(Object target, int value) throws IllegalAccessException {
+    try {
+      field.setInt(target, value);
+    } catch (IllegalAccessException e) {
+      makeAccessible(e);
+      field.setInt(target, value);
+    }
+  }
+
+  @Override
+  public void setLong(Object target, long value) throws IllegalAccessException {
+    try {
+      field.setLong(target, value);
+    } catch (IllegalAccessException e) {
+      makeAccessible(e);
+      field.setLong(target, value);
+    }
+  }
+
+  @Override
+  public void setFloat(Object target, float value) throws IllegalAccessException {
+    try {
+      field.setFloat(target, value);
+    } catch (IllegalAccessException e) {
+      makeAccessible(e);
+      field.setFloat(target, value);
+    }
+  }
+
+  @Override
+  public void setDouble(Object target, double value) throws IllegalAccessException {
+    try {
+      field.setDouble(target, value);
+    } catch (IllegalAccessException e) {
+      makeAccessible(e);
+      field.setDouble(target, value);
+    }
+  }
+
+  private void makeAccessible(IllegalAccessException e) throws IllegalAccessException {
+    if (Reflector.canControlMemberAccessible()) {
+      field.setAccessible(true);
+    } else {
+      throw e;
+    }
+  }
+
   @Override
   public Class<?> getType() {
     return field.getType();
@@ -20,6 +20,8 @@ import java.sql.SQLException;
 import java.util.List;
 
 import org.apache.ibatis.executor.ErrorContext;
+import org.apache.ibatis.executor.metrics.StatementMetrics;
+import org.apache.ibatis.executor.metrics.StatementPhase;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.mapping.BoundSql;
 import org.apache.ibatis.mapping.MappedStatement;
@@ -61,6 +63,8 @@ public class DefaultParameterHandler implements ParameterHandler {
   @Override
   public void setParameters(PreparedStatement ps) {
     ErrorContext.instance().activity("setting parameters").object(mappedStatement.getParameterMap().getId());
+    StatementMetrics metrics = StatementMetrics.of(mappedStatement);
+    long start = metrics == null ? 0 : System.nanoTime();
     List<ParameterMapping> parameterMappings = boundSql.getParameterMappings();
     if (parameterMappings != null) {
       for (int i = 0; i < parameterMappings.size(); i++) {
@@ -91,6 +95,9 @@ public class DefaultParameterHandler implements ParameterHandler {
         }
       }
     }
+    if (metrics != null) {
+      metrics.record(StatementPhase.PARAMETERIZE, start);
+    }
   }
 
 }
@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.List;
+
+import org.apache.ibatis.executor.BatchResult;
+
+/**
+ * The result of one chunk of a bulk write, which was written and committed or rolled back in its own transaction.
+ *
+ * @since 3.5.8
+ */
+public class BulkChunkResult {
+
+  private final int index;
+  private final int rowCount;
+  private final List<BatchResult> batchResults;
+  private final Exception failure;
+
+  BulkChunkResult(int index, int rowCount, List<BatchResult> batchResults, Exception failure) {
+    this.index = index;
+    this.rowCount = rowCount;
+    this.batchResults = batchResults;
+    this.failure = failure;
+  }
+
+  /**
+   * Gets the position of the chunk in the source, starting with 0.
+   *
+   * @return the index
+   */
+  public int getIndex() {
+    return index;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Gets the results of the batches of a committed chunk.
+   *
+   * @return the batch results, empty if the chunk failed
+   */
+  public List<BatchResult> getBatchResults() {
+    return batchResults;
+  }
+
+  /**
+   * Gets the exception that made the chunk roll back.
+   *
+   * @return the failure, or null if the chunk was committed
+   */
+  public Exception getFailure() {
+    return failure;
+  }
+
+  public boolean isSuccessful() {
+    return failure == null;
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Options of a bulk write, see {@link SqlSessionFactory#bulkWrite(String, java.util.Iterator, BulkOptions)}.
+ *
+ * @since 3.5.8
+ */
+public final class BulkOptions {
+
+  public static final BulkOptions DEFAULT = new Builder().build();
+
+  private final int chunkSize;
+  private final int parallelism;
+  private final int maxPendingChunks;
+  private final boolean failFast;
+  private final Executor executor;
+  private final Consumer<BulkChunkResult> chunkResultHandler;
+
+  private BulkOptions(Builder builder) {
+    if (builder.chunkSize <= 0) {
+      throw new IllegalArgumentException("Parameter 'chunkSize' must be positive");
+    }
+    if (builder.parallelism <= 0) {
+      throw new IllegalArgumentException("Parameter 'parallelism' must be positive");
+    }
+    this.chunkSize = builder.chunkSize;
+    this.parallelism = builder.parallelism;
+    this.maxPendingChunks = builder.maxPendingChunks > 0 ? builder.maxPendingChunks : builder.parallelism * 2;
+    this.failFast = builder.failFast;
+    this.executor = builder.executor;
+    this.chunkResultHandler = builder.chunkResultHandler;
+  }
+
+  public static class Builder {
+    private int chunkSize = 1000;
+    private int parallelism = 1;
+    private int maxPendingChunks;
+    private boolean failFast;
+    private Executor executor;
+    private Consumer<BulkChunkResult> chunkResultHandler;
+
+    /**
+     * Sets the number of rows written and committed in one transaction. Default is 1000.
+     *
+     * @param chunkSize
+     *          the chunk size
+     * @return this builder
+     */
+    public Builder chunkSize(int chunkSize) {
+      this.chunkSize = chunkSize;
+      return this;
+    }
+
+    /**
+     * Sets the number of chunks written at the same time, each on its own session and connection. Default is 1.
+     *
+     * @param parallelism
+     *          the parallelism
+     * @return this builder
+     */
+    public Builder parallelism(int parallelism) {
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets the number of chunks that may be read from the source but not written yet. Reading from the source waits
+     * when this is reached. Default is twice the parallelism.
+     *
+     * @param maxPendingChunks
+     *          the max pending chunks
+     * @return this builder
+     */
+    public Builder maxPendingChunks(int maxPendingChunks) {
+      this.maxPendingChunks = maxPendingChunks;
+      return this;
+    }
+
+    /**
+     * Sets whether to stop reading from the source after a chunk has failed. Chunks that are already being written are
+     * still completed. Default is false.
+     *
+     * @param failFast
+     *          the fail fast
+     * @return this builder
+     */
+    public Builder failFast(boolean failFast) {
+      this.failFast = failFast;
+      return this;
+    }
+
+    /**
+     * Sets the executor that writes the chunks. By default a thread pool of the size of the parallelism is created for
+     * each bulk write.
+     *
+     * @param executor
+     *          the executor
+     * @return this builder
+     */
+    public Builder executor(Executor executor) {
+      this.executor = executor;
+      return this;
+    }
+
+    /**
+     * Sets a handler that receives the result of every chunk as soon as it is written. Results passed to the handler are
+     * not kept by the {@link BulkResult}, except for failed chunks.
+     *
+     * @param chunkResultHandler
+     *          the chunk result handler
+     * @return this builder
+     */
+    public Builder chunkResultHandler(Consumer<BulkChunkResult> chunkResultHandler) {
+      this.chunkResultHandler = chunkResultHandler;
+      return this;
+    }
+
+    public BulkOptions build() {
+      return new BulkOptions(this);
+    }
+
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public int getMaxPendingChunks() {
+    return maxPendingChunks;
+  }
+
+  public boolean isFailFast() {
+    return failFast;
+  }
+
+  public Executor getExecutor() {
+    return executor;
+  }
+
+  public Consumer<BulkChunkResult> getChunkResultHandler() {
+    return chunkResultHandler;
+  }
+
+}
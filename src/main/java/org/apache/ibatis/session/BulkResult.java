@@ -0,0 +1,76 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The result of a bulk write.
+ *
+ * @since 3.5.8
+ */
+public class BulkResult {
+
+  private final int chunkCount;
+  private final long rowCount;
+  private final long committedRowCount;
+  private final List<BulkChunkResult> chunkResults;
+
+  BulkResult(int chunkCount, long rowCount, long committedRowCount, List<BulkChunkResult> chunkResults) {
+    this.chunkCount = chunkCount;
+    this.rowCount = rowCount;
+    this.committedRowCount = committedRowCount;
+    this.chunkResults = chunkResults;
+  }
+
+  public int getChunkCount() {
+    return chunkCount;
+  }
+
+  /**
+   * Gets the number of rows read from the source.
+   *
+   * @return the row count
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public long getCommittedRowCount() {
+    return committedRowCount;
+  }
+
+  /**
+   * Gets the results of the chunks ordered by their index. When a chunk result handler was set, only the failed chunks
+   * are included. The batch results of the included chunks hold the update counts but not the parameter objects, so
+   * that the result does not hold the rows of the whole source.
+   *
+   * @return the chunk results
+   */
+  public List<BulkChunkResult> getChunkResults() {
+    return chunkResults;
+  }
+
+  public List<BulkChunkResult> getFailedChunks() {
+    return chunkResults.stream().filter(chunk -> !chunk.isSuccessful()).collect(Collectors.toList());
+  }
+
+  public boolean isSuccessful() {
+    return committedRowCount == rowCount;
+  }
+
+}
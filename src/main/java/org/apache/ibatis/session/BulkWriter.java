@@ -0,0 +1,152 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.ibatis.exceptions.ExceptionFactory;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.ErrorContext;
+
+/**
+ * Writes the rows of a source in chunks, each chunk in its own batch session and transaction.
+ */
+class BulkWriter {
+
+  private static final AtomicInteger threadCount = new AtomicInteger();
+
+  private final SqlSessionFactory sqlSessionFactory;
+  private final BulkOptions options;
+  private final Semaphore pendingChunks;
+  private final AtomicBoolean failed = new AtomicBoolean();
+  private final AtomicLong committedRowCount = new AtomicLong();
+  private final List<BulkChunkResult> chunkResults = Collections.synchronizedList(new ArrayList<>());
+
+  BulkWriter(SqlSessionFactory sqlSessionFactory, BulkOptions options) {
+    this.sqlSessionFactory = sqlSessionFactory;
+    this.options = options;
+    this.pendingChunks = new Semaphore(options.getMaxPendingChunks());
+  }
+
+  BulkResult write(String statement, Iterator<?> source) {
+    ExecutorService ownExecutor = options.getExecutor() == null
+        ? Executors.newFixedThreadPool(options.getParallelism(), BulkWriter::newThread) : null;
+    Executor executor = ownExecutor == null ? options.getExecutor() : ownExecutor;
+    int chunkCount = 0;
+    long rowCount = 0;
+    try {
+      while (source.hasNext() && !(options.isFailFast() && failed.get())) {
+        List<Object> rows = new ArrayList<>(options.getChunkSize());
+        while (rows.size() < options.getChunkSize() && source.hasNext()) {
+          rows.add(source.next());
+        }
+        pendingChunks.acquire();
+        if (options.isFailFast() && failed.get()) {
+          pendingChunks.release();
+          break;
+        }
+        int index = chunkCount++;
+        rowCount += rows.size();
+        try {
+          executor.execute(() -> {
+            try {
+              writeChunk(statement, index, rows);
+            } finally {
+              pendingChunks.release();
+            }
+          });
+        } catch (RuntimeException e) {
+          pendingChunks.release();
+          throw e;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw ExceptionFactory.wrapException("Interrupted while writing chunks of " + statement + ".", e);
+    } finally {
+      // also when the source failed, the chunks in flight are written before returning
+      try {
+        pendingChunks.acquireUninterruptibly(options.getMaxPendingChunks());
+        pendingChunks.release(options.getMaxPendingChunks());
+      } finally {
+        if (ownExecutor != null) {
+          ownExecutor.shutdown();
+        }
+      }
+    }
+    List<BulkChunkResult> results = new ArrayList<>(chunkResults);
+    results.sort(Comparator.comparingInt(BulkChunkResult::getIndex));
+    return new BulkResult(chunkCount, rowCount, committedRowCount.get(), results);
+  }
+
+  private void writeChunk(String statement, int index, List<Object> rows) {
+    BulkChunkResult result;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH, false)) {
+      for (Object row : rows) {
+        sqlSession.update(statement, row);
+      }
+      List<BatchResult> batchResults = sqlSession.flushStatements();
+      sqlSession.commit();
+      committedRowCount.addAndGet(rows.size());
+      result = new BulkChunkResult(index, rows.size(), batchResults, null);
+    } catch (Exception e) {
+      failed.set(true);
+      result = new BulkChunkResult(index, rows.size(), Collections.emptyList(), e);
+    } finally {
+      ErrorContext.instance().reset();
+    }
+    if (options.getChunkResultHandler() != null) {
+      if (!result.isSuccessful()) {
+        chunkResults.add(result);
+      }
+      options.getChunkResultHandler().accept(result);
+    } else if (result.isSuccessful()) {
+      // the kept results must not hold the rows, or the bulk result would end up holding the whole source
+      chunkResults.add(new BulkChunkResult(index, rows.size(), withoutParameterObjects(result.getBatchResults()), null));
+    } else {
+      chunkResults.add(result);
+    }
+  }
+
+  private static List<BatchResult> withoutParameterObjects(List<BatchResult> batchResults) {
+    List<BatchResult> results = new ArrayList<>(batchResults.size());
+    for (BatchResult batchResult : batchResults) {
+      BatchResult result = new BatchResult(batchResult.getMappedStatement(), batchResult.getSql());
+      result.setUpdateCounts(batchResult.getUpdateCounts());
+      results.add(result);
+    }
+    return results;
+  }
+
+  private static Thread newThread(Runnable runnable) {
+    Thread thread = new Thread(runnable, "mybatis-bulk-" + threadCount.incrementAndGet());
+    thread.setDaemon(true);
+    return thread;
+  }
+
+}
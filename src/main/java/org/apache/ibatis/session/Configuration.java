@@ -25,6 +25,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiFunction;
 
 import org.apache.ibatis.binding.MapperRegistry;
@@ -47,13 +49,17 @@ import org.apache.ibatis.executor.CachingExecutor;
 import org.apache.ibatis.executor.Executor;
 import org.apache.ibatis.executor.ReuseExecutor;
 import org.apache.ibatis.executor.SimpleExecutor;
+import org.apache.ibatis.executor.SingleFlight;
 import org.apache.ibatis.executor.keygen.KeyGenerator;
 import org.apache.ibatis.executor.loader.ProxyFactory;
 import org.apache.ibatis.executor.loader.cglib.CglibProxyFactory;
 import org.apache.ibatis.executor.loader.javassist.JavassistProxyFactory;
+import org.apache.ibatis.executor.metrics.StatementMetricsRegistry;
 import org.apache.ibatis.executor.parameter.ParameterHandler;
 import org.apache.ibatis.executor.resultset.DefaultResultSetHandler;
 import org.apache.ibatis.executor.resultset.ResultSetHandler;
+import org.apache.ibatis.executor.resultset.ResultSetShapeCache;
+import org.apache.ibatis.executor.resultset.RowMapperFactory;
 import org.apache.ibatis.executor.statement.RoutingStatementHandler;
 import org.apache.ibatis.executor.statement.StatementHandler;
 import org.apache.ibatis.io.VFS;
@@ -118,16 +124,31 @@ public class Configuration {
   protected boolean useActualParamName = true;
   protected boolean returnInstanceForEmptyRow;
   protected boolean shrinkWhitespacesInSql;
+  protected boolean batchInterleavedStatements;
+  protected boolean batchDependencyAwareFlush;
+  protected int batchRewriteMaxParameters = 2000;
+  protected boolean asyncVirtualThreads;
+  protected boolean statementMetricsEnabled;
+  protected boolean rowMapperGenerationEnabled;
+  protected double slowQuerySampleRate = 1.0;
 
   protected String logPrefix;
   protected Class<? extends Log> logImpl;
   protected Class<? extends VFS> vfsImpl;
   protected Class<?> defaultSqlProviderType;
   protected LocalCacheScope localCacheScope = LocalCacheScope.SESSION;
+  protected Integer localCacheMaxEntries;
+  protected Long localCacheMaxBytes;
   protected JdbcType jdbcTypeForNull = JdbcType.OTHER;
   protected Set<String> lazyLoadTriggerMethods = new HashSet<>(Arrays.asList("equals", "clone", "hashCode", "toString"));
   protected Integer defaultStatementTimeout;
   protected Integer defaultFetchSize;
+  protected Integer batchFlushRowsPerStatement;
+  protected Integer batchFlushRows;
+  protected Long batchFlushParameterBytes;
+  protected Integer slowQueryThreshold;
+  protected Set<String> slowQueryRedactedParameters = new HashSet<>();
+  protected ExecutorService asyncExecutor;
   protected ResultSetType defaultResultSetType;
   protected ExecutorType defaultExecutorType = ExecutorType.SIMPLE; //mybatis默认设置Simple执行器
   protected AutoMappingBehavior autoMappingBehavior = AutoMappingBehavior.PARTIAL;
@@ -152,6 +173,10 @@ public class Configuration {
 
   protected final MapperRegistry mapperRegistry = new MapperRegistry(this);
   protected final InterceptorChain interceptorChain = new InterceptorChain();
+  protected final SingleFlight singleFlight = new SingleFlight();
+  protected final StatementMetricsRegistry statementMetricsRegistry = new StatementMetricsRegistry();
+  protected final RowMapperFactory rowMapperFactory = new RowMapperFactory();
+  protected final ResultSetShapeCache resultSetShapeCache = new ResultSetShapeCache();
   protected final TypeHandlerRegistry typeHandlerRegistry = new TypeHandlerRegistry(this);
   protected final TypeAliasRegistry typeAliasRegistry = new TypeAliasRegistry();
   protected final LanguageDriverRegistry languageRegistry = new LanguageDriverRegistry();
@@ -171,6 +196,11 @@ public class Configuration {
   protected final Collection<CacheRefResolver> incompleteCacheRefs = new LinkedList<>();
   protected final Collection<ResultMapResolver> incompleteResultMaps = new LinkedList<>();
   protected final Collection<MethodResolver> incompleteMethods = new LinkedList<>();
+  // locks instead of monitors, so that parsing does not pin the carrier thread of a virtual thread
+  protected final ReentrantLock incompleteStatementsLock = new ReentrantLock();
+  protected final ReentrantLock incompleteCacheRefsLock = new ReentrantLock();
+  protected final ReentrantLock incompleteResultMapsLock = new ReentrantLock();
+  protected final ReentrantLock incompleteMethodsLock = new ReentrantLock();
 
   /*
    * A map holds cache-ref relationship. The key is the namespace that
@@ -301,6 +331,245 @@ public class Configuration {
     this.shrinkWhitespacesInSql = shrinkWhitespacesInSql;
   }
 
+  public boolean isBatchInterleavedStatements() {
+    return batchInterleavedStatements;
+  }
+
+  /**
+   * Sets whether the batch executor keeps one batch per statement and SQL open until the next flush instead of only
+   * adding consecutive calls of the same statement to a batch.
+   *
+   * @param batchInterleavedStatements
+   *          the batch interleaved statements
+   * @since 3.5.8
+   */
+  public void setBatchInterleavedStatements(boolean batchInterleavedStatements) {
+    this.batchInterleavedStatements = batchInterleavedStatements;
+  }
+
+  public boolean isBatchDependencyAwareFlush() {
+    return batchDependencyAwareFlush;
+  }
+
+  /**
+   * Sets whether a query executed by the batch executor only flushes the pending batches that write a table the query
+   * reads, instead of all pending batches. The tables are derived from the SQL of the statements.
+   *
+   * @param batchDependencyAwareFlush
+   *          the batch dependency aware flush
+   * @since 3.5.8
+   */
+  public void setBatchDependencyAwareFlush(boolean batchDependencyAwareFlush) {
+    this.batchDependencyAwareFlush = batchDependencyAwareFlush;
+  }
+
+  public int getBatchRewriteMaxParameters() {
+    return batchRewriteMaxParameters;
+  }
+
+  /**
+   * Sets the maximum number of parameters of a multi-row insert that the batch executor builds from the rows of a
+   * statement marked as {@code rewriteBatched}.
+   *
+   * @param batchRewriteMaxParameters
+   *          the maximum number of parameters
+   * @since 3.5.8
+   */
+  public void setBatchRewriteMaxParameters(int batchRewriteMaxParameters) {
+    this.batchRewriteMaxParameters = batchRewriteMaxParameters;
+  }
+
+  public Integer getBatchFlushRowsPerStatement() {
+    return batchFlushRowsPerStatement;
+  }
+
+  /**
+   * Sets the number of rows of one statement after which the batch executor flushes all pending batches on its own.
+   *
+   * @param batchFlushRowsPerStatement
+   *          the number of rows, or {@code null} for no limit
+   * @since 3.5.8
+   */
+  public void setBatchFlushRowsPerStatement(Integer batchFlushRowsPerStatement) {
+    this.batchFlushRowsPerStatement = batchFlushRowsPerStatement;
+  }
+
+  public Integer getBatchFlushRows() {
+    return batchFlushRows;
+  }
+
+  /**
+   * Sets the number of rows of all statements after which the batch executor flushes all pending batches on its own.
+   *
+   * @param batchFlushRows
+   *          the number of rows, or {@code null} for no limit
+   * @since 3.5.8
+   */
+  public void setBatchFlushRows(Integer batchFlushRows) {
+    this.batchFlushRows = batchFlushRows;
+  }
+
+  public Long getBatchFlushParameterBytes() {
+    return batchFlushParameterBytes;
+  }
+
+  /**
+   * Sets the estimated size of the parameters of all pending rows after which the batch executor flushes all pending
+   * batches on its own.
+   *
+   * @param batchFlushParameterBytes
+   *          the number of bytes, or {@code null} for no limit
+   * @since 3.5.8
+   */
+  public void setBatchFlushParameterBytes(Long batchFlushParameterBytes) {
+    this.batchFlushParameterBytes = batchFlushParameterBytes;
+  }
+
+  public boolean isAsyncVirtualThreads() {
+    return asyncVirtualThreads;
+  }
+
+  /**
+   * Sets whether mapper methods that return a {@code CompletableFuture} run on virtual threads when no async executor
+   * is set. Virtual threads require Java 21, on older versions a thread pool is used instead.
+   *
+   * @param asyncVirtualThreads
+   *          the async virtual threads
+   * @since 3.5.8
+   */
+  public void setAsyncVirtualThreads(boolean asyncVirtualThreads) {
+    this.asyncVirtualThreads = asyncVirtualThreads;
+  }
+
+  public boolean isStatementMetricsEnabled() {
+    return statementMetricsEnabled;
+  }
+
+  /**
+   * Sets whether the time statements spend in each phase of their executions is recorded.
+   *
+   * @param statementMetricsEnabled
+   *          the statement metrics enabled
+   * @since 3.5.8
+   * @see #getStatementMetricsRegistry()
+   */
+  public void setStatementMetricsEnabled(boolean statementMetricsEnabled) {
+    this.statementMetricsEnabled = statementMetricsEnabled;
+  }
+
+  /**
+   * Gets the metrics recorded while statement metrics are enabled.
+   *
+   * @return the statement metrics registry
+   * @since 3.5.8
+   */
+  public StatementMetricsRegistry getStatementMetricsRegistry() {
+    return statementMetricsRegistry;
+  }
+
+  public Integer getSlowQueryThreshold() {
+    return slowQueryThreshold;
+  }
+
+  /**
+   * Sets the time after which the execution of a statement is logged as slow, at warn level by the
+   * {@code org.apache.ibatis.executor.SlowQueryLog} logger. The log shows the SQL, the bound parameters, the number of
+   * rows and the elapsed time.
+   *
+   * @param slowQueryThreshold
+   *          the time in milliseconds, or {@code null} to log no statements
+   * @since 3.5.8
+   */
+  public void setSlowQueryThreshold(Integer slowQueryThreshold) {
+    this.slowQueryThreshold = slowQueryThreshold;
+  }
+
+  public double getSlowQuerySampleRate() {
+    return slowQuerySampleRate;
+  }
+
+  /**
+   * Sets the fraction of slow statement executions that are logged.
+   *
+   * @param slowQuerySampleRate
+   *          the sample rate, between 0 (none) and 1 (all)
+   * @since 3.5.8
+   */
+  public void setSlowQuerySampleRate(double slowQuerySampleRate) {
+    this.slowQuerySampleRate = slowQuerySampleRate;
+  }
+
+  public Set<String> getSlowQueryRedactedParameters() {
+    return slowQueryRedactedParameters;
+  }
+
+  /**
+   * Sets the parameters whose values are not shown in the slow query log. A name matches the last part of a parameter
+   * property, ignoring case, so {@code password} redacts both {@code password} and {@code user.password}.
+   *
+   * @param slowQueryRedactedParameters
+   *          the parameter names
+   * @since 3.5.8
+   */
+  public void setSlowQueryRedactedParameters(Set<String> slowQueryRedactedParameters) {
+    this.slowQueryRedactedParameters = slowQueryRedactedParameters;
+  }
+
+  public boolean isRowMapperGenerationEnabled() {
+    return rowMapperGenerationEnabled;
+  }
+
+  /**
+   * Sets whether rows are mapped by classes generated for each result map and column shape, that read the columns by
+   * index and call the setters directly instead of through reflection. Result maps with nested selects, multiple
+   * result sets or nested properties are still mapped through reflection.
+   *
+   * @param rowMapperGenerationEnabled
+   *          the row mapper generation enabled
+   * @since 3.5.8
+   * @see #getRowMapperFactory()
+   */
+  public void setRowMapperGenerationEnabled(boolean rowMapperGenerationEnabled) {
+    this.rowMapperGenerationEnabled = rowMapperGenerationEnabled;
+  }
+
+  /**
+   * Gets the row mappers generated while row mapper generation is enabled.
+   *
+   * @return the row mapper factory
+   * @since 3.5.8
+   */
+  public RowMapperFactory getRowMapperFactory() {
+    return rowMapperFactory;
+  }
+
+  /**
+   * Gets the result set shapes that the statements returned, with the column meta data, type handlers and
+   * auto-mappings resolved from them.
+   *
+   * @return the result set shape cache
+   * @since 3.5.8
+   */
+  public ResultSetShapeCache getResultSetShapeCache() {
+    return resultSetShapeCache;
+  }
+
+  public ExecutorService getAsyncExecutor() {
+    return asyncExecutor;
+  }
+
+  /**
+   * Sets the executor that runs mapper methods that return a {@code CompletableFuture}. Each call runs in its own
+   * session, so the executor should not run more tasks at once than the data source has connections.
+   *
+   * @param asyncExecutor
+   *          the async executor, or {@code null} to use a shared pool of daemon threads
+   * @since 3.5.8
+   */
+  public void setAsyncExecutor(ExecutorService asyncExecutor) {
+    this.asyncExecutor = asyncExecutor;
+  }
+
   public String getDatabaseId() {
     return databaseId;
   }
@@ -519,6 +788,38 @@ public class Configuration {
     this.localCacheScope = localCacheScope;
   }
 
+  public Integer getLocalCacheMaxEntries() {
+    return localCacheMaxEntries;
+  }
+
+  /**
+   * Sets the number of query results a session keeps in its local cache. When there are more, the least recently used
+   * ones are evicted after each top-level query.
+   *
+   * @param localCacheMaxEntries
+   *          the number of results, or {@code null} for no limit
+   * @since 3.5.8
+   */
+  public void setLocalCacheMaxEntries(Integer localCacheMaxEntries) {
+    this.localCacheMaxEntries = localCacheMaxEntries;
+  }
+
+  public Long getLocalCacheMaxBytes() {
+    return localCacheMaxBytes;
+  }
+
+  /**
+   * Sets the estimated size of the query results a session keeps in its local cache. When they are larger, the least
+   * recently used ones are evicted after each top-level query.
+   *
+   * @param localCacheMaxBytes
+   *          the number of bytes, or {@code null} for no limit
+   * @since 3.5.8
+   */
+  public void setLocalCacheMaxBytes(Long localCacheMaxBytes) {
+    this.localCacheMaxBytes = localCacheMaxBytes;
+  }
+
   public JdbcType getJdbcTypeForNull() {
     return jdbcTypeForNull;
   }
@@ -565,6 +866,16 @@ public class Configuration {
     return mapperRegistry;
   }
 
+  /**
+   * Gets the single flight queries that the sessions of this configuration are running.
+   *
+   * @return the single flight queries
+   * @since 3.5.8
+   */
+  public SingleFlight getSingleFlight() {
+    return singleFlight;
+  }
+
   public ReflectorFactory getReflectorFactory() {
     return reflectorFactory;
   }
@@ -786,34 +1097,94 @@ public class Configuration {
     return incompleteStatements;
   }
 
+  /**
+   * Gets the lock that must be held while the incomplete statements are iterated or changed.
+   *
+   * @return the lock
+   * @since 3.5.8
+   */
+  public ReentrantLock getIncompleteStatementsLock() {
+    return incompleteStatementsLock;
+  }
+
   public void addIncompleteStatement(XMLStatementBuilder incompleteStatement) {
-    incompleteStatements.add(incompleteStatement);
+    incompleteStatementsLock.lock();
+    try {
+      incompleteStatements.add(incompleteStatement);
+    } finally {
+      incompleteStatementsLock.unlock();
+    }
   }
 
   public Collection<CacheRefResolver> getIncompleteCacheRefs() {
     return incompleteCacheRefs;
   }
 
+  /**
+   * Gets the lock that must be held while the incomplete cache refs are iterated or changed.
+   *
+   * @return the lock
+   * @since 3.5.8
+   */
+  public ReentrantLock getIncompleteCacheRefsLock() {
+    return incompleteCacheRefsLock;
+  }
+
   public void addIncompleteCacheRef(CacheRefResolver incompleteCacheRef) {
-    incompleteCacheRefs.add(incompleteCacheRef);
+    incompleteCacheRefsLock.lock();
+    try {
+      incompleteCacheRefs.add(incompleteCacheRef);
+    } finally {
+      incompleteCacheRefsLock.unlock();
+    }
   }
 
   public Collection<ResultMapResolver> getIncompleteResultMaps() {
     return incompleteResultMaps;
   }
 
+  /**
+   * Gets the lock that must be held while the incomplete result maps are iterated or changed.
+   *
+   * @return the lock
+   * @since 3.5.8
+   */
+  public ReentrantLock getIncompleteResultMapsLock() {
+    return incompleteResultMapsLock;
+  }
+
   public void addIncompleteResultMap(ResultMapResolver resultMapResolver) {
-    incompleteResultMaps.add(resultMapResolver);
+    incompleteResultMapsLock.lock();
+    try {
+      incompleteResultMaps.add(resultMapResolver);
+    } finally {
+      incompleteResultMapsLock.unlock();
+    }
   }
 
   public void addIncompleteMethod(MethodResolver builder) {
-    incompleteMethods.add(builder);
+    incompleteMethodsLock.lock();
+    try {
+      incompleteMethods.add(builder);
+    } finally {
+      incompleteMethodsLock.unlock();
+    }
   }
 
   public Collection<MethodResolver> getIncompleteMethods() {
     return incompleteMethods;
   }
 
+  /**
+   * Gets the lock that must be held while the incomplete methods are iterated or changed.
+   *
+   * @return the lock
+   * @since 3.5.8
+   */
+  public ReentrantLock getIncompleteMethodsLock() {
+    return incompleteMethodsLock;
+  }
+
   public MappedStatement getMappedStatement(String id) {
     return this.getMappedStatement(id, true);
   }
@@ -876,24 +1247,33 @@ public class Configuration {
   protected void buildAllStatements() {
     parsePendingResultMaps();
     if (!incompleteCacheRefs.isEmpty()) {
-      synchronized (incompleteCacheRefs) {
+      incompleteCacheRefsLock.lock();
+      try {
         incompleteCacheRefs.removeIf(x -> x.resolveCacheRef() != null);
+      } finally {
+        incompleteCacheRefsLock.unlock();
       }
     }
     if (!incompleteStatements.isEmpty()) {
-      synchronized (incompleteStatements) {
+      incompleteStatementsLock.lock();
+      try {
         incompleteStatements.removeIf(x -> {
           x.parseStatementNode();
           return true;
         });
+      } finally {
+        incompleteStatementsLock.unlock();
       }
     }
     if (!incompleteMethods.isEmpty()) {
-      synchronized (incompleteMethods) {
+      incompleteMethodsLock.lock();
+      try {
         incompleteMethods.removeIf(x -> {
           x.resolve();
           return true;
         });
+      } finally {
+        incompleteMethodsLock.unlock();
       }
     }
   }
@@ -902,7 +1282,8 @@ public class Configuration {
     if (incompleteResultMaps.isEmpty()) {
       return;
     }
-    synchronized (incompleteResultMaps) {
+    incompleteResultMapsLock.lock();
+    try {
       boolean resolved;
       IncompleteElementException ex = null;
       do {
@@ -922,6 +1303,8 @@ public class Configuration {
         // At least one result map is unresolvable.
         throw ex;
       }
+    } finally {
+      incompleteResultMapsLock.unlock();
     }
   }
 
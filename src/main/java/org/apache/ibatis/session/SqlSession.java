@@ -22,6 +22,7 @@ import java.util.Map;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.BatchResultHandler;
 
 /**
  * The primary Java interface for working with MyBatis.
@@ -257,6 +258,20 @@ public interface SqlSession extends Closeable {
    */
   List<BatchResult> flushStatements();
 
+  /**
+   * Passes the results of batches flushed because a flush threshold was reached to a handler instead of returning them
+   * on the next flush. Sessions that do not batch statements ignore it.
+   *
+   * @param batchResultHandler
+   *          the batch result handler, or {@code null} to keep these results for the next flush
+   * @throws UnsupportedOperationException
+   *           if this session cannot pass these results to a handler
+   * @since 3.5.8
+   */
+  default void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    throw new UnsupportedOperationException("This session does not support batch result handlers");
+  }
+
   /**
    * Closes the session.
    */
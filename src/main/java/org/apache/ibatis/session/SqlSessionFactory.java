@@ -16,6 +16,10 @@
 package org.apache.ibatis.session;
 
 import java.sql.Connection;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import org.apache.ibatis.executor.BatchResultHandler;
 
 /**
  * Creates an {@link SqlSession} out of a connection or a DataSource
@@ -40,6 +44,56 @@ public interface SqlSessionFactory {
 
   SqlSession openSession(ExecutorType execType, Connection connection);
 
+  /**
+   * Opens a {@code BATCH} session whose batches flushed because a flush threshold was reached are passed to a handler
+   * instead of being returned by the next flush.
+   *
+   * @param batchResultHandler
+   *          the handler of the automatically flushed batches of this session
+   * @return the session
+   * @since 3.5.8
+   */
+  default SqlSession openSession(BatchResultHandler batchResultHandler) {
+    SqlSession session = openSession(ExecutorType.BATCH);
+    session.setBatchResultHandler(batchResultHandler);
+    return session;
+  }
+
   Configuration getConfiguration();
 
+  /**
+   * Writes all rows of a source through an insert, update or delete statement, in chunks that are each written by a
+   * batch session and committed in their own transaction. A chunk that fails is rolled back and reported in the result,
+   * the other chunks are still committed.
+   *
+   * @param statement
+   *          Unique identifier matching the statement to execute.
+   * @param source
+   *          the parameter objects, one per row
+   * @param options
+   *          the chunk size, parallelism and other options
+   * @return the result of each chunk
+   * @since 3.5.8
+   */
+  default BulkResult bulkWrite(String statement, Iterator<?> source, BulkOptions options) {
+    return new BulkWriter(this, options).write(statement, source);
+  }
+
+  /**
+   * Writes all rows of a source through an insert, update or delete statement, see
+   * {@link #bulkWrite(String, Iterator, BulkOptions)}.
+   *
+   * @param statement
+   *          Unique identifier matching the statement to execute.
+   * @param source
+   *          the parameter objects, one per row
+   * @param options
+   *          the chunk size, parallelism and other options
+   * @return the result of each chunk
+   * @since 3.5.8
+   */
+  default BulkResult bulkWrite(String statement, Stream<?> source, BulkOptions options) {
+    return bulkWrite(statement, source.iterator(), options);
+  }
+
 }
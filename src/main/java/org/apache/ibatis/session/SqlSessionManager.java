@@ -27,6 +27,7 @@ import java.util.Properties;
 
 import org.apache.ibatis.cursor.Cursor;
 import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.BatchResultHandler;
 import org.apache.ibatis.reflection.ExceptionUtil;
 
 /**
@@ -279,6 +280,15 @@ public class SqlSessionManager implements SqlSessionFactory, SqlSession {
     sqlSession.clearCache();
   }
 
+  @Override
+  public void setBatchResultHandler(BatchResultHandler batchResultHandler) {
+    final SqlSession sqlSession = localSqlSession.get();
+    if (sqlSession == null) {
+      throw new SqlSessionException("Error:  Cannot set the batch result handler.  No managed session is started.");
+    }
+    sqlSession.setBatchResultHandler(batchResultHandler);
+  }
+
   @Override
   public void commit() {
     final SqlSession sqlSession = localSqlSession.get();
@@ -93,7 +93,7 @@ public abstract class BaseTypeHandler<T> extends TypeReference<T> implements Typ
     try {
       return getNullableResult(rs, columnIndex);
     } catch (Exception e) {
-      throw new ResultMapException("Error attempting to get column #" + columnIndex + " from result set.  Cause: " + e, e);
+      throw newResultMapException(columnIndex, e);
     }
   }
 
@@ -106,6 +106,21 @@ public abstract class BaseTypeHandler<T> extends TypeReference<T> implements Typ
     }
   }
 
+  /**
+   * Creates the exception that {@link #getResult(ResultSet, int)} throws when a column cannot be read. The primitive
+   * getters of {@link PrimitiveTypeHandler} use it to fail the same way.
+   *
+   * @param columnIndex
+   *          the column index
+   * @param cause
+   *          the cause
+   * @return the exception
+   * @since 3.5.8
+   */
+  protected ResultMapException newResultMapException(int columnIndex, Exception cause) {
+    return new ResultMapException("Error attempting to get column #" + columnIndex + " from result set.  Cause: " + cause, cause);
+  }
+
   public abstract void setNonNullParameter(PreparedStatement ps, int i, T parameter, JdbcType jdbcType) throws SQLException;
 
   /**
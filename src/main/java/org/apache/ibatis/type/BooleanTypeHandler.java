@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class BooleanTypeHandler extends BaseTypeHandler<Boolean> {
+public class BooleanTypeHandler extends BaseTypeHandler<Boolean> implements PrimitiveTypeHandler.OfBoolean {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Boolean parameter, JdbcType jdbcType)
@@ -51,4 +51,13 @@ public class BooleanTypeHandler extends BaseTypeHandler<Boolean> {
     boolean result = cs.getBoolean(columnIndex);
     return !result && cs.wasNull() ? null : result;
   }
+
+  @Override
+  public boolean getBooleanResult(ResultSet rs, int columnIndex) {
+    try {
+      return rs.getBoolean(columnIndex);
+    } catch (Exception e) {
+      throw newResultMapException(columnIndex, e);
+    }
+  }
 }
@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class ByteTypeHandler extends BaseTypeHandler<Byte> {
+public class ByteTypeHandler extends BaseTypeHandler<Byte> implements PrimitiveTypeHandler.OfByte {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Byte parameter, JdbcType jdbcType)
@@ -51,4 +51,13 @@ public class ByteTypeHandler extends BaseTypeHandler<Byte> {
     byte result = cs.getByte(columnIndex);
     return result == 0 && cs.wasNull() ? null : result;
   }
+
+  @Override
+  public byte getByteResult(ResultSet rs, int columnIndex) {
+    try {
+      return rs.getByte(columnIndex);
+    } catch (Exception e) {
+      throw newResultMapException(columnIndex, e);
+    }
+  }
 }
@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class DoubleTypeHandler extends BaseTypeHandler<Double> {
+public class DoubleTypeHandler extends BaseTypeHandler<Double> implements PrimitiveTypeHandler.OfDouble {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Double parameter, JdbcType jdbcType)
@@ -52,4 +52,13 @@ public class DoubleTypeHandler extends BaseTypeHandler<Double> {
     return result == 0 && cs.wasNull() ? null : result;
   }
 
+
+  @Override
+  public double getDoubleResult(ResultSet rs, int columnIndex) {
+    try {
+      return rs.getDouble(columnIndex);
+    } catch (Exception e) {
+      throw newResultMapException(columnIndex, e);
+    }
+  }
 }
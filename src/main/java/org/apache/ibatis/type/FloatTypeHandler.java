@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class FloatTypeHandler extends BaseTypeHandler<Float> {
+public class FloatTypeHandler extends BaseTypeHandler<Float> implements PrimitiveTypeHandler.OfFloat {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Float parameter, JdbcType jdbcType)
@@ -51,4 +51,13 @@ public class FloatTypeHandler extends BaseTypeHandler<Float> {
     float result = cs.getFloat(columnIndex);
     return result == 0 && cs.wasNull() ? null : result;
   }
+
+  @Override
+  public float getFloatResult(ResultSet rs, int columnIndex) {
+    try {
+      return rs.getFloat(columnIndex);
+    } catch (Exception e) {
+      throw newResultMapException(columnIndex, e);
+    }
+  }
 }
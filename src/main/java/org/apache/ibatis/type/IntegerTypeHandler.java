@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class IntegerTypeHandler extends BaseTypeHandler<Integer> {
+public class IntegerTypeHandler extends BaseTypeHandler<Integer> implements PrimitiveTypeHandler.OfInt {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Integer parameter, JdbcType jdbcType)
@@ -51,4 +51,13 @@ public class IntegerTypeHandler extends BaseTypeHandler<Integer> {
     int result = cs.getInt(columnIndex);
     return result == 0 && cs.wasNull() ? null : result;
   }
+
+  @Override
+  public int getIntResult(ResultSet rs, int columnIndex) {
+    try {
+      return rs.getInt(columnIndex);
+    } catch (Exception e) {
+      throw newResultMapException(columnIndex, e);
+    }
+  }
 }
@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class LongTypeHandler extends BaseTypeHandler<Long> {
+public class LongTypeHandler extends BaseTypeHandler<Long> implements PrimitiveTypeHandler.OfLong {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Long parameter, JdbcType jdbcType)
@@ -51,4 +51,13 @@ public class LongTypeHandler extends BaseTypeHandler<Long> {
     long result = cs.getLong(columnIndex);
     return result == 0 && cs.wasNull() ? null : result;
   }
+
+  @Override
+  public long getLongResult(ResultSet rs, int columnIndex) {
+    try {
+      return rs.getLong(columnIndex);
+    } catch (Exception e) {
+      throw newResultMapException(columnIndex, e);
+    }
+  }
 }
@@ -0,0 +1,104 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.type;
+
+import java.lang.reflect.Method;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * A {@link TypeHandler} that can also read a column as a primitive value, without boxing it.
+ * <p>
+ * The primitive getters return the value that the JDBC getter returns, which is {@code 0} or {@code false} for SQL
+ * {@code NULL}. Callers check {@link ResultSet#wasNull()} to tell SQL {@code NULL} apart.
+ *
+ * @since 3.5.8
+ */
+public interface PrimitiveTypeHandler {
+
+  interface OfBoolean extends PrimitiveTypeHandler {
+    boolean getBooleanResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfByte extends PrimitiveTypeHandler {
+    byte getByteResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfShort extends PrimitiveTypeHandler {
+    short getShortResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfInt extends PrimitiveTypeHandler {
+    int getIntResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfLong extends PrimitiveTypeHandler {
+    long getLongResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfFloat extends PrimitiveTypeHandler {
+    float getFloatResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  interface OfDouble extends PrimitiveTypeHandler {
+    double getDoubleResult(ResultSet rs, int columnIndex) throws SQLException;
+  }
+
+  /**
+   * Gets whether a type handler reads a primitive type through this contract. This is not the case when a subclass
+   * overrides {@code getResult(ResultSet, int)} or {@code getNullableResult(ResultSet, int)} without overriding the
+   * primitive getter, because the primitive getter would then skip the override.
+   *
+   * @param typeHandler
+   *          the type handler
+   * @param primitiveType
+   *          the primitive type, like {@code int.class}
+   * @return {@code true} if the primitive getter of the type handler can be used in place of its boxed getter
+   */
+  static boolean supports(TypeHandler<?> typeHandler, Class<?> primitiveType) {
+    final String getterName;
+    if (primitiveType == boolean.class && typeHandler instanceof OfBoolean) {
+      getterName = "getBooleanResult";
+    } else if (primitiveType == byte.class && typeHandler instanceof OfByte) {
+      getterName = "getByteResult";
+    } else if (primitiveType == short.class && typeHandler instanceof OfShort) {
+      getterName = "getShortResult";
+    } else if (primitiveType == int.class && typeHandler instanceof OfInt) {
+      getterName = "getIntResult";
+    } else if (primitiveType == long.class && typeHandler instanceof OfLong) {
+      getterName = "getLongResult";
+    } else if (primitiveType == float.class && typeHandler instanceof OfFloat) {
+      getterName = "getFloatResult";
+    } else if (primitiveType == double.class && typeHandler instanceof OfDouble) {
+      getterName = "getDoubleResult";
+    } else {
+      return false;
+    }
+    final Class<?> handlerType = typeHandler.getClass();
+    try {
+      final Class<?> getterClass = handlerType.getMethod(getterName, ResultSet.class, int.class).getDeclaringClass();
+      final Method getResult = handlerType.getMethod("getResult", ResultSet.class, int.class);
+      if (!getResult.getDeclaringClass().isAssignableFrom(getterClass)) {
+        return false;
+      }
+      return !(typeHandler instanceof BaseTypeHandler) || handlerType.getMethod("getNullableResult", ResultSet.class, int.class)
+          .getDeclaringClass().isAssignableFrom(getterClass);
+    } catch (NoSuchMethodException e) {
+      return false;
+    }
+  }
+
+}
@@ -23,7 +23,7 @@ import java.sql.SQLException;
 /**
  * @author Clinton Begin
  */
-public class ShortTypeHandler extends BaseTypeHandler<Short> {
+public class ShortTypeHandler extends BaseTypeHandler<Short> implements PrimitiveTypeHandler.OfShort {
 
   @Override
   public void setNonNullParameter(PreparedStatement ps, int i, Short parameter, JdbcType jdbcType)
@@ -51,4 +51,13 @@ public class ShortTypeHandler extends BaseTypeHandler<Short> {
     short result = cs.getShort(columnIndex);
     return result == 0 && cs.wasNull() ? null : result;
   }
+
+  @Override
+  public short getShortResult(ResultSet rs, int columnIndex) {
+    try {
+      return rs.getShort(columnIndex);
+    } catch (Exception e) {
+      throw newResultMapException(columnIndex, e);
+    }
+  }
 }
@@ -0,0 +1,164 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations, or of other values that are never negative. The connection pool records
+ * milliseconds, the statement metrics record microseconds and row counts.
+ * <p>
+ * Values below 32 are counted exactly. Larger values fall into log-linear buckets of 16 per power of two, so every
+ * reported percentile is within about 6% of the recorded value, whatever its magnitude, while the histogram keeps a
+ * fixed size.
+ *
+ * @since 3.5.8
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int EXACT_COUNT = SUB_BUCKET_COUNT * 2;
+  private static final int BUCKET_COUNT = EXACT_COUNT + (Long.SIZE - SUB_BUCKET_BITS - 2) * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a value.
+   *
+   * @param value
+   *          the value, negative values are recorded as 0
+   */
+  public void record(long value) {
+    long recorded = Math.max(0, value);
+    counts.incrementAndGet(indexOf(recorded));
+    sum.add(recorded);
+    max.accumulate(recorded);
+  }
+
+  /**
+   * Takes a consistent enough copy of the histogram. Values recorded while the copy is taken may or may not be part of
+   * it.
+   *
+   * @return the snapshot
+   */
+  public Snapshot snapshot() {
+    long[] copy = new long[BUCKET_COUNT];
+    long count = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      copy[i] = counts.get(i);
+      count += copy[i];
+    }
+    return new Snapshot(copy, count, sum.sum(), max.get());
+  }
+
+  static int indexOf(long value) {
+    if (value < EXACT_COUNT) {
+      return (int) value;
+    }
+    int shift = Long.SIZE - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS - 1;
+    return EXACT_COUNT + (shift - 1) * SUB_BUCKET_COUNT + (int) (value >>> shift) - SUB_BUCKET_COUNT;
+  }
+
+  static long highestValueOf(int index) {
+    if (index < EXACT_COUNT) {
+      return index;
+    }
+    int offset = index - EXACT_COUNT;
+    int shift = offset / SUB_BUCKET_COUNT + 1;
+    long subBucket = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  /**
+   * An immutable copy of a {@link LatencyHistogram}.
+   */
+  public static class Snapshot {
+
+    private final long[] counts;
+    private final long count;
+    private final long sum;
+    private final long max;
+
+    Snapshot(long[] counts, long count, long sum, long max) {
+      this.counts = counts;
+      this.count = count;
+      this.sum = sum;
+      this.max = max;
+    }
+
+    /**
+     * Gets the number of recorded values.
+     *
+     * @return the count
+     */
+    public long getCount() {
+      return count;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return the maximum in the unit of the recorded values, or 0 if nothing was recorded
+     */
+    public long getMax() {
+      return max;
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @return the mean in the unit of the recorded values, or 0 if nothing was recorded
+     */
+    public double getMean() {
+      return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Gets the value below or at which the given percentage of the recorded values lie.
+     *
+     * @param percentile
+     *          the percentile, between 0 and 100
+     * @return the value in the unit of the recorded values, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+      if (count == 0) {
+        return 0;
+      }
+      double requested = Math.min(Math.max(percentile, 0), 100);
+      long rank = Math.max(1, (long) Math.ceil(requested / 100 * count));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+        seen += counts[i];
+        if (seen >= rank) {
+          return Math.min(highestValueOf(i), max);
+        }
+      }
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return "count=" + count + ", mean=" + String.format("%.1f", getMean()) + ", p50=" + getValueAtPercentile(50)
+          + ", p99=" + getValueAtPercentile(99) + ", max=" + max;
+    }
+  }
+
+}
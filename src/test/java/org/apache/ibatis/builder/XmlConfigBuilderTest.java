@@ -102,6 +102,20 @@ class XmlConfigBuilderTest {
       assertThat(config.getTypeHandlerRegistry().getTypeHandler(RoundingMode.class)).isInstanceOf(EnumTypeHandler.class);
       assertThat(config.isShrinkWhitespacesInSql()).isFalse();
       assertThat(config.getDefaultSqlProviderType()).isNull();
+      assertThat(config.isBatchInterleavedStatements()).isFalse();
+      assertNull(config.getBatchFlushRowsPerStatement());
+      assertNull(config.getBatchFlushRows());
+      assertNull(config.getBatchFlushParameterBytes());
+      assertThat(config.isBatchDependencyAwareFlush()).isFalse();
+      assertThat(config.getBatchRewriteMaxParameters()).isEqualTo(2000);
+      assertThat(config.isAsyncVirtualThreads()).isFalse();
+      assertNull(config.getLocalCacheMaxEntries());
+      assertNull(config.getLocalCacheMaxBytes());
+      assertThat(config.isStatementMetricsEnabled()).isFalse();
+      assertNull(config.getSlowQueryThreshold());
+      assertThat(config.getSlowQuerySampleRate()).isEqualTo(1.0);
+      assertThat(config.getSlowQueryRedactedParameters()).isEmpty();
+      assertThat(config.isRowMapperGenerationEnabled()).isFalse();
     }
   }
 
@@ -198,6 +212,20 @@ class XmlConfigBuilderTest {
       assertThat(config.getConfigurationFactory().getName()).isEqualTo(String.class.getName());
       assertThat(config.isShrinkWhitespacesInSql()).isTrue();
       assertThat(config.getDefaultSqlProviderType().getName()).isEqualTo(MySqlProvider.class.getName());
+      assertThat(config.isBatchInterleavedStatements()).isTrue();
+      assertThat(config.getBatchFlushRowsPerStatement()).isEqualTo(1000);
+      assertThat(config.getBatchFlushRows()).isEqualTo(5000);
+      assertThat(config.getBatchFlushParameterBytes()).isEqualTo(10000000L);
+      assertThat(config.isBatchDependencyAwareFlush()).isTrue();
+      assertThat(config.getBatchRewriteMaxParameters()).isEqualTo(30000);
+      assertThat(config.isAsyncVirtualThreads()).isTrue();
+      assertThat(config.getLocalCacheMaxEntries()).isEqualTo(100);
+      assertThat(config.getLocalCacheMaxBytes()).isEqualTo(1048576L);
+      assertThat(config.isStatementMetricsEnabled()).isTrue();
+      assertThat(config.getSlowQueryThreshold()).isEqualTo(500);
+      assertThat(config.getSlowQuerySampleRate()).isEqualTo(0.5);
+      assertThat(config.getSlowQueryRedactedParameters()).containsExactlyInAnyOrder("password", "ssn");
+      assertThat(config.isRowMapperGenerationEnabled()).isTrue();
 
       assertThat(config.getTypeAliasRegistry().getTypeAliases().get("blogauthor")).isEqualTo(Author.class);
       assertThat(config.getTypeAliasRegistry().getTypeAliases().get("blog")).isEqualTo(Blog.class);
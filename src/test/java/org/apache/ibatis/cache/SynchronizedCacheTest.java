@@ -0,0 +1,81 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.ibatis.cache.decorators.SynchronizedCache;
+import org.apache.ibatis.cache.impl.PerpetualCache;
+import org.junit.jupiter.api.Test;
+
+class SynchronizedCacheTest {
+
+  @Test
+  void shouldDelegateAllOperations() {
+    Cache cache = new SynchronizedCache(new PerpetualCache("default"));
+    cache.putObject(0, 0);
+    assertEquals(0, cache.getObject(0));
+    assertEquals(1, cache.getSize());
+    cache.removeObject(0);
+    assertNull(cache.getObject(0));
+    cache.putObject(1, 1);
+    cache.clear();
+    assertEquals(0, cache.getSize());
+  }
+
+  @Test
+  void shouldNotHoldOrBlockOnMonitors() throws Exception {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    Cache cache = new SynchronizedCache(new PerpetualCache("default") {
+      @Override
+      public Object getObject(Object key) {
+        entered.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        return super.getObject(key);
+      }
+    });
+    Thread holder = new Thread(() -> cache.getObject(0));
+    Thread waiter = new Thread(cache::getSize);
+    holder.start();
+    entered.await();
+    waiter.start();
+    try {
+      while (waiter.getState() == Thread.State.RUNNABLE || waiter.getState() == Thread.State.NEW) {
+        Thread.sleep(10);
+      }
+      ThreadInfo[] infos = ManagementFactory.getThreadMXBean().getThreadInfo(new long[] { holder.getId(), waiter.getId() },
+          true, true);
+      assertEquals(0, infos[0].getLockedMonitors().length);
+      assertEquals(1, infos[0].getLockedSynchronizers().length);
+      assertEquals(Thread.State.WAITING, infos[1].getThreadState());
+      assertNotEquals(SynchronizedCache.class.getName(), infos[1].getLockInfo().getClassName());
+    } finally {
+      release.countDown();
+      holder.join();
+      waiter.join();
+    }
+  }
+
+}
@@ -0,0 +1,164 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PooledDataSourceConcurrentCheckoutTest {
+
+  private PooledDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:concurrentcheckout", "sa", "");
+    dataSource.setPoolConcurrentCheckout(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    dataSource.forceCloseAll();
+  }
+
+  @Test
+  void shouldBeSelectableThroughFactoryProperties() {
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    Properties props = new Properties();
+    props.setProperty("driver", "org.hsqldb.jdbcDriver");
+    props.setProperty("url", "jdbc:hsqldb:mem:concurrentcheckout");
+    props.setProperty("poolConcurrentCheckout", "true");
+    factory.setProperties(props);
+    assertTrue(((PooledDataSource) factory.getDataSource()).isPoolConcurrentCheckout());
+  }
+
+  @Test
+  void shouldProperlyMaintainPoolOf3ActiveAnd2IdleConnections() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(3);
+    dataSource.setPoolMaximumIdleConnections(2);
+    List<Connection> connections = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      connections.add(dataSource.getConnection());
+    }
+    assertEquals(3, dataSource.getPoolState().getActiveConnectionCount());
+    for (Connection c : connections) {
+      c.close();
+    }
+    assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    assertEquals(2, dataSource.getPoolState().getIdleConnectionCount());
+    assertEquals(3, dataSource.getPoolState().getRequestCount());
+    assertEquals(0, dataSource.getPoolState().getBadConnectionCount());
+    assertEquals(0, dataSource.getPoolState().getHadToWaitCount());
+  }
+
+  @Test
+  void shouldReuseTheConnectionReturnedByTheSameThread() throws Exception {
+    Connection c1 = dataSource.getConnection();
+    Connection c2 = dataSource.getConnection();
+    Connection real2 = PooledDataSource.unwrapConnection(c2);
+    c1.close();
+    c2.close();
+    Connection c3 = dataSource.getConnection();
+    assertSame(real2, PooledDataSource.unwrapConnection(c3));
+    c3.close();
+  }
+
+  @Test
+  void shouldRejectUseOfConnectionAfterItWasReturned() throws Exception {
+    Connection c = dataSource.getConnection();
+    c.close();
+    assertThrows(SQLException.class, c::getAutoCommit);
+    c.close();
+    assertEquals(1, dataSource.getPoolState().getBadConnectionCount());
+    assertEquals(1, dataSource.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldHandOffReturnedConnectionToWaitingThread() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(1);
+    Connection c = dataSource.getConnection();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<Connection> waiting = executor.submit(() -> dataSource.getConnection());
+      while (dataSource.getPoolState().getHadToWaitCount() == 0) {
+        Thread.sleep(10);
+      }
+      Connection real = PooledDataSource.unwrapConnection(c);
+      c.close();
+      Connection handedOff = waiting.get(5, TimeUnit.SECONDS);
+      assertSame(real, PooledDataSource.unwrapConnection(handedOff));
+      handedOff.close();
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void shouldNeverShareAConnectionBetweenThreads() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(4);
+    dataSource.setPoolMaximumIdleConnections(4);
+    int threads = 16;
+    Set<Connection> inUse = ConcurrentHashMap.newKeySet();
+    AtomicBoolean shared = new AtomicBoolean();
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int i = 0; i < threads; i++) {
+        futures.add(executor.submit(() -> {
+          start.await();
+          for (int j = 0; j < 200; j++) {
+            try (Connection c = dataSource.getConnection()) {
+              Connection real = PooledDataSource.unwrapConnection(c);
+              if (!inUse.add(real)) {
+                shared.set(true);
+              }
+              inUse.remove(real);
+            }
+          }
+          return null;
+        }));
+      }
+      start.countDown();
+      for (Future<?> future : futures) {
+        future.get(30, TimeUnit.SECONDS);
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    assertFalse(shared.get());
+    assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+    assertTrue(dataSource.getPoolState().getIdleConnectionCount() <= 4);
+    assertEquals(threads * 200, dataSource.getPoolState().getRequestCount());
+  }
+
+}
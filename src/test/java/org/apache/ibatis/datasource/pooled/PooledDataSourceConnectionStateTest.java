@@ -0,0 +1,164 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.apache.ibatis.transaction.jdbc.JdbcTransaction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PooledDataSourceConnectionStateTest {
+
+  private final Map<String, AtomicInteger> calls = new ConcurrentHashMap<>();
+  private PooledDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    UnpooledDataSource unpooled = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:connectionstate", "sa", "") {
+      @Override
+      public Connection getConnection() throws SQLException {
+        return countingConnection(super.getConnection());
+      }
+    };
+    dataSource = new PooledDataSource(unpooled);
+    dataSource.setPoolTrackConnectionState(true);
+  }
+
+  @AfterEach
+  void tearDown() {
+    dataSource.close();
+  }
+
+  @Test
+  void shouldNotTouchTheDatabaseForUnusedConnection() throws Exception {
+    checkNotTouchTheDatabaseForUnusedConnection();
+  }
+
+  @Test
+  void shouldNotTouchTheDatabaseForUnusedConnectionInConcurrentMode() throws Exception {
+    dataSource.setPoolConcurrentCheckout(true);
+    checkNotTouchTheDatabaseForUnusedConnection();
+  }
+
+  private void checkNotTouchTheDatabaseForUnusedConnection() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      try (Connection c = dataSource.getConnection()) {
+        assertTrue(c.getAutoCommit());
+        c.setAutoCommit(false);
+        assertFalse(c.getAutoCommit());
+        c.commit();
+        c.rollback();
+        c.setAutoCommit(true);
+      }
+    }
+    assertEquals(1, callCount("getAutoCommit"));
+    assertEquals(0, callCount("setAutoCommit"));
+    assertEquals(0, callCount("commit"));
+    assertEquals(0, callCount("rollback"));
+  }
+
+  @Test
+  void shouldRollBackOnlyWhenAStatementRan() throws Exception {
+    try (Connection c = dataSource.getConnection()) {
+      c.setAutoCommit(false);
+    }
+    assertEquals(0, callCount("rollback"));
+
+    try (Connection c = dataSource.getConnection()) {
+      c.setAutoCommit(false);
+      try (Statement statement = c.createStatement()) {
+        statement.executeQuery("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS").close();
+      }
+      assertEquals(1, callCount("setAutoCommit"));
+    }
+    assertEquals(1, callCount("rollback"));
+    assertEquals(2, callCount("setAutoCommit"));
+  }
+
+  @Test
+  void shouldRestoreChangedAttributesWhenConnectionIsReturned() throws Exception {
+    Connection real;
+    int isolation;
+    try (Connection c = dataSource.getConnection()) {
+      real = PooledDataSource.unwrapConnection(c);
+      isolation = c.getTransactionIsolation();
+      c.setReadOnly(true);
+      c.setTransactionIsolation(Connection.TRANSACTION_SERIALIZABLE);
+      c.createStatement().close();
+      assertTrue(real.isReadOnly());
+      assertEquals(Connection.TRANSACTION_SERIALIZABLE, real.getTransactionIsolation());
+    }
+    assertFalse(real.isReadOnly());
+    assertEquals(isolation, real.getTransactionIsolation());
+    assertEquals(0, callCount("setSchema"));
+    assertEquals(0, callCount("setCatalog"));
+  }
+
+  @Test
+  void shouldApplyAutoCommitChangeImmediatelyOnceAStatementRan() throws Exception {
+    try (Connection c = dataSource.getConnection()) {
+      Connection real = PooledDataSource.unwrapConnection(c);
+      c.setAutoCommit(false);
+      c.createStatement().close();
+      c.setAutoCommit(true);
+      assertTrue(real.getAutoCommit());
+    }
+    assertEquals(0, callCount("rollback"));
+  }
+
+  @Test
+  void shouldAvoidRoundTripsOfTransactionWithoutStatements() throws Exception {
+    for (int i = 0; i < 2; i++) {
+      JdbcTransaction transaction = new JdbcTransaction(dataSource, null, false);
+      transaction.getConnection();
+      transaction.commit();
+      transaction.close();
+    }
+    assertEquals(1, callCount("getAutoCommit"));
+    assertEquals(0, callCount("setAutoCommit"));
+    assertEquals(0, callCount("commit"));
+  }
+
+  private int callCount(String methodName) {
+    AtomicInteger count = calls.get(methodName);
+    return count == null ? 0 : count.get();
+  }
+
+  private Connection countingConnection(Connection connection) {
+    return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[] { Connection.class },
+        (proxy, method, args) -> {
+          calls.computeIfAbsent(method.getName(), k -> new AtomicInteger()).incrementAndGet();
+          try {
+            return method.invoke(connection, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+
+}
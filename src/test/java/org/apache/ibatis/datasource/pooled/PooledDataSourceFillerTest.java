@@ -0,0 +1,270 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntSupplier;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.junit.jupiter.api.Test;
+
+class PooledDataSourceFillerTest {
+
+  private static final String URL = "jdbc:hsqldb:mem:pooledfiller";
+
+  @Test
+  void shouldPrefillMinimumIdleConnectionsOnStartup() throws Exception {
+    checkPrefillMinimumIdleConnectionsOnStartup(false);
+  }
+
+  @Test
+  void shouldPrefillMinimumIdleConnectionsOnStartupInConcurrentMode() throws Exception {
+    checkPrefillMinimumIdleConnectionsOnStartup(true);
+  }
+
+  private void checkPrefillMinimumIdleConnectionsOnStartup(boolean concurrent) throws Exception {
+    PooledDataSourceFactory factory = new PooledDataSourceFactory();
+    Properties props = new Properties();
+    props.setProperty("driver", "org.hsqldb.jdbcDriver");
+    props.setProperty("url", URL);
+    props.setProperty("username", "sa");
+    props.setProperty("poolMinimumIdleConnections", "3");
+    props.setProperty("poolConcurrentCheckout", String.valueOf(concurrent));
+    factory.setProperties(props);
+    PooledDataSource ds = (PooledDataSource) factory.getDataSource();
+    try {
+      awaitCount(3, () -> ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      ds.close();
+    }
+  }
+
+  @Test
+  void shouldReplaceCheckedOutConnectionsAheadOfDemand() throws Exception {
+    checkReplaceCheckedOutConnectionsAheadOfDemand(false);
+  }
+
+  @Test
+  void shouldReplaceCheckedOutConnectionsAheadOfDemandInConcurrentMode() throws Exception {
+    checkReplaceCheckedOutConnectionsAheadOfDemand(true);
+  }
+
+  private void checkReplaceCheckedOutConnectionsAheadOfDemand(boolean concurrent) throws Exception {
+    PooledDataSource ds = new PooledDataSource("org.hsqldb.jdbcDriver", URL, "sa", "");
+    ds.setPoolConcurrentCheckout(concurrent);
+    ds.setPoolMinimumIdleConnections(2);
+    ds.start();
+    try {
+      awaitCount(2, () -> ds.getPoolState().getIdleConnectionCount());
+      Connection c1 = ds.getConnection();
+      Connection c2 = ds.getConnection();
+      awaitCount(2, () -> ds.getPoolState().getIdleConnectionCount());
+      assertEquals(2, ds.getPoolState().getActiveConnectionCount());
+      c1.close();
+      c2.close();
+      assertTrue(ds.getPoolState().getIdleConnectionCount() <= ds.getPoolMaximumIdleConnections());
+    } finally {
+      ds.close();
+    }
+  }
+
+  @Test
+  void shouldNotBlockReturningThreadsWhileConnecting() throws Exception {
+    checkNotBlockReturningThreadsWhileConnecting(false);
+  }
+
+  @Test
+  void shouldNotBlockReturningThreadsWhileConnectingInConcurrentMode() throws Exception {
+    checkNotBlockReturningThreadsWhileConnecting(true);
+  }
+
+  private void checkNotBlockReturningThreadsWhileConnecting(boolean concurrent) throws Exception {
+    CountDownLatch connecting = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    UnpooledDataSource slowDataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", URL, "sa", "") {
+      private int connects;
+
+      @Override
+      public synchronized Connection getConnection() throws SQLException {
+        if (++connects == 2) {
+          connecting.countDown();
+          try {
+            proceed.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.getConnection();
+      }
+    };
+    PooledDataSource ds = new PooledDataSource(slowDataSource);
+    ds.setPoolConcurrentCheckout(concurrent);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Connection first = ds.getConnection();
+      Future<Connection> second = executor.submit(() -> ds.getConnection());
+      assertTrue(connecting.await(5, TimeUnit.SECONDS));
+
+      Future<?> returning = executor.submit(() -> {
+        first.close();
+        return null;
+      });
+      returning.get(5, TimeUnit.SECONDS);
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+
+      proceed.countDown();
+      second.get(5, TimeUnit.SECONDS).close();
+    } finally {
+      proceed.countDown();
+      executor.shutdownNow();
+      ds.close();
+    }
+  }
+
+  @Test
+  void shouldNotBlockCheckoutsWhileResettingReturnedConnection() throws Exception {
+    checkNotBlockCheckoutsWhileResettingReturnedConnection(false);
+  }
+
+  @Test
+  void shouldNotBlockCheckoutsWhileResettingReturnedConnectionInConcurrentMode() throws Exception {
+    checkNotBlockCheckoutsWhileResettingReturnedConnection(true);
+  }
+
+  private void checkNotBlockCheckoutsWhileResettingReturnedConnection(boolean concurrent) throws Exception {
+    CountDownLatch resetting = new CountDownLatch(1);
+    CountDownLatch proceed = new CountDownLatch(1);
+    AtomicBoolean blockReset = new AtomicBoolean();
+    AtomicInteger connects = new AtomicInteger();
+    UnpooledDataSource slowDataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", URL, "sa", "") {
+      @Override
+      public Connection getConnection() throws SQLException {
+        Connection real = super.getConnection();
+        boolean slow = connects.incrementAndGet() == 1;
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+            (proxy, method, args) -> {
+              if (slow && blockReset.get() && "rollback".equals(method.getName())) {
+                resetting.countDown();
+                proceed.await();
+              }
+              try {
+                return method.invoke(real, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            });
+      }
+    };
+    slowDataSource.setAutoCommit(false);
+    PooledDataSource ds = new PooledDataSource(slowDataSource);
+    ds.setPoolConcurrentCheckout(concurrent);
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      Connection first = ds.getConnection();
+      ds.getConnection().close();
+
+      blockReset.set(true);
+      Future<?> returning = executor.submit(() -> {
+        first.close();
+        return null;
+      });
+      assertTrue(resetting.await(5, TimeUnit.SECONDS));
+      Future<Connection> checkout = executor.submit(() -> ds.getConnection());
+      checkout.get(5, TimeUnit.SECONDS).close();
+
+      proceed.countDown();
+      returning.get(5, TimeUnit.SECONDS);
+    } finally {
+      proceed.countDown();
+      executor.shutdownNow();
+      ds.close();
+    }
+  }
+
+  @Test
+  void shouldCloseConnectionThatCouldNotBeReset() throws Exception {
+    checkCloseConnectionThatCouldNotBeReset(false);
+  }
+
+  @Test
+  void shouldCloseConnectionThatCouldNotBeResetInConcurrentMode() throws Exception {
+    checkCloseConnectionThatCouldNotBeReset(true);
+  }
+
+  private void checkCloseConnectionThatCouldNotBeReset(boolean concurrent) throws Exception {
+    AtomicBoolean failReset = new AtomicBoolean();
+    AtomicInteger closed = new AtomicInteger();
+    UnpooledDataSource failingDataSource = new UnpooledDataSource("org.hsqldb.jdbcDriver", URL, "sa", "") {
+      @Override
+      public Connection getConnection() throws SQLException {
+        Connection real = super.getConnection();
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+            (proxy, method, args) -> {
+              if ("getAutoCommit".equals(method.getName()) && failReset.get()) {
+                throw new SQLException("Connection reset failed");
+              }
+              if ("close".equals(method.getName())) {
+                closed.incrementAndGet();
+              }
+              try {
+                return method.invoke(real, args);
+              } catch (InvocationTargetException e) {
+                throw e.getCause();
+              }
+            });
+      }
+    };
+    PooledDataSource ds = new PooledDataSource(failingDataSource);
+    ds.setPoolConcurrentCheckout(concurrent);
+    try {
+      Connection c = ds.getConnection();
+      c.close();
+      assertEquals(1, ds.getPoolState().getIdleConnectionCount());
+
+      failReset.set(true);
+      assertThrows(SQLException.class, ds::getConnection);
+      assertEquals(1, closed.get());
+      assertEquals(0, ds.getPoolState().getIdleConnectionCount());
+      assertEquals(0, ds.getPoolState().getActiveConnectionCount());
+    } finally {
+      failReset.set(false);
+      ds.close();
+    }
+  }
+
+  private static void awaitCount(int expected, IntSupplier actual) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 5000;
+    while (actual.getAsInt() < expected && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, actual.getAsInt());
+  }
+
+}
@@ -0,0 +1,165 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.ref.WeakReference;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PooledDataSourceHousekeepingTest {
+
+  private PooledDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:housekeeping", "sa", "");
+  }
+
+  @AfterEach
+  void tearDown() {
+    dataSource.close();
+  }
+
+  @Test
+  void shouldRetireConnectionsThatReachedTheirMaximumLifetime() throws Exception {
+    checkRetireConnectionsThatReachedTheirMaximumLifetime();
+  }
+
+  @Test
+  void shouldRetireConnectionsThatReachedTheirMaximumLifetimeInConcurrentMode() throws Exception {
+    dataSource.setPoolConcurrentCheckout(true);
+    checkRetireConnectionsThatReachedTheirMaximumLifetime();
+  }
+
+  private void checkRetireConnectionsThatReachedTheirMaximumLifetime() throws Exception {
+    dataSource.setPoolMaximumLifetime(100);
+    Connection c = dataSource.getConnection();
+    Connection real = PooledDataSource.unwrapConnection(c);
+    c.close();
+    assertEquals(1, dataSource.getPoolState().getIdleConnectionCount());
+
+    Thread.sleep(150);
+    dataSource.housekeep();
+    assertEquals(0, dataSource.getPoolState().getIdleConnectionCount());
+    assertTrue(real.isClosed());
+  }
+
+  @Test
+  void shouldNotReturnExpiredConnectionToThePool() throws Exception {
+    dataSource.setPoolMaximumLifetime(100);
+    Connection c = dataSource.getConnection();
+    Thread.sleep(150);
+    c.close();
+    assertEquals(0, dataSource.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldEvictIdleConnectionsDownToTheMinimum() throws Exception {
+    checkEvictIdleConnectionsDownToTheMinimum();
+  }
+
+  @Test
+  void shouldEvictIdleConnectionsDownToTheMinimumInConcurrentMode() throws Exception {
+    dataSource.setPoolConcurrentCheckout(true);
+    checkEvictIdleConnectionsDownToTheMinimum();
+  }
+
+  private void checkEvictIdleConnectionsDownToTheMinimum() throws Exception {
+    dataSource.setPoolMinimumIdleConnections(1);
+    dataSource.setPoolIdleTimeout(100);
+    List<Connection> connections = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      connections.add(dataSource.getConnection());
+    }
+    // the housekeeper opens one more connection to keep the minimum while all three are checked out
+    long deadline = System.currentTimeMillis() + 5000;
+    while (dataSource.getPoolState().getIdleConnectionCount() < 1 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(1, dataSource.getPoolState().getIdleConnectionCount());
+    for (Connection c : connections) {
+      c.close();
+    }
+    assertEquals(4, dataSource.getPoolState().getIdleConnectionCount());
+
+    Thread.sleep(150);
+    dataSource.housekeep();
+    assertEquals(1, dataSource.getPoolState().getIdleConnectionCount());
+  }
+
+  @Test
+  void shouldValidateIdleConnectionsInTheBackgroundInsteadOfAtCheckout() throws Exception {
+    dataSource.setPoolPingEnabled(true);
+    dataSource.setPoolPingQuery("SELECT 1 FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+    dataSource.setPoolKeepaliveTime(50);
+    dataSource.setPoolHousekeepingInterval(20);
+    Connection c = dataSource.getConnection();
+    Connection real = PooledDataSource.unwrapConnection(c);
+    c.close();
+    // simulate the database closing the connection behind the pool's back
+    real.close();
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (dataSource.getPoolState().getBadConnectionCount() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, dataSource.getPoolState().getIdleConnectionCount());
+    assertEquals(1, dataSource.getPoolState().getBadConnectionCount());
+  }
+
+  @Test
+  void shouldNotPingInlineWhenKeepaliveIsEnabled() throws Exception {
+    dataSource.setPoolPingEnabled(true);
+    dataSource.setPoolPingQuery("SELECT * FROM TABLE_THAT_DOES_NOT_EXIST");
+    dataSource.setPoolPingConnectionsNotUsedFor(0);
+    dataSource.setPoolKeepaliveTime(60000);
+    Connection c = dataSource.getConnection();
+    Connection real = PooledDataSource.unwrapConnection(c);
+    c.close();
+    Thread.sleep(5);
+    c = dataSource.getConnection();
+    assertSame(real, PooledDataSource.unwrapConnection(c));
+    c.close();
+    assertEquals(0, dataSource.getPoolState().getBadConnectionCount());
+  }
+
+  @Test
+  void shouldNotKeepAbandonedDataSourceReachable() throws Exception {
+    WeakReference<PooledDataSource> abandoned = abandonDataSource();
+    for (int i = 0; i < 50 && abandoned.get() != null; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    assertNull(abandoned.get());
+  }
+
+  private WeakReference<PooledDataSource> abandonDataSource() throws Exception {
+    PooledDataSource abandoned = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:housekeeping", "sa", "");
+    abandoned.setPoolMinimumIdleConnections(1);
+    abandoned.setPoolMaximumLifetime(60000);
+    abandoned.setPoolHousekeepingInterval(10);
+    abandoned.getConnection().close();
+    return new WeakReference<>(abandoned);
+  }
+
+}
@@ -0,0 +1,118 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PooledDataSourceLeakDetectionTest {
+
+  private PooledDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:leakdetection", "sa", "");
+  }
+
+  @AfterEach
+  void tearDown() {
+    dataSource.close();
+  }
+
+  @Test
+  void shouldReportLeakWithoutReclaimingTheConnection() throws Exception {
+    checkReportLeakWithoutReclaimingTheConnection();
+  }
+
+  @Test
+  void shouldReportLeakWithoutReclaimingTheConnectionInConcurrentMode() throws Exception {
+    dataSource.setPoolConcurrentCheckout(true);
+    checkReportLeakWithoutReclaimingTheConnection();
+  }
+
+  private void checkReportLeakWithoutReclaimingTheConnection() throws Exception {
+    dataSource.setPoolLeakDetectionThreshold(50);
+    Connection c = dataSource.getConnection();
+    PooledConnection pooled = (PooledConnection) Proxy.getInvocationHandler(c);
+    dataSource.housekeep();
+    assertFalse(pooled.isLeakReported());
+
+    Thread.sleep(100);
+    dataSource.housekeep();
+    assertTrue(pooled.isLeakReported());
+    assertEquals(1, dataSource.getPoolState().getActiveConnectionCount());
+    assertTrue(c.getAutoCommit());
+    c.close();
+
+    List<CallSiteStatistics> statistics = dataSource.getPoolState().getCallSiteStatistics();
+    assertEquals(1, statistics.size());
+    assertEquals(1, statistics.get(0).getLeakCount());
+    assertTrue(statistics.get(0).getMaxHoldTime() >= 100);
+    assertTrue(statistics.get(0).getCallSite().startsWith(getClass().getName() + ".checkReportLeak"),
+        statistics.get(0).getCallSite());
+    assertEquals(0, dataSource.getPoolState().getClaimedOverdueConnectionCount());
+  }
+
+  @Test
+  void shouldAggregateHoldTimesPerCallSite() throws Exception {
+    dataSource.setPoolLeakDetectionThreshold(60000);
+    for (int i = 0; i < 3; i++) {
+      checkOutFromFirstSite();
+    }
+    checkOutFromSecondSite();
+
+    List<CallSiteStatistics> statistics = dataSource.getPoolState().getCallSiteStatistics();
+    assertEquals(2, statistics.size());
+    CallSiteStatistics first = find(statistics, "checkOutFromFirstSite");
+    CallSiteStatistics second = find(statistics, "checkOutFromSecondSite");
+    assertEquals(3, first.getCheckoutCount());
+    assertEquals(1, second.getCheckoutCount());
+    assertEquals(0, first.getLeakCount());
+    assertSame(second, statistics.get(0));
+  }
+
+  @Test
+  void shouldNotCaptureCheckoutSitesWhenDisabled() throws Exception {
+    Connection c = dataSource.getConnection();
+    assertNull(((PooledConnection) Proxy.getInvocationHandler(c)).getCheckoutSite());
+    c.close();
+    assertTrue(dataSource.getPoolState().getCallSiteStatistics().isEmpty());
+  }
+
+  private void checkOutFromFirstSite() throws SQLException {
+    dataSource.getConnection().close();
+  }
+
+  private void checkOutFromSecondSite() throws Exception {
+    try (Connection c = dataSource.getConnection()) {
+      Thread.sleep(50);
+    }
+  }
+
+  private CallSiteStatistics find(List<CallSiteStatistics> statistics, String methodName) {
+    return statistics.stream().filter(s -> s.getCallSite().contains("." + methodName + "(")).findFirst()
+        .orElseThrow(() -> new AssertionError(methodName + " not found in " + statistics));
+  }
+
+}
@@ -0,0 +1,106 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PooledDataSourceMetricsTest {
+
+  private PooledDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:metrics", "sa", "");
+  }
+
+  @AfterEach
+  void tearDown() {
+    dataSource.close();
+  }
+
+  @Test
+  void shouldRecordWaitCheckoutAndCreationTimes() throws Exception {
+    checkRecordWaitCheckoutAndCreationTimes();
+  }
+
+  @Test
+  void shouldRecordWaitCheckoutAndCreationTimesInConcurrentMode() throws Exception {
+    dataSource.setPoolConcurrentCheckout(true);
+    checkRecordWaitCheckoutAndCreationTimes();
+  }
+
+  private void checkRecordWaitCheckoutAndCreationTimes() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(1);
+    Connection c = dataSource.getConnection();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> waiter = executor.submit(() -> {
+        try (Connection other = dataSource.getConnection()) {
+          return other.getAutoCommit();
+        }
+      });
+      Thread.sleep(200);
+      c.close();
+      waiter.get();
+    } finally {
+      executor.shutdown();
+    }
+
+    PoolStatistics statistics = dataSource.getPoolState().snapshot();
+    assertEquals(2, statistics.getRequestCount());
+    assertEquals(1, statistics.getHadToWaitCount());
+    assertEquals(0, statistics.getActiveConnectionCount());
+    assertEquals(1, statistics.getIdleConnectionCount());
+    assertEquals(2, statistics.getWaitTime().getCount());
+    assertTrue(statistics.getWaitTime().getMax() >= 150, statistics.toString());
+    assertEquals(0, statistics.getWaitTime().getValueAtPercentile(50));
+    assertEquals(2, statistics.getCheckoutTime().getCount());
+    assertTrue(statistics.getCheckoutTime().getMax() >= 150, statistics.toString());
+    assertEquals(1, statistics.getConnectionCreationTime().getCount());
+  }
+
+  @Test
+  void shouldRegisterMBeanWhileStarted() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName("org.apache.ibatis:type=PooledDataSource,name=metricsTest");
+    dataSource.setPoolMBeanName(name.toString());
+    assertFalse(server.isRegistered(name));
+
+    try (Connection c = dataSource.getConnection()) {
+      assertTrue(server.isRegistered(name));
+      assertEquals(1, server.getAttribute(name, "ActiveConnectionCount"));
+    }
+    assertEquals(1L, server.getAttribute(name, "RequestCount"));
+    assertEquals(0L, server.getAttribute(name, "WaitTimeP99"));
+
+    dataSource.close();
+    assertFalse(server.isRegistered(name));
+  }
+
+}
@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.ibatis.datasource.unpooled.UnpooledDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Threads that block in the pool must not hold or wait for object monitors, which would pin a virtual thread to its
+ * carrier.
+ */
+class PooledDataSourcePinningTest {
+
+  private final CountDownLatch connecting = new CountDownLatch(1);
+  private final CountDownLatch connect = new CountDownLatch(1);
+  private volatile boolean slowConnect;
+  private PooledDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    UnpooledDataSource unpooled = new UnpooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:pinning", "sa", "") {
+      @Override
+      public Connection getConnection() throws SQLException {
+        if (slowConnect) {
+          connecting.countDown();
+          try {
+            connect.await();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+        return super.getConnection();
+      }
+    };
+    dataSource = new PooledDataSource(unpooled);
+  }
+
+  @AfterEach
+  void tearDown() {
+    connect.countDown();
+    dataSource.close();
+  }
+
+  @Test
+  void shouldNotHoldMonitorsWhileWaitingForConnection() throws Exception {
+    checkNotHoldMonitorsWhileWaitingForConnection();
+  }
+
+  @Test
+  void shouldNotHoldMonitorsWhileWaitingForConnectionInConcurrentMode() throws Exception {
+    dataSource.setPoolConcurrentCheckout(true);
+    checkNotHoldMonitorsWhileWaitingForConnection();
+  }
+
+  private void checkNotHoldMonitorsWhileWaitingForConnection() throws Exception {
+    dataSource.setPoolMaximumActiveConnections(1);
+    Connection c = dataSource.getConnection();
+    AtomicReference<Thread> waiter = new AtomicReference<>();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> future = executor.submit(() -> {
+        waiter.set(Thread.currentThread());
+        try (Connection other = dataSource.getConnection()) {
+          return other.getAutoCommit();
+        }
+      });
+      ThreadInfo info = awaitBlocked(waiter);
+      assertEquals(Thread.State.TIMED_WAITING, info.getThreadState());
+      assertEquals(0, info.getLockedMonitors().length);
+      assertNotEquals(PoolState.class.getName(), info.getLockInfo().getClassName());
+      c.close();
+      future.get();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void shouldNotHoldMonitorsWhileOpeningConnection() throws Exception {
+    slowConnect = true;
+    AtomicReference<Thread> opener = new AtomicReference<>();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<?> future = executor.submit(() -> {
+        opener.set(Thread.currentThread());
+        dataSource.getConnection().close();
+        return null;
+      });
+      connecting.await();
+      ThreadInfo info = awaitBlocked(opener);
+      assertEquals(0, info.getLockedMonitors().length);
+      // the executor's worker holds a lock of its own while running the task
+      assertTrue(Arrays.stream(info.getLockedSynchronizers())
+          .noneMatch(l -> l.getClassName().startsWith(ReentrantLock.class.getName())));
+      assertEquals(0, dataSource.getPoolState().getActiveConnectionCount());
+      connect.countDown();
+      future.get();
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  private ThreadInfo awaitBlocked(AtomicReference<Thread> thread) throws InterruptedException {
+    while (true) {
+      Thread t = thread.get();
+      if (t != null && t.getState() != Thread.State.RUNNABLE) {
+        return ManagementFactory.getThreadMXBean().getThreadInfo(new long[] { t.getId() }, true, true)[0];
+      }
+      Thread.sleep(10);
+    }
+  }
+
+}
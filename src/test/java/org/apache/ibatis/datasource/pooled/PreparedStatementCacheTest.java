@@ -0,0 +1,171 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.datasource.pooled;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PreparedStatementCacheTest {
+
+  private static final String SQL = "SELECT USER_NAME FROM INFORMATION_SCHEMA.SYSTEM_USERS WHERE USER_NAME = ?";
+  private static final String OTHER_SQL = "SELECT USER_NAME FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+
+  private PooledDataSource dataSource;
+
+  @BeforeEach
+  void setUp() {
+    dataSource = new PooledDataSource("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:statementcache", "sa", "");
+    dataSource.setPoolPreparedStatementCacheSize(2);
+  }
+
+  @AfterEach
+  void tearDown() {
+    dataSource.close();
+  }
+
+  @Test
+  void shouldReuseStatementAcrossCheckoutsOfTheSameConnection() throws Exception {
+    PreparedStatement first;
+    try (Connection c = dataSource.getConnection(); PreparedStatement ps = c.prepareStatement(SQL)) {
+      first = ps.unwrap(PreparedStatement.class);
+      assertQueryReturnsSa(ps);
+    }
+    try (Connection c = dataSource.getConnection(); PreparedStatement ps = c.prepareStatement(SQL)) {
+      assertSame(first, ps.unwrap(PreparedStatement.class));
+      assertQueryReturnsSa(ps);
+    }
+    assertEquals(1, dataSource.getPoolState().getStatementCacheHitCount());
+    assertEquals(1, dataSource.getPoolState().getStatementCacheMissCount());
+    assertFalse(first.isClosed());
+  }
+
+  @Test
+  void shouldNotShareStatementsPreparedWithDifferentOptions() throws Exception {
+    try (Connection c = dataSource.getConnection()) {
+      c.prepareStatement(SQL).close();
+      c.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS).close();
+      c.prepareStatement(SQL, ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY).close();
+    }
+    assertEquals(0, dataSource.getPoolState().getStatementCacheHitCount());
+    assertEquals(3, dataSource.getPoolState().getStatementCacheMissCount());
+    assertEquals(1, dataSource.getPoolState().getStatementCacheEvictionCount());
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedStatement() throws Exception {
+    dataSource.setPoolPreparedStatementCacheSize(1);
+    PreparedStatement evicted;
+    try (Connection c = dataSource.getConnection()) {
+      PreparedStatement ps = c.prepareStatement(SQL);
+      evicted = ps.unwrap(PreparedStatement.class);
+      ps.close();
+      c.prepareStatement(OTHER_SQL).close();
+    }
+    assertTrue(evicted.isClosed());
+    assertEquals(1, dataSource.getPoolState().getStatementCacheEvictionCount());
+  }
+
+  @Test
+  void shouldRejectUseOfLogicallyClosedStatement() throws Exception {
+    try (Connection c = dataSource.getConnection()) {
+      PreparedStatement ps = c.prepareStatement(SQL);
+      ps.close();
+      assertTrue(ps.isClosed());
+      assertThrows(SQLException.class, () -> ps.setString(1, "SA"));
+    }
+  }
+
+  @Test
+  void shouldRestoreStatementAttributesBeforeReuse() throws Exception {
+    try (Connection c = dataSource.getConnection()) {
+      try (PreparedStatement ps = c.prepareStatement(SQL)) {
+        ps.setMaxRows(1);
+        ps.setQueryTimeout(5);
+        ps.setString(1, "SA");
+      }
+      try (PreparedStatement ps = c.prepareStatement(SQL)) {
+        assertEquals(0, ps.getMaxRows());
+        assertEquals(0, ps.getQueryTimeout());
+        assertThrows(SQLException.class, ps::executeQuery);
+      }
+    }
+    assertEquals(1, dataSource.getPoolState().getStatementCacheHitCount());
+  }
+
+  @Test
+  void shouldCloseOpenResultSetsWhenStatementIsReturned() throws Exception {
+    try (Connection c = dataSource.getConnection()) {
+      ResultSet rs;
+      try (PreparedStatement ps = c.prepareStatement(SQL)) {
+        ps.setString(1, "SA");
+        rs = ps.executeQuery();
+      }
+      assertTrue(rs.isClosed());
+    }
+  }
+
+  @Test
+  void shouldInvalidateStatementsOfClaimedOverdueConnection() throws Exception {
+    checkInvalidateStatementsOfClaimedOverdueConnection(false);
+  }
+
+  @Test
+  void shouldInvalidateStatementsOfClaimedOverdueConnectionWithConcurrentCheckout() throws Exception {
+    checkInvalidateStatementsOfClaimedOverdueConnection(true);
+  }
+
+  private void checkInvalidateStatementsOfClaimedOverdueConnection(boolean concurrent) throws Exception {
+    dataSource.setPoolConcurrentCheckout(concurrent);
+    dataSource.setPoolMaximumActiveConnections(1);
+    dataSource.setPoolMaximumCheckoutTime(10);
+    Connection overdue = dataSource.getConnection();
+    PreparedStatement idle = overdue.prepareStatement(OTHER_SQL);
+    PreparedStatement idleStatement = idle.unwrap(PreparedStatement.class);
+    idle.close();
+    PreparedStatement inUse = overdue.prepareStatement(SQL);
+    PreparedStatement inUseStatement = inUse.unwrap(PreparedStatement.class);
+    Thread.sleep(50);
+    try (Connection c = dataSource.getConnection()) {
+      assertEquals(1, dataSource.getPoolState().getClaimedOverdueConnectionCount());
+      assertTrue(idleStatement.isClosed());
+      inUse.close();
+      assertTrue(inUseStatement.isClosed());
+      try (PreparedStatement ps = c.prepareStatement(SQL)) {
+        assertNotSame(inUseStatement, ps.unwrap(PreparedStatement.class));
+        assertQueryReturnsSa(ps);
+      }
+    }
+    assertEquals(0, dataSource.getPoolState().getStatementCacheHitCount());
+  }
+
+  private void assertQueryReturnsSa(PreparedStatement ps) throws SQLException {
+    ps.setString(1, "SA");
+    try (ResultSet rs = ps.executeQuery()) {
+      assertTrue(rs.next());
+      assertEquals("SA", rs.getString(1));
+    }
+  }
+
+}
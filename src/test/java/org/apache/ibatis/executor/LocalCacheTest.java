@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.apache.ibatis.executor.ExecutionPlaceholder.EXECUTION_PLACEHOLDER;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class LocalCacheTest {
+
+  private final Configuration configuration = new Configuration();
+
+  @Test
+  void shouldEvictLeastRecentlyUsedEntries() {
+    LocalCache cache = new LocalCache("test", configuration, 2, null);
+    cache.putObject("a", Collections.singletonList(1));
+    cache.putObject("b", Collections.singletonList(2));
+    cache.putObject("c", Collections.singletonList(3));
+    cache.getObject("a");
+    assertEquals(3, cache.getSize());
+
+    assertEquals(Collections.singletonList("b"), cache.evictExcess());
+    assertEquals(2, cache.getSize());
+    assertNull(cache.getObject("b"));
+    assertNotNull(cache.getObject("a"));
+    assertNotNull(cache.getObject("c"));
+  }
+
+  @Test
+  void shouldNotEvictRunningQueries() {
+    LocalCache cache = new LocalCache("test", configuration, 1, null);
+    cache.putObject("a", EXECUTION_PLACEHOLDER);
+    cache.putObject("b", Collections.singletonList(2));
+    cache.putObject("c", Collections.singletonList(3));
+
+    assertEquals(Arrays.asList("b", "c"), cache.evictExcess());
+    assertSame(EXECUTION_PLACEHOLDER, cache.getObject("a"));
+  }
+
+  @Test
+  void shouldEvictByEstimatedSize() {
+    Author author = new Author(1, "jim", "********", "jim@ibatis.apache.org", "", null);
+    LocalCache cache = new LocalCache("test", configuration, null, 1000L);
+    cache.putObject("small", Collections.singletonList(author));
+    long small = cache.getEstimatedBytes();
+    assertTrue(small > 0 && small < 1000, "size was " + small);
+    assertTrue(cache.evictExcess().isEmpty());
+
+    cache.putObject("large", Collections.nCopies(100, author));
+    assertTrue(cache.getEstimatedBytes() > 1000, "size was " + cache.getEstimatedBytes());
+    assertEquals(Arrays.asList("small", "large"), cache.evictExcess());
+    assertEquals(0, cache.getSize());
+    assertEquals(0, cache.getEstimatedBytes());
+  }
+
+  @Test
+  void shouldTrackSizeOfRemovedEntries() {
+    LocalCache cache = new LocalCache("test", configuration, null, 1000L);
+    cache.putObject("a", Collections.singletonList("value"));
+    cache.putObject("b", Collections.singletonList("value"));
+    cache.removeObject("a");
+    long size = cache.getEstimatedBytes();
+    cache.putObject("a", Collections.singletonList("value"));
+    assertEquals(2 * size, cache.getEstimatedBytes());
+    cache.clear();
+    assertEquals(0, cache.getEstimatedBytes());
+  }
+
+  @Test
+  void shouldOnlyReadSimplePropertiesToEstimateSize() {
+    Row row = new Row();
+    LocalCache cache = new LocalCache("test", configuration, null, 1000L);
+    cache.putObject("a", Collections.singletonList(row));
+    assertTrue(cache.getEstimatedBytes() > 0);
+    assertEquals(1, row.nameReads);
+    assertEquals(0, row.parentReads);
+    assertEquals(0, row.computedReads);
+  }
+
+  static class Row {
+    private int nameReads;
+    private int parentReads;
+    private int computedReads;
+    private Row parent;
+
+    public String getName() {
+      nameReads++;
+      return "name";
+    }
+
+    public void setName(String name) {
+    }
+
+    public Integer getBroken() {
+      throw new IllegalStateException();
+    }
+
+    public void setBroken(Integer broken) {
+    }
+
+    public Row getParent() {
+      parentReads++;
+      return parent;
+    }
+
+    public void setParent(Row parent) {
+      this.parent = parent;
+    }
+
+    public String getComputed() {
+      computedReads++;
+      return "computed";
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class MultiRowInsertTest {
+
+  @Test
+  void shouldRepeatValuesOfRow() {
+    MultiRowInsert insert = MultiRowInsert.parse("insert into users (id, name) values (?, upper(?))", 2);
+    assertNotNull(insert);
+    assertEquals("insert into users (id, name) values (?, upper(?))", insert.getSql(1));
+    assertEquals("insert into users (id, name) values (?, upper(?)), (?, upper(?)), (?, upper(?))", insert.getSql(3));
+  }
+
+  @Test
+  void shouldIgnoreLiteralsAndTrailingSemicolon() {
+    MultiRowInsert insert = MultiRowInsert.parse(" INSERT INTO users VALUES(?, 'values (?)');", 1);
+    assertNotNull(insert);
+    assertEquals("INSERT INTO users VALUES (?, 'values (?)'), (?, 'values (?)')", insert.getSql(2));
+  }
+
+  @Test
+  void shouldNotRewriteOtherStatements() {
+    assertNull(MultiRowInsert.parse("update users set name = ?", 1));
+    assertNull(MultiRowInsert.parse("insert into users select * from old_users where id = ?", 1));
+    assertNull(MultiRowInsert.parse("insert into users values (?, ?) on duplicate key update name = ?", 3));
+    assertNull(MultiRowInsert.parse("insert into users values (?, ?), (?, ?)", 4));
+    assertNull(MultiRowInsert.parse("insert into users values (?, ?) returning id", 2));
+    assertNull(MultiRowInsert.parse("insert into users values (?, ?)", 3));
+  }
+
+  @Test
+  void shouldFitRowsIntoParameterLimit() {
+    MultiRowInsert insert = MultiRowInsert.parse("insert into users values (?, ?, ?)", 3);
+    assertEquals(3, insert.getRowsPerStatement(10));
+    assertEquals(1, insert.getRowsPerStatement(2));
+    assertEquals(100, MultiRowInsert.parse("insert into users values (1, 'a')", 0).getRowsPerStatement(100));
+  }
+
+}
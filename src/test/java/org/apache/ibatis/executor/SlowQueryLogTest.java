@@ -0,0 +1,119 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.Test;
+
+class SlowQueryLogTest {
+
+  private final Configuration configuration = new Configuration();
+
+  @Test
+  void shouldDescribeStatementWithBoundParameters() {
+    BoundSql boundSql = boundSql("select *\n    from users\n   where id = ? and name = ?", "id", "name");
+    String message = SlowQueryLog.describe(statement(), boundSql, 1500, 2, false);
+    assertEquals("Slow statement users.select took 1500 ms, 2 rows\n"
+        + "  SQL: select * from users where id = ? and name = ?\n"
+        + "  Parameters: 1(Integer), null", message);
+  }
+
+  @Test
+  void shouldRedactParametersByName() {
+    configuration.setSlowQueryRedactedParameters(new HashSet<>(Arrays.asList("Password")));
+    BoundSql boundSql = boundSql("select * from users where id = ? and password = ?", "id", "user.password");
+    String message = SlowQueryLog.describe(statement(), boundSql, 1500, -1, false);
+    assertTrue(message.startsWith("Slow statement users.select took 1500 ms\n"), message);
+    assertTrue(message.endsWith("Parameters: 1(Integer), " + SlowQueryLog.REDACTED), message);
+    assertFalse(message.contains("secret"), message);
+  }
+
+  @Test
+  void shouldDescribeFailedStatement() {
+    BoundSql boundSql = boundSql("select * from users where id = ?", "id");
+    String message = SlowQueryLog.describe(statement(), boundSql, 1500, -1, true);
+    assertTrue(message.startsWith("Slow statement users.select failed after 1500 ms\n"), message);
+  }
+
+  @Test
+  void shouldDescribeBatchWithoutParameters() {
+    String message = SlowQueryLog.describeBatch(statement(), "insert into users\n  values (?)", 1500, 100, false);
+    assertEquals("Slow batch of statement users.select took 1500 ms, 100 rows\n"
+        + "  SQL: insert into users values (?)", message);
+  }
+
+  @Test
+  void shouldNotFailWhenSqlOfSlowExecutionCannotBeBuilt() {
+    configuration.setSlowQueryThreshold(0);
+    MappedStatement ms = new MappedStatement.Builder(configuration, "users.update", parameterObject -> {
+      throw new IllegalStateException("no SQL");
+    }, SqlCommandType.UPDATE).build();
+    assertDoesNotThrow(() -> SlowQueryLog.record(ms, null, null, SlowQueryLog.start(configuration), -1, true));
+  }
+
+  @Test
+  void shouldNotBuildSqlOfExecutionsBelowThreshold() {
+    configuration.setSlowQueryThreshold(60000);
+    AtomicInteger boundSqlCount = new AtomicInteger();
+    MappedStatement ms = new MappedStatement.Builder(configuration, "users.update", parameterObject -> {
+      boundSqlCount.incrementAndGet();
+      return new BoundSql(configuration, "update users", new ArrayList<>(), parameterObject);
+    }, SqlCommandType.UPDATE).build();
+    SlowQueryLog.record(ms, null, null, SlowQueryLog.start(configuration), 1, false);
+    assertEquals(0, boundSqlCount.get());
+  }
+
+  @Test
+  void shouldNotTimeExecutionsWithoutThreshold() {
+    assertEquals(0, SlowQueryLog.start(configuration));
+    configuration.setSlowQueryThreshold(100);
+    assertNotEquals(0, SlowQueryLog.start(configuration));
+  }
+
+  private MappedStatement statement() {
+    return new MappedStatement.Builder(configuration, "users.select",
+        new StaticSqlSource(configuration, "select *"), SqlCommandType.SELECT).build();
+  }
+
+  private BoundSql boundSql(String sql, String... properties) {
+    Map<String, Object> user = new HashMap<>();
+    user.put("password", "secret");
+    Map<String, Object> parameter = new HashMap<>();
+    parameter.put("id", 1);
+    parameter.put("name", null);
+    parameter.put("user", user);
+    ParameterMapping[] mappings = new ParameterMapping[properties.length];
+    for (int i = 0; i < properties.length; i++) {
+      mappings[i] = new ParameterMapping.Builder(configuration, properties[i], Object.class).build();
+    }
+    return new BoundSql(configuration, sql, Arrays.asList(mappings), parameter);
+  }
+
+}
@@ -0,0 +1,65 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.Test;
+
+class SqlTablesTest {
+
+  @Test
+  void shouldFindWrittenTable() {
+    assertEquals(Collections.singleton("users"), SqlTables.writtenTables("insert into users (id, name) values (?, ?)"));
+    assertEquals(Collections.singleton("users"), SqlTables.writtenTables("INSERT INTO app.USERS values (?)"));
+    assertEquals(Collections.singleton("users"), SqlTables.writtenTables("update users set name = ? where id = ?"));
+    assertEquals(Collections.singleton("users"), SqlTables.writtenTables("update only \"Users\" set name = ?"));
+    assertEquals(Collections.singleton("users"), SqlTables.writtenTables("/* purge */ delete from users where id = ?"));
+    assertEquals(Collections.singleton("users"), SqlTables.writtenTables("merge into users u using dual on (u.id = ?)"));
+    assertEquals(Collections.singleton("users"), SqlTables.writtenTables("truncate table users"));
+  }
+
+  @Test
+  void shouldNotGuessUnknownWrittenTables() {
+    assertNull(SqlTables.writtenTables("{call purge_users(?)}"));
+    assertNull(SqlTables.writtenTables("delete u from users u join depts d on u.dept_id = d.id"));
+    assertNull(SqlTables.writtenTables("with old as (select id from users) delete from users"));
+    assertNull(SqlTables.writtenTables(""));
+  }
+
+  @Test
+  void shouldFindReadTables() {
+    assertEquals(new HashSet<>(Arrays.asList("users")), SqlTables.readTables("select * from users where id = ?"));
+    assertEquals(new HashSet<>(Arrays.asList("users", "depts", "roles")),
+        SqlTables.readTables("select u.* from app.users u, depts as d left join roles r on r.id = u.role_id where u.dept_id = d.id"));
+    assertEquals(new HashSet<>(Arrays.asList("users", "orders")),
+        SqlTables.readTables("select * from users where id in (select user_id from orders)"));
+    assertEquals(new HashSet<>(Arrays.asList("users")),
+        SqlTables.readTables("select 'from depts' as label -- from roles\n from users"));
+    assertEquals(Collections.emptySet(), SqlTables.readTables("select 1"));
+  }
+
+  @Test
+  void shouldNotGuessUnknownReadTables() {
+    assertNull(SqlTables.readTables("{call find_users(?)}"));
+    assertNull(SqlTables.readTables("values (1)"));
+  }
+
+}
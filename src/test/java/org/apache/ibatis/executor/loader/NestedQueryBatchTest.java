@@ -0,0 +1,143 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.loader;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NestedQueryBatchTest {
+
+  private Configuration configuration;
+
+  @BeforeEach
+  void setUp() {
+    configuration = new Configuration();
+    configuration.setMapUnderscoreToCamelCase(true);
+  }
+
+  @Test
+  void shouldBatchPlainKeyCondition() {
+    assertNotNull(batchOf("select * from post where blog_id = ?"));
+    assertNotNull(batchOf("SELECT p.* FROM post p WHERE p.blog_id = ? ORDER BY p.id"));
+    assertNotNull(batchOf("select * from post p join blog b on b.id = p.blog_id where p.blog_id = ?"));
+    assertNotNull(batchOf("select * from post where section = 'NEWS' and blog_id = ? and id > 0"));
+    assertNotNull(batchOf("select * from post where subject <> 'or limit (' and \"BLOG_ID\" = ?"));
+    assertNotNull(batchOf("select * from post where blog_id = 1 and section = ?"));
+  }
+
+  @Test
+  void shouldNotBatchLimitedRows() {
+    assertNull(batchOf("select * from post where blog_id = ? order by id limit 1"));
+    assertNull(batchOf("select * from post where blog_id = ? order by id offset 0 rows fetch first 1 rows only"));
+    assertNull(batchOf("select top 1 * from post where blog_id = ? order by id"));
+    assertNull(batchOf("select * from post where blog_id = ? and rownum <= 1"));
+  }
+
+  @Test
+  void shouldNotBatchAlternatives() {
+    assertNull(batchOf("select * from post where blog_id = ? or section = 'NEWS'"));
+    assertNull(batchOf("select * from post where section = 'NEWS' or blog_id = ?"));
+    assertNull(batchOf("select * from post where not blog_id = ?"));
+  }
+
+  @Test
+  void shouldNotBatchGroupedOrAggregatedRows() {
+    assertNull(batchOf("select blog_id, max(id) as id from post where blog_id = ? group by blog_id"));
+    assertNull(batchOf("select count(*) as id from post where blog_id = ?"));
+    assertNull(batchOf("select distinct blog_id from post where blog_id = ?"));
+    assertNull(batchOf("select * from post where blog_id = ? union select * from post where id = 1"));
+    assertNull(batchOf("select * from post where id in (select id from post where blog_id = ?)"));
+  }
+
+  @Test
+  void shouldNotBatchKeyOutsideOfWhereClause() {
+    assertNull(batchOf("select * from post p join blog b on b.id = p.blog_id and p.blog_id = ?"));
+    assertNull(batchOf("select * from post where id > 0 order by blog_id = ?"));
+  }
+
+  @Test
+  void shouldNotBatchKeyThatIsNotMapped() {
+    assertNull(batchOf("select * from post where blog_id = 1 and subject = ?"));
+  }
+
+  @Test
+  void shouldMatchKeysOfDifferentNumericTypes() {
+    assertEquals(NestedQueryBatch.keyOf(1), NestedQueryBatch.keyOf(1L));
+    assertEquals(NestedQueryBatch.keyOf(1), NestedQueryBatch.keyOf(new BigDecimal("1.00")));
+    assertEquals(NestedQueryBatch.keyOf(new BigDecimal("10")), NestedQueryBatch.keyOf(new BigDecimal("1E+1")));
+    assertEquals(NestedQueryBatch.keyOf(new BigDecimal("1.5")), NestedQueryBatch.keyOf(new BigDecimal("1.50")));
+    assertNotEquals(NestedQueryBatch.keyOf(1), NestedQueryBatch.keyOf(new BigDecimal("1.5")));
+    assertNotEquals(NestedQueryBatch.keyOf(1), NestedQueryBatch.keyOf("1"));
+  }
+
+  private NestedQueryBatch batchOf(String sql) {
+    ParameterMapping parameterMapping = new ParameterMapping.Builder(configuration, "blogId", Integer.class).build();
+    MappedStatement ms = new MappedStatement.Builder(configuration, "selectPosts",
+        new StaticSqlSource(configuration, sql, Collections.singletonList(parameterMapping)), SqlCommandType.SELECT)
+            .resultMaps(Collections.singletonList(
+                new ResultMap.Builder(configuration, "selectPosts-Inline", PostRow.class, new ArrayList<>()).build()))
+            .build();
+    return NestedQueryBatch.of(ms, ms.getBoundSql(1));
+  }
+
+  public static class PostRow {
+
+    private int id;
+    private int blogId;
+    private String section;
+
+    public int getId() {
+      return id;
+    }
+
+    public void setId(int id) {
+      this.id = id;
+    }
+
+    public int getBlogId() {
+      return blogId;
+    }
+
+    public void setBlogId(int blogId) {
+      this.blogId = blogId;
+    }
+
+    public String getSection() {
+      return section;
+    }
+
+    public void setSection(String section) {
+      this.section = section;
+    }
+
+  }
+
+}
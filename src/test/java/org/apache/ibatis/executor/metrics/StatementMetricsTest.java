@@ -0,0 +1,128 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.domain.blog.Author;
+import org.apache.ibatis.domain.blog.Section;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StatementMetricsTest extends BaseDataTest {
+
+  private static final String AUTHOR_MAPPER = "org.apache.ibatis.domain.blog.mappers.AuthorMapper";
+  private static final String SELECT_ALL_AUTHORS = AUTHOR_MAPPER + ".selectAllAuthors";
+  private static final String UPDATE_AUTHOR = AUTHOR_MAPPER + ".updateAuthor";
+
+  private SqlSessionFactory sqlSessionFactory;
+  private StatementMetricsRegistry registry;
+
+  @BeforeAll
+  static void setUpDataSource() throws Exception {
+    createBlogDataSource();
+  }
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/builder/MapperConfig.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    sqlSessionFactory.getConfiguration().setStatementMetricsEnabled(true);
+    registry = sqlSessionFactory.getConfiguration().getStatementMetricsRegistry();
+  }
+
+  @Test
+  void shouldRecordEveryPhaseOfQueries() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.selectList(SELECT_ALL_AUTHORS);
+      sqlSession.clearCache();
+      sqlSession.selectList(SELECT_ALL_AUTHORS);
+    }
+    StatementMetrics metrics = registry.getStatementMetrics(SELECT_ALL_AUTHORS);
+    for (StatementPhase phase : StatementPhase.values()) {
+      assertEquals(2, metrics.getPhase(phase).getCount(), phase.name());
+    }
+    assertEquals(4, metrics.getRowCount());
+    assertEquals(2, metrics.getRowsMapped().getMax());
+    assertTrue(metrics.toString().startsWith(SELECT_ALL_AUTHORS), metrics.toString());
+  }
+
+  @Test
+  void shouldRecordUpdatesWithoutFetchingRows() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.update(UPDATE_AUTHOR, author(101));
+    }
+    StatementMetrics metrics = registry.getStatementMetrics(UPDATE_AUTHOR);
+    assertEquals(1, metrics.getPhase(StatementPhase.SQL_GENERATION).getCount());
+    assertEquals(1, metrics.getPhase(StatementPhase.PREPARE).getCount());
+    assertEquals(1, metrics.getPhase(StatementPhase.PARAMETERIZE).getCount());
+    assertEquals(1, metrics.getPhase(StatementPhase.EXECUTE).getCount());
+    assertEquals(0, metrics.getPhase(StatementPhase.FETCH).getCount());
+    assertEquals(0, metrics.getRowCount());
+  }
+
+  @Test
+  void shouldRecordOneExecutionPerBatch() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      sqlSession.update(UPDATE_AUTHOR, author(101));
+      sqlSession.update(UPDATE_AUTHOR, author(102));
+      sqlSession.flushStatements();
+    }
+    StatementMetrics metrics = registry.getStatementMetrics(UPDATE_AUTHOR);
+    assertEquals(2, metrics.getPhase(StatementPhase.PARAMETERIZE).getCount());
+    assertEquals(1, metrics.getPhase(StatementPhase.EXECUTE).getCount());
+  }
+
+  @Test
+  void shouldListStatementsAndReset() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.selectList(SELECT_ALL_AUTHORS);
+      sqlSession.update(UPDATE_AUTHOR, author(101));
+    }
+    List<StatementMetrics> all = registry.getAllStatementMetrics();
+    assertEquals(2, all.size());
+    assertTrue(all.get(0).getTotalTime() >= all.get(1).getTotalTime());
+
+    registry.reset();
+    assertTrue(registry.getAllStatementMetrics().isEmpty());
+    assertNull(registry.getStatementMetrics(SELECT_ALL_AUTHORS));
+  }
+
+  @Test
+  void shouldNotRecordWhenDisabled() {
+    sqlSessionFactory.getConfiguration().setStatementMetricsEnabled(false);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.selectList(SELECT_ALL_AUTHORS);
+    }
+    assertNull(registry.getStatementMetrics(SELECT_ALL_AUTHORS));
+  }
+
+  private static Author author(int id) {
+    return new Author(id, "author" + id, "password", "author" + id + "@ibatis.apache.org", "bio", Section.NEWS);
+  }
+
+}
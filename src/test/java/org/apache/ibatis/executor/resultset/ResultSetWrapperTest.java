@@ -0,0 +1,135 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import org.apache.ibatis.builder.StaticSqlSource;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.type.TypeHandlerRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ResultSetWrapperTest {
+
+  @Mock
+  private ResultSet rs;
+  @Mock
+  private ResultSetMetaData rsmd;
+
+  private final Configuration configuration = new Configuration();
+  private ResultSetWrapper rsw;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    String[] labels = { "ID", "name", "ORDER_ID", "Order_Name", "id" };
+    when(rs.getMetaData()).thenReturn(rsmd);
+    when(rsmd.getColumnCount()).thenReturn(labels.length);
+    for (int i = 0; i < labels.length; i++) {
+      when(rsmd.getColumnLabel(i + 1)).thenReturn(labels[i]);
+      when(rsmd.getColumnType(i + 1)).thenReturn(Types.VARCHAR);
+      when(rsmd.getColumnClassName(i + 1)).thenReturn(String.class.getName());
+    }
+    rsw = new ResultSetWrapper(rs, configuration);
+  }
+
+  @Test
+  void shouldResolveColumnIndexesIgnoringCase() {
+    assertEquals(1, rsw.getColumnIndex("id"));
+    assertEquals(2, rsw.getColumnIndex("NAME"));
+    assertEquals(-1, rsw.getColumnIndex("missing"));
+  }
+
+  @Test
+  void shouldResolvePrefixedColumnIndexes() {
+    assertEquals(3, rsw.getColumnIndex("id", "ORDER_"));
+    assertEquals(4, rsw.getColumnIndex("name", "ORDER_"));
+    assertEquals(2, rsw.getColumnIndex("name", null));
+    assertEquals(-1, rsw.getColumnIndex("total", "ORDER_"));
+    assertTrue(rsw.hasColumnWithPrefix("order_"));
+    assertFalse(rsw.hasColumnWithPrefix("ITEM_"));
+  }
+
+  @Test
+  void shouldResolvePropertyColumnIndexesOfResultMap() {
+    TypeHandlerRegistry registry = configuration.getTypeHandlerRegistry();
+    ResultMap resultMap = new ResultMap.Builder(configuration, "order", HashMap.class, Arrays.asList(
+        new ResultMapping.Builder(configuration, "id", "id", registry.getTypeHandler(Integer.class)).build(),
+        new ResultMapping.Builder(configuration, "total", "total", registry.getTypeHandler(Integer.class)).build(),
+        new ResultMapping.Builder(configuration, "name", "name", registry.getTypeHandler(String.class)).build()))
+        .build();
+    assertArrayEquals(new int[] { 1, -1, 2 }, rsw.getPropertyColumnIndexes(resultMap, null));
+    assertArrayEquals(new int[] { 3, -1, 4 }, rsw.getPropertyColumnIndexes(resultMap, "ORDER_"));
+    assertSame(rsw.getPropertyColumnIndexes(resultMap, "ORDER_"), rsw.getPropertyColumnIndexes(resultMap, "ORDER_"));
+  }
+
+  @Test
+  void shouldShareResolvedColumnsBetweenExecutionsOfStatement() throws Exception {
+    MappedStatement ms = new MappedStatement.Builder(configuration, "select",
+        new StaticSqlSource(configuration, "select * from orders"), SqlCommandType.SELECT).build();
+    ResultMap resultMap = new ResultMap.Builder(configuration, "order", HashMap.class, Arrays.asList(
+        new ResultMapping.Builder(configuration, "name", "name", configuration.getTypeHandlerRegistry().getTypeHandler(String.class)).build()))
+        .build();
+    ResultSetWrapper first = new ResultSetWrapper(rs, ms, 0);
+    ResultSetWrapper second = new ResultSetWrapper(rs, ms, 0);
+    assertSame(first.getPropertyColumnIndexes(resultMap, null), second.getPropertyColumnIndexes(resultMap, null));
+    assertSame(first.getUnmappedColumnNames(resultMap, null), second.getUnmappedColumnNames(resultMap, null));
+    assertSame(first.getTypeHandler(String.class, "name"), second.getTypeHandler(String.class, "name"));
+    assertEquals(1, configuration.getResultSetShapeCache().getShapeCount());
+
+    ResultSetWrapper otherResultSet = new ResultSetWrapper(rs, ms, 1);
+    assertNotSame(first.getPropertyColumnIndexes(resultMap, null), otherResultSet.getPropertyColumnIndexes(resultMap, null));
+    assertEquals(2, configuration.getResultSetShapeCache().getShapeCount());
+  }
+
+  @Test
+  void shouldResolveColumnsAgainWhenStatementReturnsOtherColumns() throws Exception {
+    MappedStatement ms = new MappedStatement.Builder(configuration, "select",
+        new StaticSqlSource(configuration, "select * from orders"), SqlCommandType.SELECT).build();
+    ResultSetWrapper first = new ResultSetWrapper(rs, ms, 0);
+    assertEquals(2, first.getColumnIndex("name"));
+
+    ResultSet otherRs = mock(ResultSet.class);
+    ResultSetMetaData otherRsmd = mock(ResultSetMetaData.class);
+    when(otherRs.getMetaData()).thenReturn(otherRsmd);
+    when(otherRsmd.getColumnCount()).thenReturn(2);
+    when(otherRsmd.getColumnLabel(1)).thenReturn("name");
+    when(otherRsmd.getColumnLabel(2)).thenReturn("ID");
+    when(otherRsmd.getColumnType(1)).thenReturn(Types.VARCHAR);
+    when(otherRsmd.getColumnType(2)).thenReturn(Types.INTEGER);
+    ResultSetWrapper second = new ResultSetWrapper(otherRs, ms, 0);
+    assertEquals(1, second.getColumnIndex("name"));
+    assertEquals(2, second.getColumnIndex("id"));
+    assertEquals(1, configuration.getResultSetShapeCache().getShapeCount());
+  }
+
+}
@@ -0,0 +1,88 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.executor.resultset;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class RowIdentityMapTest {
+
+  private final RowIdentityMap map = new RowIdentityMap();
+  private final RowKey probe = new RowKey();
+
+  private RowKey fill(String resultMapId, String columnPrefix, RowKey parent, Object... values) {
+    probe.reset(resultMapId, columnPrefix, parent, values.length);
+    for (Object value : values) {
+      probe.add(value);
+    }
+    return probe;
+  }
+
+  @Test
+  void shouldStoreCopiesOfTheProbe() {
+    final RowKey stored = map.putIfAbsent(fill("blog", null, null, 1));
+    assertNotSame(probe, stored);
+    stored.setRowValue("blog 1");
+
+    assertSame(stored, map.get(fill("blog", null, null, 1)));
+    assertSame(stored, map.putIfAbsent(fill("blog", null, null, 1)));
+    assertNull(map.get(fill("blog", null, null, 2)));
+    assertEquals("blog 1", map.get(fill("blog", null, null, 1)).getRowValue());
+    assertEquals(1, map.size());
+  }
+
+  @Test
+  void shouldTellKeysApartByResultMapPrefixAndParent() {
+    final RowKey blog1 = map.putIfAbsent(fill("blog", null, null, 1));
+    final RowKey blog2 = map.putIfAbsent(fill("blog", null, null, 2));
+    map.putIfAbsent(fill("post", null, blog1, 10));
+
+    assertNotNull(map.get(fill("post", null, blog1, 10)));
+    assertNull(map.get(fill("post", null, blog2, 10)));
+    assertNull(map.get(fill("post", "P_", blog1, 10)));
+    assertNull(map.get(fill("comment", null, blog1, 10)));
+  }
+
+  @Test
+  void shouldCompareNullAndArrayValues() {
+    map.putIfAbsent(fill("blog", null, null, null, 1));
+    map.putIfAbsent(fill("blog", null, null, new byte[] { 1, 2 }));
+
+    assertNotNull(map.get(fill("blog", null, null, null, 1)));
+    assertNull(map.get(fill("blog", null, null, 1, null)));
+    assertNotNull(map.get(fill("blog", null, null, new byte[] { 1, 2 })));
+    assertNull(map.get(fill("blog", null, null, new byte[] { 1, 3 })));
+  }
+
+  @Test
+  void shouldGrowAndClear() {
+    for (int i = 0; i < 10000; i++) {
+      map.putIfAbsent(fill("blog", null, null, i));
+    }
+    assertEquals(10000, map.size());
+    for (int i = 0; i < 10000; i++) {
+      assertNotNull(map.get(fill("blog", null, null, i)));
+    }
+
+    map.clear();
+    assertEquals(0, map.size());
+    assertNull(map.get(fill("blog", null, null, 1)));
+    map.putIfAbsent(fill("blog", null, null, 1));
+    assertNotNull(map.get(fill("blog", null, null, 1)));
+  }
+
+}
@@ -24,6 +24,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.apache.ibatis.reflection.invoker.Invoker;
+import org.apache.ibatis.reflection.invoker.PrimitiveSetInvoker;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
@@ -321,4 +322,37 @@ class ReflectorTest {
             "Ambiguous setters defined for property 'bool' in class '" + Bean.class.getName().replace("$", "\\$")
                 + "' with types '(java.lang.Integer|boolean)' and '(java.lang.Integer|boolean)'\\.");
   }
+
+  @Test
+  void shouldSetPrimitivePropertiesWithoutBoxing() throws Exception {
+    @SuppressWarnings("unused")
+    class Bean {
+      private int count;
+      private long total;
+      private void setCount(int count) {
+        this.count = count * 2;
+      }
+    }
+    ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    Reflector reflector = reflectorFactory.findForClass(Bean.class);
+    Bean bean = new Bean();
+    ((PrimitiveSetInvoker) reflector.getSetInvoker("count")).setInt(bean, 21);
+    ((PrimitiveSetInvoker) reflector.getSetInvoker("total")).setLong(bean, 10000000000L);
+    assertEquals(42, bean.count);
+    assertEquals(10000000000L, bean.total);
+  }
+
+  @Test
+  void shouldFailToSetPrimitiveThroughAmbiguousSetter() throws Exception {
+    @SuppressWarnings("unused")
+    class Bean {
+      public void setBool(boolean bool) {}
+      public void setBool(Integer bool) {}
+    }
+    ReflectorFactory reflectorFactory = new DefaultReflectorFactory();
+    Reflector reflector = reflectorFactory.findForClass(Bean.class);
+    PrimitiveSetInvoker ambiguousInvoker = (PrimitiveSetInvoker) reflector.getSetInvoker("bool");
+    when(() -> ambiguousInvoker.setBoolean(new Bean(), true));
+    then(caughtException()).isInstanceOf(ReflectionException.class);
+  }
 }
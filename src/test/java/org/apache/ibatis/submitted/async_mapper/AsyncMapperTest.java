@@ -0,0 +1,146 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.async_mapper;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.binding.BindingException;
+import org.apache.ibatis.cursor.Cursor;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class AsyncMapperTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/async_mapper/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/async_mapper/CreateDB.sql");
+  }
+
+  @Test
+  void shouldCompleteWithResultsOfQueries() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      CompletableFuture<User> user = mapper.getUser(1);
+      CompletableFuture<Optional<User>> missing = mapper.findUser(3);
+      CompletableFuture<List<User>> users = mapper.getUsers();
+      CompletableFuture<Map<Integer, User>> userMap = mapper.getUserMap();
+      CompletableFuture<Integer> count = mapper.countUsers();
+      CompletableFuture.allOf(user, missing, users, userMap, count).get();
+
+      assertEquals("User1", user.get().getName());
+      assertFalse(missing.get().isPresent());
+      assertEquals(2, users.get().size());
+      assertEquals("User2", userMap.get().get(2).getName());
+      assertEquals(2, count.get());
+    }
+  }
+
+  @Test
+  void shouldCommitWritesInTheirOwnSession() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertEquals(1, mapper.insertUser(new User(3, "User3")).toCompletableFuture().get());
+      assertNull(mapper.deleteUser(1).get());
+      // the calling session did not write anything, its rollback does not undo the writes
+      sqlSession.rollback(true);
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsersSync();
+      assertEquals(2, users.size());
+      assertEquals(3, users.get(1).getId());
+    }
+  }
+
+  @Test
+  void shouldCompleteExceptionallyWhenStatementFails() throws Exception {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      ExecutionException e = assertThrows(ExecutionException.class,
+          () -> mapper.insertUser(new User(1, "Duplicate")).toCompletableFuture().get());
+      assertTrue(e.getCause() instanceof PersistenceException);
+      assertEquals(2, mapper.countUsers().get());
+    }
+  }
+
+  @Test
+  void shouldRunOnConfiguredExecutor() throws Exception {
+    AtomicInteger executed = new AtomicInteger();
+    ExecutorService pool = new ThreadPoolExecutor(2, 2, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>()) {
+      @Override
+      protected void beforeExecute(Thread t, Runnable r) {
+        executed.incrementAndGet();
+      }
+    };
+    try {
+      sqlSessionFactory.getConfiguration().setAsyncExecutor(pool);
+      try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+        Mapper mapper = sqlSession.getMapper(Mapper.class);
+        CompletableFuture.allOf(mapper.getUser(1), mapper.getUser(2)).get();
+      }
+      assertEquals(2, executed.get());
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  @Test
+  void shouldRunOnVirtualThreadsWhenAvailable() throws Exception {
+    sqlSessionFactory.getConfiguration().setAsyncVirtualThreads(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals("User2", sqlSession.getMapper(Mapper.class).getUser(2).get().getName());
+    }
+  }
+
+  @Test
+  void shouldRejectCursorInFuture() {
+    sqlSessionFactory.getConfiguration().addMapper(CursorMapper.class);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      CursorMapper mapper = sqlSession.getMapper(CursorMapper.class);
+      assertThrows(BindingException.class, mapper::getUsers);
+    }
+  }
+
+  interface CursorMapper {
+    @Select("select * from users")
+    CompletableFuture<Cursor<User>> getUsers();
+  }
+
+}
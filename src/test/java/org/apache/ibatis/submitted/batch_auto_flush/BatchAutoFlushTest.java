@@ -0,0 +1,176 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_auto_flush;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchAutoFlushTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_auto_flush/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_auto_flush/CreateDB.sql");
+  }
+
+  @Test
+  void shouldFlushWhenRowsPerStatementReached() {
+    sqlSessionFactory.getConfiguration().setBatchFlushRowsPerStatement(2);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 4; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      mapper.insertUser(new User(5, "User5"));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(3, results.size());
+      assertEquals(2, results.get(0).getUpdateCounts().length);
+      assertEquals(2, results.get(1).getUpdateCounts().length);
+      assertEquals(1, results.get(2).getUpdateCounts().length);
+      assertTrue(sqlSession.flushStatements().isEmpty());
+      sqlSession.commit();
+    }
+    assertEquals(5, countUsers());
+  }
+
+  @Test
+  void shouldPassAutoFlushedResultsToHandler() {
+    List<BatchResult> handled = new ArrayList<>();
+    sqlSessionFactory.getConfiguration().setBatchFlushRows(3);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(handled::add)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 7; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      assertEquals(2, handled.size());
+      assertEquals(3, handled.get(1).getParameterObjects().size());
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(1, results.get(0).getParameterObjects().size());
+      sqlSession.commit();
+    }
+    assertEquals(2, handled.size());
+    assertEquals(7, countUsers());
+  }
+
+  @Test
+  void shouldPassAutoFlushedResultsToHandlerSetOnSession() {
+    List<BatchResult> handled = new ArrayList<>();
+    sqlSessionFactory.getConfiguration().setBatchFlushRows(3);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User(1, "User1"));
+      sqlSession.setBatchResultHandler(handled::add);
+      for (int i = 2; i <= 4; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      assertEquals(1, handled.size());
+      assertEquals(1, sqlSession.flushStatements().size());
+      sqlSession.commit();
+    }
+    assertEquals(4, countUsers());
+  }
+
+  @Test
+  void shouldPassAutoFlushedResultsToTheHandlerOfTheirSession() {
+    List<BatchResult> handled1 = new ArrayList<>();
+    List<BatchResult> handled2 = new ArrayList<>();
+    sqlSessionFactory.getConfiguration().setBatchFlushRows(2);
+    try (SqlSession sqlSession1 = sqlSessionFactory.openSession(handled1::add);
+        SqlSession sqlSession2 = sqlSessionFactory.openSession(handled2::add);
+        SqlSession sqlSession3 = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      for (int i = 1; i <= 4; i++) {
+        sqlSession1.getMapper(Mapper.class).insertUser(new User(i, "User" + i));
+      }
+      sqlSession1.commit();
+      for (int i = 5; i <= 6; i++) {
+        sqlSession2.getMapper(Mapper.class).insertUser(new User(i, "User" + i));
+      }
+      sqlSession2.commit();
+      for (int i = 7; i <= 8; i++) {
+        sqlSession3.getMapper(Mapper.class).insertUser(new User(i, "User" + i));
+      }
+      assertEquals(1, sqlSession3.flushStatements().size());
+      sqlSession3.commit();
+    }
+    assertEquals(2, handled1.size());
+    assertEquals(1, handled2.size());
+    assertEquals(2, handled2.get(0).getParameterObjects().size());
+    assertEquals(8, countUsers());
+  }
+
+  @Test
+  void shouldFlushWhenParameterBytesReached() {
+    List<BatchResult> handled = new ArrayList<>();
+    sqlSessionFactory.getConfiguration().setBatchFlushParameterBytes(1000L);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(handled::add)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 10; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      assertTrue(handled.isEmpty());
+      StringBuilder longName = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+        longName.append('x');
+      }
+      for (int i = 11; i <= 20; i++) {
+        mapper.insertUser(new User(i, longName.toString()));
+      }
+      assertEquals(2, handled.size());
+      assertEquals(13, handled.get(0).getParameterObjects().size());
+      assertEquals(5, handled.get(1).getParameterObjects().size());
+      sqlSession.commit();
+    }
+    assertEquals(20, countUsers());
+  }
+
+  @Test
+  void shouldNotFlushWithoutThresholds() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 10; i++) {
+        mapper.insertUser(new User(i, "User" + i));
+      }
+      sqlSession.rollback();
+    }
+    assertEquals(0, countUsers());
+  }
+
+  private int countUsers() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(Mapper.class).countUsers();
+    }
+  }
+
+}
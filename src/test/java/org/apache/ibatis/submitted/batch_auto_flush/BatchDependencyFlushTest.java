@@ -0,0 +1,102 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_auto_flush;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchDependencyFlushTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_auto_flush/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_auto_flush/CreateDB.sql");
+    sqlSessionFactory.getConfiguration().setBatchDependencyAwareFlush(true);
+  }
+
+  @Test
+  void shouldKeepBatchesThatQueryDoesNotRead() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User(1, "User1"));
+      mapper.insertUser(new User(2, "User2"));
+      assertEquals(0, mapper.countDepts());
+      mapper.insertUser(new User(3, "User3"));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(3, results.get(0).getUpdateCounts().length);
+      sqlSession.commit();
+    }
+  }
+
+  @Test
+  void shouldFlushBatchesThatQueryReads() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User(1, "User1"));
+      mapper.insertUser(new User(2, "User2"));
+      assertEquals(2, mapper.countUsers());
+      assertTrue(sqlSession.flushStatements().isEmpty());
+      sqlSession.commit();
+    }
+  }
+
+  @Test
+  void shouldFlushBatchesUpToLastOneThatQueryReads() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User(1, "User1"));
+      mapper.insertDept(new User(1, "Dept1"));
+      mapper.insertUser(new User(2, "User2"));
+      assertEquals(1, mapper.countDepts());
+      mapper.insertUser(new User(3, "User3"));
+      List<BatchResult> results = sqlSession.flushStatements();
+      assertEquals(1, results.size());
+      assertEquals(2, results.get(0).getUpdateCounts().length);
+      sqlSession.commit();
+    }
+  }
+
+  @Test
+  void shouldFlushAllBatchesWhenDisabled() {
+    sqlSessionFactory.getConfiguration().setBatchDependencyAwareFlush(false);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertUser(new User(1, "User1"));
+      assertEquals(0, mapper.countDepts());
+      assertTrue(sqlSession.flushStatements().isEmpty());
+      sqlSession.commit();
+    }
+  }
+
+}
@@ -0,0 +1,156 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_auto_flush;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.BulkChunkResult;
+import org.apache.ibatis.session.BulkOptions;
+import org.apache.ibatis.session.BulkResult;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BulkWriteTest {
+
+  private static final String INSERT_USER = "org.apache.ibatis.submitted.batch_auto_flush.Mapper.insertUser";
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_auto_flush/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_auto_flush/CreateDB.sql");
+  }
+
+  @Test
+  void shouldWriteAllChunksInParallel() {
+    BulkOptions options = new BulkOptions.Builder().chunkSize(10).parallelism(3).build();
+    BulkResult result = sqlSessionFactory.bulkWrite(INSERT_USER, users(1, 95), options);
+    assertTrue(result.isSuccessful());
+    assertEquals(10, result.getChunkCount());
+    assertEquals(95, result.getRowCount());
+    assertEquals(95, result.getCommittedRowCount());
+    assertEquals(10, result.getChunkResults().size());
+    for (int i = 0; i < 10; i++) {
+      BulkChunkResult chunk = result.getChunkResults().get(i);
+      assertEquals(i, chunk.getIndex());
+      assertEquals(i == 9 ? 5 : 10, chunk.getRowCount());
+      assertEquals(1, chunk.getBatchResults().size());
+      assertEquals(chunk.getRowCount(), chunk.getBatchResults().get(0).getUpdateCounts().length);
+      assertTrue(chunk.getBatchResults().get(0).getParameterObjects().isEmpty());
+    }
+    assertEquals(95, countUsers());
+  }
+
+  @Test
+  void shouldRollBackOnlyTheFailedChunk() {
+    List<User> users = users(1, 30).collect(Collectors.toList());
+    // the duplicate key fails the second chunk, whichever chunk is committed first
+    users.set(15, new User(12, "Duplicate"));
+    BulkOptions options = new BulkOptions.Builder().chunkSize(10).parallelism(2).build();
+    BulkResult result = sqlSessionFactory.bulkWrite(INSERT_USER, users.iterator(), options);
+    assertFalse(result.isSuccessful());
+    assertEquals(3, result.getChunkCount());
+    assertEquals(20, result.getCommittedRowCount());
+    assertEquals(1, result.getFailedChunks().size());
+    BulkChunkResult failed = result.getFailedChunks().get(0);
+    assertEquals(1, failed.getIndex());
+    assertNotNull(failed.getFailure());
+    assertTrue(failed.getBatchResults().isEmpty());
+    assertEquals(20, countUsers());
+  }
+
+  @Test
+  void shouldStopReadingAfterFailureWhenFailFast() {
+    List<User> users = users(1, 50).collect(Collectors.toList());
+    users.set(1, new User(1, "Duplicate"));
+    BulkOptions options = new BulkOptions.Builder().chunkSize(10).failFast(true).build();
+    BulkResult result = sqlSessionFactory.bulkWrite(INSERT_USER, users.iterator(), options);
+    assertFalse(result.isSuccessful());
+    // with one thread the first chunk fails before the third one is read
+    assertTrue(result.getChunkCount() < 5, "chunks: " + result.getChunkCount());
+    assertEquals(result.getCommittedRowCount(), countUsers());
+  }
+
+  @Test
+  void shouldWaitForChunksInFlightWhenSourceFails() {
+    Iterator<User> source = users(1, 30).map(user -> {
+      if (user.getId() == 25) {
+        throw new IllegalStateException("Source failed");
+      }
+      return user;
+    }).iterator();
+    BulkOptions options = new BulkOptions.Builder().chunkSize(10).parallelism(2).build();
+    assertThrows(IllegalStateException.class, () -> sqlSessionFactory.bulkWrite(INSERT_USER, source, options));
+    assertEquals(20, countUsers());
+  }
+
+  @Test
+  void shouldPassChunkResultsToHandler() {
+    List<BulkChunkResult> handled = Collections.synchronizedList(new ArrayList<>());
+    BulkOptions options = new BulkOptions.Builder().chunkSize(4).parallelism(2).maxPendingChunks(1)
+        .chunkResultHandler(handled::add).build();
+    BulkResult result = sqlSessionFactory.bulkWrite(INSERT_USER, users(1, 10).iterator(), options);
+    assertTrue(result.isSuccessful());
+    assertEquals(3, result.getChunkCount());
+    assertTrue(result.getChunkResults().isEmpty());
+    assertEquals(3, handled.size());
+    assertEquals(10, handled.stream().mapToInt(BulkChunkResult::getRowCount).sum());
+    assertEquals(10, countUsers());
+  }
+
+  @Test
+  void shouldWriteNothingForEmptySource() {
+    BulkResult result = sqlSessionFactory.bulkWrite(INSERT_USER, Stream.empty(), BulkOptions.DEFAULT);
+    assertTrue(result.isSuccessful());
+    assertEquals(0, result.getChunkCount());
+    assertEquals(0, countUsers());
+  }
+
+  @Test
+  void shouldRejectInvalidOptions() {
+    assertThrows(IllegalArgumentException.class, () -> new BulkOptions.Builder().chunkSize(0).build());
+    assertThrows(IllegalArgumentException.class, () -> new BulkOptions.Builder().parallelism(0).build());
+  }
+
+  private Stream<User> users(int from, int to) {
+    return IntStream.rangeClosed(from, to).mapToObj(i -> new User(i, "User" + i));
+  }
+
+  private int countUsers() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      return sqlSession.getMapper(Mapper.class).countUsers();
+    }
+  }
+
+}
@@ -0,0 +1,127 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_interleaved;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchInterleavedTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_interleaved/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_interleaved/CreateDB.sql");
+  }
+
+  @AfterEach
+  void tearDown() {
+    sqlSessionFactory.getConfiguration().setBatchInterleavedStatements(true);
+  }
+
+  @Test
+  void shouldBatchInterleavedStatements() {
+    List<OrderLine> lines = new ArrayList<>();
+    List<BatchResult> results;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      insertOrders(mapper, lines);
+      results = sqlSession.flushStatements();
+      sqlSession.commit();
+    }
+
+    assertEquals(2, results.size());
+    assertEquals("org.apache.ibatis.submitted.batch_interleaved.Mapper.insertOrder", results.get(0).getMappedStatement().getId());
+    assertEquals(3, results.get(0).getParameterObjects().size());
+    assertEquals(3, results.get(0).getUpdateCounts().length);
+    assertEquals("org.apache.ibatis.submitted.batch_interleaved.Mapper.insertLine", results.get(1).getMappedStatement().getId());
+    assertEquals(6, results.get(1).getParameterObjects().size());
+    assertSame(lines.get(0), results.get(1).getParameterObjects().get(0));
+    assertSame(lines.get(5), results.get(1).getParameterObjects().get(5));
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<OrderLine> saved = sqlSession.getMapper(Mapper.class).selectLines();
+      assertEquals(6, saved.size());
+      for (int i = 0; i < saved.size(); i++) {
+        assertEquals(saved.get(i).getId(), lines.get(i).getId());
+        assertEquals(saved.get(i).getProduct(), lines.get(i).getProduct());
+        assertEquals(saved.get(i).getOrderId(), lines.get(i).getOrderId());
+      }
+    }
+  }
+
+  @Test
+  void shouldReuseEarlierBatchForConsecutiveStatements() {
+    List<BatchResult> results;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      mapper.insertOrder(new Order(1, "Customer1"));
+      mapper.insertLine(new OrderLine(1, "Product1"));
+      mapper.insertOrder(new Order(2, "Customer2"));
+      mapper.insertOrder(new Order(3, "Customer3"));
+      mapper.insertLine(new OrderLine(3, "Product3"));
+      results = sqlSession.flushStatements();
+      sqlSession.commit();
+    }
+    assertEquals(2, results.size());
+    assertEquals(3, results.get(0).getUpdateCounts().length);
+    assertEquals(2, results.get(1).getUpdateCounts().length);
+  }
+
+  @Test
+  void shouldBatchOnlyConsecutiveStatementsWhenDisabled() {
+    sqlSessionFactory.getConfiguration().setBatchInterleavedStatements(false);
+    List<OrderLine> lines = new ArrayList<>();
+    List<BatchResult> results;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      insertOrders(sqlSession.getMapper(Mapper.class), lines);
+      results = sqlSession.flushStatements();
+      sqlSession.commit();
+    }
+    assertEquals(6, results.size());
+    assertNotNull(lines.get(5).getId());
+  }
+
+  private void insertOrders(Mapper mapper, List<OrderLine> lines) {
+    for (int i = 1; i <= 3; i++) {
+      mapper.insertOrder(new Order(i, "Customer" + i));
+      for (int j = 1; j <= 2; j++) {
+        OrderLine line = new OrderLine(i, "Product" + i + "-" + j);
+        mapper.insertLine(line);
+        lines.add(line);
+      }
+    }
+  }
+
+}
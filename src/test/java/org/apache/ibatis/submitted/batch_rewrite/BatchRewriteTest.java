@@ -0,0 +1,142 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.batch_rewrite;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BatchRewriteTest {
+
+  private static final List<String> preparedSql = new ArrayList<>();
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/batch_rewrite/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/batch_rewrite/CreateDB.sql");
+    preparedSql.clear();
+  }
+
+  @Test
+  void shouldRewriteRowsIntoMultiRowInserts() {
+    List<User> users = new ArrayList<>();
+    List<BatchResult> results;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 12; i++) {
+        User user = new User(null, "User" + i);
+        mapper.insertUser(user);
+        users.add(user);
+      }
+      results = sqlSession.flushStatements();
+      sqlSession.commit();
+    }
+
+    // 5 parameters at most, so 5 + 5 + 2 rows
+    assertEquals(3, preparedSql.size());
+    assertEquals(5, countRows(preparedSql.get(0)));
+    assertEquals(2, countRows(preparedSql.get(2)));
+    assertEquals(1, results.size());
+    assertEquals(12, results.get(0).getUpdateCounts().length);
+    for (int updateCount : results.get(0).getUpdateCounts()) {
+      assertEquals(1, updateCount);
+    }
+
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> saved = sqlSession.getMapper(Mapper.class).selectUsers();
+      assertEquals(12, saved.size());
+      for (int i = 0; i < saved.size(); i++) {
+        assertEquals(saved.get(i).getId(), users.get(i).getId());
+        assertEquals(saved.get(i).getName(), users.get(i).getName());
+      }
+    }
+  }
+
+  @Test
+  void shouldRewriteStatementMarkedWithAnnotation() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 4; i++) {
+        mapper.insertUserWithId(new User(i, "User" + i));
+      }
+      sqlSession.commit();
+    }
+    // 2 parameters per row, so 2 + 2 rows
+    assertEquals(2, preparedSql.size());
+    assertEquals(2, countRows(preparedSql.get(1)));
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      assertEquals(4, sqlSession.getMapper(Mapper.class).selectUsers().size());
+    }
+  }
+
+  @Test
+  void shouldNotRewriteUnmarkedStatement() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession(ExecutorType.BATCH)) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      for (int i = 1; i <= 4; i++) {
+        mapper.insertUserNotRewritten(new User(null, "User" + i));
+      }
+      sqlSession.commit();
+    }
+    assertEquals(1, preparedSql.size());
+    assertEquals(1, countRows(preparedSql.get(0)));
+  }
+
+  private int countRows(String sql) {
+    return sql.split("\\(\\?").length - 1;
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class, Integer.class }))
+  public static class SqlRecorder implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      preparedSql.add(((StatementHandler) invocation.getTarget()).getBoundSql().getSql());
+      return invocation.proceed();
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+      // NOP
+    }
+
+  }
+
+}
@@ -0,0 +1,83 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.bounded_local_cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BoundedLocalCacheTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/bounded_local_cache/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/bounded_local_cache/CreateDB.sql");
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedResults() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user1 = mapper.getUser(1);
+      User user2 = mapper.getUser(2);
+      assertSame(user1, mapper.getUser(1));
+      // evicts user 2, which was used less recently than user 1
+      User user3 = mapper.getUser(3);
+      assertSame(user1, mapper.getUser(1));
+      assertSame(user3, mapper.getUser(3));
+      assertNotSame(user2, mapper.getUser(2));
+    }
+  }
+
+  @Test
+  void shouldNotCacheResultsOfStatementsThatOptOut() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      assertNotSame(mapper.getAllUsers(), mapper.getAllUsers());
+      assertNotSame(mapper.getUncachedUser(1), mapper.getUncachedUser(1));
+      User user1 = mapper.getUser(1);
+      mapper.getAllUsers();
+      mapper.getUncachedUser(2);
+      assertSame(user1, mapper.getUser(1));
+    }
+  }
+
+  @Test
+  void shouldKeepResultsWithoutBounds() {
+    sqlSessionFactory.getConfiguration().setLocalCacheMaxEntries(null);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      User user1 = mapper.getUser(1);
+      mapper.getUser(2);
+      mapper.getUser(3);
+      assertSame(user1, mapper.getUser(1));
+    }
+  }
+
+}
@@ -0,0 +1,67 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_query_batch;
+
+import java.util.List;
+
+import org.apache.ibatis.annotations.Many;
+import org.apache.ibatis.annotations.One;
+import org.apache.ibatis.annotations.Result;
+import org.apache.ibatis.annotations.Select;
+
+public interface AnnotatedMapper {
+
+  @Select("select * from blog order by id")
+  @Result(property = "id", column = "id", id = true)
+  @Result(property = "author", column = "author_id", one = @One(select = "selectAuthor", batchSize = 10))
+  @Result(property = "posts", column = "id", many = @Many(select = "selectPosts", batchSize = 10))
+  List<Blog> selectBlogs();
+
+  @Select("select * from blog order by id")
+  @Result(property = "id", column = "id", id = true)
+  @Result(property = "author", column = "author_id", one = @One(select = "selectAuthorDynamic", batchSize = 10))
+  @Result(property = "posts", column = "id", many = @Many(select = "selectPostsWithoutBlogId", batchSize = 10))
+  List<Blog> selectBlogsWithUnbatchableSelects();
+
+  @Select("select * from blog order by id")
+  @Result(property = "id", column = "id", id = true)
+  @Result(property = "posts", column = "id", many = @Many(select = "selectFirstPost", batchSize = 10))
+  List<Blog> selectBlogsWithFirstPost();
+
+  @Select("select * from blog order by id")
+  @Result(property = "id", column = "id", id = true)
+  @Result(property = "posts", column = "id", many = @Many(select = "selectPostsExceptPost1", batchSize = 10))
+  List<Blog> selectBlogsWithPostsExceptPost1();
+
+  @Select("select * from author where id = #{id}")
+  Author selectAuthor(int id);
+
+  @Select("<script>select * from author <where>id = #{id}</where></script>")
+  Author selectAuthorDynamic(int id);
+
+  @Select("select * from post where blog_id = #{blogId} order by id")
+  List<Post> selectPosts(int blogId);
+
+  @Select("select id, subject from post where blog_id = #{blogId} order by id")
+  List<Post> selectPostsWithoutBlogId(int blogId);
+
+  @Select("select * from post where blog_id = #{blogId} order by id limit 1")
+  List<Post> selectFirstPost(int blogId);
+
+  @Select("select * from post where id <> 1 and blog_id = #{blogId} order by id")
+  List<Post> selectPostsExceptPost1(int blogId);
+
+}
@@ -0,0 +1,171 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_query_batch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LazyLoadBatchTest {
+
+  private static final List<String> preparedSql = Collections.synchronizedList(new ArrayList<>());
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/nested_query_batch/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/nested_query_batch/CreateDB.sql");
+    sqlSessionFactory.getConfiguration().addInterceptor(new SqlRecorder());
+    preparedSql.clear();
+  }
+
+  @Test
+  void shouldLoadPropertyOfSiblingsTogether() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(Mapper.class).selectLazyBlogs();
+      assertEquals(1, preparedSql.size());
+
+      // the authors of the first three blogs
+      assertEquals("Author1", blogs.get(0).getAuthor().getName());
+      assertEquals(2, preparedSql.size());
+      assertTrue(preparedSql.get(1).contains("id IN (?, ?)"), preparedSql.get(1));
+      assertEquals("Author2", blogs.get(1).getAuthor().getName());
+      assertEquals("Author1", blogs.get(2).getAuthor().getName());
+      assertEquals(2, preparedSql.size());
+
+      // the author of the fourth blog, the fifth has none
+      assertEquals("Author3", blogs.get(3).getAuthor().getName());
+      assertNull(blogs.get(4).getAuthor());
+      assertEquals(3, preparedSql.size());
+
+      // the posts of all blogs
+      assertTrue(blogs.get(2).getPosts().isEmpty());
+      assertEquals(4, preparedSql.size());
+      assertEquals(2, blogs.get(0).getPosts().size());
+      assertEquals("Post3", blogs.get(1).getPosts().get(0).getSubject());
+      assertEquals("Post4", blogs.get(3).getPosts().get(0).getSubject());
+      assertEquals(4, preparedSql.size());
+    }
+  }
+
+  @Test
+  void shouldLoadSiblingsTogetherAfterSessionIsClosed() {
+    List<Blog> blogs;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      blogs = sqlSession.getMapper(Mapper.class).selectLazyBlogs();
+    }
+    assertEquals("Post2", blogs.get(0).getPosts().get(1).getSubject());
+    assertEquals(1, blogs.get(1).getPosts().size());
+    assertEquals(2, preparedSql.size());
+  }
+
+  @Test
+  void shouldLoadSiblingsOnceWhenReadConcurrently() throws Exception {
+    List<Blog> blogs;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      blogs = sqlSession.getMapper(Mapper.class).selectLazyBlogs();
+    }
+    ExecutorService executorService = Executors.newFixedThreadPool(blogs.size());
+    try {
+      CountDownLatch start = new CountDownLatch(1);
+      List<Future<Integer>> postCounts = new ArrayList<>();
+      for (Blog blog : blogs) {
+        postCounts.add(executorService.submit(() -> {
+          start.await();
+          return blog.getPosts().size();
+        }));
+      }
+      start.countDown();
+      assertEquals(2, postCounts.get(0).get());
+      assertEquals(1, postCounts.get(1).get());
+      assertEquals(0, postCounts.get(2).get());
+      assertEquals(1, postCounts.get(3).get());
+      assertEquals(0, postCounts.get(4).get());
+    } finally {
+      executorService.shutdown();
+    }
+    // the blogs, the posts of all blogs
+    assertEquals(2, preparedSql.size());
+  }
+
+  @Test
+  void shouldNotLoadPropertyThatWasSet() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(Mapper.class).selectLazyBlogs();
+      Author author = new Author();
+      blogs.get(1).setAuthor(author);
+      blogs.get(0).getAuthor();
+      assertSame(author, blogs.get(1).getAuthor());
+      assertEquals("Author1", blogs.get(2).getAuthor().getName());
+      assertEquals("Author3", blogs.get(3).getAuthor().getName());
+      // the authors of the first, third and fourth blogs
+      assertEquals(2, preparedSql.size());
+    }
+  }
+
+  @Test
+  void shouldLoadPropertyOfEachObjectWithoutBatchSize() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(Mapper.class).selectLazyUnbatchedBlogs();
+      assertEquals("Author1", blogs.get(0).getAuthor().getName());
+      assertEquals("Author2", blogs.get(1).getAuthor().getName());
+      assertEquals(3, preparedSql.size());
+    }
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class, Integer.class }))
+  public static class SqlRecorder implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      preparedSql.add(((StatementHandler) invocation.getTarget()).getBoundSql().getSql());
+      return invocation.proceed();
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+      // NOP
+    }
+
+  }
+
+}
@@ -0,0 +1,187 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.nested_query_batch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class NestedQueryBatchTest {
+
+  private static final List<String> preparedSql = new ArrayList<>();
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/nested_query_batch/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/nested_query_batch/CreateDB.sql");
+    preparedSql.clear();
+  }
+
+  @Test
+  void shouldLoadNestedSelectsInBatches() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(Mapper.class).selectBlogs();
+      assertBlogs(blogs);
+    }
+    // the blogs, authors 1 and 2, authors 1 and 3, the posts of all blogs
+    assertEquals(4, preparedSql.size());
+    assertTrue(preparedSql.get(1).contains("id IN (?, ?)"), preparedSql.get(1));
+    assertTrue(preparedSql.get(3).contains("post.blog_id IN (?, ?, ?, ?, ?)"), preparedSql.get(3));
+  }
+
+  @Test
+  void shouldLoadNestedSelectsOneByOneWithoutBatchSize() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(Mapper.class).selectUnbatchedBlogs();
+      assertEquals("Author1", blogs.get(2).getAuthor().getName());
+    }
+    // the blogs, authors 1, 2 and 3
+    assertEquals(4, preparedSql.size());
+  }
+
+  @Test
+  void shouldLoadAnnotatedNestedSelectsInBatches() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(AnnotatedMapper.class).selectBlogs();
+      assertBlogs(blogs);
+    }
+    assertEquals(3, preparedSql.size());
+  }
+
+  @Test
+  void shouldFallBackToOneQueryPerKeyWhenSelectCannotBeBatched() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(AnnotatedMapper.class).selectBlogsWithUnbatchableSelects();
+      assertEquals("Author1", blogs.get(0).getAuthor().getName());
+      assertEquals("Author3", blogs.get(3).getAuthor().getName());
+      assertEquals(2, blogs.get(0).getPosts().size());
+      assertEquals("Post4", blogs.get(3).getPosts().get(0).getSubject());
+      assertTrue(blogs.get(2).getPosts().isEmpty());
+    }
+    // the blogs, authors 1, 2 and 3, the posts in one query that cannot be told apart, then once per blog
+    assertEquals(10, preparedSql.size());
+  }
+
+  @Test
+  void shouldLoadLimitedSelectsOneByOne() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(AnnotatedMapper.class).selectBlogsWithFirstPost();
+      assertEquals(1, blogs.get(0).getPosts().size());
+      assertEquals("Post1", blogs.get(0).getPosts().get(0).getSubject());
+      assertEquals("Post3", blogs.get(1).getPosts().get(0).getSubject());
+      assertTrue(blogs.get(2).getPosts().isEmpty());
+      assertEquals("Post4", blogs.get(3).getPosts().get(0).getSubject());
+    }
+    // the blogs, then the posts once per blog
+    assertEquals(6, preparedSql.size());
+  }
+
+  @Test
+  void shouldBatchKeyThatFollowsOtherConditions() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(AnnotatedMapper.class).selectBlogsWithPostsExceptPost1();
+      assertEquals(1, blogs.get(0).getPosts().size());
+      assertEquals("Post2", blogs.get(0).getPosts().get(0).getSubject());
+      assertEquals("Post3", blogs.get(1).getPosts().get(0).getSubject());
+      assertTrue(blogs.get(2).getPosts().isEmpty());
+      assertEquals("Post4", blogs.get(3).getPosts().get(0).getSubject());
+    }
+    assertEquals(2, preparedSql.size());
+    assertTrue(preparedSql.get(1).contains("id <> 1 and blog_id IN (?, ?, ?, ?, ?)"), preparedSql.get(1));
+  }
+
+  @Test
+  void shouldFallBackToOneQueryPerKeyWhenKeyTypesDiffer() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Blog> blogs = sqlSession.getMapper(Mapper.class).selectStringKeyBlogs();
+      assertEquals("Author1", blogs.get(0).getAuthor().getName());
+      assertEquals("Author2", blogs.get(1).getAuthor().getName());
+      assertEquals("Author1", blogs.get(2).getAuthor().getName());
+      assertEquals("Author3", blogs.get(3).getAuthor().getName());
+      assertNull(blogs.get(4).getAuthor());
+    }
+    // the blogs, the authors in one query whose Integer ids do not match the String keys, then once per author
+    assertEquals(5, preparedSql.size());
+  }
+
+  @Test
+  void shouldNotBatchWhenResultHandlerIsUsed() {
+    List<Blog> blogs = new ArrayList<>();
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.select("org.apache.ibatis.submitted.nested_query_batch.Mapper.selectBlogs",
+          (ResultHandler<Blog>) (ResultContext<? extends Blog> context) -> {
+            assertNotNull(context.getResultObject().getPosts());
+            blogs.add(context.getResultObject());
+          });
+    }
+    assertBlogs(blogs);
+  }
+
+  private void assertBlogs(List<Blog> blogs) {
+    assertEquals(5, blogs.size());
+    assertEquals("Author1", blogs.get(0).getAuthor().getName());
+    assertEquals("Author2", blogs.get(1).getAuthor().getName());
+    assertEquals("Author1", blogs.get(2).getAuthor().getName());
+    assertEquals("Author3", blogs.get(3).getAuthor().getName());
+    assertNull(blogs.get(4).getAuthor());
+    assertEquals(2, blogs.get(0).getPosts().size());
+    assertEquals("Post2", blogs.get(0).getPosts().get(1).getSubject());
+    assertEquals(1, blogs.get(1).getPosts().size());
+    assertTrue(blogs.get(2).getPosts().isEmpty());
+    assertEquals("Post4", blogs.get(3).getPosts().get(0).getSubject());
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = { Connection.class, Integer.class }))
+  public static class SqlRecorder implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      preparedSql.add(((StatementHandler) invocation.getTarget()).getBoundSql().getSql());
+      return invocation.proceed();
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+      // NOP
+    }
+
+  }
+
+}
@@ -0,0 +1,30 @@
+--
+--    Copyright 2009-2021 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+drop table stats if exists;
+
+create table stats (
+  id int,
+  total bigint,
+  ratio double,
+  active boolean,
+  small smallint,
+  tiny tinyint,
+  rate real
+);
+
+insert into stats (id, total, ratio, active, small, tiny, rate) values(1, 10000000000, 0.5, true, 300, 7, 1.25);
+insert into stats (id, total, ratio, active, small, tiny, rate) values(2, null, null, null, null, null, null);
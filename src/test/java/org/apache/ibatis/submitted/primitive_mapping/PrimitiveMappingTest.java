@@ -0,0 +1,74 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.primitive_mapping;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.util.List;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class PrimitiveMappingTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/primitive_mapping/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/primitive_mapping/CreateDB.sql");
+  }
+
+  @Test
+  void shouldMapPrimitiveColumns() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<Stats> stats = sqlSession.getMapper(Mapper.class).getStats();
+      Stats first = stats.get(0);
+      assertEquals(1, first.getId());
+      assertEquals(10000000000L, first.getTotal());
+      assertEquals(0.5, first.getRatio());
+      assertTrue(first.isActive());
+      assertEquals((short) 300, first.getSmall());
+      assertEquals((byte) 7, first.getTiny());
+      assertEquals(1.25f, first.getRate());
+    }
+  }
+
+  @Test
+  void shouldNotSetPrimitivePropertiesOnNulls() {
+    sqlSessionFactory.getConfiguration().setCallSettersOnNulls(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Stats second = sqlSession.getMapper(Mapper.class).getStats().get(1);
+      assertEquals(2, second.getId());
+      assertEquals(0L, second.getTotal());
+      assertEquals(-1, second.getRatio());
+      assertFalse(second.isActive());
+      assertEquals((short) 0, second.getSmall());
+      assertEquals((byte) 0, second.getTiny());
+      assertEquals(0f, second.getRate());
+    }
+  }
+
+}
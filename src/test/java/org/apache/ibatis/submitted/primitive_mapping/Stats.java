@@ -0,0 +1,80 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.primitive_mapping;
+
+public class Stats {
+
+  private int id;
+  private long total;
+  private double ratio = -1;
+  private boolean active;
+  private short small;
+  private byte tiny;
+  private float rate;
+
+  public int getId() {
+    return id;
+  }
+
+  public void setId(int id) {
+    this.id = id;
+  }
+
+  public long getTotal() {
+    return total;
+  }
+
+  private void setTotal(long total) {
+    this.total = total;
+  }
+
+  public double getRatio() {
+    return ratio;
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  public void setActive(boolean active) {
+    this.active = active;
+  }
+
+  public short getSmall() {
+    return small;
+  }
+
+  public void setSmall(short small) {
+    this.small = small;
+  }
+
+  public byte getTiny() {
+    return tiny;
+  }
+
+  public void setTiny(byte tiny) {
+    this.tiny = tiny;
+  }
+
+  public float getRate() {
+    return rate;
+  }
+
+  public void setRate(float rate) {
+    this.rate = rate;
+  }
+
+}
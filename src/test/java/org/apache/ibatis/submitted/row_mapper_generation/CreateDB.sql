@@ -0,0 +1,41 @@
+--
+--    Copyright 2009-2021 the original author or authors.
+--
+--    Licensed under the Apache License, Version 2.0 (the "License");
+--    you may not use this file except in compliance with the License.
+--    You may obtain a copy of the License at
+--
+--       http://www.apache.org/licenses/LICENSE-2.0
+--
+--    Unless required by applicable law or agreed to in writing, software
+--    distributed under the License is distributed on an "AS IS" BASIS,
+--    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+--    See the License for the specific language governing permissions and
+--    limitations under the License.
+--
+
+
+drop table orders if exists;
+drop table users if exists;
+
+create table users (
+  id int,
+  name varchar(20),
+  age int,
+  score double,
+  active boolean
+);
+
+create table orders (
+  id int,
+  user_id int,
+  amount decimal(10, 2)
+);
+
+insert into users (id, name, age, score, active) values(1, 'User1', 31, 1.5, true);
+insert into users (id, name, age, score, active) values(2, 'User2', null, 2.5, false);
+insert into users (id, name, age, score, active) values(3, null, 33, null, null);
+
+insert into orders (id, user_id, amount) values(10, 1, 12.50);
+insert into orders (id, user_id, amount) values(11, 1, 7.25);
+insert into orders (id, user_id, amount) values(20, 2, 100.00);
@@ -0,0 +1,162 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.row_mapper_generation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Function;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.resultset.RowMapperFactory;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.reflection.ReflectionException;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RowMapperGenerationTest {
+
+  private SqlSessionFactory sqlSessionFactory;
+  private RowMapperFactory rowMapperFactory;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/row_mapper_generation/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/row_mapper_generation/CreateDB.sql");
+    rowMapperFactory = sqlSessionFactory.getConfiguration().getRowMapperFactory();
+  }
+
+  @Test
+  void shouldMapRowsWithGeneratedRowMapper() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsers();
+      assertEquals(1, rowMapperFactory.getRowMapperCount());
+      assertEquals(3, users.size());
+      assertUser(users.get(0), 1, "User1", 31, 1.5, true);
+      assertUser(users.get(1), 2, "User2", 0, 2.5, false);
+      assertUser(users.get(2), 3, "unknown", 33, null, false);
+
+      sqlSession.clearCache();
+      sqlSession.getMapper(Mapper.class).getUsers();
+      assertEquals(1, rowMapperFactory.getRowMapperCount());
+    }
+  }
+
+  @Test
+  void shouldCallSettersOnNulls() {
+    sqlSessionFactory.getConfiguration().setCallSettersOnNulls(true);
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsers();
+      assertUser(users.get(1), 2, "User2", 0, 2.5, false);
+      assertUser(users.get(2), 3, null, 33, null, false);
+    }
+  }
+
+  @Test
+  void shouldMapNestedResultMaps() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsersWithOrders();
+      assertEquals(2, rowMapperFactory.getRowMapperCount());
+      assertEquals(3, users.size());
+      // nested result maps are not auto-mapped by default
+      assertUser(users.get(0), 1, "User1", 0, null, false);
+      assertEquals(2, users.get(0).getOrders().size());
+      assertEquals(11, users.get(0).getOrders().get(1).getId());
+      assertEquals(new BigDecimal("7.25"), users.get(0).getOrders().get(1).getAmount());
+      assertEquals(1, users.get(1).getOrders().size());
+      assertTrue(users.get(2).getOrders().isEmpty());
+    }
+  }
+
+  @Test
+  void shouldMapNestedSelectsThroughReflection() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<User> users = sqlSession.getMapper(Mapper.class).getUsersWithSelectedOrders();
+      // only the orders are mapped by a generated row mapper
+      assertEquals(1, rowMapperFactory.getRowMapperCount());
+      assertUser(users.get(0), 1, "User1", 31, 1.5, true);
+      assertEquals(2, users.get(0).getOrders().size());
+      assertEquals(new BigDecimal("100.00"), users.get(1).getOrders().get(0).getAmount());
+    }
+  }
+
+  @Test
+  void shouldMapNonPublicTypesThroughReflection() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      List<HiddenUser> users = sqlSession.getMapper(Mapper.class).getHiddenUsers();
+      assertEquals(0, rowMapperFactory.getRowMapperCount());
+      assertEquals("User2", users.get(1).getName());
+    }
+  }
+
+  @Test
+  void shouldWrapExceptionOfSetterLikeReflection() {
+    String message = assertSetterFailure(Mapper::getUsersWithNegativeAge);
+    assertTrue(message.startsWith("Could not set property 'age' of '" + User.class + "' with the value of column #2"),
+        message);
+    assertTrue(message.endsWith("#2. Cause: java.lang.IllegalArgumentException: Age must not be negative"), message);
+  }
+
+  @Test
+  void shouldNotNarrowValueOfAnotherTypeLikeReflection() {
+    String message = assertSetterFailure(Mapper::getUsersWithLongAge);
+    assertTrue(message.startsWith("Could not set property 'age' of '" + User.class + "' with value '31' Cause: "),
+        message);
+  }
+
+  /**
+   * Maps the rows with a generated row mapper and through reflection, and checks that both fail with the same message.
+   */
+  private String assertSetterFailure(Function<Mapper, List<User>> select) {
+    ReflectionException generated;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      PersistenceException e = assertThrows(PersistenceException.class, () -> select.apply(mapper));
+      generated = (ReflectionException) e.getCause();
+    }
+    assertEquals(1, rowMapperFactory.getRowMapperCount());
+    sqlSessionFactory.getConfiguration().setRowMapperGenerationEnabled(false);
+    ReflectionException reflective;
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      Mapper mapper = sqlSession.getMapper(Mapper.class);
+      PersistenceException e = assertThrows(PersistenceException.class, () -> select.apply(mapper));
+      reflective = (ReflectionException) e.getCause();
+    }
+    String message = generated.getMessage();
+    String reflectiveMessage = reflective.getMessage();
+    assertEquals(reflectiveMessage.substring(0, reflectiveMessage.indexOf("Cause: ")),
+        message.substring(0, message.indexOf("Cause: ")));
+    return message;
+  }
+
+  private void assertUser(User user, int id, String name, int age, Double score, boolean active) {
+    assertEquals(id, user.getId());
+    assertEquals(name, user.getName());
+    assertEquals(age, user.getAge());
+    assertEquals(score, user.getScore());
+    assertEquals(active, user.isActive());
+  }
+
+}
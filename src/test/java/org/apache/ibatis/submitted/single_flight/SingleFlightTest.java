@@ -0,0 +1,247 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.submitted.single_flight;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.Reader;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.apache.ibatis.BaseDataTest;
+import org.apache.ibatis.exceptions.PersistenceException;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  private static final AtomicInteger executions = new AtomicInteger();
+  private static volatile CountDownLatch gate;
+
+  private SqlSessionFactory sqlSessionFactory;
+  private ExecutorService executor;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    try (Reader reader = Resources.getResourceAsReader("org/apache/ibatis/submitted/single_flight/mybatis-config.xml")) {
+      sqlSessionFactory = new SqlSessionFactoryBuilder().build(reader);
+    }
+    BaseDataTest.runScript(sqlSessionFactory.getConfiguration().getEnvironment().getDataSource(),
+        "org/apache/ibatis/submitted/single_flight/CreateDB.sql");
+    executions.set(0);
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @AfterEach
+  void tearDown() {
+    gate = null;
+    executor.shutdownNow();
+  }
+
+  @Test
+  void shouldShareOneQueryBetweenConcurrentSessions() throws Exception {
+    gate = new CountDownLatch(1);
+    Future<List<User>> leader = submit(Mapper::getUsers);
+    awaitExecutions(1);
+    List<Thread> waiters = new CopyOnWriteArrayList<>();
+    List<Future<List<User>>> results = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      results.add(submit(mapper -> {
+        waiters.add(Thread.currentThread());
+        return mapper.getUsers();
+      }));
+    }
+    awaitWaiting(waiters, 3);
+    gate.countDown();
+
+    List<User> users = leader.get(10, TimeUnit.SECONDS);
+    assertEquals(3, users.size());
+    for (Future<List<User>> result : results) {
+      List<User> copy = result.get(10, TimeUnit.SECONDS);
+      assertEquals(3, copy.size());
+      assertNotSame(users.get(0), copy.get(0));
+      assertEquals("User1", copy.get(0).getName());
+    }
+    assertEquals(1, executions.get());
+  }
+
+  @Test
+  void shouldNotShareStatementsThatAreNotMarked() throws Exception {
+    gate = new CountDownLatch(1);
+    List<Future<List<User>>> results = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      results.add(submit(Mapper::getUnsharedUsers));
+    }
+    awaitExecutions(3);
+    gate.countDown();
+    for (Future<List<User>> result : results) {
+      assertEquals(3, result.get(10, TimeUnit.SECONDS).size());
+    }
+  }
+
+  @Test
+  void shouldRunQueryAgainWhenResultsCannotBeCopied() throws Exception {
+    gate = new CountDownLatch(1);
+    Future<List<Name>> leader = submit(Mapper::getNames);
+    awaitExecutions(1);
+    List<Thread> waiters = new CopyOnWriteArrayList<>();
+    Future<List<Name>> waiter = submit(mapper -> {
+      waiters.add(Thread.currentThread());
+      return mapper.getNames();
+    });
+    awaitWaiting(waiters, 1);
+    gate.countDown();
+
+    assertEquals(3, leader.get(10, TimeUnit.SECONDS).size());
+    assertEquals(3, waiter.get(10, TimeUnit.SECONDS).size());
+    assertEquals(2, executions.get());
+  }
+
+  @Test
+  void shouldNotShareQueryOfSessionWithUncommittedWrites() throws Exception {
+    assertOwnQueryAfterWrite(ExecutorType.SIMPLE);
+  }
+
+  @Test
+  void shouldNotShareQueryOfSessionWithQueuedBatch() throws Exception {
+    assertOwnQueryAfterWrite(ExecutorType.BATCH);
+  }
+
+  private void assertOwnQueryAfterWrite(ExecutorType executorType) throws Exception {
+    gate = new CountDownLatch(1);
+    Future<List<User>> leader = submit(Mapper::getUsers);
+    awaitExecutions(1);
+    Future<List<User>> writer = submit(executorType, mapper -> {
+      User user = new User();
+      user.setId(4);
+      user.setName("User4");
+      mapper.insertUser(user);
+      return mapper.getUsers();
+    });
+    // the writer runs its query instead of waiting for the leader
+    awaitExecutions(2);
+    gate.countDown();
+
+    assertEquals(4, writer.get(10, TimeUnit.SECONDS).size());
+    assertEquals(3, leader.get(10, TimeUnit.SECONDS).size());
+  }
+
+  @Test
+  void shouldWaitNoLongerThanStatementTimeout() throws Exception {
+    gate = new CountDownLatch(1);
+    Future<List<User>> leader = submit(Mapper::getUsers);
+    awaitExecutions(1);
+    sqlSessionFactory.getConfiguration().setDefaultStatementTimeout(1);
+    Future<List<User>> waiter = submit(Mapper::getUsers);
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> waiter.get(10, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof PersistenceException);
+    assertTrue(e.getCause().getCause() instanceof SQLTimeoutException);
+    gate.countDown();
+    assertEquals(3, leader.get(10, TimeUnit.SECONDS).size());
+    assertEquals(1, executions.get());
+  }
+
+  @Test
+  void shouldRunQueriesOneAfterAnother() {
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(Mapper.class).getUsers();
+    }
+    try (SqlSession sqlSession = sqlSessionFactory.openSession()) {
+      sqlSession.getMapper(Mapper.class).getUsers();
+    }
+    assertEquals(2, executions.get());
+  }
+
+  private <T> Future<T> submit(Function<Mapper, T> call) {
+    return submit(ExecutorType.SIMPLE, call);
+  }
+
+  private <T> Future<T> submit(ExecutorType executorType, Function<Mapper, T> call) {
+    return executor.submit(() -> {
+      try (SqlSession sqlSession = sqlSessionFactory.openSession(executorType)) {
+        return call.apply(sqlSession.getMapper(Mapper.class));
+      }
+    });
+  }
+
+  private void awaitExecutions(int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (executions.get() < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(count, executions.get());
+  }
+
+  /**
+   * Waits until the threads are parked waiting for the running query.
+   */
+  private void awaitWaiting(List<Thread> threads, int count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (System.currentTimeMillis() < deadline) {
+      if (threads.size() == count && threads.stream().allMatch(t -> t.getState() == Thread.State.WAITING)) {
+        return;
+      }
+      Thread.sleep(10);
+    }
+    fail("Sessions did not wait for the running query");
+  }
+
+  @Intercepts(@Signature(type = StatementHandler.class, method = "query", args = { Statement.class, ResultHandler.class }))
+  public static class QueryGate implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+      executions.incrementAndGet();
+      CountDownLatch latch = gate;
+      if (latch != null) {
+        latch.await(10, TimeUnit.SECONDS);
+      }
+      return invocation.proceed();
+    }
+
+    @Override
+    public void setProperties(Properties properties) {
+      // NOP
+    }
+
+  }
+
+}
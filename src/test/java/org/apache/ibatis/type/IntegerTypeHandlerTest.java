@@ -16,10 +16,17 @@
 package org.apache.ibatis.type;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.apache.ibatis.executor.result.ResultMapException;
 import org.junit.jupiter.api.Test;
 
 class IntegerTypeHandlerTest extends BaseTypeHandlerTest {
@@ -81,4 +88,29 @@ class IntegerTypeHandlerTest extends BaseTypeHandlerTest {
     assertNull(TYPE_HANDLER.getResult(cs, 1));
   }
 
+  @Test
+  void shouldGetIntResultFromResultSetByPosition() throws Exception {
+    when(rs.getInt(1)).thenReturn(100);
+    assertEquals(100, new IntegerTypeHandler().getIntResult(rs, 1));
+  }
+
+  @Test
+  void shouldWrapExceptionOfIntResult() throws Exception {
+    when(rs.getInt(1)).thenThrow(new SQLException("invalid"));
+    assertThrows(ResultMapException.class, () -> new IntegerTypeHandler().getIntResult(rs, 1));
+  }
+
+  @Test
+  void shouldSupportPrimitiveResultsUnlessBoxedGetterIsOverridden() {
+    assertTrue(PrimitiveTypeHandler.supports(new IntegerTypeHandler(), int.class));
+    assertFalse(PrimitiveTypeHandler.supports(new IntegerTypeHandler(), long.class));
+    assertFalse(PrimitiveTypeHandler.supports(new IntegerTypeHandler() {
+      @Override
+      public Integer getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+        Integer result = super.getNullableResult(rs, columnIndex);
+        return result == null ? -1 : result;
+      }
+    }, int.class));
+  }
+
 }
@@ -0,0 +1,79 @@
+/*
+ *    Copyright 2009-2021 the original author or authors.
+ *
+ *    Licensed under the Apache License, Version 2.0 (the "License");
+ *    you may not use this file except in compliance with the License.
+ *    You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *    Unless required by applicable law or agreed to in writing, software
+ *    distributed under the License is distributed on an "AS IS" BASIS,
+ *    WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *    See the License for the specific language governing permissions and
+ *    limitations under the License.
+ */
+package org.apache.ibatis.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  void shouldReportZeroForEmptyHistogram() {
+    LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getMax());
+    assertEquals(0, snapshot.getValueAtPercentile(99));
+    assertEquals(0.0, snapshot.getMean());
+  }
+
+  @Test
+  void shouldReportExactPercentilesForSmallValues() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 1; i <= 20; i++) {
+      histogram.record(i);
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(20, snapshot.getCount());
+    assertEquals(10, snapshot.getValueAtPercentile(50));
+    assertEquals(20, snapshot.getValueAtPercentile(99));
+    assertEquals(10.5, snapshot.getMean());
+  }
+
+  @Test
+  void shouldReportTailOfSkewedDistribution() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 990; i++) {
+      histogram.record(1);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(5000);
+    }
+    LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+    assertEquals(1, snapshot.getValueAtPercentile(99));
+    long p999 = snapshot.getValueAtPercentile(99.9);
+    assertTrue(p999 >= 5000 && p999 <= 5000 * 1.07, "p99.9 was " + p999);
+    assertEquals(5000, snapshot.getMax());
+  }
+
+  @Test
+  void shouldKeepRelativeErrorBoundedForLargeValues() {
+    for (long value : new long[] { 33, 100, 1234, 987654, Long.MAX_VALUE / 3, Long.MAX_VALUE }) {
+      long highest = LatencyHistogram.highestValueOf(LatencyHistogram.indexOf(value));
+      assertTrue(highest >= value, value + " -> " + highest);
+      assertTrue(highest - value <= value / 16, value + " -> " + highest);
+    }
+  }
+
+  @Test
+  void shouldRecordNegativeValuesAsZero() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    assertEquals(0, histogram.snapshot().getMax());
+    assertEquals(1, histogram.snapshot().getCount());
+  }
+
+}